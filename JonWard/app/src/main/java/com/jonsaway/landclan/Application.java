@@ -0,0 +1,82 @@
+package com.jonsaway.landclan;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jonsaway.landclan.importer.ImportReport;
+import com.jonsaway.landclan.importer.LandParcelImporter;
+import com.jonsaway.landclan.importer.ParcelReader;
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelRepository;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.shard.ShardRebalancer;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+
+import java.nio.file.Path;
+
+@SpringBootApplication
+public class Application {
+    public static void main(String[] args) {
+        SpringApplication.run(Application.class, args);
+    }
+
+    // NB: Uncomment 'demo()' to prepopulate the DB with some example land parcels
+    /*
+    @Bean
+    public CommandLineRunner demo(LandParcelRepository repository) {
+        return (args) -> {
+            // Populate with a few example land parcels
+            repository.save(new LandParcel(123, "Alice House", ParcelStatus.SAVED, 42, true));
+            repository.save(new LandParcel(246, "Bob Office", ParcelStatus.APPROVED, 27, false));
+            repository.save(new LandParcel(369, "Charlie School", ParcelStatus.SHORT_LISTED, 103, true));
+            repository.save(new LandParcel(4812, "David Field", ParcelStatus.UNDER_CONSIDERATION, 2.5, false));
+            repository.save(new LandParcel(51020, "Eve Hospital", ParcelStatus.SAVED, 198, true));
+        };
+    }
+    */
+
+    // Import land parcels from a file at startup
+    // java -jar landclan.jar --landclan.import.file=parcels.csv (or .geojson)
+    // Progress is kept in a checkpoint file (landclan.import.checkpoint, by default the file's name plus '.checkpoint'),
+    // so if the import is interrupted, running it again carries on where it left off
+    // (add --spring.main.web-application-type=none to exit once the import is done, rather than serving requests)
+    @Bean
+    @ConditionalOnProperty("landclan.import.file")
+    public CommandLineRunner importParcels(LandParcelImporter importer,
+                                           ObjectMapper objectMapper,
+                                           @Value("${landclan.import.file}") String file,
+                                           @Value("${landclan.import.checkpoint:}") String checkpoint) {
+        return (args) -> {
+            Path path = Path.of(file);
+            Path checkpointPath = checkpoint.isEmpty() ? path.resolveSibling(path.getFileName() + ".checkpoint") : Path.of(checkpoint);
+            try (ParcelReader reader = ParcelReader.open(path, objectMapper)) {
+                ImportReport report = importer.importParcels(reader, checkpointPath);
+                LoggerFactory.getLogger(Application.class).info("Imported {}: {}", file, report);
+            }
+        };
+    }
+
+    // Move a range of object ids (or, with landclan.shards.hash=true, of their hashes) to another shard at startup
+    // java -jar landclan.jar --landclan.shards.urls=... --landclan.shards.move=1000000..1999999:2
+    // (see ShardRebalancer; add --spring.main.web-application-type=none to exit once it's done)
+    @Bean
+    @ConditionalOnProperty("landclan.shards.move")
+    public CommandLineRunner moveShardRange(ShardRebalancer rebalancer,
+                                            @Value("${landclan.shards.move}") String move) {
+        return (args) -> {
+            // <from>..<to>:<shard>
+            int colon = move.lastIndexOf(':');
+            int dots = move.indexOf("..", 1);
+            if(colon < 0 || dots < 0 || dots > colon) {
+                throw new IllegalArgumentException("Expected landclan.shards.move=<from>..<to>:<shard>, not " + move);
+            }
+            rebalancer.move(Long.parseLong(move.substring(0, dots).trim()),
+                    Long.parseLong(move.substring(dots + 2, colon).trim()),
+                    Integer.parseInt(move.substring(colon + 1).trim()));
+        };
+    }
+}
@@ -0,0 +1,64 @@
+package com.jonsaway.landclan;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// The threads for the application's own work done alongside a request (or many of them at once): the queries on
+// every shard (LandParcelShards), the change streams (LandParcelChangeStreamer) and the import writers
+// (LandParcelImporter)
+// With spring.threads.virtual.enabled=true (the 'virtual' profile), each task runs on a new virtual thread, like
+// Tomcat's requests and the application task executor; otherwise on a cached pool of (daemon) platform threads
+// The single background threads (write-behind flushes, snapshots, journal fsyncs, import progress) stay platform threads
+// Virtual threads need Java 21: asked for on an earlier Java (where Spring Boot would quietly carry on with platform
+// threads), startup fails instead
+@Component
+public class TaskThreads {
+    @Autowired
+    Environment environment;
+
+    private boolean virtual;
+
+    @PostConstruct
+    public void init() {
+        virtual = Threading.VIRTUAL.isActive(environment);
+        if(!virtual && environment.getProperty("spring.threads.virtual.enabled", Boolean.class, false)) {
+            throw new IllegalStateException("spring.threads.virtual.enabled (the 'virtual' profile) needs Java 21: running on Java "
+                    + Runtime.version().feature());
+        }
+    }
+
+    public boolean isVirtual() {
+        return virtual;
+    }
+
+    // An executor running each task on a thread of its own, named 'name-<n>'
+    // (the platform threads are pooled, and kept for a minute once idle)
+    public ExecutorService executor(String name) {
+        if(!virtual) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(runnable -> {
+                Thread thread = new Thread(runnable, name + "-" + count.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        // (Executors.newThreadPerTaskExecutor is Java 21 API, and we build for 17)
+        ThreadFactory factory = new VirtualThreadTaskExecutor(name + "-").getVirtualThreadFactory();
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class).invoke(null, factory);
+        }
+        catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("No virtual thread executor", e);
+        }
+    }
+}
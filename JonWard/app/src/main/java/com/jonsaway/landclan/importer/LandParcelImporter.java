@@ -0,0 +1,335 @@
+package com.jonsaway.landclan.importer;
+
+import com.jonsaway.landclan.TaskThreads;
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.service.BatchOperation;
+import com.jonsaway.landclan.service.BatchResult;
+import com.jonsaway.landclan.service.LandParcelService;
+import com.jonsaway.landclan.service.ParcelOutcome;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Imports land parcels in bulk, from a ParcelReader
+// - the calling thread reads and validates the parcels, and groups the valid ones into batches
+// - a pool of writer threads creates each batch with LandParcelService.batch (so a batch is a few
+//   transactions, rather than a request and a transaction per parcel)
+// - batches are handed over through a bounded queue: if the writers fall behind, reading waits (backpressure),
+//   so memory use doesn't depend on the size of the file
+// - progress is logged every landclan.import.progress-interval
+// - optionally, a checkpoint file records how far the import has got: every parcel up to that row has been
+//   dealt with (batches finish out of order, so this is the last row before the earliest unfinished batch).
+//   If the import is interrupted, running it again with the same checkpoint carries on from there.
+//   The checkpoint also records the last row handed to a writer, so the next run knows which rows the interrupted
+//   one may have created: a row up to there whose create fails is already imported if the parcel is stored just as
+//   the row has it (any other failure is reported as usual). The checkpoint is deleted once the import is complete
+@Service
+public class LandParcelImporter {
+    private static final Logger log = LoggerFactory.getLogger(LandParcelImporter.class);
+
+    @Autowired
+    LandParcelService service;
+
+    // Runs the writers (on virtual threads, with the 'virtual' profile)
+    @Autowired
+    TaskThreads threads = new TaskThreads();
+
+    // Parcels created per batch
+    @Value("${landclan.import.batch-size:500}")
+    int batchSize = 500;
+
+    // Threads creating batches
+    @Value("${landclan.import.writers:4}")
+    int writers = 4;
+
+    // Batches read ahead of the writers, before reading waits for them
+    @Value("${landclan.import.queue-size:8}")
+    int queueSize = 8;
+
+    // Errors reported individually (any more are only counted)
+    @Value("${landclan.import.max-errors:1000}")
+    int maxErrors = 1000;
+
+    @Value("${landclan.import.progress-interval:PT5S}")
+    Duration progressInterval = Duration.ofSeconds(5);
+
+    // Import every parcel the reader has to offer
+    public ImportReport importParcels(ParcelReader reader) throws IOException {
+        return importParcels(reader, null);
+    }
+
+    // Import every parcel the reader has to offer, carrying on from the checkpoint file (if it exists),
+    // and keeping it up to date (if it isn't null)
+    // Throws IOException if the file can't be read, or the checkpoint can't be written: the checkpoint is
+    // left at the last parcel imported, so the import can be resumed
+    public ImportReport importParcels(ParcelReader reader, Path checkpoint) throws IOException {
+        Run run = new Run(checkpoint);
+        ExecutorService writerPool = threads.executor("land-parcel-import");
+        ScheduledExecutorService progress = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "land-parcel-import-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long nanos = progressInterval.toNanos();
+        progress.scheduleAtFixedRate(run::logProgress, nanos, nanos, TimeUnit.NANOSECONDS);
+
+        BlockingQueue<Batch> queue = new ArrayBlockingQueue<>(queueSize);
+        List<Future<?>> writerResults = new ArrayList<>();
+        for(int writer = 0; writer < writers; writer++) {
+            writerResults.add(writerPool.submit(() -> {
+                write(queue, run);
+                return null;
+            }));
+        }
+
+        try {
+            read(reader, queue, run);
+        }
+        finally {
+            // One end marker per writer (waiting, if need be, for the writers to make room)
+            try {
+                for(int writer = 0; writer < writers; writer++) {
+                    while(!queue.offer(Batch.END, 100, TimeUnit.MILLISECONDS)) {
+                        if(allDone(writerResults)) {
+                            break;
+                        }
+                    }
+                }
+                for(Future<?> writerResult: writerResults) {
+                    writerResult.get();
+                }
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Import interrupted", e);
+            }
+            catch (ExecutionException e) {
+                throw e.getCause() instanceof UncheckedIOException unchecked ? unchecked.getCause() : new IOException("Import failed", e.getCause());
+            }
+            finally {
+                writerPool.shutdownNow();
+                progress.shutdownNow();
+            }
+        }
+
+        run.finish();
+        return run.report();
+    }
+
+    // Read the parcels, handing them to the writers a batch at a time
+    private void read(ParcelReader reader, BlockingQueue<Batch> queue, Run run) throws IOException {
+        List<BatchOperation> operations = new ArrayList<>(batchSize);
+        List<ParcelReader.Row> rows = new ArrayList<>(batchSize);
+        long first = run.resumeAfter + 1;
+        long last = run.resumeAfter;
+
+        ParcelReader.Row row;
+        while((row = reader.next()) != null) {
+            run.rows.incrementAndGet();
+            if(row.number() <= run.resumeAfter) {
+                run.skipped.incrementAndGet();
+                continue;
+            }
+
+            last = row.number();
+            if(row.operation() == null) {
+                run.failed(new ImportError(row.number(), row.objectId(), row.error()));
+            }
+            else {
+                operations.add(row.operation());
+                rows.add(row);
+            }
+
+            if(operations.size() == batchSize) {
+                put(queue, new Batch(first, last, operations, rows), run);
+                operations = new ArrayList<>(batchSize);
+                rows = new ArrayList<>(batchSize);
+                first = last + 1;
+            }
+        }
+        if(last >= first) {
+            put(queue, new Batch(first, last, operations, rows), run);
+        }
+    }
+
+    private static void put(BlockingQueue<Batch> queue, Batch batch, Run run) throws IOException {
+        try {
+            // Wait for room (unless the writers have given up)
+            while(!queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                if(run.failure != null) {
+                    throw run.failure;
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        }
+    }
+
+    // Create batches until the end marker
+    private void write(BlockingQueue<Batch> queue, Run run) throws InterruptedException {
+        Batch batch;
+        while((batch = queue.take()) != Batch.END) {
+            try {
+                run.starting(batch);
+                List<BatchResult> results = batch.operations().isEmpty() ? List.of() : service.batch(batch.operations());
+                for(BatchResult result: results) {
+                    ParcelReader.Row row = batch.rows().get(result.index());
+                    if(result.status() == HttpStatus.OK.value()) {
+                        run.imported.incrementAndGet();
+                    }
+                    // (all values were validated, so the create can only have failed because the parcel exists)
+                    else if(row.number() <= run.resumeReached && isStored(row.operation())) {
+                        // Created by the interrupted run
+                        run.alreadyImported.incrementAndGet();
+                    }
+                    else {
+                        run.failed(new ImportError(row.number(), row.objectId(), "Land Parcel already exists"));
+                    }
+                }
+                run.done(batch);
+            }
+            catch (IOException e) {
+                run.failure = e;
+                throw new UncheckedIOException(e);
+            }
+            catch (RuntimeException e) {
+                run.failure = new IOException("Import failed at row " + batch.first(), e);
+                throw e;
+            }
+        }
+    }
+
+    // Whether the parcel is stored just as the create would have stored it
+    private boolean isStored(BatchOperation create) {
+        ParcelOutcome stored = service.find(create.objectId());
+        if(!stored.isOk()) {
+            return false;
+        }
+        LandParcel expected = new LandParcel(create.objectId(), create.name(), create.status(),
+                create.area() != null ? create.area() : 0, create.constraints());
+        expected.setGeometry(create.geometry());
+        LandParcel landParcel = stored.landParcel();
+        return Objects.equals(landParcel.getName(), expected.getName())
+                && landParcel.getStatus() == expected.getStatus()
+                && Double.compare(landParcel.getArea(), expected.getArea()) == 0
+                && landParcel.getConstraints() == expected.getConstraints()
+                && Objects.equals(landParcel.getGeometry(), expected.getGeometry());
+    }
+
+    private static boolean allDone(List<Future<?>> futures) {
+        return futures.stream().allMatch(Future::isDone);
+    }
+
+    // The parcels from row 'first' to row 'last' (inclusive), and the creates of the valid ones among them
+    private record Batch(long first, long last, List<BatchOperation> operations, List<ParcelReader.Row> rows) {
+        static final Batch END = new Batch(0, 0, List.of(), List.of());
+    }
+
+    // The state of one import
+    private class Run {
+        final Path checkpoint;
+        final long resumeAfter;
+        // The last row the interrupted run handed to a writer (the rows it may have created)
+        final long resumeReached;
+        final long start = System.nanoTime();
+
+        final AtomicLong rows = new AtomicLong();
+        final AtomicLong imported = new AtomicLong();
+        final AtomicLong skipped = new AtomicLong();
+        final AtomicLong alreadyImported = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final List<ImportError> errors = Collections.synchronizedList(new ArrayList<>());
+        // Set if a writer fails, so reading stops
+        volatile IOException failure;
+
+        // Every row up to here has been dealt with
+        private long committed;
+        // The last row handed to a writer (by this run, or the one it resumes)
+        private long reached;
+        // Batches finished beyond 'committed' (first row -> last row)
+        private final TreeMap<Long, Long> finished = new TreeMap<>();
+
+        Run(Path checkpoint) throws IOException {
+            this.checkpoint = checkpoint;
+            boolean resuming = checkpoint != null && Files.exists(checkpoint);
+            // "<committed> <reached>" (or, written by an earlier version, just "<committed>")
+            String[] saved = resuming ? Files.readString(checkpoint).trim().split("\\s+") : new String[] {"0"};
+            resumeAfter = Long.parseLong(saved[0]);
+            resumeReached = saved.length > 1 ? Long.parseLong(saved[1]) : resumeAfter;
+            committed = resumeAfter;
+            reached = resumeReached;
+            if(resuming) {
+                log.info("Resuming import after row {} (the interrupted run reached row {})", resumeAfter, resumeReached);
+            }
+        }
+
+        void failed(ImportError error) {
+            if(failed.incrementAndGet() <= maxErrors) {
+                errors.add(error);
+            }
+        }
+
+        // A batch is about to be written: note how far the writers have got first, in case we're interrupted part
+        // way through it
+        synchronized void starting(Batch batch) throws IOException {
+            if(batch.last() > reached) {
+                reached = batch.last();
+                save();
+            }
+        }
+
+        // A batch has been written: move the checkpoint on as far as every row has been
+        synchronized void done(Batch batch) throws IOException {
+            finished.put(batch.first(), batch.last());
+            Long last;
+            long before = committed;
+            while((last = finished.remove(committed + 1)) != null) {
+                committed = last;
+            }
+            if(committed != before) {
+                save();
+            }
+        }
+
+        private void save() throws IOException {
+            if(checkpoint != null) {
+                Path temporary = checkpoint.resolveSibling(checkpoint.getFileName() + ".tmp");
+                Files.writeString(temporary, committed + " " + reached);
+                Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+        }
+
+        void finish() throws IOException {
+            if(checkpoint != null) {
+                Files.deleteIfExists(checkpoint);
+            }
+            logProgress();
+        }
+
+        void logProgress() {
+            long millis = Math.max(1, (System.nanoTime() - start) / 1_000_000);
+            log.info("Import: {} rows read, {} imported, {} failed ({} rows/s)",
+                    rows.get(), imported.get(), failed.get(), (imported.get() + alreadyImported.get()) * 1000 / millis);
+        }
+
+        ImportReport report() {
+            return new ImportReport(rows.get(), imported.get(), skipped.get(), alreadyImported.get(), failed.get(),
+                    List.copyOf(errors), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+}
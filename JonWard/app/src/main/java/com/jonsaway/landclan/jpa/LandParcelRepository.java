@@ -0,0 +1,72 @@
+package com.jonsaway.landclan.jpa;
+
+import com.jonsaway.landclan.rest.ParcelStatus;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+public interface LandParcelRepository extends CrudRepository<LandParcel, Long>, LandParcelRepositoryCustom {
+
+    List<LandParcel> findByName(String name);
+
+    LandParcel findByObjectId(long objectId);
+
+    // Keyset pagination, ordered by object id
+    // The first page starts from the lowest objectId, subsequent pages start after the last objectId seen
+    List<LandParcel> findAllByOrderByObjectIdAsc(Limit limit);
+
+    List<LandParcel> findByObjectIdGreaterThanOrderByObjectIdAsc(long objectId, Limit limit);
+
+    // Every land parcel, ordered by object id (e.g. to merge with those of other shards)
+    List<LandParcel> findAllByOrderByObjectIdAsc();
+
+    // Stream all land parcels, ordered by object id
+    // Rows are fetched from the database in chunks, rather than materialising the whole table
+    // NB: must be consumed inside a transaction, and closed once finished with
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from LandParcel p order by p.objectId")
+    Stream<LandParcel> streamAll();
+
+    // Stream the land parcels that have a geometry (e.g. to build a spatial index)
+    // NB: must be consumed inside a transaction, and closed once finished with
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("select p from LandParcel p where p.geometry is not null")
+    Stream<LandParcel> streamWithGeometry();
+
+    // Single-statement writes
+    // Unlike save() and deleteById(), these don't read the parcel first: callers check the result instead
+    // (see also LandParcelRepositoryCustom.patch and deleteByObjectId)
+
+    // Insert a new land parcel, at the version given (see LandParcel.firstVersion)
+    // Throws DataIntegrityViolationException if a parcel already exists with this object id
+    @Transactional
+    @Modifying
+    @Query("insert into LandParcel (objectId, name, status, area, constraints, version) values (:objectId, :name, :status, :area, :constraints, :version)")
+    int insert(long objectId, String name, ParcelStatus status, double area, boolean constraints, long version);
+
+    // Count and total area of the land parcels with each status and constraints value
+    @Query("select p.status as status, p.constraints as constraints, count(p) as count, sum(p.area) as area " +
+            "from LandParcel p group by p.status, p.constraints")
+    List<Summary> summarise();
+
+    interface Summary {
+        ParcelStatus getStatus();
+        boolean getConstraints();
+        long getCount();
+        double getArea();
+    }
+}
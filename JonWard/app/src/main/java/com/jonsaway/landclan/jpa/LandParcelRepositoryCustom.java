@@ -0,0 +1,36 @@
+package com.jonsaway.landclan.jpa;
+
+import com.jonsaway.landclan.rest.ParcelStatus;
+
+import java.util.List;
+
+// Repository operations that can't be expressed as derived or @Query methods
+// (implemented by LandParcelRepositoryImpl)
+public interface LandParcelRepositoryCustom {
+
+    // Update only the non-null attributes of an existing land parcel, and increment its version, in a single statement
+    // If 'version' is not null, the parcel is only updated if it is still at that version
+    // Returns the parcel as it was before the update, or null if none exists with this object id (or it's at a different version)
+    LandParcel patch(long objectId, String name, ParcelStatus status, Double area, Boolean constraints, Long version);
+
+    // Replace (or, if null, remove) the geometry of an existing land parcel, and increment its version, in a single statement
+    // The area is set to the new geometry's area
+    // If 'version' is not null, the parcel is only updated if it is still at that version
+    // Returns the parcel as it was before the update, or null if none exists with this object id (or it's at a different version)
+    LandParcel updateGeometry(long objectId, ParcelGeometry geometry, Long version);
+
+    // Delete a land parcel by object id, in a single statement
+    // If 'version' is not null, the parcel is only deleted if it is still at that version
+    // Returns the parcel as it was before it was deleted, or null if none exists with this object id (or it's at a different version)
+    LandParcel deleteByObjectId(long objectId, Long version);
+
+    // Write the name, status, area and constraints of each land parcel, and its version, each only if the stored parcel
+    // is still at the corresponding 'versions' entry (so a parcel's version may move on by more than one)
+    // Written as a single JDBC batch
+    // Returns whether each parcel was written (false if it no longer exists, or is at a different version)
+    boolean[] writeAll(List<LandParcel> landParcels, long[] versions);
+
+    // Retrieve a page of land parcels matching the filter, ordered by object id
+    // Returns up to 'limit' parcels with an objectId greater than 'after' (or from the lowest objectId, if 'after' is null)
+    List<LandParcel> filter(LandParcelFilter filter, Long after, int limit);
+}
@@ -0,0 +1,232 @@
+package com.jonsaway.landclan.jpa;
+
+import com.jonsaway.landclan.rest.ParcelStatus;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+// Native (H2) implementations of LandParcelRepositoryCustom
+// NB: these work on the land_parcel table directly, where status is stored as its ordinal
+// NB: patch, updateGeometry and deleteByObjectId read the previous state with H2's OLD TABLE (and ShardRebalancer
+// copies parcels with H2's MERGE INTO ... KEY), which other databases don't have: startup fails on anything but H2
+// (see requireH2), rather than at the first write. Elsewhere these would need UPDATE/DELETE ... RETURNING
+// (PostgreSQL) or a SELECT ... FOR UPDATE before the write
+public class LandParcelRepositoryImpl implements LandParcelRepositoryCustom {
+    private static final String COLUMNS = "object_id, name, status, area, constraints, version, geometry";
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    // (if sharded, shard 0: LandParcelShards checks every shard)
+    @Autowired
+    DataSource dataSource;
+
+    @PostConstruct
+    public void init() throws SQLException {
+        requireH2(dataSource);
+    }
+
+    // Fail unless the database is H2 (the only one the native statements here, and ShardRebalancer's, run on)
+    public static void requireH2(DataSource dataSource) throws SQLException {
+        try (Connection connection = dataSource.getConnection()) {
+            String product = connection.getMetaData().getDatabaseProductName();
+            if(!"H2".equals(product)) {
+                throw new IllegalStateException("Land parcels are stored with H2's SQL (OLD TABLE, MERGE INTO ... KEY), which "
+                        + product + " (" + connection.getMetaData().getURL() + ") doesn't support");
+            }
+        }
+    }
+
+    // Update only the non-null attributes of an existing land parcel, and increment its version, without reading it first
+    // The UPDATE is wrapped in H2's OLD TABLE, so the previous state comes back from the same statement
+    // If 'version' is not null, the parcel is only updated if it is still at that version
+    // Returns the parcel as it was before the update, or null if none exists with this object id (or it's at a different version)
+    @Override
+    @Transactional
+    public LandParcel patch(long objectId, String name, ParcelStatus status, Double area, Boolean constraints, Long version) {
+        // Only set the columns we've been given values for
+        StringJoiner set = new StringJoiner(", ");
+        if(name != null) {
+            set.add("name = :name");
+        }
+        if(status != null) {
+            set.add("status = :status");
+        }
+        if(area != null) {
+            // (a parcel with a geometry keeps the geometry's area)
+            set.add("area = case when geometry is null then :area else area end");
+        }
+        if(constraints != null) {
+            set.add("constraints = :constraints");
+        }
+
+        // Nothing to change: just read the current state
+        String sql = set.length() == 0
+                ? "select " + COLUMNS + " from land_parcel where " + where(version)
+                : "select " + COLUMNS + " from old table (update land_parcel set " + set + ", version = version + 1 where " + where(version) + ")";
+
+        Query query = entityManager.createNativeQuery(sql);
+        bindKey(query, objectId, version);
+        if(name != null) {
+            query.setParameter("name", name);
+        }
+        if(status != null) {
+            query.setParameter("status", status.ordinal());
+        }
+        if(area != null) {
+            query.setParameter("area", area);
+        }
+        if(constraints != null) {
+            query.setParameter("constraints", constraints);
+        }
+
+        return singleResult(query);
+    }
+
+    // Replace (or, if null, remove) the geometry of an existing land parcel, and increment its version, without reading it first
+    // The area is set to the new geometry's area (removing the geometry leaves the area as it was)
+    // If 'version' is not null, the parcel is only updated if it is still at that version
+    // Returns the parcel as it was before the update, or null if none exists with this object id (or it's at a different version)
+    @Override
+    @Transactional
+    public LandParcel updateGeometry(long objectId, ParcelGeometry geometry, Long version) {
+        String set = geometry == null ? "geometry = null" : "geometry = :geometry, area = :area";
+        Query query = entityManager.createNativeQuery("select " + COLUMNS + " from old table (update land_parcel set " + set + ", version = version + 1 where " + where(version) + ")");
+        bindKey(query, objectId, version);
+        if(geometry != null) {
+            query.setParameter("geometry", geometry.toBytes());
+            query.setParameter("area", geometry.area());
+        }
+        return singleResult(query);
+    }
+
+    // Delete a land parcel by object id
+    // The DELETE is wrapped in H2's OLD TABLE, so the deleted state comes back from the same statement
+    // If 'version' is not null, the parcel is only deleted if it is still at that version
+    // Returns the parcel as it was before it was deleted, or null if none exists with this object id (or it's at a different version)
+    @Override
+    @Transactional
+    public LandParcel deleteByObjectId(long objectId, Long version) {
+        Query query = entityManager.createNativeQuery("select " + COLUMNS + " from old table (delete from land_parcel where " + where(version) + ")");
+        bindKey(query, objectId, version);
+        return singleResult(query);
+    }
+
+    // Write the name, status, area and constraints of each land parcel, and its version, each only if the stored parcel
+    // is still at the corresponding 'versions' entry
+    // A single prepared statement, executed as one JDBC batch on the transaction's connection
+    // Returns whether each parcel was written (false if it no longer exists, or is at a different version)
+    @Override
+    @Transactional
+    public boolean[] writeAll(List<LandParcel> landParcels, long[] versions) {
+        boolean[] written = new boolean[landParcels.size()];
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(
+                    "update land_parcel set name = ?, status = ?, area = ?, constraints = ?, version = ? where object_id = ? and version = ?")) {
+                for(int i = 0; i < landParcels.size(); i++) {
+                    LandParcel landParcel = landParcels.get(i);
+                    statement.setString(1, landParcel.getName());
+                    statement.setObject(2, landParcel.getStatus() == null ? null : landParcel.getStatus().ordinal());
+                    statement.setDouble(3, landParcel.getArea());
+                    statement.setBoolean(4, landParcel.getConstraints());
+                    statement.setLong(5, landParcel.getVersion());
+                    statement.setLong(6, landParcel.getObjectId());
+                    statement.setLong(7, versions[i]);
+                    statement.addBatch();
+                }
+                int[] counts = statement.executeBatch();
+                for(int i = 0; i < counts.length; i++) {
+                    written[i] = counts[i] > 0;
+                }
+            }
+        });
+        return written;
+    }
+
+    // Retrieve a page of land parcels matching the filter, ordered by object id
+    // Only the supplied criteria are added to the query, so the database can choose the best index for them
+    // (see the indexes on LandParcel)
+    @Override
+    @Transactional(readOnly = true)
+    public List<LandParcel> filter(LandParcelFilter filter, Long after, int limit) {
+        CriteriaBuilder builder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<LandParcel> query = builder.createQuery(LandParcel.class);
+        Root<LandParcel> landParcel = query.from(LandParcel.class);
+
+        List<Predicate> predicates = new ArrayList<>();
+        if(filter.name() != null) {
+            predicates.add(builder.equal(landParcel.get("name"), filter.name()));
+        }
+        if(filter.status() != null) {
+            predicates.add(builder.equal(landParcel.get("status"), filter.status()));
+        }
+        if(filter.constraints() != null) {
+            predicates.add(builder.equal(landParcel.get("constraints"), filter.constraints()));
+        }
+        if(filter.minArea() != null) {
+            predicates.add(builder.greaterThanOrEqualTo(landParcel.get("area"), filter.minArea()));
+        }
+        if(filter.maxArea() != null) {
+            predicates.add(builder.lessThanOrEqualTo(landParcel.get("area"), filter.maxArea()));
+        }
+        if(after != null) {
+            predicates.add(builder.greaterThan(landParcel.get("objectId"), after));
+        }
+
+        query.select(landParcel)
+                .where(predicates.toArray(new Predicate[0]))
+                .orderBy(builder.asc(landParcel.get("objectId")));
+
+        return entityManager.createQuery(query)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    // Match a parcel by object id and, if not null, version
+    private static String where(Long version) {
+        return version == null ? "object_id = :objectId" : "object_id = :objectId and version = :version";
+    }
+
+    private static void bindKey(Query query, long objectId, Long version) {
+        query.setParameter("objectId", objectId);
+        if(version != null) {
+            query.setParameter("version", version);
+        }
+    }
+
+    // The single land parcel returned by a query of COLUMNS, or null if there isn't one
+    private static LandParcel singleResult(Query query) {
+        List<?> rows = query.getResultList();
+        return rows.isEmpty() ? null : toLandParcel((Object[]) rows.get(0));
+    }
+
+    // Build a (detached) land parcel from a row of COLUMNS
+    private static LandParcel toLandParcel(Object[] row) {
+        LandParcel landParcel = new LandParcel(((Number) row[0]).longValue(),
+                (String) row[1],
+                row[2] == null ? null : ParcelStatus.values()[((Number) row[2]).intValue()],
+                ((Number) row[3]).doubleValue(),
+                (Boolean) row[4],
+                ((Number) row[5]).longValue());
+        if(row[6] != null) {
+            landParcel.setGeometry(ParcelGeometry.fromBytes((byte[]) row[6]));
+        }
+        return landParcel;
+    }
+}
@@ -0,0 +1,388 @@
+package com.jonsaway.landclan.memory;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.rest.ParcelStatus;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+
+// Makes a LandParcelStore durable: a write-ahead log of every change, plus periodic snapshots
+// - the log is a sequence of fixed-size, memory-mapped segment files (log-<n>), each change appended as
+//   a checksummed record of the parcel's new state (or its deletion), so replaying a record twice does no harm
+//   (a parcel's geometry, if it has one, goes at the end of the record)
+// - a snapshot (snapshot-<n>) holds every parcel as of the start of log segment n: once written,
+//   the segments and snapshots before it are deleted
+// - recovery loads the latest snapshot, then replays the segments from n on, stopping at the first record
+//   that is incomplete or fails its checksum (a write torn by a crash)
+// Appending writes to the mapped file, which the OS writes back in its own time: that already survives the
+// process dying, but not the machine. To survive the machine, the log must be forced to disk (fsync),
+// as the FsyncPolicy says. Concurrent writers waiting for a force share it (group commit)
+// Callers must serialise appends with the changes they record (e.g. under the store's write lock)
+public class LandParcelJournal implements Closeable {
+    private static final Pattern SEGMENT = Pattern.compile("log-(\\d+)");
+    private static final Pattern SNAPSHOT = Pattern.compile("snapshot-(\\d+)");
+    private static final int SNAPSHOT_MAGIC = 0x4C505332; // "LPS2"
+    // Snapshots from before parcels had geometries (still read)
+    private static final int SNAPSHOT_MAGIC_V1 = 0x4C505331; // "LPS1"
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    // Record header: payload length and CRC32 of the payload
+    private static final int HEADER = Integer.BYTES * 2;
+    private static final byte NO_STATUS = -1;
+    private static final ParcelStatus[] STATUSES = ParcelStatus.values();
+
+    public enum FsyncPolicy {
+        // Each write waits until its record has been forced to disk
+        // (concurrent writers share a force, so this costs less per write the busier it gets)
+        ALWAYS,
+        // Records are forced every fsync interval, and writes don't wait:
+        // a crash of the machine can lose up to that interval of writes
+        INTERVAL,
+        // Never forced (other than when a segment fills): left to the OS
+        NEVER
+    }
+
+    private final Path directory;
+    private final FsyncPolicy fsyncPolicy;
+    private final int segmentSize;
+    private final CRC32 crc = new CRC32();
+
+    // The segment being appended to
+    private long segment;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    // Log position (bytes since the journal was opened) of the start of the current segment, and of its end
+    private long segmentStart;
+    private long appended;
+    // Log position up to which records have been forced to disk
+    private final AtomicLong synced = new AtomicLong();
+    private final Object syncLock = new Object();
+
+    private final ScheduledExecutorService fsyncScheduler;
+
+    public LandParcelJournal(Path directory, FsyncPolicy fsyncPolicy, Duration fsyncInterval, int segmentSize) throws IOException {
+        this.directory = directory;
+        this.fsyncPolicy = fsyncPolicy;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+
+        if(fsyncPolicy == FsyncPolicy.INTERVAL) {
+            fsyncScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "land-parcel-journal-fsync");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long nanos = fsyncInterval.toNanos();
+            fsyncScheduler.scheduleWithFixedDelay(this::force, nanos, nanos, TimeUnit.NANOSECONDS);
+        }
+        else {
+            fsyncScheduler = null;
+        }
+    }
+
+    // Rebuild the store from the latest snapshot and the log since, then start a new log segment for what follows
+    // Must be called (once) before anything is appended
+    public synchronized LandParcelStore recover() throws IOException {
+        long snapshotSegment = latest(SNAPSHOT);
+        LandParcelStore store = snapshotSegment >= 0 ? readSnapshot(snapshotSegment) : new LandParcelStore();
+
+        long lastSegment = Math.max(snapshotSegment, 0);
+        for(long logSegment: list(SEGMENT)) {
+            if(logSegment >= snapshotSegment) {
+                replay(logSegment, store);
+                lastSegment = Math.max(lastSegment, logSegment + 1);
+            }
+        }
+
+        open(lastSegment);
+        return store;
+    }
+
+    // Append the new state of a parcel
+    // Returns the log position to pass to sync(), to wait for the record to be durable
+    public synchronized long put(LandParcel landParcel) {
+        byte[] name = landParcel.getName() != null ? landParcel.getName().getBytes(StandardCharsets.UTF_8) : null;
+        ParcelGeometry geometry = landParcel.getGeometry();
+        ByteBuffer record = reserve(1 + Long.BYTES * 2 + 1 + Double.BYTES + 1 + Integer.BYTES + (name != null ? name.length : 0)
+                + (geometry != null ? geometry.byteSize() : 0));
+        record.put(PUT);
+        record.putLong(landParcel.getObjectId());
+        record.putLong(landParcel.getVersion());
+        record.put(landParcel.getStatus() != null ? (byte) landParcel.getStatus().ordinal() : NO_STATUS);
+        record.putDouble(landParcel.getArea());
+        record.put((byte) (landParcel.getConstraints() ? 1 : 0));
+        record.putInt(name != null ? name.length : -1);
+        if(name != null) {
+            record.put(name);
+        }
+        if(geometry != null) {
+            geometry.writeTo(record);
+        }
+        return commit(record);
+    }
+
+    // Append the deletion of a parcel
+    // Returns the log position to pass to sync(), to wait for the record to be durable
+    public synchronized long delete(long objectId) {
+        ByteBuffer record = reserve(1 + Long.BYTES);
+        record.put(DELETE);
+        record.putLong(objectId);
+        return commit(record);
+    }
+
+    // Wait until the log is durable up to this position, as the fsync policy requires
+    // (only ALWAYS waits: the others return straight away)
+    public void sync(long position) {
+        if(fsyncPolicy != FsyncPolicy.ALWAYS) {
+            return;
+        }
+
+        // Whoever gets here first forces everything appended so far, including records of writers queued behind it
+        synchronized(syncLock) {
+            if(synced.get() < position) {
+                force();
+            }
+        }
+    }
+
+    // Start a new log segment, and return its number
+    // A snapshot taken at the same time (with appends held off) should be written with this number
+    public synchronized long roll() throws IOException {
+        open(segment + 1);
+        return segment;
+    }
+
+    // Write a snapshot holding every parcel up to the start of the given log segment
+    // The earlier segments and snapshots are deleted once it's safely on disk
+    // (may be called while appends carry on)
+    public void writeSnapshot(LandParcelStore.Snapshot snapshot, long fromSegment) throws IOException {
+        Path temporary = directory.resolve("snapshot-" + fromSegment + ".tmp");
+        try (FileOutputStream file = new FileOutputStream(temporary.toFile())) {
+            CheckedOutputStream checked = new CheckedOutputStream(new BufferedOutputStream(file, 1 << 16), new CRC32());
+            DataOutputStream out = new DataOutputStream(checked);
+            out.writeInt(SNAPSHOT_MAGIC);
+            snapshot.writeTo(out);
+            out.flush();
+            new DataOutputStream(file).writeLong(checked.getChecksum().getValue());
+            file.getChannel().force(true);
+        }
+        Files.move(temporary, directory.resolve("snapshot-" + fromSegment), StandardCopyOption.ATOMIC_MOVE);
+
+        for(long older: list(SEGMENT)) {
+            if(older < fromSegment) {
+                Files.deleteIfExists(directory.resolve("log-" + older));
+            }
+        }
+        for(long older: list(SNAPSHOT)) {
+            if(older < fromSegment) {
+                Files.deleteIfExists(directory.resolve("snapshot-" + older));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if(fsyncScheduler != null) {
+            fsyncScheduler.shutdown();
+        }
+        synchronized(this) {
+            if(channel != null) {
+                buffer.force();
+                channel.close();
+                channel = null;
+            }
+        }
+    }
+
+    // Force everything appended so far to disk
+    private void force() {
+        MappedByteBuffer target;
+        int from;
+        int to;
+        long upTo;
+        synchronized(this) {
+            if(channel == null) {
+                return;
+            }
+            upTo = appended;
+            target = buffer;
+            from = (int) (Math.max(synced.get(), segmentStart) - segmentStart);
+            to = (int) (appended - segmentStart);
+        }
+        if(to > from) {
+            target.force(from, to - from);
+        }
+        synced.accumulateAndGet(upTo, Math::max);
+    }
+
+    // Space in the current segment for a record with a payload of this length, rolling to a new segment if need be
+    // Returns a buffer for the payload
+    private ByteBuffer reserve(int length) {
+        if(HEADER + length > segmentSize) {
+            throw new IllegalArgumentException("Record too large for a log segment: " + length + " bytes");
+        }
+        if(buffer.remaining() < HEADER + length) {
+            try {
+                open(segment + 1);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return buffer.slice(buffer.position() + HEADER, length);
+    }
+
+    // Write the header for a payload filled in by reserve(), and move past the record
+    private long commit(ByteBuffer payload) {
+        payload.flip();
+        crc.reset();
+        crc.update(payload.duplicate());
+
+        int start = buffer.position();
+        buffer.putInt(start + Integer.BYTES, (int) crc.getValue());
+        // The length goes in last: a zero length marks the end of the log
+        buffer.putInt(start, payload.limit());
+        buffer.position(start + HEADER + payload.limit());
+        appended = segmentStart + buffer.position();
+        return appended;
+    }
+
+    // Replay the records of one log segment into the store
+    private void replay(long logSegment, LandParcelStore store) throws IOException {
+        MappedByteBuffer log;
+        try (FileChannel file = FileChannel.open(directory.resolve("log-" + logSegment), StandardOpenOption.READ)) {
+            log = file.map(FileChannel.MapMode.READ_ONLY, 0, file.size());
+        }
+
+        while(log.remaining() >= HEADER) {
+            int start = log.position();
+            int length = log.getInt(start);
+            if(length <= 0 || length > log.remaining() - HEADER) {
+                // End of the log (or a torn header)
+                return;
+            }
+            ByteBuffer record = log.slice(start + HEADER, length);
+            crc.reset();
+            crc.update(record.duplicate());
+            if((int) crc.getValue() != log.getInt(start + Integer.BYTES)) {
+                // Torn write: nothing after this was acknowledged as durable
+                return;
+            }
+            apply(record, store);
+            log.position(start + HEADER + length);
+        }
+    }
+
+    private static void apply(ByteBuffer record, LandParcelStore store) {
+        byte type = record.get();
+        long objectId = record.getLong();
+        int row = store.find(objectId);
+        if(type == DELETE) {
+            if(row >= 0) {
+                store.remove(row);
+            }
+            return;
+        }
+
+        long version = record.getLong();
+        byte status = record.get();
+        double area = record.getDouble();
+        boolean constraints = record.get() != 0;
+        int nameLength = record.getInt();
+        String name = null;
+        if(nameLength >= 0) {
+            byte[] bytes = new byte[nameLength];
+            record.get(bytes);
+            name = new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        LandParcel landParcel = new LandParcel(objectId, name, status != NO_STATUS ? STATUSES[status] : null, area, constraints, version);
+        if(record.hasRemaining()) {
+            landParcel.setGeometry(ParcelGeometry.readFrom(record));
+        }
+        if(row >= 0) {
+            store.write(row, landParcel);
+        }
+        else {
+            store.insert(landParcel);
+        }
+    }
+
+    // Load a snapshot, checking it's complete and intact
+    // (mapped in one piece, so limited to 2GB: around 70 million parcels)
+    private LandParcelStore readSnapshot(long snapshotSegment) throws IOException {
+        Path path = directory.resolve("snapshot-" + snapshotSegment);
+        MappedByteBuffer file;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            file = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+
+        // Magic number, then the snapshot, then the CRC32 of both
+        int length = file.limit() - Long.BYTES;
+        int magic = length < Integer.BYTES ? 0 : file.getInt(0);
+        if(magic != SNAPSHOT_MAGIC && magic != SNAPSHOT_MAGIC_V1) {
+            throw new IOException("Not a land parcel snapshot: " + path);
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(file.slice(0, length));
+        if(file.getLong(length) != checksum.getValue()) {
+            throw new IOException("Land parcel snapshot is corrupt: " + path);
+        }
+        return new LandParcelStore(LandParcelStore.Snapshot.readFrom(file.slice(Integer.BYTES, length - Integer.BYTES), magic == SNAPSHOT_MAGIC));
+    }
+
+    // Make this segment the one being appended to (creating it, empty)
+    // Everything in the previous segment is forced to disk first, so only the last segment can have a torn write
+    private void open(long newSegment) throws IOException {
+        if(channel != null) {
+            buffer.force();
+            synced.accumulateAndGet(appended, Math::max);
+            channel.close();
+        }
+
+        Path path = directory.resolve("log-" + newSegment);
+        Files.deleteIfExists(path);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+        segment = newSegment;
+        segmentStart = appended;
+    }
+
+    // The numbers of the files of this kind, in order
+    private List<Long> list(Pattern pattern) throws IOException {
+        List<Long> numbers = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for(Path file: files) {
+                Matcher matcher = pattern.matcher(file.getFileName().toString());
+                if(matcher.matches()) {
+                    numbers.add(Long.parseLong(matcher.group(1)));
+                }
+            }
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    // The highest number of the files of this kind, or -1 if there are none
+    private long latest(Pattern pattern) throws IOException {
+        List<Long> numbers = list(pattern);
+        return numbers.isEmpty() ? -1 : numbers.get(numbers.size() - 1);
+    }
+}
@@ -0,0 +1,322 @@
+package com.jonsaway.landclan.memory;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelFilter;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.rest.ParcelStatus;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+// Land parcels held in memory, a column per attribute, indexed by object id
+// Each parcel is a row across the columns, rather than an object:
+// - objectId and version are longs, the name is an int (into a table of interned names),
+//   the status is a byte (its ordinal), the area is a double, and the constraints flag is a bit
+// - the geometry (if any) is a reference to the parcel's (immutable) ParcelGeometry
+// - rows are kept dense (deleting a row moves the last row into its place), so scans don't skip holes
+// That is 33 bytes per parcel (with compressed references), plus the index and spare capacity, plus each
+// distinct name once (and any geometries), against several objects per parcel for a JPA entity in a persistence context and H2's own row storage
+// Not thread-safe: callers must serialise writes, and not read while writing
+public class LandParcelStore {
+    private static final ParcelStatus[] STATUSES = ParcelStatus.values();
+    private static final byte NO_STATUS = -1;
+
+    private final LongIntHashMap index;
+    private final StringTable names;
+
+    private long[] objectIds;
+    private long[] versions;
+    private int[] nameIds;
+    private byte[] statuses;
+    private double[] areas;
+    // One bit per row
+    private long[] constraints;
+    private ParcelGeometry[] geometries;
+    private int size;
+
+    public LandParcelStore() {
+        this(16);
+    }
+
+    public LandParcelStore(int expectedSize) {
+        int capacity = Math.max(expectedSize, 16);
+        index = new LongIntHashMap(capacity);
+        names = new StringTable();
+        objectIds = new long[capacity];
+        versions = new long[capacity];
+        nameIds = new int[capacity];
+        statuses = new byte[capacity];
+        areas = new double[capacity];
+        constraints = new long[(capacity + 63) / 64];
+        geometries = new ParcelGeometry[capacity];
+    }
+
+    // A store holding the parcels in a snapshot
+    // Takes the columns over as they are, so only the index and the names' references need rebuilding
+    public LandParcelStore(Snapshot snapshot) {
+        size = snapshot.size();
+        int capacity = Math.max(size, 16);
+        objectIds = Arrays.copyOf(snapshot.objectIds(), capacity);
+        versions = Arrays.copyOf(snapshot.versions(), capacity);
+        nameIds = Arrays.copyOf(snapshot.nameIds(), capacity);
+        statuses = Arrays.copyOf(snapshot.statuses(), capacity);
+        areas = Arrays.copyOf(snapshot.areas(), capacity);
+        constraints = Arrays.copyOf(snapshot.constraints(), (capacity + 63) / 64);
+        geometries = Arrays.copyOf(snapshot.geometries(), capacity);
+        names = new StringTable(snapshot.names(), nameIds, size);
+
+        index = new LongIntHashMap(capacity);
+        for(int row = 0; row < size; row++) {
+            index.put(objectIds[row], row);
+        }
+    }
+
+    // Number of parcels held
+    public int size() {
+        return size;
+    }
+
+    // The row holding this parcel, or -1 if there isn't one
+    public int find(long objectId) {
+        return index.get(objectId);
+    }
+
+    // The parcel in this row (a copy: changing it doesn't change the store)
+    public LandParcel get(int row) {
+        LandParcel landParcel = new LandParcel(objectIds[row], names.get(nameIds[row]), status(row), areas[row], constraints(row), versions[row]);
+        landParcel.setGeometry(geometries[row]);
+        return landParcel;
+    }
+
+    public long objectId(int row) {
+        return objectIds[row];
+    }
+
+    // A copy of the object ids, in row order
+    public long[] objectIds() {
+        return Arrays.copyOf(objectIds, size);
+    }
+
+    public long version(int row) {
+        return versions[row];
+    }
+
+    // Add a parcel, which mustn't already exist
+    // Returns its row
+    public int insert(LandParcel landParcel) {
+        if(size == objectIds.length) {
+            grow();
+        }
+
+        int row = size++;
+        objectIds[row] = landParcel.getObjectId();
+        nameIds[row] = StringTable.NULL;
+        write(row, landParcel);
+        index.put(landParcel.getObjectId(), row);
+        return row;
+    }
+
+    // Replace the attributes (and version) of the parcel in this row
+    // (the object id is the key, so can't be changed)
+    public void write(int row, LandParcel landParcel) {
+        // Intern first: the name may be unchanged, and releasing it first could drop it
+        int nameId = names.intern(landParcel.getName());
+        names.release(nameIds[row]);
+        nameIds[row] = nameId;
+
+        versions[row] = landParcel.getVersion();
+        statuses[row] = landParcel.getStatus() != null ? (byte) landParcel.getStatus().ordinal() : NO_STATUS;
+        areas[row] = landParcel.getArea();
+        geometries[row] = landParcel.getGeometry();
+        if(landParcel.getConstraints()) {
+            constraints[row >>> 6] |= 1L << row;
+        }
+        else {
+            constraints[row >>> 6] &= ~(1L << row);
+        }
+    }
+
+    // Remove the parcel in this row
+    // The last row moves into its place, so rows may be renumbered
+    public void remove(int row) {
+        index.remove(objectIds[row]);
+        names.release(nameIds[row]);
+
+        int last = --size;
+        if(row != last) {
+            objectIds[row] = objectIds[last];
+            versions[row] = versions[last];
+            nameIds[row] = nameIds[last];
+            statuses[row] = statuses[last];
+            areas[row] = areas[last];
+            geometries[row] = geometries[last];
+            if(constraints(last)) {
+                constraints[row >>> 6] |= 1L << row;
+            }
+            else {
+                constraints[row >>> 6] &= ~(1L << row);
+            }
+            index.put(objectIds[row], row);
+        }
+        geometries[last] = null;
+    }
+
+    // Test for the rows matching the filter
+    // Only reads the columns the filter uses, and doesn't create any objects
+    // (valid until the store is next changed)
+    public IntPredicate matcher(LandParcelFilter filter) {
+        // Names are compared by id: a name that isn't in the table can't match anything
+        int nameId = names.find(filter.name());
+        if(filter.name() != null && nameId == StringTable.NULL) {
+            return row -> false;
+        }
+        byte status = filter.status() != null ? (byte) filter.status().ordinal() : NO_STATUS;
+
+        return row -> (filter.name() == null || nameIds[row] == nameId)
+                && (filter.status() == null || statuses[row] == status)
+                && (filter.constraints() == null || constraints(row) == filter.constraints())
+                && (filter.minArea() == null || areas[row] >= filter.minArea())
+                && (filter.maxArea() == null || areas[row] <= filter.maxArea());
+    }
+
+    // A copy of every parcel, to be written out (e.g. by LandParcelJournal) while the store carries on changing
+    // Copies the columns wholesale, so is quick enough to take while holding the writers off
+    public Snapshot snapshot() {
+        return new Snapshot(size,
+                Arrays.copyOf(objectIds, size),
+                Arrays.copyOf(versions, size),
+                Arrays.copyOf(nameIds, size),
+                Arrays.copyOf(statuses, size),
+                Arrays.copyOf(areas, size),
+                Arrays.copyOf(constraints, (size + 63) / 64),
+                Arrays.copyOf(geometries, size),
+                names.toArray());
+    }
+
+    // Bytes used by the columns and the index (excluding the names and geometries themselves)
+    public long memoryBytes() {
+        long perRow = Long.BYTES * 2 + Integer.BYTES + Byte.BYTES + Double.BYTES + Integer.BYTES;
+        return objectIds.length * perRow + constraints.length * (long) Long.BYTES + index.memoryBytes();
+    }
+
+    private ParcelStatus status(int row) {
+        return statuses[row] != NO_STATUS ? STATUSES[statuses[row]] : null;
+    }
+
+    private boolean constraints(int row) {
+        return (constraints[row >>> 6] & (1L << row)) != 0;
+    }
+
+    private void grow() {
+        int capacity = objectIds.length * 2;
+        objectIds = Arrays.copyOf(objectIds, capacity);
+        versions = Arrays.copyOf(versions, capacity);
+        nameIds = Arrays.copyOf(nameIds, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        areas = Arrays.copyOf(areas, capacity);
+        constraints = Arrays.copyOf(constraints, (capacity + 63) / 64);
+        geometries = Arrays.copyOf(geometries, capacity);
+    }
+
+    // Every parcel in a store, at a point in time
+    public record Snapshot(int size,
+                           long[] objectIds,
+                           long[] versions,
+                           int[] nameIds,
+                           byte[] statuses,
+                           double[] areas,
+                           long[] constraints,
+                           ParcelGeometry[] geometries,
+                           String[] names) {
+
+        // Write the parcels compactly: each distinct name once, then a column at a time,
+        // then the geometries (each with its row, skipping parcels without one)
+        public void writeTo(DataOutput out) throws IOException {
+            out.writeInt(names.length);
+            for(String name: names) {
+                if(name == null) {
+                    out.writeInt(-1);
+                    continue;
+                }
+                byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+                out.writeInt(bytes.length);
+                out.write(bytes);
+            }
+
+            out.writeInt(size);
+            for(int row = 0; row < size; row++) {
+                out.writeLong(objectIds[row]);
+            }
+            for(int row = 0; row < size; row++) {
+                out.writeLong(versions[row]);
+            }
+            for(int row = 0; row < size; row++) {
+                out.writeInt(nameIds[row]);
+            }
+            out.write(statuses, 0, size);
+            for(int row = 0; row < size; row++) {
+                out.writeDouble(areas[row]);
+            }
+            for(long word: constraints) {
+                out.writeLong(word);
+            }
+
+            int count = 0;
+            for(int row = 0; row < size; row++) {
+                count += geometries[row] != null ? 1 : 0;
+            }
+            out.writeInt(count);
+            for(int row = 0; row < size; row++) {
+                if(geometries[row] != null) {
+                    out.writeInt(row);
+                    out.write(geometries[row].toBytes());
+                }
+            }
+        }
+
+        // Read parcels written by writeTo (without the geometries, for snapshots from before parcels had them)
+        // Each column is read in bulk, so this is much quicker than inserting the parcels one at a time
+        public static Snapshot readFrom(ByteBuffer in, boolean withGeometries) {
+            String[] names = new String[in.getInt()];
+            for(int id = 0; id < names.length; id++) {
+                int length = in.getInt();
+                if(length >= 0) {
+                    byte[] bytes = new byte[length];
+                    in.get(bytes);
+                    names[id] = new String(bytes, StandardCharsets.UTF_8);
+                }
+            }
+
+            int size = in.getInt();
+            long[] objectIds = new long[size];
+            long[] versions = new long[size];
+            int[] nameIds = new int[size];
+            byte[] statuses = new byte[size];
+            double[] areas = new double[size];
+            long[] constraints = new long[(size + 63) / 64];
+            in.asLongBuffer().get(objectIds);
+            in.position(in.position() + size * Long.BYTES);
+            in.asLongBuffer().get(versions);
+            in.position(in.position() + size * Long.BYTES);
+            in.asIntBuffer().get(nameIds);
+            in.position(in.position() + size * Integer.BYTES);
+            in.get(statuses);
+            in.asDoubleBuffer().get(areas);
+            in.position(in.position() + size * Double.BYTES);
+            in.asLongBuffer().get(constraints);
+            in.position(in.position() + constraints.length * Long.BYTES);
+
+            ParcelGeometry[] geometries = new ParcelGeometry[size];
+            int count = withGeometries ? in.getInt() : 0;
+            for(int i = 0; i < count; i++) {
+                int row = in.getInt();
+                geometries[row] = ParcelGeometry.readFrom(in);
+            }
+            return new Snapshot(size, objectIds, versions, nameIds, statuses, areas, constraints, geometries, names);
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.jonsaway.landclan.memory;
+
+import java.util.Arrays;
+
+// Map from long keys to non-negative int values, without boxing either
+// Open addressing with linear probing: keys and values live in two flat arrays, so a lookup touches
+// one or two cache lines rather than following a chain of entry objects
+// Removal shifts later entries of the probe sequence back, so there are no tombstones to clean up
+// Not thread-safe
+public class LongIntHashMap {
+    // Returned by get() when the key is absent
+    public static final int MISSING = -1;
+
+    private static final int MINIMUM_CAPACITY = 16;
+
+    private long[] keys;
+    // value + 1, so that 0 marks an empty slot (and any long can be a key)
+    private int[] values;
+    private int mask;
+    private int size;
+
+    public LongIntHashMap() {
+        this(MINIMUM_CAPACITY);
+    }
+
+    public LongIntHashMap(int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // The value for this key, or MISSING
+    public int get(long key) {
+        for(int slot = slot(key); values[slot] != 0; slot = (slot + 1) & mask) {
+            if(keys[slot] == key) {
+                return values[slot] - 1;
+            }
+        }
+        return MISSING;
+    }
+
+    // Set the value for this key (which must be >= 0)
+    // Returns the previous value, or MISSING
+    public int put(long key, int value) {
+        int slot = slot(key);
+        for(; values[slot] != 0; slot = (slot + 1) & mask) {
+            if(keys[slot] == key) {
+                int previous = values[slot] - 1;
+                values[slot] = value + 1;
+                return previous;
+            }
+        }
+
+        keys[slot] = key;
+        values[slot] = value + 1;
+        // Keep the table at most half full, so probe sequences stay short
+        if(++size > (mask + 1) / 2) {
+            resize((mask + 1) * 2);
+        }
+        return MISSING;
+    }
+
+    // Remove this key
+    // Returns its value, or MISSING
+    public int remove(long key) {
+        int slot = slot(key);
+        for(; values[slot] != 0; slot = (slot + 1) & mask) {
+            if(keys[slot] == key) {
+                break;
+            }
+        }
+        if(values[slot] == 0) {
+            return MISSING;
+        }
+        int previous = values[slot] - 1;
+
+        // Close the gap: move back any later entry that can't be found from its home slot once this one is empty
+        int gap = slot;
+        for(int next = (gap + 1) & mask; values[next] != 0; next = (next + 1) & mask) {
+            int home = slot(keys[next]);
+            // Can only move back if its home isn't cyclically in (gap, next]
+            if(((next - home) & mask) >= ((next - gap) & mask)) {
+                keys[gap] = keys[next];
+                values[gap] = values[next];
+                gap = next;
+            }
+        }
+        values[gap] = 0;
+        size--;
+        return previous;
+    }
+
+    public void clear() {
+        Arrays.fill(values, 0);
+        size = 0;
+    }
+
+    // Bytes used by the table's arrays
+    public long memoryBytes() {
+        return (long) keys.length * Long.BYTES + (long) values.length * Integer.BYTES;
+    }
+
+    private int slot(long key) {
+        // Spread the bits (ids are often sequential), folding the high half into the low
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(capacity);
+        for(int slot = 0; slot < oldValues.length; slot++) {
+            if(oldValues[slot] != 0) {
+                int newSlot = slot(oldKeys[slot]);
+                while(values[newSlot] != 0) {
+                    newSlot = (newSlot + 1) & mask;
+                }
+                keys[newSlot] = oldKeys[slot];
+                values[newSlot] = oldValues[slot];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int capacityFor(int expectedSize) {
+        int capacity = MINIMUM_CAPACITY;
+        while(capacity / 2 < expectedSize) {
+            capacity *= 2;
+        }
+        return capacity;
+    }
+}
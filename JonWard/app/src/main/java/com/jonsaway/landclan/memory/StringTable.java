@@ -0,0 +1,113 @@
+package com.jonsaway.landclan.memory;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Interned strings, each identified by an int
+// Equal strings share one id (and one String), so a column of names is an int per row however long the names are,
+// and comparing names is comparing ids
+// Strings are reference counted: once nothing refers to one, its id is reused
+// Not thread-safe
+public class StringTable {
+    // The id of null
+    public static final int NULL = -1;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] strings = new String[16];
+    private int[] references = new int[16];
+    // Ids no longer in use, to be reused before allocating new ones
+    private int[] free = new int[16];
+    private int freeCount;
+    private int next;
+
+    public StringTable() {
+    }
+
+    // A table holding these strings (indexed by id, null for unused ids),
+    // with a reference for each of the first 'count' ids in 'idColumn' (i.e. a column of name ids, when restoring a store)
+    // Strings with no references are dropped
+    public StringTable(String[] strings, int[] idColumn, int count) {
+        int capacity = Math.max(strings.length, 16);
+        this.strings = Arrays.copyOf(strings, capacity);
+        this.references = new int[capacity];
+        this.free = new int[capacity];
+        next = strings.length;
+
+        for(int i = 0; i < count; i++) {
+            if(idColumn[i] != NULL) {
+                references[idColumn[i]]++;
+            }
+        }
+        for(int id = 0; id < next; id++) {
+            if(this.strings[id] != null && references[id] > 0) {
+                ids.put(this.strings[id], id);
+            }
+            else {
+                this.strings[id] = null;
+                free[freeCount++] = id;
+            }
+        }
+    }
+
+    // The id of this string, adding a reference to it
+    public int intern(String string) {
+        if(string == null) {
+            return NULL;
+        }
+
+        Integer existing = ids.get(string);
+        if(existing != null) {
+            references[existing]++;
+            return existing;
+        }
+
+        int id = freeCount > 0 ? free[--freeCount] : allocate();
+        strings[id] = string;
+        references[id] = 1;
+        ids.put(string, id);
+        return id;
+    }
+
+    // The id of this string, if it's in the table (without adding a reference), otherwise NULL
+    public int find(String string) {
+        Integer id = string != null ? ids.get(string) : null;
+        return id != null ? id : NULL;
+    }
+
+    // Remove a reference to this id: once there are none, the string is dropped
+    public void release(int id) {
+        if(id == NULL || --references[id] > 0) {
+            return;
+        }
+
+        ids.remove(strings[id]);
+        strings[id] = null;
+        if(freeCount == free.length) {
+            free = Arrays.copyOf(free, free.length * 2);
+        }
+        free[freeCount++] = id;
+    }
+
+    public String get(int id) {
+        return id == NULL ? null : strings[id];
+    }
+
+    // A copy of the strings, indexed by id (null for unused ids)
+    public String[] toArray() {
+        return Arrays.copyOf(strings, next);
+    }
+
+    // Number of distinct strings held
+    public int size() {
+        return ids.size();
+    }
+
+    private int allocate() {
+        if(next == strings.length) {
+            strings = Arrays.copyOf(strings, strings.length * 2);
+            references = Arrays.copyOf(references, references.length * 2);
+        }
+        return next++;
+    }
+}
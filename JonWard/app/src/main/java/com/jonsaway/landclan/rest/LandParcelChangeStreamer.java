@@ -0,0 +1,129 @@
+package com.jonsaway.landclan.rest;
+
+import com.jonsaway.landclan.TaskThreads;
+import com.jonsaway.landclan.service.LandParcelChangeFeed;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Streams the change feed to subscribers, as server-sent events
+// Each change is sent as a "change" event, with its sequence number as the event id (so a reconnecting client's
+// Last-Event-ID resumes where it left off); if the subscriber falls too far behind, an "expired" event is sent
+// and the stream ends
+// A subscriber takes no thread while it's waiting for changes: it's woken by the feed, and catches up on a
+// sending thread (see TaskThreads: a virtual thread, with the 'virtual' profile)
+@Component
+public class LandParcelChangeStreamer {
+    // Most changes read from the feed at a time
+    private static final int READ_SIZE = 500;
+
+    @Autowired
+    LandParcelChangeFeed feed;
+
+    @Autowired
+    TaskThreads threads = new TaskThreads();
+
+    @Value("${landclan.changes.stream-timeout:PT30M}")
+    Duration timeout = Duration.ofMinutes(30);
+
+    private ExecutorService senders;
+
+    @PostConstruct
+    public void init() {
+        senders = threads.executor("change-stream");
+    }
+
+    // Stream changes after sequence number 'after' (0 for all of those still held)
+    public SseEmitter stream(long after) {
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter, after);
+        emitter.onCompletion(subscriber::close);
+        emitter.onTimeout(subscriber::close);
+        emitter.onError(e -> subscriber.close());
+        subscriber.schedule();
+        return emitter;
+    }
+
+    @PreDestroy
+    public void close() {
+        senders.shutdownNow();
+    }
+
+    private class Subscriber implements Runnable {
+        private final SseEmitter emitter;
+        private final Runnable waiter = this::schedule;
+        // Set while the subscriber is queued or running, so it's only ever sending on one thread
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+        // Sequence number of the last change sent
+        private long position;
+
+        Subscriber(SseEmitter emitter, long position) {
+            this.emitter = emitter;
+            this.position = position;
+        }
+
+        void schedule() {
+            if(!closed && scheduled.compareAndSet(false, true)) {
+                senders.execute(this);
+            }
+        }
+
+        void close() {
+            closed = true;
+            feed.cancel(waiter);
+        }
+
+        // Send every change available, then wait for the next
+        @Override
+        public void run() {
+            try {
+                while(!closed) {
+                    LandParcelChangeFeed.Changes changes = feed.read(position, READ_SIZE);
+                    for(LandParcelChangeFeed.Change change: changes.changes()) {
+                        emitter.send(SseEmitter.event()
+                                .id(String.valueOf(change.sequence()))
+                                .name("change")
+                                .data(change, MediaType.APPLICATION_JSON));
+                    }
+                    position = changes.latest();
+
+                    if(changes.changes().isEmpty() && feed.await(position, waiter)) {
+                        break;
+                    }
+                }
+            }
+            catch (LandParcelChangeFeed.ExpiredException e) {
+                try {
+                    emitter.send(SseEmitter.event().name("expired").data(e.getMessage()));
+                    emitter.complete();
+                }
+                catch (IOException ignored) {
+                    // The subscriber has gone away anyway
+                }
+                close();
+            }
+            catch (IOException | IllegalStateException e) {
+                // The subscriber has gone away (or the stream has timed out)
+                close();
+            }
+            finally {
+                scheduled.set(false);
+            }
+
+            // (a change may have arrived, and found this still scheduled, since the last read)
+            if(!closed && feed.latest() > position) {
+                schedule();
+            }
+        }
+    }
+}
@@ -0,0 +1,599 @@
+package com.jonsaway.landclan.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.jonsaway.landclan.export.ParcelColumnWriter;
+import com.jonsaway.landclan.export.ParcelRecordWriter;
+import com.jonsaway.landclan.export.ParcelWriter;
+import com.jonsaway.landclan.importer.ImportReport;
+import com.jonsaway.landclan.importer.LandParcelImporter;
+import com.jonsaway.landclan.importer.ParcelReader;
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelFilter;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.service.BatchOperation;
+import com.jonsaway.landclan.service.BatchResult;
+import com.jonsaway.landclan.service.LandParcelCache;
+import com.jonsaway.landclan.service.LandParcelChangeFeed;
+import com.jonsaway.landclan.service.LandParcelNameIndex;
+import com.jonsaway.landclan.service.LandParcelStatistics;
+import com.jonsaway.landclan.service.LandParcelService;
+import com.jonsaway.landclan.service.LandParcelSpatialIndex;
+import com.jonsaway.landclan.service.ParcelOutcome;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.jonsaway.landclan.rest.LandParcelRoutes.*;
+
+// The land parcel API, served by Spring MVC (blocking: a thread per request, or a virtual thread with -Pvirtual)
+// Its paths, media types and headers are LandParcelRoutes, shared with the reactive application's controller
+@RestController
+public class LandParcelController {
+    @Autowired
+    LandParcelService service;
+
+    @Autowired
+    LandParcelCache cache;
+
+    @Autowired
+    LandParcelStatistics statistics;
+
+    @Autowired
+    LandParcelSpatialIndex spatialIndex;
+
+    @Autowired
+    LandParcelNameIndex nameIndex;
+
+    @Autowired
+    LandParcelImporter importer;
+
+    @Autowired
+    LandParcelChangeFeed changeFeed;
+
+    @Autowired
+    LandParcelChangeStreamer changeStreamer;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    // retrieve all land parcels
+    // http://localhost:8080/landParcel
+    // or
+    // curl "http://localhost:8080/landParcel"
+    @GetMapping(LAND_PARCELS)
+    public Iterable<LandParcel> retrieve() {
+        return service.retrieveAll();
+    }
+
+    // Retrieve a page of land parcels, ordered by object id
+    // curl "http://localhost:8080/landParcel?limit=100"
+    // curl "http://localhost:8080/landParcel?limit=100&after=4812"
+    // Returns up to 'limit' parcels with an objectId greater than 'after' (or from the start, if not specified)
+    // A 'Link' header (rel="next") is returned if there may be further pages
+    // Returns 400 (bad request) if limit is not between 1 and MAX_PAGE_SIZE
+    @GetMapping(value = LAND_PARCELS, params = "limit")
+    public ResponseEntity<List<LandParcel>> retrievePage(@RequestParam(value = "limit") int limit,
+                                                         @RequestParam(value = "after", required = false) Long after) {
+        if(!validLimit(limit)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+
+        List<LandParcel> page = service.retrievePage(after, limit);
+
+        // A full page means there may be more to come: tell the caller where to continue from
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if(page.size() == limit) {
+            response.header(HttpHeaders.LINK, nextPage(limit, page.get(page.size() - 1).getObjectId()));
+        }
+        return response.body(page);
+    }
+
+    // Retrieve a page of land parcels matching a filter, ordered by object id
+    // curl "http://localhost:8080/landParcel/filter?status=APPROVED&minArea=10&constraints=false&limit=100"
+    // All of the criteria are optional: name, status and constraints must match exactly, minArea and maxArea are inclusive
+    // Paginated in the same way as retrieving all parcels (limit defaults to 100)
+    // Returns 400 (bad request) if limit is not between 1 and MAX_PAGE_SIZE
+    @GetMapping(FILTER)
+    public ResponseEntity<List<LandParcel>> retrieveFiltered(@RequestParam(value = "name", required = false) String name,
+                                                             @RequestParam(value = "status", required = false) ParcelStatus status,
+                                                             @RequestParam(value = "constraints", required = false) Boolean constraints,
+                                                             @RequestParam(value = "minArea", required = false) Double minArea,
+                                                             @RequestParam(value = "maxArea", required = false) Double maxArea,
+                                                             @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                             @RequestParam(value = "after", required = false) Long after) {
+        if(!validLimit(limit)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+
+        LandParcelFilter filter = new LandParcelFilter(name, status, constraints, minArea, maxArea);
+        List<LandParcel> page = service.retrieveFiltered(filter, after, limit);
+
+        // A full page means there may be more to come: tell the caller where to continue from
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if(page.size() == limit) {
+            response.header(HttpHeaders.LINK, nextFilteredPage(filter, limit, page.get(page.size() - 1).getObjectId()));
+        }
+        return response.body(page);
+    }
+
+    // Stream all land parcels as newline-delimited JSON (one parcel per line), ordered by object id
+    // curl -H "Accept: application/x-ndjson" "http://localhost:8080/landParcel"
+    // Parcels are written as they are read from the database, so memory use is constant however large the table
+    @GetMapping(value = LAND_PARCELS, produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> stream() {
+        StreamingResponseBody body = outputStream -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream)) {
+                // The servlet container owns the output stream
+                generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+                // Each parcel is terminated by a newline, rather than separated by a space
+                generator.setRootValueSeparator(null);
+                // Without flushing after each parcel (which would send a tiny chunk per parcel),
+                // leaving the generator to write its buffer out as it fills
+                ObjectWriter writer = objectMapper.writerFor(LandParcel.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+                service.streamAll(landParcel -> {
+                    try {
+                        writer.writeValue(generator, landParcel);
+                        generator.writeRaw('\n');
+                    }
+                    catch (IOException e) {
+                        // Most likely the client has gone away
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .body(body);
+    }
+
+    // Export all land parcels as length-prefixed binary records (see ParcelRecordWriter), ordered by object id
+    // curl -H "Accept: application/vnd.landclan.parcel-records" "http://localhost:8080/landParcel" -o parcels.bin
+    // Streamed in the same way as newline-delimited JSON, but with no field names or number formatting to write
+    @GetMapping(value = LAND_PARCELS, produces = ParcelRecordWriter.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> exportRecords() {
+        return export(ParcelRecordWriter.MEDIA_TYPE, ParcelRecordWriter::new);
+    }
+
+    // Export all land parcels in columns, a block at a time (see ParcelColumnWriter), ordered by object id
+    // curl -H "Accept: application/vnd.landclan.parcel-columns" "http://localhost:8080/landParcel" -o parcels.lpc
+    @GetMapping(value = LAND_PARCELS, produces = ParcelColumnWriter.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> exportColumns() {
+        return export(ParcelColumnWriter.MEDIA_TYPE, ParcelColumnWriter::new);
+    }
+
+    // Retrieve a land parcel by object id
+    // http://localhost:8080/landParcel/1
+    // or
+    // curl "http://localhost:8080/landParcel/1"
+    // The ETag header identifies the parcel's version: send it back in If-None-Match
+    // to get 304 (not modified), rather than the parcel, if it hasn't changed since
+    @GetMapping(LAND_PARCEL)
+    public ResponseEntity<LandParcel> retrieve(@PathVariable("id") long objectId, WebRequest request) {
+        ParcelOutcome outcome = service.find(objectId);
+        if(!outcome.isOk()) {
+            // No land parcel exists with the specified object id
+            return rejected(outcome);
+        }
+
+        LandParcel landParcel = outcome.landParcel();
+        String eTag = eTag(landParcel);
+        if(request.checkNotModified(eTag)) {
+            // Client already has this version: 304, with no body
+            return null;
+        }
+        return ResponseEntity.ok().eTag(eTag).body(landParcel);
+    }
+
+    // Create a new land parcel
+    // curl -X POST "http://localhost:8080/landParcel/6" -F "name=\"Fred\"" -F"status=SAVED" -F "area=42" -F "constraints=false"
+    // Object id must not already exist in database
+    // All values are required
+    // Returns 400 (bad request) if any of the values is missing or invalid
+    // Returns the created object (and its ETag)
+    @PostMapping(LAND_PARCEL)
+    public ResponseEntity<LandParcel> create(@PathVariable("id") long objectId,
+                                             @RequestParam(value = "name") String name,
+                                             @RequestParam(value = "status") ParcelStatus status,
+                                             @RequestParam(value = "area") double area,
+                                             @RequestParam(value = "constraints") boolean constraints) {
+        try {
+            LandParcel landParcel = service.create(objectId, name, status, area, constraints);
+            return ResponseEntity.ok().eTag(eTag(landParcel)).body(landParcel);
+        }
+        catch (IllegalArgumentException e) {
+            // A land parcel already exists with the specified object id
+            throw rejected(HttpStatus.BAD_REQUEST, e);
+        }
+    }
+
+    // update an existing land parcel
+    // curl -X PUT "http://localhost:8080/landParcel/6" -F "name=\"Fred Laboratory\"" -F "area=1.23"
+    // Only updates the specified values
+    // If an If-Match header is supplied, only updates the parcel if it's still at that version
+    // (returns 412 (precondition failed) if it isn't)
+    // Returns the updated object (and its ETag)
+    @PutMapping(LAND_PARCEL)
+    public ResponseEntity<LandParcel> update(@PathVariable("id") long objectId,
+                                             @RequestParam(value = "name", required = false) String name,
+                                             @RequestParam(value = "status", required = false, defaultValue = "NO_CHANGE") ParcelStatus status,
+                                             @RequestParam(value = "area", required = false) Double area,
+                                             @RequestParam(value = "constraints", required = false) Boolean constraints,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        try {
+            // Update the non-null values
+            // (for this ParcelStatus.NO_CHANGE is treated as null)
+            ParcelOutcome outcome = service.tryUpdate(objectId, name, status, area, constraints, ifMatchVersion(ifMatch));
+            if(!outcome.isOk()) {
+                // No land parcel exists with the specified object id, or it's been modified since the client's version
+                return rejected(outcome);
+            }
+            LandParcel landParcel = outcome.landParcel();
+            return ResponseEntity.ok().eTag(eTag(landParcel)).body(landParcel);
+        }
+        catch (RejectedExecutionException e) {
+            // Too many updates waiting to be written behind
+            throw rejected(HttpStatus.SERVICE_UNAVAILABLE, e);
+        }
+    }
+
+    // partially update an existing land parcel
+    // curl -X PATCH "http://localhost:8080/landParcel/6" -F "status=APPROVED"
+    // Only the specified values are written, in a single statement: other values are left untouched
+    // If an If-Match header is supplied, only updates the parcel if it's still at that version
+    // (returns 412 (precondition failed) if it isn't)
+    // Returns the updated object (and its ETag)
+    @PatchMapping(LAND_PARCEL)
+    public ResponseEntity<LandParcel> patch(@PathVariable("id") long objectId,
+                                            @RequestParam(value = "name", required = false) String name,
+                                            @RequestParam(value = "status", required = false, defaultValue = "NO_CHANGE") ParcelStatus status,
+                                            @RequestParam(value = "area", required = false) Double area,
+                                            @RequestParam(value = "constraints", required = false) Boolean constraints,
+                                            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        try {
+            ParcelOutcome outcome = service.tryPatch(objectId, name, status, area, constraints, ifMatchVersion(ifMatch));
+            if(!outcome.isOk()) {
+                // No land parcel exists with the specified object id, or it's been modified since the client's version
+                return rejected(outcome);
+            }
+            LandParcel landParcel = outcome.landParcel();
+            return ResponseEntity.ok().eTag(eTag(landParcel)).body(landParcel);
+        }
+        catch (RejectedExecutionException e) {
+            // Too many updates waiting to be written behind
+            throw rejected(HttpStatus.SERVICE_UNAVAILABLE, e);
+        }
+    }
+
+    // delete a land parcel by object id
+    // curl -X DELETE "http://localhost:8080/landParcel/6"
+    // If an If-Match header is supplied, only deletes the parcel if it's still at that version
+    // (returns 412 (precondition failed) if it isn't)
+    @DeleteMapping(LAND_PARCEL)
+    public ResponseEntity<Void> delete(@PathVariable("id") long objectId,
+                                       @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        ParcelOutcome outcome = service.tryDelete(objectId, ifMatchVersion(ifMatch));
+        if(!outcome.isOk()) {
+            // No land parcel exists with the specified object id, or it's been modified since the client's version
+            return rejected(outcome);
+        }
+        return ResponseEntity.ok().build();
+    }
+
+    // set (or replace) the geometry of an existing land parcel, as a GeoJSON Polygon
+    // curl -X PUT "http://localhost:8080/landParcel/6/geometry" -H "Content-Type: application/geo+json" -d '{"type":"Polygon","coordinates":[[[0,0],[10,0],[10,5],[0,5],[0,0]]]}'
+    // The parcel's area becomes the polygon's area (and stays that way, until the geometry is removed)
+    // If an If-Match header is supplied, only updates the parcel if it's still at that version
+    // (returns 412 (precondition failed) if it isn't)
+    // Returns the updated object (and its ETag), or 400 (bad request) if the geometry isn't a valid polygon
+    @PutMapping(value = GEOMETRY, consumes = { MediaType.APPLICATION_JSON_VALUE, APPLICATION_GEO_JSON_VALUE })
+    public ResponseEntity<LandParcel> updateGeometry(@PathVariable("id") long objectId,
+                                                     @RequestBody ParcelGeometry geometry,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return writeGeometry(objectId, geometry, ifMatch);
+    }
+
+    // remove the geometry of an existing land parcel (its area stays as it was)
+    // curl -X DELETE "http://localhost:8080/landParcel/6/geometry"
+    // If-Match is handled as for setting it
+    @DeleteMapping(GEOMETRY)
+    public ResponseEntity<LandParcel> deleteGeometry(@PathVariable("id") long objectId,
+                                                     @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return writeGeometry(objectId, null, ifMatch);
+    }
+
+    // Retrieve a page of land parcels whose bounding box overlaps a box (e.g. a map tile), ordered by object id
+    // curl "http://localhost:8080/landParcel/bbox?minX=0&minY=0&maxX=1000&maxY=1000&limit=100"
+    // Only parcels with a geometry are included; paginated in the same way as retrieving all parcels (limit defaults to 100)
+    // Returns 400 (bad request) if the box is inside out, or limit is not between 1 and MAX_PAGE_SIZE
+    @GetMapping(BBOX)
+    public ResponseEntity<List<LandParcel>> retrieveWithin(@RequestParam(value = "minX") double minX,
+                                                           @RequestParam(value = "minY") double minY,
+                                                           @RequestParam(value = "maxX") double maxX,
+                                                           @RequestParam(value = "maxY") double maxY,
+                                                           @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                           @RequestParam(value = "after", required = false) Long after) {
+        if(!validLimit(limit) || !(minX <= maxX) || !(minY <= maxY)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+
+        List<LandParcel> page = spatialIndex.within(minX, minY, maxX, maxY, after, limit);
+
+        // A full page means there may be more to come: tell the caller where to continue from
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if(page.size() == limit) {
+            response.header(HttpHeaders.LINK, nextWithinPage(minX, minY, maxX, maxY, limit, page.get(page.size() - 1).getObjectId()));
+        }
+        return response.body(page);
+    }
+
+    // Retrieve the land parcels whose geometry contains a point, ordered by object id
+    // curl "http://localhost:8080/landParcel/containing?x=5&y=2.5"
+    @GetMapping(CONTAINING)
+    public List<LandParcel> retrieveContaining(@RequestParam(value = "x") double x,
+                                               @RequestParam(value = "y") double y) {
+        return spatialIndex.containing(x, y);
+    }
+
+    // Retrieve the k land parcels nearest a point (by distance to their geometry: 0 if the point is inside), nearest first
+    // curl "http://localhost:8080/landParcel/nearest?x=5&y=2.5&k=10"
+    // Returns 400 (bad request) if k is not between 1 and MAX_PAGE_SIZE
+    @GetMapping(NEAREST)
+    public List<LandParcelSpatialIndex.Nearby> retrieveNearest(@RequestParam(value = "x") double x,
+                                                               @RequestParam(value = "y") double y,
+                                                               @RequestParam(value = "k", defaultValue = "10") int k) {
+        if(!validLimit(k)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+        return spatialIndex.nearest(x, y, k);
+    }
+
+    // Search for land parcels by the words of their name, a page at a time, ordered by object id
+    // curl "http://localhost:8080/landParcel/search?q=Bob%20Off&limit=20"
+    // mode is PREFIX (the default: the last word may be the start of a word, as it's being typed), TOKEN (whole words)
+    // or FUZZY (whole words, allowing a typo or two); every word must match
+    // Paginated in the same way as retrieving all parcels (limit defaults to 100)
+    // Returns 400 (bad request) if the query has no words (or too many), or limit is not between 1 and MAX_PAGE_SIZE
+    @GetMapping(SEARCH)
+    public ResponseEntity<List<LandParcel>> search(@RequestParam(value = "q") String query,
+                                                   @RequestParam(value = "mode", defaultValue = "PREFIX") LandParcelNameIndex.Mode mode,
+                                                   @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                   @RequestParam(value = "after", required = false) Long after) {
+        if(!validLimit(limit)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+
+        List<LandParcel> page;
+        try {
+            page = nameIndex.search(query, mode, after, limit);
+        }
+        catch (IllegalArgumentException e) {
+            throw rejected(HttpStatus.BAD_REQUEST, e);
+        }
+
+        // A full page means there may be more to come: tell the caller where to continue from
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if(page.size() == limit) {
+            response.header(HttpHeaders.LINK, nextSearchPage(query, mode, limit, page.get(page.size() - 1).getObjectId()));
+        }
+        return response.body(page);
+    }
+
+    // Apply a batch of creates, updates and deletes, in order
+    // curl -X POST "http://localhost:8080/landParcel/batch" -H "Content-Type: application/json" -d '[{"op":"CREATE","objectId":6,"name":"Fred","status":"SAVED","area":42,"constraints":false},{"op":"DELETE","objectId":123}]'
+    // Each operation follows the same rules as the single-item requests, and succeeds or fails on its own
+    // Returns one result per operation, with the status code the single-item request would have returned
+    @PostMapping(value = BATCH, consumes = MediaType.APPLICATION_JSON_VALUE)
+    public List<BatchResult> batch(@RequestBody List<BatchOperation> operations) {
+        return service.batch(operations);
+    }
+
+    // Apply a batch of creates, updates and deletes, supplied as newline-delimited JSON (one operation per line)
+    // curl -X POST "http://localhost:8080/landParcel/batch" -H "Content-Type: application/x-ndjson" --data-binary @operations.ndjson
+    @PostMapping(value = BATCH, consumes = APPLICATION_NDJSON_VALUE)
+    public List<BatchResult> batch(InputStream body) throws IOException {
+        List<BatchOperation> operations;
+        try (MappingIterator<BatchOperation> iterator = objectMapper.readerFor(BatchOperation.class).readValues(body)) {
+            operations = iterator.readAll();
+        }
+        catch (JsonProcessingException e) {
+            // Malformed operation
+            throw rejected(HttpStatus.BAD_REQUEST, e);
+        }
+
+        return service.batch(operations);
+    }
+
+    // Import land parcels in bulk, from CSV or GeoJSON
+    // curl -X POST "http://localhost:8080/landParcel/import" -H "Content-Type: text/csv" --data-binary @parcels.csv
+    // curl -X POST "http://localhost:8080/landParcel/import" -H "Content-Type: application/geo+json" --data-binary @parcels.geojson
+    // The body is read as it arrives, and written in parallel batches, so it can be of any size
+    // Every parcel is created (all values are required); invalid parcels, and those that already exist, are
+    // reported by row, and don't stop the rest being imported
+    // Returns 400 (bad request) if the body can't be read as a whole (e.g. the CSV header is missing a column)
+    // (for a resumable import of a file, see the landclan.import.file startup option)
+    @PostMapping(value = IMPORT, consumes = { TEXT_CSV_VALUE, APPLICATION_GEO_JSON_VALUE })
+    public ImportReport importParcels(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                      InputStream body) {
+        ParcelReader.Format format = contentType.isCompatibleWith(MediaType.parseMediaType(TEXT_CSV_VALUE))
+                ? ParcelReader.Format.CSV : ParcelReader.Format.GEOJSON;
+        try (ParcelReader reader = ParcelReader.of(format, body, objectMapper)) {
+            return importer.importParcels(reader);
+        }
+        catch (IOException e) {
+            // Malformed file
+            throw rejected(HttpStatus.BAD_REQUEST, e);
+        }
+    }
+
+    // Long-poll for changes to land parcels, in order
+    // curl "http://localhost:8080/landParcel/changes?after=0"
+    // curl "http://localhost:8080/landParcel/changes?after=1234&limit=100&timeout=PT60S"
+    // Returns up to 'limit' changes with a sequence number greater than 'after' (or from the oldest still held, if 0),
+    // as soon as there are any, or none if there are still none after 'timeout'; either way, 'latest' is the
+    // sequence number to ask for changes after next time
+    // Returns 400 (bad request) if limit is not between 1 and MAX_PAGE_SIZE, and 410 (gone) if the changes are
+    // no longer held (the caller must re-read every parcel)
+    @GetMapping(CHANGES)
+    public DeferredResult<LandParcelChangeFeed.Changes> changes(@RequestParam(value = "after", defaultValue = "0") long after,
+                                                                @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                                @RequestParam(value = "timeout", defaultValue = "PT30S") Duration timeout) {
+        if(!validLimit(limit)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+
+        LandParcelChangeFeed.Changes changes;
+        try {
+            changes = changeFeed.read(after, limit);
+        }
+        catch (LandParcelChangeFeed.ExpiredException e) {
+            // Too far behind (or from before a restart)
+            throw rejected(HttpStatus.GONE, e);
+        }
+
+        DeferredResult<LandParcelChangeFeed.Changes> result = new DeferredResult<>(timeout.toMillis(),
+                () -> new LandParcelChangeFeed.Changes(List.of(), after));
+        if(!changes.changes().isEmpty()) {
+            result.setResult(changes);
+            return result;
+        }
+
+        // Otherwise, wait for the next change (unless one has arrived since)
+        Runnable read = () -> {
+            try {
+                result.setResult(changeFeed.read(after, limit));
+            }
+            catch (LandParcelChangeFeed.ExpiredException e) {
+                // Overtaken by a flood of changes before responding
+                result.setErrorResult(rejected(HttpStatus.GONE, e));
+            }
+        };
+        if(changeFeed.await(after, read)) {
+            result.onCompletion(() -> changeFeed.cancel(read));
+        }
+        else {
+            read.run();
+        }
+        return result;
+    }
+
+    // Stream changes to land parcels, as server-sent events
+    // curl -N "http://localhost:8080/landParcel/changes?after=1234" -H "Accept: text/event-stream"
+    // Each change is a "change" event, identified by its sequence number; a reconnecting client resumes after its
+    // Last-Event-ID (if it has one), otherwise after 'after' (or from the oldest change still held, if 0)
+    // If the changes are no longer held, an "expired" event is sent and the stream ends
+    @GetMapping(value = CHANGES, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(value = "after", defaultValue = "0") long after,
+                                    @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return changeStreamer.stream(lastEventId != null ? lastEventId : after);
+    }
+
+    // Retrieve the hit, miss and eviction counts of the land parcel cache
+    // curl "http://localhost:8080/landParcel/cache/stats"
+    @GetMapping(CACHE_STATS)
+    public LandParcelCache.Statistics cacheStatistics() {
+        return cache.statistics();
+    }
+
+    // Retrieve the count and total area of land parcels, overall and by status and constraints
+    // Maintained as parcels change, so doesn't scan the table
+    // curl "http://localhost:8080/landParcel/stats"
+    @GetMapping(STATS)
+    public LandParcelStatistics.Summary statistics() {
+        return statistics.summary();
+    }
+
+    // Set or remove a parcel's geometry
+    private ResponseEntity<LandParcel> writeGeometry(long objectId, ParcelGeometry geometry, String ifMatch) {
+        try {
+            LandParcel landParcel = service.updateGeometry(objectId, geometry, ifMatchVersion(ifMatch));
+            return ResponseEntity.ok().eTag(eTag(landParcel)).body(landParcel);
+        }
+        catch (NoSuchElementException e) {
+            // No land parcel exists with the specified object id
+            throw rejected(HttpStatus.NOT_FOUND, e);
+        }
+        catch (OptimisticLockingFailureException e) {
+            // Land parcel has been modified since the client's version
+            throw rejected(HttpStatus.PRECONDITION_FAILED, e);
+        }
+    }
+
+    // Count a request rejected because of the given exception (as landclan.requests.rejected, by status and exception)
+    // Returns the exception to throw, to reject it
+    private ResponseStatusException rejected(HttpStatus status, Exception cause) {
+        meterRegistry.counter("landclan.requests.rejected",
+                "status", String.valueOf(status.value()),
+                "exception", cause.getClass().getSimpleName()).increment();
+        return new ResponseStatusException(status);
+    }
+
+    // Count a request rejected because of a failed outcome, as above (tagged with the exception the service's throwing
+    // methods report the failure with, so it's counted with the same failures from elsewhere)
+    // Returns the response to reject it with: 404 (not found) or 412 (precondition failed), with no body
+    // Neither creates an exception, so a stream of requests for parcels that don't exist stays cheap
+    private <T> ResponseEntity<T> rejected(ParcelOutcome outcome) {
+        HttpStatus status = outcome.status() == ParcelOutcome.Status.NOT_FOUND ? HttpStatus.NOT_FOUND : HttpStatus.PRECONDITION_FAILED;
+        meterRegistry.counter("landclan.requests.rejected",
+                "status", String.valueOf(status.value()),
+                "exception", outcome.status() == ParcelOutcome.Status.NOT_FOUND
+                        ? NoSuchElementException.class.getSimpleName()
+                        : OptimisticLockingFailureException.class.getSimpleName()).increment();
+        return ResponseEntity.status(status).build();
+    }
+
+    // Stream all land parcels through a ParcelWriter, straight to the response as they are read
+    private ResponseEntity<StreamingResponseBody> export(String mediaType, ParcelWriterFactory writerFactory) {
+        StreamingResponseBody body = outputStream -> {
+            ParcelWriter writer = writerFactory.create(outputStream);
+            service.streamAll(landParcel -> {
+                try {
+                    writer.write(landParcel);
+                }
+                catch (IOException e) {
+                    // Most likely the client has gone away
+                    throw new UncheckedIOException(e);
+                }
+            });
+            writer.finish();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(mediaType))
+                .body(body);
+    }
+
+    private interface ParcelWriterFactory {
+        ParcelWriter create(OutputStream outputStream) throws IOException;
+    }
+}
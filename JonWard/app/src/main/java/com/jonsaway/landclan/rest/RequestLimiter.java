@@ -0,0 +1,225 @@
+package com.jonsaway.landclan.rest;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jonsaway.landclan.limit.ConcurrencyLimit;
+import com.jonsaway.landclan.limit.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Locale;
+
+// Sheds requests to /landParcel before they reach the controller, so one misbehaving client can't starve the others
+// - each client has a token bucket per kind of endpoint: once it's empty, 429 (TOO_MANY_REQUESTS)
+// - each kind of endpoint has a limit on the requests in progress, across all clients: once it's reached,
+//   503 (SERVICE_UNAVAILABLE)
+// Either way with a Retry-After header (in seconds), and straight away: requests are never queued
+// A client is identified by the landclan.limits.client-header header, if set (e.g. by a gateway in front of us),
+// otherwise by its address
+// Requests shed are counted as landclan.requests.shed (by endpoint and status), and those in progress are gauged
+// as landclan.requests.in.progress (by endpoint)
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class RequestLimiter extends OncePerRequestFilter {
+    public enum Endpoint {
+        // A parcel, a page of parcels, a search, the statistics, ...
+        READ,
+        // Every parcel (GET /landParcel without a limit, in any representation)
+        SCAN,
+        // Anything but GET (or HEAD)
+        WRITE
+    }
+
+    @Value("${landclan.limits.enabled:true}")
+    boolean enabled = true;
+
+    @Value("${landclan.limits.client-header:}")
+    String clientHeader = "";
+
+    // Clients tracked at once, and how long one is tracked for once idle (by then, its buckets are full again)
+    @Value("${landclan.limits.clients:100000}")
+    long maximumClients = 100_000;
+
+    @Value("${landclan.limits.client-idle-timeout:PT10M}")
+    Duration clientIdleTimeout = Duration.ofMinutes(10);
+
+    // Retry-After sent with a 503
+    @Value("${landclan.limits.retry-after:PT1S}")
+    Duration retryAfter = Duration.ofSeconds(1);
+
+    // Per client: requests per second, and the most at once; across all clients: the most in progress
+    @Value("${landclan.limits.read.rate:1000}")
+    double readRate = 1000;
+
+    @Value("${landclan.limits.read.burst:2000}")
+    int readBurst = 2000;
+
+    @Value("${landclan.limits.read.concurrency:150}")
+    int readConcurrency = 150;
+
+    @Value("${landclan.limits.scan.rate:0.5}")
+    double scanRate = 0.5;
+
+    @Value("${landclan.limits.scan.burst:5}")
+    int scanBurst = 5;
+
+    @Value("${landclan.limits.scan.concurrency:4}")
+    int scanConcurrency = 4;
+
+    @Value("${landclan.limits.write.rate:500}")
+    double writeRate = 500;
+
+    @Value("${landclan.limits.write.burst:1000}")
+    int writeBurst = 1000;
+
+    @Value("${landclan.limits.write.concurrency:50}")
+    int writeConcurrency = 50;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    // Each client's buckets, by endpoint ordinal
+    private Cache<String, TokenBucket[]> clients;
+    private final ConcurrencyLimit[] limits = new ConcurrencyLimit[Endpoint.values().length];
+    private final Counter[] rateLimited = new Counter[Endpoint.values().length];
+    private final Counter[] overloaded = new Counter[Endpoint.values().length];
+
+    @PostConstruct
+    public void init() {
+        clients = Caffeine.newBuilder()
+                .maximumSize(maximumClients)
+                .expireAfterAccess(clientIdleTimeout)
+                .build();
+        limits[Endpoint.READ.ordinal()] = new ConcurrencyLimit(readConcurrency);
+        limits[Endpoint.SCAN.ordinal()] = new ConcurrencyLimit(scanConcurrency);
+        limits[Endpoint.WRITE.ordinal()] = new ConcurrencyLimit(writeConcurrency);
+        for(Endpoint endpoint: Endpoint.values()) {
+            String tag = endpoint.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("landclan.requests.in.progress", limits[endpoint.ordinal()], ConcurrencyLimit::inFlight)
+                    .tag("endpoint", tag)
+                    .register(meterRegistry);
+            rateLimited[endpoint.ordinal()] = meterRegistry.counter("landclan.requests.shed",
+                    "endpoint", tag, "status", String.valueOf(HttpStatus.TOO_MANY_REQUESTS.value()));
+            overloaded[endpoint.ordinal()] = meterRegistry.counter("landclan.requests.shed",
+                    "endpoint", tag, "status", String.valueOf(HttpStatus.SERVICE_UNAVAILABLE.value()));
+        }
+    }
+
+    // The kind of endpoint a request is for
+    public static Endpoint endpoint(HttpServletRequest request) {
+        String method = request.getMethod();
+        if(!method.equals("GET") && !method.equals("HEAD")) {
+            return Endpoint.WRITE;
+        }
+        return path(request).equals("/landParcel") && request.getParameter("limit") == null ? Endpoint.SCAN : Endpoint.READ;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !path(request).startsWith("/landParcel");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Endpoint endpoint = endpoint(request);
+        long now = System.nanoTime();
+        TokenBucket[] buckets = clients.get(client(request), client -> new TokenBucket[] {
+                new TokenBucket(readRate, readBurst, now),
+                new TokenBucket(scanRate, scanBurst, now),
+                new TokenBucket(writeRate, writeBurst, now) });
+        long wait = buckets[endpoint.ordinal()].tryAcquire(now);
+        if(wait > 0) {
+            rateLimited[endpoint.ordinal()].increment();
+            shed(response, HttpStatus.TOO_MANY_REQUESTS, wait);
+            return;
+        }
+
+        // The change feed's long-polls and streams spend nearly all their time waiting (without a thread),
+        // so they're only rate limited
+        if(path(request).startsWith("/landParcel/changes")) {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        ConcurrencyLimit limit = limits[endpoint.ordinal()];
+        if(!limit.tryAcquire()) {
+            overloaded[endpoint.ordinal()].increment();
+            shed(response, HttpStatus.SERVICE_UNAVAILABLE, retryAfter.toNanos());
+            return;
+        }
+        boolean async = false;
+        try {
+            chain.doFilter(request, response);
+            if(request.isAsyncStarted()) {
+                // Still in progress (e.g. an export streaming the parcels): released once it completes
+                request.getAsyncContext().addListener(new Release(limit));
+                async = true;
+            }
+        }
+        finally {
+            if(!async) {
+                limit.release();
+            }
+        }
+    }
+
+    private String client(HttpServletRequest request) {
+        if(!clientHeader.isEmpty()) {
+            String client = request.getHeader(clientHeader);
+            if(client != null && !client.isBlank()) {
+                return client;
+            }
+        }
+        return request.getRemoteAddr();
+    }
+
+    private static String path(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+
+    private static void shed(HttpServletResponse response, HttpStatus status, long retryAfterNanos) {
+        response.setStatus(status.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (retryAfterNanos + 999_999_999) / 1_000_000_000)));
+    }
+
+    // Releases the limit when an asynchronous request completes (which it always does, even after an error or timeout)
+    private record Release(ConcurrencyLimit limit) implements AsyncListener {
+        @Override
+        public void onComplete(AsyncEvent event) {
+            limit.release();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // (listeners are dropped when a request goes asynchronous again)
+            event.getAsyncContext().addListener(this);
+        }
+    }
+}
@@ -0,0 +1,616 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelFilter;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.memory.LandParcelJournal;
+import com.jonsaway.landclan.memory.LandParcelStore;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import io.micrometer.core.annotation.Timed;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntPredicate;
+
+// Land parcels held in memory (in a LandParcelStore), rather than in the database
+// For read-heavy nodes: a retrieve is a hash lookup, with no cache, connection or query in the way
+// Parcels aren't shared between nodes, and only survive a restart if landclan.memory.directory is set:
+// every change is then appended to a LandParcelJournal (write-ahead log, plus periodic snapshots),
+// and the parcels are recovered from it at startup
+// Selected with landclan.store=memory (the default, 'jpa', is LandParcelServiceImpl)
+// Follows the same contract as LandParcelServiceImpl, including versions and listeners
+@Service
+@ConditionalOnProperty(name = "landclan.store", havingValue = "memory")
+@Timed(value = "landclan.service", histogram = true)
+public class InMemoryLandParcelService implements LandParcelService {
+    // Parcels streamed per read lock, so a slow consumer doesn't hold up writers
+    private static final int STREAM_CHUNK_SIZE = 500;
+
+    private static final Logger log = LoggerFactory.getLogger(InMemoryLandParcelService.class);
+
+    private LandParcelStore store = new LandParcelStore();
+
+    // Any number of readers, or a single writer
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    // Kept up to date with every change (e.g. LandParcelStatistics)
+    @Autowired(required = false)
+    List<LandParcelListener> listeners = List.of();
+
+    // Each write holds its parcel's lock (taken before the write lock) until the listeners have been told of it,
+    // so they're told of each parcel's changes in the order they were made
+    @Autowired
+    LandParcelLocks locks = new LandParcelLocks();
+
+    // Where the journal is kept (if not set, parcels are lost on restart)
+    @Value("${landclan.memory.directory:}")
+    String directory = "";
+
+    // When journal records are forced to disk: ALWAYS (before each write returns), INTERVAL or NEVER
+    @Value("${landclan.memory.fsync:always}")
+    LandParcelJournal.FsyncPolicy fsync = LandParcelJournal.FsyncPolicy.ALWAYS;
+
+    @Value("${landclan.memory.fsync-interval:PT0.01S}")
+    Duration fsyncInterval = Duration.ofMillis(10);
+
+    // How often a snapshot is taken (so recovery only replays the log since)
+    @Value("${landclan.memory.snapshot-interval:PT10M}")
+    Duration snapshotInterval = Duration.ofMinutes(10);
+
+    @Value("${landclan.memory.segment-size:67108864}")
+    int segmentSize = 64 << 20;
+
+    private LandParcelJournal journal;
+    private ScheduledExecutorService snapshotScheduler;
+
+    // Recover the parcels from the journal (if there is one), and start taking snapshots
+    @PostConstruct
+    public void open() throws IOException {
+        if(directory.isEmpty()) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        journal = new LandParcelJournal(Path.of(directory), fsync, fsyncInterval, segmentSize);
+        store = journal.recover();
+        log.info("Recovered {} land parcels from {} in {} ms", store.size(), directory, (System.nanoTime() - start) / 1_000_000);
+
+        // Listeners (e.g. statistics) start from the recovered parcels
+        for(int row = 0; row < store.size(); row++) {
+            LandParcel landParcel = store.get(row);
+            for(LandParcelListener listener: listeners) {
+                listener.parcelRecovered(landParcel);
+            }
+        }
+
+        snapshotScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "land-parcel-snapshot");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long nanos = snapshotInterval.toNanos();
+        snapshotScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                snapshot();
+            }
+            catch (IOException | RuntimeException e) {
+                // Carry on appending to the log: the next snapshot may succeed
+                log.error("Failed to write land parcel snapshot", e);
+            }
+        }, nanos, nanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Take a final snapshot (so the next startup has no log to replay), and close the journal
+    @PreDestroy
+    public void close() throws IOException {
+        if(journal == null) {
+            return;
+        }
+        snapshotScheduler.shutdown();
+        try {
+            snapshotScheduler.awaitTermination(1, TimeUnit.MINUTES);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        snapshot();
+        journal.close();
+        journal = null;
+    }
+
+    // Write a snapshot of every parcel, so the log before it can be discarded
+    // Writers are only held off while the store is copied; the copy is written out while they carry on
+    public void snapshot() throws IOException {
+        LandParcelStore.Snapshot snapshot;
+        long fromSegment;
+        lock.writeLock().lock();
+        try {
+            snapshot = store.snapshot();
+            fromSegment = journal.roll();
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        journal.writeSnapshot(snapshot, fromSegment);
+    }
+
+    // Retrieve all land parcels, ordered by object id
+    public Iterable<LandParcel> retrieveAll() {
+        return select(null, null, Integer.MAX_VALUE);
+    }
+
+    // Retrieve a page of land parcels, ordered by object id
+    // Returns up to 'limit' parcels with an objectId greater than 'after'
+    // (or from the lowest objectId, if 'after' is null)
+    public List<LandParcel> retrievePage(Long after, int limit) {
+        return select(null, after, limit);
+    }
+
+    // Stream all land parcels, ordered by object id, passing each one to the consumer in turn
+    // The object ids are copied and sorted once, then the parcels are read a chunk at a time,
+    // so a slow consumer doesn't hold up writers (parcels created since are missed, and those deleted since skipped)
+    public void streamAll(Consumer<LandParcel> consumer) {
+        long[] objectIds;
+        lock.readLock().lock();
+        try {
+            objectIds = store.objectIds();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        Arrays.sort(objectIds);
+
+        List<LandParcel> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+        for(int start = 0; start < objectIds.length; start += STREAM_CHUNK_SIZE) {
+            chunk.clear();
+            lock.readLock().lock();
+            try {
+                for(int i = start; i < Math.min(start + STREAM_CHUNK_SIZE, objectIds.length); i++) {
+                    int row = store.find(objectIds[i]);
+                    if(row >= 0) {
+                        chunk.add(store.get(row));
+                    }
+                }
+            }
+            finally {
+                lock.readLock().unlock();
+            }
+            chunk.forEach(consumer);
+        }
+    }
+
+    // Retrieve a page of land parcels matching the filter, ordered by object id
+    // Returns up to 'limit' parcels with an objectId greater than 'after'
+    // (or from the lowest objectId, if 'after' is null)
+    public List<LandParcel> retrieveFiltered(LandParcelFilter filter, Long after, int limit) {
+        return select(filter, after, limit);
+    }
+
+    // Retrieve a land parcel by object id
+    // Throws NoSuchElement exception if parcel doesn't exist
+    public LandParcel retrieve(long objectId) {
+        return find(objectId).orElseThrow(objectId, null, null);
+    }
+
+    // Retrieve a land parcel by object id, as above
+    // Returns the parcel, or ParcelOutcome.NOT_FOUND
+    public ParcelOutcome find(long objectId) {
+        lock.readLock().lock();
+        try {
+            int row = store.find(objectId);
+            if(row >= 0) {
+                return ParcelOutcome.ok(store.get(row));
+            }
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+        return ParcelOutcome.NOT_FOUND;
+    }
+
+    // Create a new land parcel
+    // Returns the created object
+    // Throws IllegalArgumentException exception if parcel already exists
+    public LandParcel create(long objectId,
+                             String name,
+                             ParcelStatus status,
+                             double area,
+                             boolean constraints) {
+        return create(objectId, name, status, area, constraints, null);
+    }
+
+    // Create a new land parcel, with a geometry (if not null) from which its area is taken
+    private LandParcel create(long objectId,
+                              String name,
+                              ParcelStatus status,
+                              double area,
+                              boolean constraints,
+                              ParcelGeometry geometry) {
+        LandParcel landParcel = new LandParcel(objectId, name, status, area, constraints, LandParcel.firstVersion());
+        landParcel.setGeometry(geometry);
+
+        ReentrantLock parcelLock = locks.of(objectId);
+        parcelLock.lock();
+        try {
+            long position;
+            lock.writeLock().lock();
+            try {
+                if(store.find(objectId) >= 0) {
+                    throw new IllegalArgumentException(String.format("Land Parcel already exists with objectId=%d - ignoring create", objectId));
+                }
+                store.insert(landParcel);
+                position = logPut(landParcel);
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+
+            durable(position);
+            changed(null, landParcel);
+            return landParcel;
+        }
+        finally {
+            parcelLock.unlock();
+        }
+    }
+
+    // Update an existing land parcel
+    // Only modifies non-null values
+    // If version is not null, only updates the parcel if it is still at that version
+    // Returns the updated object
+    // Throws NoSuchElement exception if parcel doesn't exist
+    // Throws OptimisticLockingFailureException if parcel is at a different version
+    public LandParcel update(long objectId,
+                             String name,
+                             ParcelStatus status,
+                             Double area,
+                             Boolean constraints,
+                             Long version) {
+        return tryUpdate(objectId, name, status, area, constraints, version).orElseThrow(objectId, version, "update");
+    }
+
+    // Update an existing land parcel, as above
+    // Returns the updated object, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    public ParcelOutcome tryUpdate(long objectId,
+                                   String name,
+                                   ParcelStatus status,
+                                   Double area,
+                                   Boolean constraints,
+                                   Long version) {
+        return modify(objectId, name, status, area, constraints, null, version);
+    }
+
+    // Partially update an existing land parcel
+    // In memory, there's no difference between this and update
+    public LandParcel patch(long objectId,
+                            String name,
+                            ParcelStatus status,
+                            Double area,
+                            Boolean constraints,
+                            Long version) {
+        return tryPatch(objectId, name, status, area, constraints, version).orElseThrow(objectId, version, "patch");
+    }
+
+    // Partially update an existing land parcel, as above
+    public ParcelOutcome tryPatch(long objectId,
+                                  String name,
+                                  ParcelStatus status,
+                                  Double area,
+                                  Boolean constraints,
+                                  Long version) {
+        return modify(objectId, name, status, area, constraints, null, version);
+    }
+
+    // Write the non-null values to an existing land parcel
+    // Returns the updated object, or why it couldn't be updated
+    private ParcelOutcome modify(long objectId,
+                                 String name,
+                                 ParcelStatus status,
+                                 Double area,
+                                 Boolean constraints,
+                                 ParcelGeometry geometry,
+                                 Long version) {
+        // (for this ParcelStatus.NO_CHANGE is treated as null)
+        if(status == ParcelStatus.NO_CHANGE) {
+            status = null;
+        }
+
+        ReentrantLock parcelLock = locks.of(objectId);
+        parcelLock.lock();
+        try {
+            LandParcel before;
+            LandParcel after;
+            long position;
+            lock.writeLock().lock();
+            try {
+                int row = store.find(objectId);
+                ParcelOutcome failure = writeFailure(row, version);
+                if(failure != null) {
+                    return failure;
+                }
+                before = store.get(row);
+                if(name == null && status == null && area == null && constraints == null && geometry == null) {
+                    // Nothing to change
+                    return ParcelOutcome.ok(before);
+                }
+
+                // (a parcel with a geometry keeps the geometry's area)
+                after = new LandParcel(objectId,
+                        name != null ? name : before.getName(),
+                        status != null ? status : before.getStatus(),
+                        area != null ? area : before.getArea(),
+                        constraints != null ? constraints : before.getConstraints(),
+                        before.getVersion() + 1);
+                after.setGeometry(geometry != null ? geometry : before.getGeometry());
+                store.write(row, after);
+                position = logPut(after);
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+
+            durable(position);
+            changed(before, after);
+            return ParcelOutcome.ok(after);
+        }
+        finally {
+            parcelLock.unlock();
+        }
+    }
+
+    // Replace (or, if null, remove) the geometry of an existing land parcel
+    // The area becomes the geometry's area (removing the geometry leaves the area as it was)
+    // If version is not null, only updates the parcel if it is still at that version
+    // Returns the updated object
+    // Throws NoSuchElement exception if parcel doesn't exist
+    // Throws OptimisticLockingFailureException if parcel is at a different version
+    public LandParcel updateGeometry(long objectId, ParcelGeometry geometry, Long version) {
+        ReentrantLock parcelLock = locks.of(objectId);
+        parcelLock.lock();
+        try {
+            LandParcel before;
+            LandParcel after;
+            long position;
+            lock.writeLock().lock();
+            try {
+                int row = store.find(objectId);
+                ParcelOutcome failure = writeFailure(row, version);
+                if(failure != null) {
+                    // (the failure throws)
+                    failure.orElseThrow(objectId, version, "geometry update");
+                }
+                before = store.get(row);
+                after = new LandParcel(objectId, before.getName(), before.getStatus(), before.getArea(),
+                        before.getConstraints(), before.getVersion() + 1);
+                after.setGeometry(geometry);
+                store.write(row, after);
+                position = logPut(after);
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+
+            durable(position);
+            changed(before, after);
+            return after;
+        }
+        finally {
+            parcelLock.unlock();
+        }
+    }
+
+    // Delete a land parcel by object id
+    // If version is not null, only deletes the parcel if it is still at that version
+    // Throws NoSuchElement exception if parcel doesn't exist
+    // Throws OptimisticLockingFailureException if parcel is at a different version
+    public void delete(long objectId, Long version) {
+        tryDelete(objectId, version).orElseThrow(objectId, version, "delete");
+    }
+
+    // Delete a land parcel by object id, as above
+    // Returns ParcelOutcome.DELETED, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    public ParcelOutcome tryDelete(long objectId, Long version) {
+        ReentrantLock parcelLock = locks.of(objectId);
+        parcelLock.lock();
+        try {
+            LandParcel before;
+            long position;
+            lock.writeLock().lock();
+            try {
+                int row = store.find(objectId);
+                ParcelOutcome failure = writeFailure(row, version);
+                if(failure != null) {
+                    return failure;
+                }
+                before = store.get(row);
+                store.remove(row);
+                position = journal != null ? journal.delete(objectId) : 0;
+            }
+            finally {
+                lock.writeLock().unlock();
+            }
+
+            durable(position);
+            changed(before, null);
+            return ParcelOutcome.DELETED;
+        }
+        finally {
+            parcelLock.unlock();
+        }
+    }
+
+    // Apply a batch of creates, updates and deletes, in order
+    // Each operation is applied as the equivalent single-item operation would be
+    // (there's no database round trip to save by grouping them)
+    // Returns one result per operation, in the same order
+    public List<BatchResult> batch(List<BatchOperation> operations) {
+        List<BatchResult> results = new ArrayList<>(operations.size());
+        for(int index = 0; index < operations.size(); index++) {
+            results.add(apply(index, operations.get(index)));
+        }
+        return results;
+    }
+
+    // Apply a single batch operation
+    private BatchResult apply(int index, BatchOperation operation) {
+        Long objectId = operation.objectId();
+        if(operation.op() == null || objectId == null) {
+            return new BatchResult(index, operation.op(), objectId, HttpStatus.BAD_REQUEST.value(), null);
+        }
+
+        try {
+            LandParcel landParcel = switch (operation.op()) {
+                case CREATE -> {
+                    // All values are required (except the area, if there's a geometry)
+                    if(operation.name() == null || operation.status() == null
+                            || (operation.area() == null && operation.geometry() == null) || operation.constraints() == null) {
+                        throw new IllegalArgumentException("Missing values - ignoring create");
+                    }
+                    yield create(objectId, operation.name(), operation.status(), operation.area() != null ? operation.area() : 0,
+                            operation.constraints(), operation.geometry());
+                }
+                case UPDATE -> modify(objectId, operation.name(), operation.status(), operation.area(), operation.constraints(),
+                        operation.geometry(), null).orElseThrow(objectId, null, "update");
+                case DELETE -> {
+                    delete(objectId);
+                    yield null;
+                }
+            };
+            return new BatchResult(index, operation.op(), objectId, HttpStatus.OK.value(), landParcel);
+        }
+        catch (NoSuchElementException e) {
+            return new BatchResult(index, operation.op(), objectId, HttpStatus.NOT_FOUND.value(), null);
+        }
+        catch (IllegalArgumentException e) {
+            return new BatchResult(index, operation.op(), objectId, HttpStatus.BAD_REQUEST.value(), null);
+        }
+    }
+
+    // Up to 'limit' parcels matching the filter (or all, if it's null) with an objectId greater than 'after',
+    // ordered by object id
+    // Scans the rows, keeping the lowest 'limit' object ids seen, then copies out just those parcels
+    private List<LandParcel> select(LandParcelFilter filter, Long after, int limit) {
+        lock.readLock().lock();
+        try {
+            IntPredicate matches = filter != null ? store.matcher(filter) : row -> true;
+            long lowest = after != null ? after : Long.MIN_VALUE;
+
+            // Max-heap of the lowest object ids so far (as row numbers), so the highest can be replaced
+            int capacity = Math.min(limit, store.size());
+            int[] heap = new int[capacity];
+            int count = 0;
+            for(int row = 0; row < store.size(); row++) {
+                long objectId = store.objectId(row);
+                if((after != null && objectId <= lowest) || !matches.test(row)) {
+                    continue;
+                }
+                if(count < capacity) {
+                    heap[count] = row;
+                    siftUp(heap, count++);
+                }
+                else if(capacity > 0 && objectId < store.objectId(heap[0])) {
+                    heap[0] = row;
+                    siftDown(heap, count);
+                }
+            }
+
+            // Empty the heap from the highest object id down
+            LandParcel[] page = new LandParcel[count];
+            for(int remaining = count; remaining > 0; remaining--) {
+                page[remaining - 1] = store.get(heap[0]);
+                heap[0] = heap[remaining - 1];
+                siftDown(heap, remaining - 1);
+            }
+            return Arrays.asList(page);
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void siftUp(int[] heap, int child) {
+        while(child > 0) {
+            int parent = (child - 1) / 2;
+            if(store.objectId(heap[parent]) >= store.objectId(heap[child])) {
+                return;
+            }
+            swap(heap, parent, child);
+            child = parent;
+        }
+    }
+
+    private void siftDown(int[] heap, int count) {
+        int parent = 0;
+        while(true) {
+            int largest = parent;
+            for(int child = parent * 2 + 1; child <= parent * 2 + 2 && child < count; child++) {
+                if(store.objectId(heap[child]) > store.objectId(heap[largest])) {
+                    largest = child;
+                }
+            }
+            if(largest == parent) {
+                return;
+            }
+            swap(heap, parent, largest);
+            parent = largest;
+        }
+    }
+
+    private static void swap(int[] heap, int i, int j) {
+        int row = heap[i];
+        heap[i] = heap[j];
+        heap[j] = row;
+    }
+
+    // Why a parcel about to be written (holding the write lock) can't be: ParcelOutcome.NOT_FOUND if there's no such
+    // row (it's negative), ParcelOutcome.VERSION_MISMATCH if it's at a different version, otherwise null
+    private ParcelOutcome writeFailure(int row, Long version) {
+        if(row < 0) {
+            return ParcelOutcome.NOT_FOUND;
+        }
+        if(version != null && store.version(row) != version) {
+            return ParcelOutcome.VERSION_MISMATCH;
+        }
+        return null;
+    }
+
+    // Append a parcel's new state to the journal (if there is one), holding the write lock
+    // Returns the position to wait for
+    private long logPut(LandParcel landParcel) {
+        return journal != null ? journal.put(landParcel) : 0;
+    }
+
+    // Wait for a change to be durable, as the journal's fsync policy requires
+    // Called after releasing the write lock, so other writers can append (and share the same fsync) meanwhile
+    private void durable(long position) {
+        if(journal != null) {
+            journal.sync(position);
+        }
+    }
+
+    // A change to a land parcel has been stored (holding its lock, not the write lock)
+    // 'before' is null for a create, 'after' is null for a delete
+    private void changed(LandParcel before, LandParcel after) {
+        for(LandParcelListener listener: listeners) {
+            listener.parcelChanged(before, after);
+        }
+    }
+}
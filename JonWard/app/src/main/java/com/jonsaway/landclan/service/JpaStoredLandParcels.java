@@ -0,0 +1,59 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelRepository;
+import com.jonsaway.landclan.shard.LandParcelShards;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+// The parcels in the database (each shard in turn, if sharded), read through the JPA repository
+@Component
+public class JpaStoredLandParcels implements StoredLandParcels {
+    @Autowired
+    LandParcelRepository repository;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    // Present if parcels are sharded over several databases
+    @Autowired(required = false)
+    LandParcelShards shards;
+
+    // Streamed in a read-only transaction, each parcel detached once passed on, so the persistence context doesn't
+    // grow with the table
+    @Override
+    public void forEach(boolean withGeometry, Consumer<LandParcel> action) {
+        LandParcelShards.eachShard(shards, () -> transactionTemplate.executeWithoutResult(transactionStatus -> {
+            try (Stream<LandParcel> landParcels = withGeometry ? repository.streamWithGeometry() : repository.streamAll()) {
+                landParcels.forEach(landParcel -> {
+                    action.accept(landParcel);
+                    entityManager.detach(landParcel);
+                });
+            }
+        }));
+    }
+
+    // A single aggregate query per shard
+    @Override
+    public List<LandParcelStatistics.Entry> summarise() {
+        List<LandParcelStatistics.Entry> entries = new ArrayList<>();
+        LandParcelShards.eachShard(shards, () -> {
+            for(LandParcelRepository.Summary summary: repository.summarise()) {
+                entries.add(new LandParcelStatistics.Entry(summary.getStatus(), summary.getConstraints(),
+                        summary.getCount(), summary.getArea()));
+            }
+        });
+        return entries;
+    }
+}
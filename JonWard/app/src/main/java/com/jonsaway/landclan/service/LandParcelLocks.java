@@ -0,0 +1,60 @@
+package com.jonsaway.landclan.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Per-parcel (striped) locks, held by every writer of a parcel from before it's written until the listeners have been
+// told of the change, so each parcel's changes reach the listeners (the change feed, and the indexes) in the order
+// they were stored
+// Shared by the stores and the write-behind view, so a change through one is ordered with a change through another
+// Held while writing, not while reading: a reader never waits for one
+// If sharded, taken only once moves between shards have been held off (see LandParcelShards.write), never before
+@Component
+public class LandParcelLocks {
+    // A power of 2
+    static final int STRIPES = 256;
+
+    private final ReentrantLock[] stripes = new ReentrantLock[STRIPES];
+
+    public LandParcelLocks() {
+        for(int i = 0; i < STRIPES; i++) {
+            stripes[i] = new ReentrantLock();
+        }
+    }
+
+    // The lock for a parcel (shared with the others on its stripe)
+    public ReentrantLock of(long objectId) {
+        return stripes[stripe(objectId)];
+    }
+
+    // Lock every one of these parcels, a stripe at a time in stripe order (so writers locking several at once can't
+    // deadlock)
+    // Returns the locks taken, to pass to unlockAll
+    public List<ReentrantLock> lockAll(Iterable<Long> objectIds) {
+        boolean[] locking = new boolean[STRIPES];
+        for(long objectId: objectIds) {
+            locking[stripe(objectId)] = true;
+        }
+        List<ReentrantLock> locked = new ArrayList<>();
+        for(int i = 0; i < STRIPES; i++) {
+            if(locking[i]) {
+                stripes[i].lock();
+                locked.add(stripes[i]);
+            }
+        }
+        return locked;
+    }
+
+    public static void unlockAll(List<ReentrantLock> locked) {
+        for(int i = locked.size() - 1; i >= 0; i--) {
+            locked.get(i).unlock();
+        }
+    }
+
+    private static int stripe(long objectId) {
+        return Long.hashCode(objectId) & (STRIPES - 1);
+    }
+}
@@ -0,0 +1,142 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelFilter;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+public interface LandParcelService {
+    // Retrieve all land parcels
+    public Iterable<LandParcel> retrieveAll();
+
+    // Retrieve a page of land parcels, ordered by object id
+    // Returns up to 'limit' parcels with an objectId greater than 'after'
+    // (or from the lowest objectId, if 'after' is null)
+    public List<LandParcel> retrievePage(Long after, int limit);
+
+    // Stream all land parcels, ordered by object id, passing each one to the consumer in turn
+    // Memory use does not depend on the number of parcels
+    public void streamAll(Consumer<LandParcel> consumer);
+
+    // Retrieve a page of land parcels matching the filter, ordered by object id
+    // Returns up to 'limit' parcels with an objectId greater than 'after'
+    // (or from the lowest objectId, if 'after' is null)
+    public List<LandParcel> retrieveFiltered(LandParcelFilter filter, Long after, int limit);
+
+    // Retrieve a land parcel by object id
+    // Throws NoSuchElement exception if parcel doesn't exist
+    public LandParcel retrieve(long objectId);
+
+    // Retrieve a land parcel by object id, as above, but without throwing if it doesn't exist
+    // Returns the parcel, or ParcelOutcome.NOT_FOUND
+    public ParcelOutcome find(long objectId);
+
+    // Create a new land parcel
+    // Returns the created object
+    // Throws IllegalArgumentException exception if parcel already exists
+    public LandParcel create(long objectId,
+                             String name,
+                             ParcelStatus status,
+                             double area,
+                             boolean constraints) ;
+
+    // Update an existing land parcel
+    // Only modifies non-null values
+    // (a parcel with a geometry keeps the geometry's area, whatever area is given)
+    // (object id is the key, so not modifiable)
+    // Returns the updated object
+    // Throws NoSuchElement exception if parcel doesn't exist
+    public default LandParcel update(long objectId,
+                                     String name,
+                                     ParcelStatus status,
+                                     Double area,
+                                     Boolean constraints) {
+        return update(objectId, name, status, area, constraints, null);
+    }
+
+    // Update an existing land parcel, as above, but only if it is still at the given version
+    // (a null version matches any version)
+    // Throws OptimisticLockingFailureException if parcel is at a different version
+    public LandParcel update(long objectId,
+                             String name,
+                             ParcelStatus status,
+                             Double area,
+                             Boolean constraints,
+                             Long version);
+
+    // Update an existing land parcel, as above, but without throwing if it doesn't exist or is at a different version
+    // Returns the updated object, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    public ParcelOutcome tryUpdate(long objectId,
+                                   String name,
+                                   ParcelStatus status,
+                                   Double area,
+                                   Boolean constraints,
+                                   Long version);
+
+    // Partially update an existing land parcel
+    // Only the non-null values are written: other attributes are left untouched
+    // (a parcel with a geometry keeps the geometry's area, whatever area is given)
+    // (object id is the key, so not modifiable)
+    // Returns the updated object
+    // Throws NoSuchElement exception if parcel doesn't exist
+    public default LandParcel patch(long objectId,
+                                    String name,
+                                    ParcelStatus status,
+                                    Double area,
+                                    Boolean constraints) {
+        return patch(objectId, name, status, area, constraints, null);
+    }
+
+    // Partially update an existing land parcel, as above, but only if it is still at the given version
+    // (a null version matches any version)
+    // Throws OptimisticLockingFailureException if parcel is at a different version
+    public LandParcel patch(long objectId,
+                            String name,
+                            ParcelStatus status,
+                            Double area,
+                            Boolean constraints,
+                            Long version);
+
+    // Partially update an existing land parcel, as above, but without throwing if it doesn't exist or is at a
+    // different version
+    // Returns the updated object, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    public ParcelOutcome tryPatch(long objectId,
+                                  String name,
+                                  ParcelStatus status,
+                                  Double area,
+                                  Boolean constraints,
+                                  Long version);
+
+    // Replace (or, if null, remove) the geometry of an existing land parcel
+    // The area becomes the geometry's area (removing the geometry leaves the area as it was)
+    // If version is not null, only updates the parcel if it is still at that version
+    // Returns the updated object
+    // Throws NoSuchElement exception if parcel doesn't exist
+    // Throws OptimisticLockingFailureException if parcel is at a different version
+    public LandParcel updateGeometry(long objectId, ParcelGeometry geometry, Long version);
+
+    // Delete a land parcel by object id
+    // Throws IllegalArgumentException exception if parcel doesn't exist
+    public default void delete(long objectId) {
+        delete(objectId, null);
+    }
+
+    // Delete a land parcel by object id, but only if it is still at the given version
+    // (a null version matches any version)
+    // Throws OptimisticLockingFailureException if parcel is at a different version
+    public void delete(long objectId, Long version);
+
+    // Delete a land parcel by object id, as above, but without throwing if it doesn't exist or is at a different version
+    // Returns ParcelOutcome.DELETED, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    public ParcelOutcome tryDelete(long objectId, Long version);
+
+    // Apply a batch of creates, updates and deletes, in order
+    // Each operation succeeds or fails independently, with the same rules as the single-item operations
+    // Returns one result per operation, in the same order
+    public List<BatchResult> batch(List<BatchOperation> operations);
+
+}
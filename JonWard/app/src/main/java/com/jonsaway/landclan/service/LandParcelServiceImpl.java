@@ -0,0 +1,614 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelFilter;
+import com.jonsaway.landclan.jpa.LandParcelRepository;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.shard.LandParcelShards;
+import io.micrometer.core.annotation.Timed;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+// Land parcels stored in the database, through JPA
+// Selected with landclan.store=jpa (the default): see also InMemoryLandParcelService
+// Each public method is timed, as landclan.service (tagged with the method, and the exception thrown, if any)
+// With landclan.write-behind.enabled=true, updates and patches are acknowledged before they're written:
+// see LandParcelWriteBehind
+// With landclan.shards.urls set, parcels are spread over several databases: each operation on a single parcel runs on
+// its shard, and each operation on more than one runs on every shard at once (see LandParcelShards)
+@Service
+@ConditionalOnProperty(name = "landclan.store", havingValue = "jpa", matchIfMissing = true)
+@Timed(value = "landclan.service", histogram = true)
+public class LandParcelServiceImpl implements LandParcelService {
+    @Autowired
+    LandParcelRepository repository;
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    LandParcelCache cache;
+
+    // Kept up to date with every change (e.g. LandParcelStatistics)
+    @Autowired(required = false)
+    List<LandParcelListener> listeners = List.of();
+
+    // Each write holds its parcel's lock until the listeners have been told of it, so they're told of each parcel's
+    // changes in the order they were stored (shared with the write-behind view)
+    @Autowired
+    LandParcelLocks locks = new LandParcelLocks();
+
+    // Present if updates are written behind
+    @Autowired(required = false)
+    LandParcelWriteBehind writeBehind;
+
+    // Present if parcels are sharded over several databases
+    @Autowired(required = false)
+    LandParcelShards shards;
+
+    // Number of batch operations applied per transaction
+    @Value("${landclan.batch.chunk-size:500}")
+    int batchChunkSize = 500;
+
+    // Retrieve all land parcels
+    // (if sharded, every shard at once, merged in object id order)
+    public Iterable<LandParcel> retrieveAll()
+    {
+        flushWrites();
+        if(shards != null) {
+            return LandParcelShards.merge(shards.onEach(shard -> repository.findAllByOrderByObjectIdAsc()), Integer.MAX_VALUE);
+        }
+        return repository.findAll();
+    }
+
+    // Retrieve a page of land parcels, ordered by object id
+    // Returns up to 'limit' parcels with an objectId greater than 'after'
+    // (or from the lowest objectId, if 'after' is null)
+    // If sharded, a page is read from every shard at once: the first 'limit' of them, merged, are the page
+    public List<LandParcel> retrievePage(Long after, int limit) {
+        flushWrites();
+        if(shards != null) {
+            return LandParcelShards.merge(shards.onEach(shard -> page(after, limit)), limit);
+        }
+        return page(after, limit);
+    }
+
+    private List<LandParcel> page(Long after, int limit) {
+        if(after == null) {
+            return repository.findAllByOrderByObjectIdAsc(Limit.of(limit));
+        }
+        return repository.findByObjectIdGreaterThanOrderByObjectIdAsc(after, Limit.of(limit));
+    }
+
+    // Stream all land parcels, ordered by object id, passing each one to the consumer in turn
+    // Each parcel is detached once consumed, so the persistence context doesn't grow with the table
+    // (any updates waiting to be written are flushed in a transaction of their own, first)
+    // If sharded, every shard is streamed at once, and merged in object id order
+    public void streamAll(Consumer<LandParcel> consumer) {
+        flushWrites();
+        if(shards != null) {
+            shards.streamOrdered(this::stream, consumer);
+        }
+        else {
+            stream(consumer);
+        }
+    }
+
+    // Stream the parcels (of the current shard) in a read-only transaction
+    private void stream(Consumer<LandParcel> consumer) {
+        TransactionTemplate readOnly = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnly.setReadOnly(true);
+        readOnly.executeWithoutResult(transactionStatus -> {
+            try (Stream<LandParcel> parcels = repository.streamAll()) {
+                parcels.forEach(landParcel -> {
+                    consumer.accept(landParcel);
+                    entityManager.detach(landParcel);
+                });
+            }
+        });
+    }
+
+    // Retrieve a page of land parcels matching the filter, ordered by object id
+    // Returns up to 'limit' parcels with an objectId greater than 'after'
+    // (or from the lowest objectId, if 'after' is null)
+    // (if sharded, from every shard at once, like retrievePage)
+    public List<LandParcel> retrieveFiltered(LandParcelFilter filter, Long after, int limit) {
+        flushWrites();
+        if(shards != null) {
+            return LandParcelShards.merge(shards.onEach(shard -> repository.filter(filter, after, limit)), limit);
+        }
+        return repository.filter(filter, after, limit);
+    }
+
+    // Retrieve a land parcel by object id
+    // Served from the cache where possible (including for parcels that don't exist)
+    // or, for a parcel with updates waiting to be written behind, from those
+    // Throws NoSuchElement exception if parcel doesn't exist
+    public LandParcel retrieve(long objectId) {
+        return find(objectId).orElseThrow(objectId, null, null);
+    }
+
+    // Retrieve a land parcel by object id, as above
+    // Returns the parcel, or ParcelOutcome.NOT_FOUND
+    public ParcelOutcome find(long objectId) {
+        LandParcel waiting = writeBehind != null ? writeBehind.get(objectId) : null;
+        if(waiting != null) {
+            return ParcelOutcome.ok(waiting);
+        }
+
+        // Retrieve the parcel with this id
+        LandParcel landParcel = cache.get(objectId, id -> read(id, () -> repository.findByObjectId(id)));
+
+        if(landParcel == null)
+        {
+            // Parcel doesn't exist
+            return ParcelOutcome.NOT_FOUND;
+        }
+
+        // Return the object to the caller
+        return ParcelOutcome.ok(landParcel);
+    }
+
+    // Create a new land parcel
+    // Returns the created object
+    // Throws IllegalArgumentException exception if parcel already exists
+    public LandParcel create(long objectId,
+                             String name,
+                             ParcelStatus status,
+                             double area,
+                             boolean constraints) {
+        LandParcel landParcel = new LandParcel(objectId, name, status, area, constraints, LandParcel.firstVersion());
+        try {
+            write(objectId, () -> {
+                // Insert the new object in a single statement
+                // (the primary key stops us creating a parcel with the same id as an existing one)
+                repository.insert(objectId, name, status, area, constraints, landParcel.getVersion());
+                changed(null, landParcel);
+                return landParcel;
+            });
+        }
+        catch (DataIntegrityViolationException e) {
+            throw new IllegalArgumentException(String.format("Land Parcel already exists with objectId=%d - ignoring create", objectId));
+        }
+
+        // Return the object to the caller
+        return landParcel;
+    }
+
+    // Update an existing land parcel
+    // Only modifies non-null values
+    // (object id is the key, so not modifiable)
+    // If version is not null, only updates the parcel if it is still at that version
+    // Returns the updated object
+    // Throws NoSuchElement exception if parcel doesn't exist
+    // Throws OptimisticLockingFailureException if parcel is at a different version
+    public LandParcel update(long objectId,
+                             String name,
+                             ParcelStatus status,
+                             Double area,
+                             Boolean constraints,
+                             Long version) {
+        return tryUpdate(objectId, name, status, area, constraints, version).orElseThrow(objectId, version, "update");
+    }
+
+    // Update an existing land parcel, as above
+    // Returns the updated object, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    public ParcelOutcome tryUpdate(long objectId,
+                                   String name,
+                                   ParcelStatus status,
+                                   Double area,
+                                   Boolean constraints,
+                                   Long version) {
+        // Only perform modifications to non-null attributes
+        // (which is exactly what a patch does)
+        return modify(objectId, name, status, area, constraints, version, "update");
+    }
+
+    // Partially update an existing land parcel
+    // Only the non-null values are written (in a single statement, without reading the parcel first),
+    // so concurrent changes to the other attributes aren't lost
+    // (object id is the key, so not modifiable)
+    // If version is not null, only updates the parcel if it is still at that version
+    // Returns the updated object
+    // Throws NoSuchElement exception if parcel doesn't exist
+    // Throws OptimisticLockingFailureException if parcel is at a different version
+    public LandParcel patch(long objectId,
+                            String name,
+                            ParcelStatus status,
+                            Double area,
+                            Boolean constraints,
+                            Long version) {
+        return tryPatch(objectId, name, status, area, constraints, version).orElseThrow(objectId, version, "patch");
+    }
+
+    // Partially update an existing land parcel, as above
+    // Returns the updated object, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    public ParcelOutcome tryPatch(long objectId,
+                                  String name,
+                                  ParcelStatus status,
+                                  Double area,
+                                  Boolean constraints,
+                                  Long version) {
+        return modify(objectId, name, status, area, constraints, version, "patch");
+    }
+
+    // Write the non-null values to an existing land parcel, in a single statement
+    // Returns the updated object, or why it couldn't be updated
+    private ParcelOutcome modify(long objectId,
+                              String name,
+                              ParcelStatus status,
+                              Double area,
+                              Boolean constraints,
+                              Long version,
+                              String operation) {
+        // (for this ParcelStatus.NO_CHANGE is treated as null)
+        if(status == ParcelStatus.NO_CHANGE) {
+            status = null;
+        }
+
+        if(writeBehind != null) {
+            return writeBehind.update(objectId, name, status, area, constraints, version, operation);
+        }
+
+        ParcelStatus newStatus = status;
+        ParcelOutcome outcome = write(objectId, () -> {
+            LandParcel before = repository.patch(objectId, name, newStatus, area, constraints, version);
+            if(before == null) {
+                return null;
+            }
+
+            if(name == null && newStatus == null && area == null && constraints == null) {
+                // Nothing to change
+                return ParcelOutcome.ok(before);
+            }
+
+            // The statement returns the previous state: apply the same changes to it to get the new state
+            // (a parcel with a geometry keeps the geometry's area)
+            LandParcel after = new LandParcel(objectId,
+                    name != null ? name : before.getName(),
+                    newStatus != null ? newStatus : before.getStatus(),
+                    area != null ? area : before.getArea(),
+                    constraints != null ? constraints : before.getConstraints(),
+                    before.getVersion() + 1);
+            after.setGeometry(before.getGeometry());
+
+            changed(before, after);
+            return ParcelOutcome.ok(after);
+        });
+        if(outcome == null)
+        {
+            // Parcel doesn't exist (or has moved on)
+            return writeFailure(objectId, version);
+        }
+
+        // Return the modified object to the caller
+        return outcome;
+    }
+
+    // Replace (or, if null, remove) the geometry of an existing land parcel, in a single statement
+    // The area becomes the geometry's area (removing the geometry leaves the area as it was)
+    // If version is not null, only updates the parcel if it is still at that version
+    // Returns the updated object
+    // Throws NoSuchElement exception if parcel doesn't exist
+    // Throws OptimisticLockingFailureException if parcel is at a different version
+    public LandParcel updateGeometry(long objectId, ParcelGeometry geometry, Long version) {
+        flushWrites();
+        LandParcel after = write(objectId, () -> {
+            LandParcel before = repository.updateGeometry(objectId, geometry, version);
+            if(before == null) {
+                return null;
+            }
+
+            LandParcel updated = new LandParcel(objectId, before.getName(), before.getStatus(), before.getArea(),
+                    before.getConstraints(), before.getVersion() + 1);
+            updated.setGeometry(geometry);
+
+            changed(before, updated);
+            return updated;
+        });
+        if(after == null)
+        {
+            // Parcel doesn't exist (or has moved on): complain (the failure throws)
+            writeFailure(objectId, version).orElseThrow(objectId, version, "geometry update");
+        }
+        return after;
+    }
+
+    // Delete a land parcel by object id
+    // If version is not null, only deletes the parcel if it is still at that version
+    // Throws NoSuchElement exception if parcel doesn't exist
+    // Throws OptimisticLockingFailureException if parcel is at a different version
+    public void delete(long objectId, Long version) {
+        tryDelete(objectId, version).orElseThrow(objectId, version, "delete");
+    }
+
+    // Delete a land parcel by object id, as above
+    // Returns ParcelOutcome.DELETED, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    public ParcelOutcome tryDelete(long objectId, Long version) {
+        flushWrites();
+
+        boolean deleted = write(objectId, () -> {
+            // Delete the object in a single statement
+            LandParcel before = repository.deleteByObjectId(objectId, version);
+            if(before == null) {
+                return false;
+            }
+
+            changed(before, null);
+            return true;
+        });
+        if(!deleted)
+        {
+            // Parcel doesn't exist (or has moved on)
+            return writeFailure(objectId, version);
+        }
+        return ParcelOutcome.DELETED;
+    }
+
+    // Write any updates waiting to be written behind, before an operation that reads (or writes) the database directly
+    private void flushWrites() {
+        if(writeBehind != null) {
+            writeBehind.flush();
+        }
+    }
+
+    // Run a read of a single parcel (on its shard, if sharded)
+    private <T> T read(long objectId, Supplier<T> action) {
+        return shards != null ? shards.read(objectId, action) : action.get();
+    }
+
+    // Run a write to a single parcel (on its shard, if sharded), holding the parcel's lock: the action tells the
+    // listeners of the change before it lets go, so they're told of it before any later change to the parcel
+    // If sharded, moves are held off before the parcel is locked: a sharded batch holds them off while its chunks lock
+    // their parcels, so taking the two the other way round could deadlock with it (and a move waiting on both)
+    private <T> T write(long objectId, Supplier<T> action) {
+        Supplier<T> locked = () -> {
+            ReentrantLock parcelLock = locks.of(objectId);
+            parcelLock.lock();
+            try {
+                return action.get();
+            }
+            finally {
+                parcelLock.unlock();
+            }
+        };
+        return shards != null ? shards.write(objectId, locked) : locked.get();
+    }
+
+    // A change to a land parcel has been stored
+    // 'before' is null for a create, 'after' is null for a delete
+    private void changed(LandParcel before, LandParcel after) {
+        // Forget the cached copy (including any cached miss)
+        cache.invalidate(before != null ? before.getObjectId() : after.getObjectId());
+
+        for(LandParcelListener listener: listeners) {
+            listener.parcelChanged(before, after);
+        }
+    }
+
+    // A write changed nothing: work out why
+    // Only a conditional (versioned) write needs the extra query, to tell a missing parcel from a changed one
+    private ParcelOutcome writeFailure(long objectId, Long version) {
+        if(version != null && read(objectId, () -> repository.existsById(objectId))) {
+            return ParcelOutcome.VERSION_MISMATCH;
+        }
+        return ParcelOutcome.NOT_FOUND;
+    }
+
+    // Apply a batch of creates, updates and deletes, in order
+    // Operations are applied in chunks, one transaction per chunk:
+    // - existence is checked for the whole chunk with a single query
+    // - writes are flushed together, so Hibernate can group them into JDBC batches
+    // Returns one result per operation, in the same order
+    // If sharded, each shard's operations (still in order) are applied on that shard, every shard at once
+    public List<BatchResult> batch(List<BatchOperation> operations) {
+        flushWrites();
+        if(shards == null) {
+            return applyBatch(operations);
+        }
+
+        return shards.write(() -> {
+            // The index of each shard's operations (operations without an id fail wherever they're applied)
+            List<List<Integer>> indexes = new ArrayList<>(shards.count());
+            for(int shard = 0; shard < shards.count(); shard++) {
+                indexes.add(new ArrayList<>());
+            }
+            for(int index = 0; index < operations.size(); index++) {
+                Long objectId = operations.get(index).objectId();
+                indexes.get(objectId != null ? shards.shardOf(objectId) : 0).add(index);
+            }
+
+            List<List<BatchResult>> shardResults = shards.onEach(shard ->
+                    applyBatch(indexes.get(shard).stream().map(operations::get).toList()));
+
+            // Back in the order of the operations
+            BatchResult[] results = new BatchResult[operations.size()];
+            for(int shard = 0; shard < shardResults.size(); shard++) {
+                for(int i = 0; i < shardResults.get(shard).size(); i++) {
+                    BatchResult result = shardResults.get(shard).get(i);
+                    int index = indexes.get(shard).get(i);
+                    results[index] = new BatchResult(index, result.op(), result.objectId(), result.status(), result.landParcel());
+                }
+            }
+            return Arrays.asList(results);
+        });
+    }
+
+    // Apply a batch of operations (on the current shard, if sharded), a chunk at a time
+    private List<BatchResult> applyBatch(List<BatchOperation> operations) {
+        List<BatchResult> results = new ArrayList<>(operations.size());
+
+        for(int start = 0; start < operations.size(); start += batchChunkSize) {
+            int end = Math.min(start + batchChunkSize, operations.size());
+            try {
+                results.addAll(applyChunk(operations, start, end));
+            }
+            catch (DataAccessException | PersistenceException e) {
+                // Something changed underneath us (e.g. a concurrent create of the same id)
+                // Fall back to applying this chunk one operation at a time, so only the offending operations fail
+                for(int index = start; index < end; index++) {
+                    try {
+                        results.addAll(applyChunk(operations, index, index + 1));
+                    }
+                    catch (DataAccessException | PersistenceException ex) {
+                        BatchOperation operation = operations.get(index);
+                        results.add(new BatchResult(index, operation.op(), operation.objectId(), HttpStatus.BAD_REQUEST.value(), null));
+                    }
+                }
+            }
+        }
+
+        return results;
+    }
+
+    // Apply operations[start..end) in a single transaction
+    private List<BatchResult> applyChunk(List<BatchOperation> operations, int start, int end) {
+        // Every parcel in the chunk stays locked until the listeners have been told of its changes
+        // (if sharded, inside the batch's hold on moves: the same order as a single write)
+        List<Long> chunkIds = new ArrayList<>(end - start);
+        for(BatchOperation operation: operations.subList(start, end)) {
+            if(operation.objectId() != null) {
+                chunkIds.add(operation.objectId());
+            }
+        }
+        List<ReentrantLock> parcelLocks = locks.lockAll(chunkIds);
+        try {
+            // The parcels as loaded (i.e. before this chunk), and as they are now
+            Map<Long, LandParcel> initial = new HashMap<>();
+            Map<Long, LandParcel> existing = new HashMap<>();
+
+            List<BatchResult> results = transactionTemplate.execute(transactionStatus -> {
+                List<BatchOperation> chunk = operations.subList(start, end);
+
+                // Load every parcel referred to by this chunk in one query
+                Set<Long> ids = new HashSet<>();
+                for(BatchOperation operation: chunk) {
+                    if(operation.objectId() != null) {
+                        ids.add(operation.objectId());
+                    }
+                }
+                for(LandParcel landParcel: repository.findAllById(ids)) {
+                    initial.put(landParcel.getObjectId(), landParcel.copy());
+                    existing.put(landParcel.getObjectId(), landParcel);
+                }
+
+                // Parcels deleted earlier in this chunk (which must be flushed before their id is reused)
+                Set<Long> deleted = new HashSet<>();
+
+                List<BatchResult> chunkResults = new ArrayList<>(chunk.size());
+                for(int index = start; index < end; index++) {
+                    chunkResults.add(apply(index, operations.get(index), existing, deleted));
+                }
+
+                // Hibernate flushes the chunk on commit
+                return chunkResults;
+            });
+
+            // The chunk has been committed: report the net change to each parcel it wrote
+            Set<Long> changedIds = new LinkedHashSet<>();
+            for(BatchResult result: results) {
+                if(result.status() == HttpStatus.OK.value()) {
+                    changedIds.add(result.objectId());
+                }
+            }
+            for(Long objectId: changedIds) {
+                LandParcel before = initial.get(objectId);
+                LandParcel after = existing.get(objectId);
+                if(before != null || after != null) {
+                    changed(before, after);
+                }
+            }
+
+            return results;
+        }
+        finally {
+            LandParcelLocks.unlockAll(parcelLocks);
+        }
+    }
+
+    // Apply a single batch operation to the parcels loaded for its chunk
+    private BatchResult apply(int index, BatchOperation operation, Map<Long, LandParcel> existing, Set<Long> deleted) {
+        Long objectId = operation.objectId();
+        if(operation.op() == null || objectId == null) {
+            return new BatchResult(index, operation.op(), objectId, HttpStatus.BAD_REQUEST.value(), null);
+        }
+
+        LandParcel landParcel = existing.get(objectId);
+        switch (operation.op()) {
+            case CREATE -> {
+                // All values are required (except the area, if there's a geometry), and the parcel must not already exist
+                if(landParcel != null || operation.name() == null || operation.status() == null
+                        || (operation.area() == null && operation.geometry() == null) || operation.constraints() == null) {
+                    return new BatchResult(index, operation.op(), objectId, HttpStatus.BAD_REQUEST.value(), null);
+                }
+
+                // Inserts are flushed before deletes, so make sure an earlier delete of this id has hit the database
+                if(deleted.remove(objectId)) {
+                    entityManager.flush();
+                }
+
+                // We know the id is new, so persist (INSERT) rather than save (SELECT + INSERT)
+                landParcel = new LandParcel(objectId, operation.name(), operation.status(),
+                        operation.area() != null ? operation.area() : 0, operation.constraints(), LandParcel.firstVersion());
+                landParcel.setGeometry(operation.geometry());
+                entityManager.persist(landParcel);
+                existing.put(objectId, landParcel);
+            }
+            case UPDATE -> {
+                if(landParcel == null) {
+                    return new BatchResult(index, operation.op(), objectId, HttpStatus.NOT_FOUND.value(), null);
+                }
+
+                // Only perform modifications to non-null attributes
+                // The parcel is managed, so the changes are written when the chunk is flushed
+                if(operation.name() != null) {
+                    landParcel.setName(operation.name());
+                }
+                if(operation.status() != null && operation.status() != ParcelStatus.NO_CHANGE) {
+                    landParcel.setStatus(operation.status());
+                }
+                if(operation.area() != null) {
+                    landParcel.setArea(operation.area());
+                }
+                if(operation.constraints() != null) {
+                    landParcel.setConstraints(operation.constraints());
+                }
+                if(operation.geometry() != null) {
+                    landParcel.setGeometry(operation.geometry());
+                }
+            }
+            case DELETE -> {
+                if(landParcel == null) {
+                    return new BatchResult(index, operation.op(), objectId, HttpStatus.NOT_FOUND.value(), null);
+                }
+
+                entityManager.remove(landParcel);
+                existing.remove(objectId);
+                deleted.add(objectId);
+                return new BatchResult(index, operation.op(), objectId, HttpStatus.OK.value(), null);
+            }
+        }
+
+        return new BatchResult(index, operation.op(), objectId, HttpStatus.OK.value(), landParcel);
+    }
+}
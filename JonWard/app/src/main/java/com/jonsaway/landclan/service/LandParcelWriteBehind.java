@@ -0,0 +1,368 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelRepository;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.shard.LandParcelShards;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Write-behind for updates and patches (landclan.write-behind.enabled=true, with landclan.store=jpa)
+// An update is applied to an in-memory view of the parcel and acknowledged straight away; the database is written
+// later, by a background flush, once landclan.write-behind.batch-size parcels are waiting or every
+// landclan.write-behind.flush-interval. However many updates a parcel has had since the last flush, it's written
+// once (with the version it's reached), and each flush is a single JDBC batch
+// - reads of a parcel are answered from the view (see LandParcelServiceImpl.retrieve); other operations flush first
+// - listeners are told of each change as it's acknowledged, so the indexes and the change feed see it at once
+// - at most landclan.write-behind.capacity parcels wait to be written: an update to another parcel waits for a flush
+//   to make room, for up to landclan.write-behind.max-wait, then fails with RejectedExecutionException
+// - everything waiting is written on a graceful shutdown (updates acknowledged but not yet flushed are lost if the
+//   process dies)
+// The view is only correct while this is the only writer of the parcels: a parcel changed in the database behind its
+// back is a conflict when flushed, and its waiting updates are dropped (counted as landclan.write.behind.conflicts)
+// Also counted: landclan.write.behind.updates (acknowledged) and landclan.write.behind.writes (rows written);
+// landclan.write.behind.pending is the number of parcels waiting
+// If sharded, each flush writes one batch per shard (with moves between shards held off)
+@Component
+@ConditionalOnProperty(name = "landclan.write-behind.enabled", havingValue = "true")
+public class LandParcelWriteBehind {
+    private static final Logger log = LoggerFactory.getLogger(LandParcelWriteBehind.class);
+
+    @Autowired
+    LandParcelRepository repository;
+
+    @Autowired
+    LandParcelCache cache;
+
+    @Autowired
+    PlatformTransactionManager transactionManager;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    @Autowired(required = false)
+    List<LandParcelListener> listeners = List.of();
+
+    // Held to update (or flush) a parcel, and until the listeners have been told of it: shared with the store, so
+    // they're told of a parcel's changes in order, whichever of the two made them
+    @Autowired
+    LandParcelLocks locks = new LandParcelLocks();
+
+    // Present if parcels are sharded over several databases
+    @Autowired(required = false)
+    LandParcelShards shards;
+
+    @Value("${landclan.write-behind.capacity:10000}")
+    int capacity = 10_000;
+
+    @Value("${landclan.write-behind.batch-size:500}")
+    int batchSize = 500;
+
+    @Value("${landclan.write-behind.flush-interval:PT0.1S}")
+    Duration flushInterval = Duration.ofMillis(100);
+
+    @Value("${landclan.write-behind.max-wait:PT5S}")
+    Duration maxWait = Duration.ofSeconds(5);
+
+    // A parcel waiting to be written: as last stored, and as it is now
+    private record Pending(LandParcel stored, LandParcel current) {
+    }
+
+    private final ConcurrentHashMap<Long, Pending> pending = new ConcurrentHashMap<>();
+    // One flush at a time (a parcel written twice at once would conflict with itself)
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private Semaphore room;
+    private TransactionTemplate transactionTemplate;
+    private ScheduledExecutorService flusher;
+    private Counter updates;
+    private Counter writes;
+    private Counter conflicts;
+
+    @PostConstruct
+    public void init() {
+        room = new Semaphore(capacity);
+
+        // Flushes run in their own transaction, whatever the caller is in the middle of
+        // (e.g. before a read-only stream of every parcel)
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        updates = meterRegistry.counter("landclan.write.behind.updates");
+        writes = meterRegistry.counter("landclan.write.behind.writes");
+        conflicts = meterRegistry.counter("landclan.write.behind.conflicts");
+        Gauge.builder("landclan.write.behind.pending", pending, Map::size).register(meterRegistry);
+
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flushQuietly, flushInterval.toNanos(), flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    // Write everything still waiting, once nothing more can be added
+    @PreDestroy
+    public void close() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        flush();
+        if(!pending.isEmpty()) {
+            log.warn("{} land parcel updates were not written", pending.size());
+        }
+    }
+
+    // The parcel, if it has updates waiting to be written (otherwise null: the stored parcel is current)
+    public LandParcel get(long objectId) {
+        Pending entry = pending.get(objectId);
+        return entry == null ? null : entry.current();
+    }
+
+    // Number of parcels waiting to be written
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    // Update the non-null attributes of an existing land parcel (the same for an update or a patch), in the view
+    // If version is not null, only updates the parcel if it is still at that version
+    // Returns the updated object, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    // Throws RejectedExecutionException if there's no room for another parcel, even after waiting for a flush
+    public ParcelOutcome update(long objectId,
+                             String name,
+                             ParcelStatus status,
+                             Double area,
+                             Boolean constraints,
+                             Long version,
+                             String operation) {
+        // (for this ParcelStatus.NO_CHANGE is treated as null)
+        if(status == ParcelStatus.NO_CHANGE) {
+            status = null;
+        }
+
+        // Room for one more waiting parcel, if this one isn't waiting already
+        boolean reserved = false;
+        ReentrantLock stripe = stripe(objectId);
+        try {
+            while(true) {
+                stripe.lock();
+                try {
+                    Pending entry = pending.get(objectId);
+                    if(entry == null && !reserved) {
+                        reserved = room.tryAcquire();
+                    }
+                    if(entry != null || reserved) {
+                        LandParcel before = entry != null ? entry.current() : cache.get(objectId, this::load);
+                        if(before == null) {
+                            return ParcelOutcome.NOT_FOUND;
+                        }
+                        if(version != null && before.getVersion() != version) {
+                            return ParcelOutcome.VERSION_MISMATCH;
+                        }
+                        if(name == null && status == null && area == null && constraints == null) {
+                            // Nothing to change
+                            return ParcelOutcome.ok(before);
+                        }
+
+                        // (a parcel with a geometry keeps the geometry's area)
+                        LandParcel after = new LandParcel(objectId,
+                                name != null ? name : before.getName(),
+                                status != null ? status : before.getStatus(),
+                                area != null && before.getGeometry() == null ? area : before.getArea(),
+                                constraints != null ? constraints : before.getConstraints(),
+                                before.getVersion() + 1);
+                        after.setGeometry(before.getGeometry());
+
+                        pending.put(objectId, new Pending(entry != null ? entry.stored() : before, after));
+                        if(entry == null) {
+                            // (the room is now the new entry's, until it's flushed)
+                            reserved = false;
+                        }
+                        updates.increment();
+                        changed(before, after);
+                        if(pending.size() >= batchSize) {
+                            requestFlush();
+                        }
+                        return ParcelOutcome.ok(after);
+                    }
+                }
+                finally {
+                    stripe.unlock();
+                }
+
+                // Full: wait for a flush to make room
+                requestFlush();
+                if(!room.tryAcquire(maxWait.toNanos(), TimeUnit.NANOSECONDS)) {
+                    throw new RejectedExecutionException(String.format("Too many land parcel updates waiting to be written - ignoring %s of objectId=%d", operation, objectId));
+                }
+                reserved = true;
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted waiting for land parcel updates to be written", e);
+        }
+        finally {
+            if(reserved) {
+                room.release();
+            }
+        }
+    }
+
+    // Write every parcel waiting (as of the call), batchSize at a time
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<Long> objectIds = new ArrayList<>(batchSize);
+            List<Pending> entries = new ArrayList<>(batchSize);
+            for(Map.Entry<Long, Pending> entry: pending.entrySet()) {
+                objectIds.add(entry.getKey());
+                entries.add(entry.getValue());
+                if(entries.size() == batchSize) {
+                    write(objectIds, entries);
+                    objectIds.clear();
+                    entries.clear();
+                }
+            }
+            if(!entries.isEmpty()) {
+                write(objectIds, entries);
+            }
+        }
+        finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Write a batch of waiting parcels, each only if it's still as last stored, then stop waiting on those that
+    // haven't been updated since
+    private void write(List<Long> objectIds, List<Pending> entries) {
+        List<LandParcel> landParcels = new ArrayList<>(entries.size());
+        long[] versions = new long[entries.size()];
+        for(int i = 0; i < entries.size(); i++) {
+            landParcels.add(entries.get(i).current());
+            versions[i] = entries.get(i).stored().getVersion();
+        }
+        boolean[] written = shards == null ? writeAll(landParcels, versions) : shards.write(() -> {
+            // Each shard's parcels, as a batch on that shard
+            boolean[] shardsWritten = new boolean[landParcels.size()];
+            for(int shard = 0; shard < shards.count(); shard++) {
+                List<Integer> indexes = new ArrayList<>();
+                for(int i = 0; i < landParcels.size(); i++) {
+                    if(shards.shardOf(landParcels.get(i).getObjectId()) == shard) {
+                        indexes.add(i);
+                    }
+                }
+                if(!indexes.isEmpty()) {
+                    boolean[] onShard = shards.on(shard, () -> writeAll(indexes.stream().map(landParcels::get).toList(),
+                            indexes.stream().mapToLong(i -> versions[i]).toArray()));
+                    for(int i = 0; i < indexes.size(); i++) {
+                        shardsWritten[indexes.get(i)] = onShard[i];
+                    }
+                }
+            }
+            return shardsWritten;
+        });
+
+        for(int i = 0; i < entries.size(); i++) {
+            long objectId = objectIds.get(i);
+            Pending entry = entries.get(i);
+            // (before the entry goes, so a read that misses it loads what's just been written)
+            cache.invalidate(objectId);
+
+            ReentrantLock stripe = stripe(objectId);
+            stripe.lock();
+            try {
+                Pending current = pending.get(objectId);
+                if(!written[i]) {
+                    // Changed (or deleted) behind our back: what's stored wins
+                    pending.remove(objectId);
+                    room.release();
+                    conflicts.increment();
+                    LandParcel stored = load(objectId);
+                    log.warn("Land Parcel with objectId={} was changed by another writer: {} waiting update(s) dropped", objectId,
+                            current.current().getVersion() - current.stored().getVersion());
+                    changed(current.current(), stored);
+                }
+                else if(current == entry) {
+                    pending.remove(objectId);
+                    room.release();
+                }
+                else {
+                    // Updated again while being written: still waiting, from what's just been stored
+                    pending.put(objectId, new Pending(entry.current(), current.current()));
+                }
+            }
+            finally {
+                stripe.unlock();
+            }
+        }
+        writes.increment(entries.size());
+    }
+
+    private boolean[] writeAll(List<LandParcel> landParcels, long[] versions) {
+        return transactionTemplate.execute(transactionStatus -> repository.writeAll(landParcels, versions));
+    }
+
+    // The parcel as stored (on its shard, if sharded)
+    private LandParcel load(long objectId) {
+        return shards == null ? repository.findByObjectId(objectId) : shards.read(objectId, () -> repository.findByObjectId(objectId));
+    }
+
+    // Flush on the background thread (unless a flush has already been asked for)
+    private void requestFlush() {
+        if(flushRequested.compareAndSet(false, true)) {
+            try {
+                flusher.execute(this::flushQuietly);
+            }
+            catch (RejectedExecutionException e) {
+                // Shutting down: close() flushes
+                flushRequested.set(false);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        flushRequested.set(false);
+        try {
+            flush();
+        }
+        catch (RuntimeException e) {
+            // The updates are still waiting: try again next time
+            log.error("Failed to write {} waiting land parcel updates", pending.size(), e);
+        }
+    }
+
+    private void changed(LandParcel before, LandParcel after) {
+        for(LandParcelListener listener: listeners) {
+            listener.parcelChanged(before, after);
+        }
+    }
+
+    private ReentrantLock stripe(long objectId) {
+        return locks.of(objectId);
+    }
+}
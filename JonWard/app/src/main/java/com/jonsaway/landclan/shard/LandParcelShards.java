@@ -0,0 +1,368 @@
+package com.jonsaway.landclan.shard;
+
+import com.jonsaway.landclan.TaskThreads;
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelRepositoryImpl;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcTransactionManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+// Land parcels spread over several databases (landclan.shards.urls: one JDBC url per shard), each parcel stored on
+// the shard its object id maps to (see ShardMap: by range, with landclan.shards.split-points, or by hash, with
+// landclan.shards.hash=true)
+// - an operation on one parcel runs on its shard (read/write), through the ShardRoutingDataSource
+// - an operation on every parcel runs on all the shards at once (onEach, streamOrdered) and merges the results
+// - writes, and operations on every shard, hold off moves of ranges between shards (see ShardRebalancer), so a
+//   parcel is never written to a shard that's just stopped owning it, or seen on two shards at once; reads of a single
+//   parcel carry on during a move (it's on both shards until the new map is in use, and a read overlapping the change
+//   of map is run again on the parcel's new shard)
+// At startup the land_parcel table is created on any shard missing it, and the map is loaded from the shard_range
+// table on shard 0 (or, the first time, built from the properties and saved there)
+// NB: landclan.shards.hash can't be changed once parcels are stored
+@Component
+@ConditionalOnProperty("landclan.shards.urls")
+public class LandParcelShards {
+    private static final Logger log = LoggerFactory.getLogger(LandParcelShards.class);
+
+    // Parcels each shard reads ahead of the consumer, when streaming every parcel
+    private static final int STREAM_BUFFER = 256;
+    // Marks the end of a shard's parcels, when streaming
+    private static final Object END = new Object();
+
+    @Autowired
+    ShardRoutingDataSource dataSource;
+
+    @Autowired
+    EntityManagerFactory entityManagerFactory;
+
+    // Runs the queries on every shard at once (on virtual threads, with the 'virtual' profile)
+    @Autowired
+    TaskThreads threads;
+
+    // The lowest object id owned by each shard after the first (without landclan.shards.hash)
+    @Value("${landclan.shards.split-points:}")
+    long[] splitPoints = {};
+
+    @Value("${landclan.shards.hash:false}")
+    boolean hashed;
+
+    private volatile ShardMap map;
+    // Writes and operations on every shard hold the read lock, a move the write lock
+    private final ReadWriteLock moves = new ReentrantReadWriteLock();
+    private ExecutorService executor;
+
+    @PostConstruct
+    public void init() throws SQLException {
+        executor = threads.executor("shard-query");
+
+        for(int shard = 0; shard < count(); shard++) {
+            LandParcelRepositoryImpl.requireH2(dataSource.shards().get(shard));
+            if(!hasTable(dataSource.shards().get(shard), "land_parcel")) {
+                // Hibernate's DDL for the mapped entities, run on this shard
+                on(shard, () -> {
+                    entityManagerFactory.unwrap(SessionFactoryImplementor.class).getSchemaManager().exportMappedObjects(false);
+                    return null;
+                });
+            }
+        }
+
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource.shards().get(0));
+        jdbcTemplate.execute("create table if not exists shard_range (lower_bound bigint primary key, shard int not null)");
+        List<ShardMap.Range> ranges = new ArrayList<>();
+        List<Long> lowerBounds = jdbcTemplate.queryForList("select lower_bound from shard_range order by lower_bound", Long.class);
+        List<Integer> shards = jdbcTemplate.queryForList("select shard from shard_range order by lower_bound", Integer.class);
+        for(int i = 0; i < lowerBounds.size(); i++) {
+            if(shards.get(i) >= count()) {
+                throw new IllegalStateException("Shard " + shards.get(i) + " owns parcels, but only " + count() + " shards are configured");
+            }
+            long to = i + 1 < lowerBounds.size() ? lowerBounds.get(i + 1) - 1 : Long.MAX_VALUE;
+            ranges.add(new ShardMap.Range(lowerBounds.get(i), to, shards.get(i)));
+        }
+        if(ranges.isEmpty()) {
+            setMap(ShardMap.of(count(), splitPoints, hashed));
+        }
+        else {
+            map = ShardMap.of(ranges, hashed);
+        }
+        log.info("Land parcels sharded over {} databases: {}", count(), map);
+    }
+
+    @PreDestroy
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public int count() {
+        return dataSource.shards().size();
+    }
+
+    public ShardMap map() {
+        return map;
+    }
+
+    // The shard owning an object id
+    public int shardOf(long objectId) {
+        return map.shardOf(objectId);
+    }
+
+    // Run the action on a shard
+    public <T> T on(int shard, Supplier<T> action) {
+        return ShardRoutingDataSource.on(shard, action);
+    }
+
+    // Run a read of a parcel on its shard
+    // Doesn't wait for a move: if the map changes while it runs (so the parcel may have moved, and been deleted from the
+    // shard read before the read got there), it's run again on the shard that owns the parcel now
+    public <T> T read(long objectId, Supplier<T> action) {
+        while(true) {
+            ShardMap routed = map;
+            T result = on(routed.shardOf(objectId), action);
+            if(map == routed) {
+                return result;
+            }
+        }
+    }
+
+    // Run a write to a parcel on its shard
+    public <T> T write(long objectId, Supplier<T> action) {
+        return write(() -> on(shardOf(objectId), action));
+    }
+
+    // Run writes to any number of parcels (on their shards: see shardOf and on), with moves held off until they're done
+    public <T> T write(Supplier<T> action) {
+        moves.readLock().lock();
+        try {
+            return action.get();
+        }
+        finally {
+            moves.readLock().unlock();
+        }
+    }
+
+    // Run the action on every shard at once (each passed its shard), returning each shard's result, in shard order
+    public <T> List<T> onEach(IntFunction<T> action) {
+        List<Future<T>> futures = new ArrayList<>(count());
+        moves.readLock().lock();
+        try {
+            for(int shard = 0; shard < count(); shard++) {
+                int onShard = shard;
+                futures.add(executor.submit(() -> on(onShard, () -> action.apply(onShard))));
+            }
+            List<T> results = new ArrayList<>(count());
+            for(Future<T> future: futures) {
+                results.add(get(future));
+            }
+            return results;
+        }
+        finally {
+            // (only still running if another shard failed)
+            for(Future<T> future: futures) {
+                future.cancel(true);
+            }
+            moves.readLock().unlock();
+        }
+    }
+
+    // Pass every parcel on every shard to the consumer, in object id order
+    // 'reader' is run on every shard at once, each on a thread of its own, and passes that shard's parcels (in object
+    // id order) to the sink it's given: up to STREAM_BUFFER ahead of the consumer, which merges them as they arrive
+    // If the consumer throws, the readers are stopped
+    public void streamOrdered(Consumer<Consumer<LandParcel>> reader, Consumer<LandParcel> consumer) {
+        moves.readLock().lock();
+        AtomicBoolean stopped = new AtomicBoolean();
+        List<BlockingQueue<Object>> queues = new ArrayList<>(count());
+        for(int shard = 0; shard < count(); shard++) {
+            BlockingQueue<Object> queue = new ArrayBlockingQueue<>(STREAM_BUFFER);
+            queues.add(queue);
+            int onShard = shard;
+            executor.execute(() -> {
+                Object end = END;
+                try {
+                    on(onShard, () -> {
+                        reader.accept(landParcel -> put(queue, landParcel, stopped));
+                        return null;
+                    });
+                }
+                catch (RuntimeException | Error e) {
+                    end = e;
+                }
+                try {
+                    put(queue, end, stopped);
+                }
+                catch (CancellationException e) {
+                    // Nobody's listening any more
+                }
+            });
+        }
+
+        try {
+            // The next parcel from each shard that has any left
+            PriorityQueue<Head> heads = new PriorityQueue<>(Comparator.comparingLong(head -> head.landParcel().getObjectId()));
+            for(int shard = 0; shard < count(); shard++) {
+                next(queues, shard, heads);
+            }
+            while(!heads.isEmpty()) {
+                Head head = heads.poll();
+                consumer.accept(head.landParcel());
+                next(queues, head.shard(), heads);
+            }
+        }
+        finally {
+            stopped.set(true);
+            moves.readLock().unlock();
+        }
+    }
+
+    // Merge lists of parcels, each in object id order, into one in object id order, of at most 'limit' parcels
+    public static List<LandParcel> merge(List<List<LandParcel>> lists, int limit) {
+        List<LandParcel> merged = new ArrayList<>();
+        int[] positions = new int[lists.size()];
+        while(merged.size() < limit) {
+            int lowest = -1;
+            for(int i = 0; i < lists.size(); i++) {
+                if(positions[i] < lists.get(i).size() && (lowest < 0
+                        || lists.get(i).get(positions[i]).getObjectId() < lists.get(lowest).get(positions[lowest]).getObjectId())) {
+                    lowest = i;
+                }
+            }
+            if(lowest < 0) {
+                break;
+            }
+            merged.add(lists.get(lowest).get(positions[lowest]++));
+        }
+        return merged;
+    }
+
+    // Run the action once on each shard in turn, or just once if 'shards' is null (i.e. not sharded)
+    // e.g. to build an index from the parcels in the database at startup
+    public static void eachShard(LandParcelShards shards, Runnable action) {
+        if(shards == null) {
+            action.run();
+            return;
+        }
+        for(int shard = 0; shard < shards.count(); shard++) {
+            shards.on(shard, () -> {
+                action.run();
+                return null;
+            });
+        }
+    }
+
+    // For ShardRebalancer: held while moving a range
+    ReadWriteLock moves() {
+        return moves;
+    }
+
+    // Save a new map to shard 0, then start using it
+    void setMap(ShardMap newMap) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource.shards().get(0));
+        new TransactionTemplate(new JdbcTransactionManager(dataSource.shards().get(0))).executeWithoutResult(transactionStatus -> {
+            jdbcTemplate.update("delete from shard_range");
+            jdbcTemplate.batchUpdate("insert into shard_range (lower_bound, shard) values (?, ?)",
+                    newMap.ranges().stream().map(range -> new Object[] {range.from(), range.shard()}).toList());
+        });
+        map = newMap;
+    }
+
+    private record Head(LandParcel landParcel, int shard) {
+    }
+
+    // Add the shard's next parcel to the heads, if it has any more
+    private static void next(List<BlockingQueue<Object>> queues, int shard, PriorityQueue<Head> heads) {
+        Object next;
+        try {
+            next = queues.get(shard).take();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted streaming land parcels");
+        }
+        if(next instanceof LandParcel landParcel) {
+            heads.add(new Head(landParcel, shard));
+        }
+        else if(next instanceof RuntimeException e) {
+            throw e;
+        }
+        else if(next instanceof Error e) {
+            throw e;
+        }
+    }
+
+    // Wait for room in the queue, unless the stream has been stopped
+    private static void put(BlockingQueue<Object> queue, Object item, AtomicBoolean stopped) {
+        try {
+            while(!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                if(stopped.get()) {
+                    throw new CancellationException("Stopped streaming land parcels");
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted streaming land parcels");
+        }
+    }
+
+    private static <T> T get(Future<T> future) {
+        try {
+            return future.get();
+        }
+        catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if(e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted waiting for the shards");
+        }
+    }
+
+    private static boolean hasTable(DataSource dataSource, String table) throws SQLException {
+        try (Connection connection = dataSource.getConnection();
+             ResultSet tables = connection.getMetaData().getTables(null, null, null, null)) {
+            while(tables.next()) {
+                if(tables.getString("TABLE_NAME").equalsIgnoreCase(table)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
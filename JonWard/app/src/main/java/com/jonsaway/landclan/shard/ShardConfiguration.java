@@ -0,0 +1,40 @@
+package com.jonsaway.landclan.shard;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+// Sharding (landclan.shards.urls set): a connection pool per shard, behind a ShardRoutingDataSource that replaces
+// the usual single DataSource (so JPA, the repository and transactions all go through it)
+// Each pool is named landclan-shard-<n>, so its hikaricp.* metrics are tagged with its shard
+@Configuration
+@ConditionalOnProperty("landclan.shards.urls")
+public class ShardConfiguration {
+    @Bean
+    public ShardRoutingDataSource dataSource(@Value("${landclan.shards.urls}") List<String> urls,
+                                             @Value("${landclan.shards.pool-size:10}") int poolSize,
+                                             @Value("${spring.datasource.username:sa}") String username,
+                                             @Value("${spring.datasource.password:}") String password,
+                                             MeterRegistry meterRegistry) {
+        List<DataSource> shards = new ArrayList<>(urls.size());
+        for(String url: urls) {
+            HikariDataSource shard = new HikariDataSource();
+            shard.setPoolName("landclan-shard-" + shards.size());
+            shard.setJdbcUrl(url.trim());
+            shard.setUsername(username);
+            shard.setPassword(password);
+            shard.setMaximumPoolSize(poolSize);
+            shard.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            shards.add(shard);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+}
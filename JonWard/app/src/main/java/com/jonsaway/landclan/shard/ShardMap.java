@@ -0,0 +1,165 @@
+package com.jonsaway.landclan.shard;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Which shard owns each object id: the key space is cut into contiguous ranges, each owned by one shard
+// The key is the object id itself (range sharding: neighbouring parcels stay together, and a shard can be split
+// where the ids grow) or, if hashed, a hash of it (parcels spread evenly, whatever the ids)
+// Immutable: a move builds a new map (see assign)
+public final class ShardMap {
+    // A range of keys, from 'from' to 'to' inclusive, owned by 'shard'
+    public record Range(long from, long to, int shard) {
+        public boolean contains(long key) {
+            return key >= from && key <= to;
+        }
+
+        @Override
+        public String toString() {
+            return from + ".." + to + ":" + shard;
+        }
+    }
+
+    // The lowest key of each range, in order (the first is always Long.MIN_VALUE), and the shard owning it
+    private final long[] lowerBounds;
+    private final int[] shards;
+    private final boolean hashed;
+
+    private ShardMap(long[] lowerBounds, int[] shards, boolean hashed) {
+        this.lowerBounds = lowerBounds;
+        this.shards = shards;
+        this.hashed = hashed;
+    }
+
+    // 'count' shards, shard i owning the keys from splitPoints[i - 1] up to (but not including) splitPoints[i]
+    // With no split points, the key space is split evenly (which only makes sense for hashed keys)
+    // Throws IllegalArgumentException unless there are count - 1 split points, in ascending order
+    public static ShardMap of(int count, long[] splitPoints, boolean hashed) {
+        if(count < 1) {
+            throw new IllegalArgumentException("At least one shard is needed");
+        }
+        if(splitPoints.length == 0 && count > 1) {
+            if(!hashed) {
+                throw new IllegalArgumentException("Range sharding needs " + (count - 1) + " split points (or use hashed keys)");
+            }
+            // 2^64 / count apart, as unsigned arithmetic
+            long step = Long.divideUnsigned(-1L, count) + 1;
+            splitPoints = new long[count - 1];
+            for(int i = 1; i < count; i++) {
+                splitPoints[i - 1] = Long.MIN_VALUE + i * step;
+            }
+        }
+        if(splitPoints.length != count - 1) {
+            throw new IllegalArgumentException(count + " shards need " + (count - 1) + " split points, not " + splitPoints.length);
+        }
+
+        long[] lowerBounds = new long[count];
+        int[] shards = new int[count];
+        lowerBounds[0] = Long.MIN_VALUE;
+        for(int i = 1; i < count; i++) {
+            if(splitPoints[i - 1] <= lowerBounds[i - 1]) {
+                throw new IllegalArgumentException("Split points must be in ascending order: " + Arrays.toString(splitPoints));
+            }
+            lowerBounds[i] = splitPoints[i - 1];
+            shards[i] = i;
+        }
+        return new ShardMap(lowerBounds, shards, hashed);
+    }
+
+    // A map of the given ranges, which must cover the whole key space in order (e.g. as returned by ranges())
+    // Throws IllegalArgumentException if they don't
+    public static ShardMap of(List<Range> ranges, boolean hashed) {
+        long[] lowerBounds = new long[ranges.size()];
+        int[] shards = new int[ranges.size()];
+        long next = Long.MIN_VALUE;
+        for(int i = 0; i < ranges.size(); i++) {
+            Range range = ranges.get(i);
+            if(range.from() != next || range.to() < range.from() || (i > 0 && range.from() == Long.MIN_VALUE)) {
+                throw new IllegalArgumentException("Shard ranges must cover every key, in order: " + ranges);
+            }
+            lowerBounds[i] = range.from();
+            shards[i] = range.shard();
+            next = range.to() + 1;
+        }
+        if(ranges.isEmpty() || ranges.get(ranges.size() - 1).to() != Long.MAX_VALUE) {
+            throw new IllegalArgumentException("Shard ranges must cover every key, in order: " + ranges);
+        }
+        return new ShardMap(lowerBounds, shards, hashed);
+    }
+
+    public boolean isHashed() {
+        return hashed;
+    }
+
+    // The key an object id is sharded by
+    public long key(long objectId) {
+        return hashed ? hash(objectId) : objectId;
+    }
+
+    // The shard owning an object id
+    public int shardOf(long objectId) {
+        int index = Arrays.binarySearch(lowerBounds, key(objectId));
+        return shards[index >= 0 ? index : -index - 2];
+    }
+
+    // Whether a shard owns any part of the keys from 'from' to 'to' (inclusive)
+    public boolean owns(int shard, long from, long to) {
+        for(Range range: ranges()) {
+            if(range.shard() == shard && range.from() <= to && range.to() >= from) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // The ranges, in key order (neighbouring ranges owned by the same shard are merged)
+    public List<Range> ranges() {
+        List<Range> ranges = new ArrayList<>(lowerBounds.length);
+        for(int i = 0; i < lowerBounds.length; i++) {
+            long to = i + 1 < lowerBounds.length ? lowerBounds[i + 1] - 1 : Long.MAX_VALUE;
+            Range last = ranges.isEmpty() ? null : ranges.get(ranges.size() - 1);
+            if(last != null && last.shard() == shards[i]) {
+                ranges.set(ranges.size() - 1, new Range(last.from(), to, shards[i]));
+            }
+            else {
+                ranges.add(new Range(lowerBounds[i], to, shards[i]));
+            }
+        }
+        return ranges;
+    }
+
+    // This map, with the keys from 'from' to 'to' (inclusive) owned by 'shard'
+    public ShardMap assign(long from, long to, int shard) {
+        if(to < from) {
+            throw new IllegalArgumentException("Empty range: " + from + ".." + to);
+        }
+        List<Range> ranges = new ArrayList<>();
+        for(Range range: ranges()) {
+            // The parts of each range either side of the one assigned
+            if(range.from() < from) {
+                ranges.add(new Range(range.from(), Math.min(range.to(), from - 1), range.shard()));
+            }
+            if(range.contains(from)) {
+                ranges.add(new Range(from, to, shard));
+            }
+            if(range.to() > to) {
+                ranges.add(new Range(Math.max(range.from(), to + 1), range.to(), range.shard()));
+            }
+        }
+        return of(ranges, hashed);
+    }
+
+    @Override
+    public String toString() {
+        return (hashed ? "hashed " : "") + ranges();
+    }
+
+    // Spreads neighbouring ids over the whole key space (the finaliser of the 64-bit MurmurHash3)
+    static long hash(long objectId) {
+        long hash = objectId;
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+}
@@ -0,0 +1,146 @@
+package com.jonsaway.landclan.shard;
+
+import com.jonsaway.landclan.service.LandParcelCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Moves a range of keys (object ids or, with landclan.shards.hash=true, their hashes) from whichever shards own it
+// to another shard, e.g. to split a shard that's grown too big, or to add a shard
+// 1. every parcel in the range is copied to the new shard (in chunks, as is: version, geometry and all)
+// 2. the new map is saved and used from then on
+// 3. the parcels in the range are deleted from every other shard
+// 4. any cached parcels (or misses) in the range are discarded
+// Writes, and reads of every shard, wait until the move is done (reads of a single parcel carry on throughout, and are
+// run again if they overlap step 2: see LandParcelShards.read), and the move waits for those in progress, so large
+// ranges are best moved a piece at a time
+// A move that fails part way can be run again: the copy overwrites what got there, and parcels left behind on a shard
+// that no longer owns them are deleted
+// Run at startup with --landclan.shards.move=<from>..<to>:<shard> (see Application)
+@Component
+@ConditionalOnProperty("landclan.shards.urls")
+public class ShardRebalancer {
+    private static final Logger log = LoggerFactory.getLogger(ShardRebalancer.class);
+
+    private static final String COLUMNS = "object_id, name, status, area, constraints, version, geometry";
+    // Parcels read (and written) at a time
+    private static final int CHUNK_SIZE = 1000;
+
+    @Autowired
+    LandParcelShards shards;
+
+    @Autowired(required = false)
+    LandParcelCache cache;
+
+    // Move the keys from 'from' to 'to' (inclusive) to 'target'
+    // Returns the number of parcels moved
+    // Throws IllegalArgumentException if there's no such shard, or the range is empty
+    public long move(long from, long to, int target) {
+        if(target < 0 || target >= shards.count()) {
+            throw new IllegalArgumentException("No shard " + target + ": there are " + shards.count());
+        }
+        if(to < from) {
+            throw new IllegalArgumentException("Empty range: " + from + ".." + to);
+        }
+
+        shards.moves().writeLock().lock();
+        try {
+            ShardMap before = shards.map();
+            ShardMap after = before.assign(from, to, target);
+            long moved = 0;
+            for(int shard = 0; shard < shards.count(); shard++) {
+                if(shard != target && before.owns(shard, from, to)) {
+                    moved += copy(before, from, to, shard, target);
+                }
+            }
+            shards.setMap(after);
+
+            long deleted = 0;
+            for(int shard = 0; shard < shards.count(); shard++) {
+                if(shard != target) {
+                    deleted += delete(after, from, to, shard);
+                }
+            }
+            if(cache != null) {
+                cache.invalidateIf(objectId -> {
+                    long key = after.key(objectId);
+                    return key >= from && key <= to;
+                });
+            }
+            log.info("Moved {} land parcels ({}..{}) to shard {} (deleted {}): {}", moved, from, to, target, deleted, after);
+            return moved;
+        }
+        finally {
+            shards.moves().writeLock().unlock();
+        }
+    }
+
+    // Copy the parcels in the range from one shard to another
+    private long copy(ShardMap map, long from, long to, int source, int target) {
+        JdbcTemplate targetJdbc = jdbc(target);
+        long[] copied = {0};
+        scan(map, from, to, source, rows -> {
+            targetJdbc.batchUpdate("merge into land_parcel (" + COLUMNS + ") key (object_id) values (?, ?, ?, ?, ?, ?, ?)", rows);
+            copied[0] += rows.size();
+        });
+        return copied[0];
+    }
+
+    // Delete the parcels in the range from a shard
+    private long delete(ShardMap map, long from, long to, int shard) {
+        JdbcTemplate jdbc = jdbc(shard);
+        long[] deleted = {0};
+        scan(map, from, to, shard, rows -> {
+            jdbc.batchUpdate("delete from land_parcel where object_id = ?", rows.stream().map(row -> new Object[] {row[0]}).toList());
+            deleted[0] += rows.size();
+        });
+        return deleted[0];
+    }
+
+    // Pass the parcels on a shard whose key is in the range to the action, CHUNK_SIZE rows at a time
+    // By range, only those ids are read; by hash, every parcel on the shard is read to find them
+    private void scan(ShardMap map, long from, long to, int shard, Consumer<List<Object[]>> action) {
+        JdbcTemplate jdbc = jdbc(shard);
+        long last = map.isHashed() ? Long.MIN_VALUE : from;
+        long end = map.isHashed() ? Long.MAX_VALUE : to;
+        boolean first = true;
+        while(true) {
+            List<Object[]> chunk = new ArrayList<>(CHUNK_SIZE);
+            List<Object[]> rows = jdbc.query("select " + COLUMNS + " from land_parcel where object_id " + (first ? ">=" : ">")
+                            + " ? and object_id <= ? order by object_id limit " + CHUNK_SIZE,
+                    (resultSet, rowNum) -> {
+                        Object[] row = new Object[7];
+                        for(int column = 0; column < row.length; column++) {
+                            row[column] = resultSet.getObject(column + 1);
+                        }
+                        return row;
+                    }, last, end);
+            for(Object[] row: rows) {
+                long objectId = ((Number) row[0]).longValue();
+                long key = map.key(objectId);
+                if(key >= from && key <= to) {
+                    chunk.add(row);
+                }
+                last = objectId;
+            }
+            if(!chunk.isEmpty()) {
+                action.accept(chunk);
+            }
+            if(rows.size() < CHUNK_SIZE) {
+                return;
+            }
+            first = false;
+        }
+    }
+
+    private JdbcTemplate jdbc(int shard) {
+        return new JdbcTemplate(shards.dataSource.shards().get(shard));
+    }
+}
@@ -0,0 +1,65 @@
+package com.jonsaway.landclan.shard;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+// The application's DataSource when sharded: each connection comes from the shard the current thread is working on
+// (see on()), or from shard 0 if none
+// A transaction keeps the connection it started with, so everything inside on() happens on that shard
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private final List<DataSource> shards;
+
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        this.shards = List.copyOf(shards);
+        Map<Object, Object> targets = new HashMap<>();
+        for(int shard = 0; shard < shards.size(); shard++) {
+            targets.put(shard, shards.get(shard));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        afterPropertiesSet();
+    }
+
+    // Each shard's own DataSource
+    public List<DataSource> shards() {
+        return shards;
+    }
+
+    // Run the action with this thread's connections coming from the given shard
+    public static <T> T on(int shard, Supplier<T> action) {
+        Integer previous = CURRENT.get();
+        CURRENT.set(shard);
+        try {
+            return action.get();
+        }
+        finally {
+            if(previous == null) {
+                CURRENT.remove();
+            }
+            else {
+                CURRENT.set(previous);
+            }
+        }
+    }
+
+    // Close each shard's pool (called by Spring on shutdown)
+    public void close() throws Exception {
+        for(DataSource shard: shards) {
+            if(shard instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return CURRENT.get();
+    }
+}
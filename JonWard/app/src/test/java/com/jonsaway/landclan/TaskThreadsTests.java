@@ -0,0 +1,61 @@
+package com.jonsaway.landclan;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TaskThreadsTests {
+    private static TaskThreads threads(boolean virtual) {
+        TaskThreads threads = new TaskThreads();
+        threads.environment = new MockEnvironment().withProperty("spring.threads.virtual.enabled", String.valueOf(virtual));
+        threads.init();
+        return threads;
+    }
+
+    // Test that tasks run on platform threads, unless virtual threads are asked for
+    @Test
+    public void testPlatformThreads() throws Exception {
+        TaskThreads threads = threads(false);
+        assertThat(threads.isVirtual()).isFalse();
+        ExecutorService executor = threads.executor("test");
+        try {
+            Thread thread = executor.submit(Thread::currentThread).get(10, TimeUnit.SECONDS);
+            assertThat(thread.getName()).startsWith("test-");
+            assertThat(thread.isDaemon()).isTrue();
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    // Test that asking for virtual threads before Java 21 fails, rather than quietly using platform threads
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    public void testVirtualThreadsNeedJava21() {
+        assertThatThrownBy(() -> threads(true)).isInstanceOf(IllegalStateException.class).hasMessageContaining("needs Java 21");
+    }
+
+    // Test that tasks run on virtual threads, if asked for
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    public void testVirtualThreads() throws Exception {
+        TaskThreads threads = threads(true);
+        assertThat(threads.isVirtual()).isTrue();
+        ExecutorService executor = threads.executor("test");
+        try {
+            Thread thread = executor.submit(Thread::currentThread).get(10, TimeUnit.SECONDS);
+            assertThat(thread.getName()).startsWith("test-");
+            assertThat(Thread.class.getMethod("isVirtual").invoke(thread)).isEqualTo(true);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.jonsaway.landclan.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jonsaway.landclan.jpa.LandParcelRepository;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.BatchOperation;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Compares creating parcels one request at a time with creating them through /landParcel/batch
+// Run with: mvn test -Pbenchmark [-Dbenchmark.parcels=10000]
+@Tag("benchmark")
+@SpringBootTest(properties = "landclan.limits.enabled=false")
+@AutoConfigureMockMvc
+public class BatchWriteBenchmarkTests {
+    private static final int PARCELS = Integer.getInteger("benchmark.parcels", 10_000);
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LandParcelRepository repository;
+
+    @AfterEach
+    public void cleanup() {
+        repository.deleteAll();
+    }
+
+    @Test
+    public void benchmarkCreate() throws Exception {
+        // Warm up both paths, so we're not timing class loading and JIT
+        createSingle(1, 1_000);
+        createBatch(1_001, 1_000);
+        repository.deleteAll();
+
+        long singleNanos = createSingle(1, PARCELS);
+        long batchNanos = createBatch(1 + PARCELS, PARCELS);
+
+        assertThat(repository.count()).isEqualTo(2L * PARCELS);
+
+        report("single-item POST", singleNanos);
+        report("batch POST", batchNanos);
+        System.out.printf("batch speedup: %.1fx%n", (double) singleNanos / batchNanos);
+    }
+
+    // Create parcels [first, first+count) with one request per parcel
+    private long createSingle(long first, int count) throws Exception {
+        long start = System.nanoTime();
+        for(long objectId = first; objectId < first + count; objectId++) {
+            mvc.perform(MockMvcRequestBuilders.post("/landParcel/" + objectId)
+                            .param("name", "Parcel " + objectId)
+                            .param("status", "SAVED")
+                            .param("area", "42.0")
+                            .param("constraints", "true"))
+                    .andExpect(status().isOk());
+        }
+        return System.nanoTime() - start;
+    }
+
+    // Create parcels [first, first+count) with a single batch request
+    private long createBatch(long first, int count) throws Exception {
+        List<BatchOperation> operations = new ArrayList<>(count);
+        for(long objectId = first; objectId < first + count; objectId++) {
+            operations.add(BatchOperation.create(objectId, "Parcel " + objectId, ParcelStatus.SAVED, 42.0, true));
+        }
+        byte[] body = objectMapper.writeValueAsBytes(operations);
+
+        long start = System.nanoTime();
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isOk());
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String path, long nanos) {
+        System.out.printf("%-20s %,d parcels in %,d ms (%,.0f parcels/s)%n",
+                path, PARCELS, nanos / 1_000_000, PARCELS * 1e9 / nanos);
+    }
+}
@@ -0,0 +1,77 @@
+package com.jonsaway.landclan.benchmark;
+
+import com.jonsaway.landclan.service.BatchOperation;
+import com.jonsaway.landclan.service.LandParcelService;
+import org.junit.jupiter.api.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+
+// The connection scaling benchmark (see ConnectionScalingBenchmark, in the domain module's tests) for the blocking
+// (servlet/JPA) stack; the reactive application runs the same, to compare with
+// Run it again with -Dspring.profiles.active=virtual (on Java 21) to compare with requests handled on virtual threads
+// Run with: mvn test -Pbenchmark -pl app -am -Dtest=ConnectionScalingBenchmarkTests -Dsurefire.failIfNoSpecifiedTests=false
+//   [-Dbenchmark.connections=2000] [-Dbenchmark.db-latency-ms=100]
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = { "spring.datasource.hikari.maximum-pool-size=500", "landclan.limits.enabled=false" })
+public class ConnectionScalingBenchmarkTests extends ConnectionScalingBenchmark {
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private LandParcelService service;
+
+    @Override
+    protected String stack() {
+        return "blocking";
+    }
+
+    @Override
+    protected int port() {
+        return port;
+    }
+
+    @Override
+    protected void batch(List<BatchOperation> operations) {
+        service.batch(operations);
+    }
+
+    // Delay each connection checkout by a simulated database round trip, while holding the connection
+    @TestConfiguration
+    static class SimulatedLatency {
+        @Bean
+        static BeanPostProcessor simulatedLatencyPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if(!(bean instanceof DataSource dataSource)) {
+                        return bean;
+                    }
+                    return new DelegatingDataSource(dataSource) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            Connection connection = super.getConnection();
+                            try {
+                                Thread.sleep(DB_LATENCY_MS);
+                            }
+                            catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return connection;
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
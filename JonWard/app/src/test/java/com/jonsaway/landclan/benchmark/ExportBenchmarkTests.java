@@ -0,0 +1,74 @@
+package com.jonsaway.landclan.benchmark;
+
+import com.jonsaway.landclan.export.ParcelColumnWriter;
+import com.jonsaway.landclan.export.ParcelRecordWriter;
+import com.jonsaway.landclan.rest.LandParcelRoutes;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Throughput of exporting every parcel over HTTP, in each format: a JSON array, newline-delimited JSON,
+// binary records and columns (the last three are streamed from a database cursor)
+// Reports the time to read the whole response (best of a few runs), and its size
+// Run with: mvn test -Pbenchmark -Dtest=ExportBenchmarkTests [-Dbenchmark.parcels=500000]
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = { "spring.jpa.show-sql=false", "spring.datasource.url=jdbc:h2:mem:export", "landclan.limits.enabled=false" })
+public class ExportBenchmarkTests {
+    private static final int PARCELS = Integer.getInteger("benchmark.parcels", 500_000);
+    private static final int RUNS = 3;
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    public void benchmarkExport() throws Exception {
+        // (status is stored as the enum ordinal: cycle through SAVED..APPROVED)
+        jdbcTemplate.update("insert into land_parcel (object_id, name, status, area, constraints, version) " +
+                "select x, 'Parcel ' || mod(x, 10000), 1 + mod(x, 4), mod(x, 1000) / 10.0, mod(x, 2) = 0, 0 " +
+                "from system_range(1, ?)", PARCELS);
+
+        HttpClient client = HttpClient.newHttpClient();
+        List<String> mediaTypes = List.of(MediaType.APPLICATION_JSON_VALUE, LandParcelRoutes.APPLICATION_NDJSON_VALUE,
+                ParcelRecordWriter.MEDIA_TYPE, ParcelColumnWriter.MEDIA_TYPE);
+        long jsonNanos = 0;
+        for(String mediaType: mediaTypes) {
+            long best = Long.MAX_VALUE;
+            long bytes = 0;
+            for(int run = 0; run < RUNS; run++) {
+                HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/landParcel"))
+                        .header("Accept", mediaType)
+                        .build();
+                long start = System.nanoTime();
+                HttpResponse<InputStream> response = client.send(request, HttpResponse.BodyHandlers.ofInputStream());
+                assertThat(response.statusCode()).isEqualTo(200);
+                try (InputStream body = response.body()) {
+                    bytes = body.transferTo(OutputStream.nullOutputStream());
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            if(mediaType.equals(MediaType.APPLICATION_JSON_VALUE)) {
+                jsonNanos = best;
+            }
+            System.out.printf("%-40s: %,d parcels in %,d ms (%,d parcels/s), %,d KB, %.1fx JSON%n",
+                    mediaType, PARCELS, best / 1_000_000, PARCELS * 1_000_000_000L / best, bytes / 1024, (double) jsonNanos / best);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.jonsaway.landclan.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jonsaway.landclan.Application;
+import com.jonsaway.landclan.importer.ImportReport;
+import com.jonsaway.landclan.importer.LandParcelImporter;
+import com.jonsaway.landclan.importer.ParcelReader;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.LandParcelService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Throughput of the bulk import, into the database, with one writer and with several,
+// against creating the parcels one at a time (as single POSTs do, less the HTTP)
+// Run with: mvn test -Pbenchmark -Dtest=ImportBenchmarkTests [-Dbenchmark.parcels=200000]
+@Tag("benchmark")
+public class ImportBenchmarkTests {
+    private static final int PARCELS = Integer.getInteger("benchmark.parcels", 200_000);
+    private static final ParcelStatus[] STATUSES = ParcelStatus.values();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void benchmarkImport() throws IOException {
+        Path file = directory.resolve("parcels.csv");
+        try (BufferedWriter csv = Files.newBufferedWriter(file)) {
+            csv.write("objectId,name,status,area,constraints\n");
+            for(int i = 1; i <= PARCELS; i++) {
+                csv.write(i + ",Parcel " + (i % 10_000) + "," + STATUSES[1 + i % 4] + "," + (i % 1000) / 10.0 + "," + (i % 2 == 0) + "\n");
+            }
+        }
+
+        oneAtATime();
+        for(int writers: new int[] { 1, 4 }) {
+            try (ConfigurableApplicationContext context = start("writers" + writers, "--landclan.import.writers=" + writers)) {
+                LandParcelImporter importer = context.getBean(LandParcelImporter.class);
+                ImportReport report;
+                try (ParcelReader reader = ParcelReader.open(file, context.getBean(ObjectMapper.class))) {
+                    report = importer.importParcels(reader);
+                }
+                assertThat(report.imported()).isEqualTo(PARCELS);
+                System.out.printf("import, %d writer(s): %,d parcels in %,d ms (%,d parcels/s)%n",
+                        writers, PARCELS, report.millis(), PARCELS * 1000L / Math.max(1, report.millis()));
+            }
+        }
+    }
+
+    // A sample of single creates, for comparison
+    private void oneAtATime() {
+        int parcels = Math.min(PARCELS, 20_000);
+        try (ConfigurableApplicationContext context = start("single")) {
+            LandParcelService service = context.getBean(LandParcelService.class);
+            long start = System.nanoTime();
+            for(int i = 1; i <= parcels; i++) {
+                service.create(i, "Parcel " + (i % 10_000), STATUSES[1 + i % 4], (i % 1000) / 10.0, i % 2 == 0);
+            }
+            long millis = (System.nanoTime() - start) / 1_000_000;
+            System.out.printf("single creates:       %,d parcels in %,d ms (%,d parcels/s)%n",
+                    parcels, millis, parcels * 1000L / Math.max(1, millis));
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String database, String... args) {
+        String[] all = new String[args.length + 4];
+        all[0] = "--spring.datasource.url=jdbc:h2:mem:" + database;
+        all[1] = "--spring.jpa.show-sql=false";
+        all[2] = "--logging.level.root=WARN";
+        all[3] = "--landclan.import.progress-interval=PT1H";
+        System.arraycopy(args, 0, all, 4, args.length);
+        return new SpringApplicationBuilder(Application.class).web(WebApplicationType.NONE).run(all);
+    }
+}
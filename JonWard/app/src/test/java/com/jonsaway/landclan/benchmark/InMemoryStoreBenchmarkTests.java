@@ -0,0 +1,104 @@
+package com.jonsaway.landclan.benchmark;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.memory.LandParcelStore;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntFunction;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Memory per parcel, and lookup latency, of the in-memory LandParcelStore,
+// against the same parcels held as objects in a HashMap (as the cache, or a persistence context, holds them)
+// Names repeat (as real names do, e.g. "Field"), so interning them pays off
+// For the service-level comparison with the database, see jmh.LandParcelServiceBenchmark (-p store=jpa,memory)
+// Run with: mvn test -Pbenchmark -Dtest=InMemoryStoreBenchmarkTests [-Dbenchmark.parcels=1000000] [-Dbenchmark.names=10000]
+@Tag("benchmark")
+public class InMemoryStoreBenchmarkTests {
+    private static final int PARCELS = Integer.getInteger("benchmark.parcels", 1_000_000);
+    private static final int NAMES = Integer.getInteger("benchmark.names", 10_000);
+    private static final int LOOKUPS = 10_000_000;
+
+    private static final ParcelStatus[] STATUSES = ParcelStatus.values();
+
+    // Parcel i (of many, so the objects are built as needed)
+    private static LandParcel parcel(int i) {
+        return new LandParcel(i + 1, "Parcel " + (i % NAMES), STATUSES[1 + i % 4], (i % 1000) / 10.0, i % 2 == 0);
+    }
+
+    @Test
+    public void benchmarkStore() {
+        long baseline = heapUsed();
+        LandParcelStore store = new LandParcelStore();
+        for(int i = 0; i < PARCELS; i++) {
+            store.insert(parcel(i));
+        }
+        long storeBytes = heapUsed() - baseline;
+
+        long found = 0;
+        long start = System.nanoTime();
+        for(int lookup = 0; lookup < LOOKUPS; lookup++) {
+            int row = store.find(1 + (lookup * 7919L) % PARCELS);
+            found += store.version(row) + 1;
+        }
+        long storeNanos = System.nanoTime() - start;
+        assertThat(found).isEqualTo(LOOKUPS);
+
+        report("store", storeBytes, store.memoryBytes(), storeNanos);
+    }
+
+    @Test
+    public void benchmarkHashMap() {
+        long baseline = heapUsed();
+        Map<Long, LandParcel> map = new HashMap<>();
+        // (names would be shared once read from the database, so share them here too)
+        IntFunction<String> name = new Names()::get;
+        for(int i = 0; i < PARCELS; i++) {
+            LandParcel landParcel = parcel(i);
+            landParcel.setName(name.apply(i % NAMES));
+            map.put(landParcel.getObjectId(), landParcel);
+        }
+        long mapBytes = heapUsed() - baseline;
+
+        long found = 0;
+        long start = System.nanoTime();
+        for(int lookup = 0; lookup < LOOKUPS; lookup++) {
+            found += map.get(1 + (lookup * 7919L) % PARCELS).getVersion() + 1;
+        }
+        long mapNanos = System.nanoTime() - start;
+        assertThat(found).isEqualTo(LOOKUPS);
+
+        report("HashMap", mapBytes, -1, mapNanos);
+    }
+
+    private static void report(String holder, long bytes, long arrayBytes, long lookupNanos) {
+        System.out.printf("%-8s: %,d parcels: %.1f bytes per parcel%s, %.1f ns per lookup%n",
+                holder, PARCELS, (double) bytes / PARCELS,
+                arrayBytes >= 0 ? String.format(" (columns and index: %.1f)", (double) arrayBytes / PARCELS) : "",
+                (double) lookupNanos / LOOKUPS);
+    }
+
+    // One String per distinct name
+    private static class Names {
+        private final String[] names = new String[NAMES];
+
+        String get(int i) {
+            if(names[i] == null) {
+                names[i] = "Parcel " + i;
+            }
+            return names[i];
+        }
+    }
+
+    private static long heapUsed() {
+        for(int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,140 @@
+package com.jonsaway.landclan.benchmark;
+
+import com.jonsaway.landclan.Application;
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.memory.LandParcelJournal;
+import com.jonsaway.landclan.memory.LandParcelStore;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.InMemoryLandParcelService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Cost of making the in-memory store durable (landclan.memory.directory):
+// - write latency through the service, under each fsync policy, from several writers at once
+//   (with ALWAYS, writers waiting at the same time share an fsync)
+// - recovery time at startup, from the log alone and from a snapshot, for each number of parcels
+// Run with: mvn test -Pbenchmark -Dtest=JournalRecoveryBenchmarkTests [-Dbenchmark.parcels=100000,1000000]
+// (10 million parcels needs a larger heap: -Dbenchmark.parcels=10000000 -DargLine=-Xmx4g)
+@Tag("benchmark")
+public class JournalRecoveryBenchmarkTests {
+    private static final int[] PARCELS = Arrays.stream(System.getProperty("benchmark.parcels", "100000,1000000").split(","))
+            .mapToInt(Integer::parseInt).toArray();
+    private static final int WRITERS = 8;
+    private static final int WRITES = 20_000;
+    private static final int NAMES = 10_000;
+
+    private static final ParcelStatus[] STATUSES = ParcelStatus.values();
+
+    @TempDir
+    Path directory;
+
+    private static LandParcel parcel(int i) {
+        return new LandParcel(i + 1, "Parcel " + (i % NAMES), STATUSES[1 + i % 4], (i % 1000) / 10.0, i % 2 == 0);
+    }
+
+    @Test
+    public void benchmarkWriteLatency() throws Exception {
+        for(String fsync: List.of("none", "never", "interval", "always")) {
+            Path journal = directory.resolve(fsync);
+            String[] args = fsync.equals("none")
+                    ? new String[] { "--landclan.store=memory" }
+                    : new String[] { "--landclan.store=memory", "--landclan.memory.directory=" + journal, "--landclan.memory.fsync=" + fsync };
+            try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                    .web(WebApplicationType.NONE)
+                    .run(Stream.concat(Arrays.stream(args), Stream.of("--spring.jpa.show-sql=false", "--logging.level.root=WARN"))
+                            .toArray(String[]::new))) {
+                InMemoryLandParcelService service = context.getBean(InMemoryLandParcelService.class);
+
+                // Warm up, then measure
+                writes(service, 0);
+                long[] nanos = writes(service, WRITES);
+                Arrays.sort(nanos);
+                System.out.printf("fsync %-8s: %,d writes from %d writers: mean %.1f us, p50 %.1f us, p99 %.1f us%n",
+                        fsync, nanos.length, WRITERS, Arrays.stream(nanos).average().orElse(0) / 1000,
+                        nanos[nanos.length / 2] / 1000.0, nanos[(int) (nanos.length * 0.99)] / 1000.0);
+            }
+        }
+    }
+
+    // Each writer creates its own parcels, timing each create
+    private static long[] writes(InMemoryLandParcelService service, int offset) throws Exception {
+        long[] nanos = new long[WRITES];
+        ExecutorService executor = Executors.newFixedThreadPool(WRITERS);
+        try {
+            Future<?>[] writers = new Future<?>[WRITERS];
+            for(int writer = 0; writer < WRITERS; writer++) {
+                int first = writer;
+                writers[writer] = executor.submit(() -> {
+                    for(int i = first; i < WRITES; i += WRITERS) {
+                        LandParcel landParcel = parcel(offset + i);
+                        long start = System.nanoTime();
+                        service.create(landParcel.getObjectId(), landParcel.getName(), landParcel.getStatus(), landParcel.getArea(), landParcel.getConstraints());
+                        nanos[i] = System.nanoTime() - start;
+                    }
+                });
+            }
+            for(Future<?> writer: writers) {
+                writer.get();
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+        return nanos;
+    }
+
+    @Test
+    public void benchmarkRecovery() throws IOException {
+        for(int parcels: PARCELS) {
+            Path journalDirectory = directory.resolve("parcels-" + parcels);
+
+            // Every parcel in the log
+            try (LandParcelJournal journal = journal(journalDirectory)) {
+                journal.recover();
+                for(int i = 0; i < parcels; i++) {
+                    journal.put(parcel(i));
+                }
+            }
+            recover("log", parcels, journalDirectory);
+
+            // Every parcel in a snapshot
+            try (LandParcelJournal journal = journal(journalDirectory)) {
+                LandParcelStore store = journal.recover();
+                journal.writeSnapshot(store.snapshot(), journal.roll());
+            }
+            recover("snapshot", parcels, journalDirectory);
+        }
+    }
+
+    private static void recover(String from, int parcels, Path journalDirectory) throws IOException {
+        System.gc();
+        long start = System.nanoTime();
+        LandParcelStore store;
+        try (LandParcelJournal journal = journal(journalDirectory)) {
+            store = journal.recover();
+        }
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        assertThat(store.size()).isEqualTo(parcels);
+        System.out.printf("recover from %-8s: %,d parcels in %,d ms%n", from, parcels, millis);
+    }
+
+    private static LandParcelJournal journal(Path journalDirectory) throws IOException {
+        return new LandParcelJournal(journalDirectory, LandParcelJournal.FsyncPolicy.NEVER, Duration.ZERO, 64 << 20);
+    }
+}
@@ -0,0 +1,92 @@
+package com.jonsaway.landclan.benchmark;
+
+import com.jonsaway.landclan.jpa.LandParcelRepository;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.BatchOperation;
+import com.jonsaway.landclan.service.LandParcelServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Compares updating a single attribute with PUT (sending every attribute)
+// and PATCH (sending just the changed one)
+// Both are now a single UPDATE of the supplied columns, so this measures the cost of the larger request
+// Run with: mvn test -Pbenchmark [-Dbenchmark.updates=20000]
+@Tag("benchmark")
+@SpringBootTest(properties = "landclan.limits.enabled=false")
+@AutoConfigureMockMvc
+public class PartialUpdateBenchmarkTests {
+    private static final int PARCELS = 1_000;
+    private static final int UPDATES = Integer.getInteger("benchmark.updates", 20_000);
+
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private LandParcelServiceImpl service;
+
+    @Autowired
+    private LandParcelRepository repository;
+
+    @BeforeEach
+    public void init() {
+        List<BatchOperation> operations = new ArrayList<>(PARCELS);
+        for(long objectId = 1; objectId <= PARCELS; objectId++) {
+            operations.add(BatchOperation.create(objectId, "Parcel " + objectId, ParcelStatus.SAVED, 42.0, true));
+        }
+        service.batch(operations);
+    }
+
+    @AfterEach
+    public void cleanup() {
+        repository.deleteAll();
+    }
+
+    @Test
+    public void benchmarkUpdate() throws Exception {
+        // Warm up both paths, so we're not timing class loading and JIT
+        update(MockMvcRequestBuilders::put, 2_000);
+        update(MockMvcRequestBuilders::patch, 2_000);
+
+        long putNanos = update(MockMvcRequestBuilders::put, UPDATES);
+        long patchNanos = update(MockMvcRequestBuilders::patch, UPDATES);
+
+        report("PUT", putNanos);
+        report("PATCH", patchNanos);
+        System.out.printf("PATCH speedup: %.2fx%n", (double) putNanos / patchNanos);
+    }
+
+    private interface Method {
+        MockHttpServletRequestBuilder request(String uri, Object... uriVariables);
+    }
+
+    // Move parcels through the statuses, one request per update
+    private long update(Method method, int count) throws Exception {
+        ParcelStatus[] statuses = {ParcelStatus.SHORT_LISTED, ParcelStatus.UNDER_CONSIDERATION, ParcelStatus.APPROVED};
+
+        long start = System.nanoTime();
+        for(int i = 0; i < count; i++) {
+            mvc.perform(method.request("/landParcel/{id}", 1 + i % PARCELS)
+                            .param("status", statuses[i % statuses.length].name()))
+                    .andExpect(status().isOk());
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static void report(String path, long nanos) {
+        System.out.printf("%-6s %,d updates in %,d ms (%,.0f updates/s, %,.1f us/update)%n",
+                path, UPDATES, nanos / 1_000_000, UPDATES * 1e9 / nanos, nanos / 1e3 / UPDATES);
+    }
+}
@@ -0,0 +1,101 @@
+package com.jonsaway.landclan.benchmark;
+
+import com.jonsaway.landclan.Application;
+import com.jonsaway.landclan.jpa.LandParcelFilter;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.BatchOperation;
+import com.jonsaway.landclan.service.LandParcelService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Cost of sharding to each kind of operation: unsharded, against the parcels spread (by hash) over 4 in-memory
+// databases
+// - a patch (routed to one shard)
+// - a page of 100 parcels, and a filtered page (read from every shard at once, and merged)
+// - streaming every parcel (every shard streamed at once, and merged)
+// NB: the shards here share one machine (and its cores), so this shows what the routing and merging cost, not what
+// spreading the load over separate databases gains
+// Run with: mvn test -Pbenchmark -Dtest=ShardingBenchmarkTests [-Dbenchmark.parcels=100000] [-Dbenchmark.shards=4]
+@Tag("benchmark")
+public class ShardingBenchmarkTests {
+    private static final int PARCELS = Integer.getInteger("benchmark.parcels", 100_000);
+    private static final int SHARDS = Integer.getInteger("benchmark.shards", 4);
+    private static final int OPERATIONS = 5_000;
+    private static final int PAGE_SIZE = 100;
+
+    @Test
+    public void benchmarkSharding() {
+        run(0);
+        run(SHARDS);
+    }
+
+    private void run(int shards) {
+        List<String> arguments = new ArrayList<>(List.of("--landclan.limits.enabled=false"));
+        if(shards > 0) {
+            StringJoiner urls = new StringJoiner(",");
+            for(int shard = 0; shard < shards; shard++) {
+                urls.add("jdbc:h2:mem:shardbench" + shard);
+            }
+            arguments.add("--landclan.shards.urls=" + urls);
+            arguments.add("--landclan.shards.hash=true");
+        }
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .properties("spring.main.web-application-type=none",
+                        "spring.datasource.url=jdbc:h2:mem:unsharded",
+                        "logging.level.root=WARN")
+                // (as arguments: default properties don't override application.properties)
+                .run(arguments.toArray(new String[0]));
+        try {
+            LandParcelService service = context.getBean(LandParcelService.class);
+            List<BatchOperation> operations = new ArrayList<>(PARCELS);
+            for(long objectId = 1; objectId <= PARCELS; objectId++) {
+                operations.add(BatchOperation.create(objectId, "Parcel " + objectId,
+                        ParcelStatus.values()[(int) (objectId % 4)], objectId % 1000, objectId % 2 == 0));
+            }
+            service.batch(operations);
+            LandParcelFilter filter = new LandParcelFilter(null, ParcelStatus.APPROVED, true, null, null);
+
+            // Twice over: the first as a warm-up, so we're not timing class loading and JIT
+            for(int round = 0; round < 2; round++) {
+                long patch = time(() -> service.patch(random(), null, ParcelStatus.SAVED, null, null));
+                long page = time(() -> service.retrievePage(random(), PAGE_SIZE));
+                long filtered = time(() -> service.retrieveFiltered(filter, random(), PAGE_SIZE));
+
+                AtomicLong streamed = new AtomicLong();
+                long start = System.nanoTime();
+                service.streamAll(landParcel -> streamed.incrementAndGet());
+                long stream = System.nanoTime() - start;
+
+                if(round == 1) {
+                    System.out.printf("%-10s: patch %,d us, page %,d us, filtered page %,d us, stream %,d parcels in %,d ms (%,.0f/s)%n",
+                            shards == 0 ? "unsharded" : shards + " shards", patch / 1000, page / 1000, filtered / 1000,
+                            streamed.get(), stream / 1_000_000, streamed.get() * 1e9 / stream);
+                }
+            }
+        }
+        finally {
+            context.close();
+        }
+    }
+
+    private static long random() {
+        return ThreadLocalRandom.current().nextLong(1, PARCELS + 1);
+    }
+
+    // Mean time of OPERATIONS runs of the operation, in nanoseconds
+    private static long time(Runnable operation) {
+        long start = System.nanoTime();
+        for(int i = 0; i < OPERATIONS; i++) {
+            operation.run();
+        }
+        return (System.nanoTime() - start) / OPERATIONS;
+    }
+}
@@ -0,0 +1,139 @@
+package com.jonsaway.landclan.benchmark;
+
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Startup time, and time to the first request served, of the application as built by the 'startup' profile
+// (mvn package -Pstartup), started RUNS times in each mode:
+// - jar: the executable jar (target/landclan-<version>.jar), for comparison
+// - classpath: the startup jar, with its libraries on the class path
+// - aot: the same, with the context Spring AOT worked out at build time (-Dspring.aot.enabled=true)
+// - aot+cds: the same, with the class-data sharing archive from the build's training run
+// - native: the native image (target/landclan), if it's been built (mvn -Pstartup,native native:compile)
+// Reports the median of Spring's own startup time ("Started Application in ...") and of the time from launching the
+// process to the first response to GET /landParcel?limit=1
+// Run with: mvn package -Pstartup && mvn test -Pbenchmark -Dtest=StartupBenchmarkTests [-Dbenchmark.runs=5]
+@Tag("benchmark")
+public class StartupBenchmarkTests {
+    private static final int RUNS = Integer.getInteger("benchmark.runs", 5);
+    private static final File TARGET = new File(System.getProperty("benchmark.target", "target"));
+    private static final Pattern STARTED = Pattern.compile("Started Application in ([0-9.]+) seconds");
+
+    @Test
+    public void benchmarkStartup() throws Exception {
+        String java = System.getProperty("java.home") + "/bin/java";
+        File startup = new File(TARGET, "startup");
+        File[] startupJars = startup.listFiles((dir, name) -> name.endsWith("-startup.jar"));
+        File[] jars = TARGET.listFiles((dir, name) -> name.matches("landclan-.*[0-9T](-SNAPSHOT)?\\.jar"));
+
+        if(jars != null && jars.length > 0) {
+            run("jar", TARGET, java, "-jar", jars[0].getAbsolutePath());
+        }
+        if(startupJars == null || startupJars.length == 0) {
+            System.out.println("No startup jar in " + startup + ": build it with mvn package -Pstartup");
+            return;
+        }
+        String jar = startupJars[0].getName();
+        run("classpath", startup, java, "-jar", jar);
+        run("aot", startup, java, "-Dspring.aot.enabled=true", "-jar", jar);
+        if(new File(startup, "landclan.jsa").exists()) {
+            run("aot+cds", startup, java, "-XX:SharedArchiveFile=landclan.jsa", "-Xlog:cds=off", "-Dspring.aot.enabled=true", "-jar", jar);
+        }
+        if(new File(TARGET, "landclan").canExecute()) {
+            run("native", TARGET, new File(TARGET, "landclan").getAbsolutePath());
+        }
+    }
+
+    // Start the application RUNS times with this command, and report the median times
+    private void run(String mode, File directory, String... command) throws Exception {
+        double[] started = new double[RUNS];
+        double[] firstRequest = new double[RUNS];
+        for(int run = 0; run < RUNS; run++) {
+            double[] times = start(directory, command);
+            started[run] = times[0];
+            firstRequest[run] = times[1];
+        }
+        Arrays.sort(started);
+        Arrays.sort(firstRequest);
+        System.out.printf("%-9s: started in %,.0f ms, first request served %,.0f ms after launch%n",
+                mode, started[RUNS / 2], firstRequest[RUNS / 2]);
+    }
+
+    // Start the application, wait for it to serve a request, then stop it
+    // Returns Spring's startup time and the time to the first response, in ms
+    private double[] start(File directory, String... command) throws Exception {
+        int port;
+        try (ServerSocket socket = new ServerSocket(0)) {
+            port = socket.getLocalPort();
+        }
+        List<String> arguments = new ArrayList<>(Arrays.asList(command));
+        arguments.add("--server.port=" + port);
+
+        long launched = System.nanoTime();
+        Process process = new ProcessBuilder(arguments).directory(directory).redirectErrorStream(true).start();
+        try {
+            // Spring's own figure, from the log (which is read to the end, so the process never blocks writing it)
+            CompletableFuture<Double> started = new CompletableFuture<>();
+            Thread reader = new Thread(() -> {
+                try (BufferedReader output = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                    for(String line = output.readLine(); line != null; line = output.readLine()) {
+                        Matcher matcher = STARTED.matcher(line);
+                        if(matcher.find()) {
+                            started.complete(Double.parseDouble(matcher.group(1)));
+                        }
+                    }
+                }
+                catch (IOException e) {
+                    // Stopped
+                }
+                started.complete(Double.NaN);
+            });
+            reader.setDaemon(true);
+            reader.start();
+
+            HttpClient client = HttpClient.newHttpClient();
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/landParcel?limit=1")).build();
+            while(true) {
+                if(!process.isAlive()) {
+                    throw new IllegalStateException("Exited with " + process.exitValue() + ": " + String.join(" ", command));
+                }
+                try {
+                    if(client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        break;
+                    }
+                }
+                catch (ConnectException e) {
+                    // Not listening yet
+                }
+                Thread.sleep(5);
+            }
+            double firstRequest = (System.nanoTime() - launched) / 1e6;
+            double seconds = started.get(30, TimeUnit.SECONDS);
+
+            process.destroy();
+            process.waitFor(30, TimeUnit.SECONDS);
+            return new double[] {seconds * 1000, firstRequest};
+        }
+        finally {
+            process.destroyForcibly();
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package com.jonsaway.landclan.benchmark;
+
+import com.jonsaway.landclan.Application;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.BatchOperation;
+import com.jonsaway.landclan.service.LandParcelService;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Compares the default (platform thread) and 'virtual' (virtual thread) execution modes under high concurrency
+// Each mode runs in its own application, on a real port, against its own in-memory database
+// A real database is remote, so each transaction pays a simulated round trip while holding its connection
+// The load is mostly cached retrieves (no database work), with some page reads (which need a connection):
+// with platform threads the page reads tie up Tomcat's threads waiting for a connection, delaying everything else
+// Reports both modes' figures side by side, whichever way they fall (on one core: virtual threads lowered p50 but not
+// throughput, and raised p99)
+// Run with: mvn test -Pbenchmark,java21 [-Dbenchmark.clients=1000] [-Dbenchmark.requests=50000] [-Dbenchmark.db-latency-ms=5]
+@Tag("benchmark")
+@EnabledForJreRange(min = JRE.JAVA_21)
+public class VirtualThreadLoadBenchmarkTests {
+    private static final int PARCELS = 1_000;
+    private static final int CLIENTS = Integer.getInteger("benchmark.clients", 1_000);
+    private static final int REQUESTS = Integer.getInteger("benchmark.requests", 50_000);
+    private static final int DB_LATENCY_MS = Integer.getInteger("benchmark.db-latency-ms", 5);
+
+    // One request in this many reads a page from the database
+    private static final int PAGE_EVERY = 10;
+
+    @Test
+    public void benchmarkLoad() throws Exception {
+        Result platform = run("platform");
+        Result virtual = run("virtual");
+
+        report("platform threads", platform);
+        report("virtual threads", virtual);
+        System.out.printf("virtual/platform: throughput %.2fx, p50 latency %.2fx, p99 latency %.2fx%n",
+                virtual.throughput() / platform.throughput(), (double) virtual.p50Nanos() / platform.p50Nanos(),
+                (double) virtual.p99Nanos() / platform.p99Nanos());
+    }
+
+    // Start the application in the given mode, load it, and shut it down again
+    private Result run(String mode) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class, SimulatedLatency.class)
+                .profiles(mode)
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:" + mode + ";DB_CLOSE_DELAY=-1",
+                        "logging.level.root=WARN")
+                // (without the request limits, which would turn most of this load away: as an argument, since default
+                // properties don't override application.properties)
+                .run("--landclan.limits.enabled=false");
+        try {
+            List<BatchOperation> operations = new ArrayList<>(PARCELS);
+            for(long objectId = 1; objectId <= PARCELS; objectId++) {
+                operations.add(BatchOperation.create(objectId, "Parcel " + objectId, ParcelStatus.SAVED, 42.0, true));
+            }
+            context.getBean(LandParcelService.class).batch(operations);
+
+            int port = ((WebServerApplicationContext) context).getWebServer().getPort();
+
+            // Warm up (including filling the cache), so we're not timing class loading and JIT
+            load(port, REQUESTS / 5);
+            return load(port, REQUESTS);
+        }
+        finally {
+            context.close();
+        }
+    }
+
+    // Send count requests from CLIENTS concurrent clients, each waiting for its response before sending the next
+    private Result load(int port, int count) throws Exception {
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        ExecutorService clients = Executors.newFixedThreadPool(CLIENTS);
+        AtomicInteger next = new AtomicInteger();
+        AtomicInteger errors = new AtomicInteger();
+        long[] latencies = new long[count];
+
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>(CLIENTS);
+        for(int c = 0; c < CLIENTS; c++) {
+            futures.add(clients.submit(() -> {
+                for(int request = next.getAndIncrement(); request < count; request = next.getAndIncrement()) {
+                    String path = request % PAGE_EVERY == 0
+                            ? "/landParcel?limit=20&after=" + (request % PARCELS)
+                            : "/landParcel/" + (1 + request % PARCELS);
+
+                    long sent = System.nanoTime();
+                    HttpResponse<Void> response = client.send(
+                            HttpRequest.newBuilder(URI.create("http://localhost:" + port + path)).build(),
+                            HttpResponse.BodyHandlers.discarding());
+                    latencies[request] = System.nanoTime() - sent;
+                    if(response.statusCode() != 200) {
+                        errors.incrementAndGet();
+                    }
+                }
+                return null;
+            }));
+        }
+        for(Future<?> future: futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        clients.shutdown();
+
+        Arrays.sort(latencies);
+        return new Result(count, errors.get(), elapsed, latencies[count / 2], latencies[count * 99 / 100]);
+    }
+
+    private static void report(String mode, Result result) {
+        System.out.printf("%-16s: %,d requests from %,d clients in %,d ms (%,.0f/s), p50 %.1f ms, p99 %.1f ms, %,d errors%n",
+                mode, result.requests(), CLIENTS, result.elapsedNanos() / 1_000_000, result.throughput(),
+                result.p50Nanos() / 1e6, result.p99Nanos() / 1e6, result.errors());
+    }
+
+    private record Result(int requests, int errors, long elapsedNanos, long p50Nanos, long p99Nanos) {
+        double throughput() {
+            return requests * 1e9 / elapsedNanos;
+        }
+    }
+
+    // Delay each connection checkout by a simulated database round trip, while holding the connection
+    @Configuration
+    static class SimulatedLatency {
+        @Bean
+        static BeanPostProcessor simulatedLatencyPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if(!(bean instanceof DataSource dataSource)) {
+                        return bean;
+                    }
+                    return new DelegatingDataSource(dataSource) {
+                        @Override
+                        public Connection getConnection() throws SQLException {
+                            Connection connection = super.getConnection();
+                            try {
+                                Thread.sleep(DB_LATENCY_MS);
+                            }
+                            catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                            }
+                            return connection;
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
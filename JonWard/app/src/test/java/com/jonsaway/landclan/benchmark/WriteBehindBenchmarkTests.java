@@ -0,0 +1,128 @@
+package com.jonsaway.landclan.benchmark;
+
+import com.jonsaway.landclan.Application;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.BatchOperation;
+import com.jonsaway.landclan.service.LandParcelService;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Compares writing each update as it's made with writing them behind, for bursts of updates to the same parcels
+// (each parcel is moved through every status, several times over)
+// Each mode runs in its own application, against its own in-memory database, with a simulated round trip per
+// transaction (see VirtualThreadLoadBenchmarkTests.SimulatedLatency)
+// Reports the update rate, latency, and the rows written to the database
+// Run with: mvn test -Pbenchmark -Dtest=WriteBehindBenchmarkTests [-Dbenchmark.parcels=1000] [-Dbenchmark.updates=20] [-Dbenchmark.db-latency-ms=5]
+@Tag("benchmark")
+public class WriteBehindBenchmarkTests {
+    private static final int PARCELS = Integer.getInteger("benchmark.parcels", 1_000);
+    // Updates to each parcel
+    private static final int UPDATES = Integer.getInteger("benchmark.updates", 20);
+    private static final int THREADS = 16;
+    private static final ParcelStatus[] STATUSES = { ParcelStatus.SAVED, ParcelStatus.UNDER_CONSIDERATION,
+            ParcelStatus.SHORT_LISTED, ParcelStatus.APPROVED };
+
+    @Test
+    public void benchmarkWriteBehind() throws Exception {
+        Result writeThrough = run(false);
+        Result writeBehind = run(true);
+
+        report("write-through", writeThrough);
+        report("write-behind", writeBehind);
+        System.out.printf("write-behind throughput: %.1fx, p99 latency: %.1fx lower, rows written: %.1fx fewer%n",
+                writeBehind.throughput() / writeThrough.throughput(), (double) writeThrough.p99Nanos() / writeBehind.p99Nanos(),
+                writeThrough.rowsWritten() / writeBehind.rowsWritten());
+    }
+
+    private Result run(boolean writeBehind) throws Exception {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class, VirtualThreadLoadBenchmarkTests.SimulatedLatency.class)
+                .properties("spring.main.web-application-type=none",
+                        "spring.datasource.url=jdbc:h2:mem:writebehind" + writeBehind + ";DB_CLOSE_DELAY=-1",
+                        "logging.level.root=WARN")
+                // (as an argument: default properties don't override application.properties)
+                .run("--landclan.write-behind.enabled=" + writeBehind);
+        try {
+            LandParcelService service = context.getBean(LandParcelService.class);
+            List<BatchOperation> operations = new ArrayList<>(PARCELS);
+            for(long objectId = 1; objectId <= PARCELS; objectId++) {
+                operations.add(BatchOperation.create(objectId, "Parcel " + objectId, ParcelStatus.SAVED, 42.0, true));
+            }
+            service.batch(operations);
+
+            // Warm up on the first few parcels, so we're not timing class loading and JIT
+            update(service, Math.min(PARCELS, 50));
+
+            MeterRegistry meterRegistry = context.getBean(MeterRegistry.class);
+            double before = writeBehind ? rowsWritten(meterRegistry) : 0;
+            Result result = update(service, PARCELS);
+            // (including writing whatever's still waiting, once the updates have all been acknowledged)
+            long start = System.nanoTime();
+            service.retrievePage(null, 1);
+            long flushNanos = System.nanoTime() - start;
+            return new Result(result.updates(), result.elapsedNanos(), result.p50Nanos(), result.p99Nanos(),
+                    writeBehind ? rowsWritten(meterRegistry) - before : result.updates(), flushNanos);
+        }
+        finally {
+            context.close();
+        }
+    }
+
+    // Move each of the first 'parcels' parcels through the statuses UPDATES times, from THREADS threads
+    // Each thread takes a parcel and sends all of its updates, one after another
+    private Result update(LandParcelService service, int parcels) throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(THREADS);
+        AtomicInteger next = new AtomicInteger(1);
+        long[] latencies = new long[parcels * UPDATES];
+
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>(THREADS);
+        for(int t = 0; t < THREADS; t++) {
+            futures.add(threads.submit(() -> {
+                for(int objectId = next.getAndIncrement(); objectId <= parcels; objectId = next.getAndIncrement()) {
+                    for(int i = 0; i < UPDATES; i++) {
+                        long sent = System.nanoTime();
+                        service.update(objectId, null, STATUSES[i % STATUSES.length], null, null);
+                        latencies[(objectId - 1) * UPDATES + i] = System.nanoTime() - sent;
+                    }
+                }
+                return null;
+            }));
+        }
+        for(Future<?> future: futures) {
+            future.get();
+        }
+        long elapsed = System.nanoTime() - start;
+        threads.shutdown();
+
+        Arrays.sort(latencies);
+        return new Result(latencies.length, elapsed, latencies[latencies.length / 2], latencies[latencies.length * 99 / 100], 0, 0);
+    }
+
+    // Rows written behind (written through, it's one per update)
+    private static double rowsWritten(MeterRegistry meterRegistry) {
+        return meterRegistry.get("landclan.write.behind.writes").counter().count();
+    }
+
+    private static void report(String mode, Result result) {
+        System.out.printf("%-13s: %,d updates in %,d ms (%,.0f/s), p50 %.2f ms, p99 %.2f ms, %,.0f rows written, final flush %,d ms%n",
+                mode, result.updates(), result.elapsedNanos() / 1_000_000, result.throughput(),
+                result.p50Nanos() / 1e6, result.p99Nanos() / 1e6, result.rowsWritten(), result.flushNanos() / 1_000_000);
+    }
+
+    private record Result(int updates, long elapsedNanos, long p50Nanos, long p99Nanos, double rowsWritten, long flushNanos) {
+        double throughput() {
+            return updates * 1e9 / elapsedNanos;
+        }
+    }
+}
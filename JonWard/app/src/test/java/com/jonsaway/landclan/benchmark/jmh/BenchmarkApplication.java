@@ -0,0 +1,49 @@
+package com.jonsaway.landclan.benchmark.jmh;
+
+import com.jonsaway.landclan.Application;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.LandParcelService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+// Starts the application (without a web server) for a JMH benchmark, against its own in-memory database
+// holding the given number of land parcels, with objectIds 1..rows
+class BenchmarkApplication {
+    private BenchmarkApplication() {}
+
+    static ConfigurableApplicationContext start(int rows) {
+        return start(rows, "jpa");
+    }
+
+    // As above, with the given land parcel store (landclan.store)
+    static ConfigurableApplicationContext start(int rows, String store) {
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(Application.class)
+                .web(WebApplicationType.NONE)
+                // (as arguments, so they override application.properties)
+                .run("--spring.datasource.url=jdbc:h2:mem:jmh" + rows + ";DB_CLOSE_DELAY=-1",
+                        "--spring.jpa.show-sql=false",
+                        "--logging.level.root=WARN",
+                        "--landclan.store=" + store);
+
+        if(store.equals("memory")) {
+            // Same parcels as below
+            LandParcelService service = context.getBean(LandParcelService.class);
+            for(long objectId = 1; objectId <= rows; objectId++) {
+                service.create(objectId, "Parcel " + objectId, ParcelStatus.values()[1 + (int) (objectId % 4)],
+                        (objectId % 1000) / 10.0, objectId % 2 == 0);
+            }
+            return context;
+        }
+
+        // Insert in a single statement, rather than through the service: populating a million rows
+        // shouldn't take longer than the benchmark itself
+        // (status is stored as the enum ordinal: cycle through SAVED..APPROVED)
+        context.getBean(JdbcTemplate.class).update(
+                "insert into land_parcel (object_id, name, status, area, constraints, version) " +
+                        "select x, 'Parcel ' || x, 1 + mod(x, 4), mod(x, 1000) / 10.0, mod(x, 2) = 0, 0 " +
+                        "from system_range(1, ?)", rows);
+        return context;
+    }
+}
@@ -0,0 +1,68 @@
+package com.jonsaway.landclan.benchmark.jmh;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.rest.LandParcelJsonSerializer;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Time to encode land parcels as JSON, as the controller does: a single parcel, and a page of them, as bytes, and a page
+// written straight to a stream (as to a response, with no output buffer to allocate)
+// Uses an ObjectMapper configured as Spring Boot's is, without starting the application, with either Jackson's bean
+// serialiser (serializer=bean) or the application's own (serializer=precompiled, see LandParcelJsonSerializer)
+// Run with: mvn test -Pjmh -Djmh.args="LandParcelJsonBenchmark -prof gc" (-prof gc reports the bytes allocated per operation)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LandParcelJsonBenchmark {
+    // Number of parcels in a page
+    @Param("100")
+    public int pageSize;
+
+    @Param({ "bean", "precompiled" })
+    public String serializer;
+
+    private ObjectMapper objectMapper;
+    private LandParcel landParcel;
+    private List<LandParcel> page;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json();
+        if(serializer.equals("precompiled")) {
+            builder.serializers(new LandParcelJsonSerializer());
+        }
+        objectMapper = builder.build();
+        landParcel = new LandParcel(123, "Alice House", ParcelStatus.SAVED, 42.0, true);
+        page = new ArrayList<>(pageSize);
+        for(long objectId = 1; objectId <= pageSize; objectId++) {
+            page.add(new LandParcel(objectId, "Parcel " + objectId, ParcelStatus.APPROVED, objectId / 10.0, objectId % 2 == 0));
+        }
+    }
+
+    @Benchmark
+    public byte[] encodeParcel() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(landParcel);
+    }
+
+    @Benchmark
+    public byte[] encodePage() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public void writePage() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), page);
+    }
+}
@@ -0,0 +1,53 @@
+package com.jonsaway.landclan.benchmark.jmh;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelRepository;
+import com.jonsaway.landclan.service.LandParcelService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+
+// Time to read the whole table, as the table grows
+// findAll materialises every parcel at once; streamAll (as used for newline-delimited JSON) reads them in chunks
+// Run with: mvn test -Pjmh -Djmh.args="LandParcelRepositoryBenchmark [-p rows=10000]"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class LandParcelRepositoryBenchmark {
+    // Number of parcels in the database
+    @Param({"10000", "100000", "1000000"})
+    public int rows;
+
+    private ConfigurableApplicationContext context;
+    private LandParcelRepository repository;
+    private LandParcelService service;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BenchmarkApplication.start(rows);
+        repository = context.getBean(LandParcelRepository.class);
+        service = context.getBean(LandParcelService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    @Benchmark
+    public void findAll(Blackhole blackhole) {
+        for(LandParcel landParcel: repository.findAll()) {
+            blackhole.consume(landParcel);
+        }
+    }
+
+    @Benchmark
+    public void streamAll(Blackhole blackhole) {
+        service.streamAll(blackhole::consume);
+    }
+}
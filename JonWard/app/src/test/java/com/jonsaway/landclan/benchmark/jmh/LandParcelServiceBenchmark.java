@@ -0,0 +1,75 @@
+package com.jonsaway.landclan.benchmark.jmh;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.LandParcelService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Time per call of the service's single-item operations, against an embedded H2 database
+// With the 'jpa' store, retrieve is served from the cache once warmed up, and the writes each go to the database;
+// with the 'memory' store, everything is a lookup in the in-memory store
+// Run with: mvn test -Pjmh -Djmh.args="LandParcelServiceBenchmark [-p rows=100000] [-p store=memory]"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 5)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LandParcelServiceBenchmark {
+    // Number of parcels in the database
+    @Param("10000")
+    public int rows;
+
+    // Where parcels are stored (landclan.store)
+    @Param({"jpa", "memory"})
+    public String store;
+
+    private ConfigurableApplicationContext context;
+    private LandParcelService service;
+
+    // Walks through the parcels in a scattered (but repeatable) order
+    private long next;
+    // New parcels are created above the existing ones
+    private long nextCreate;
+
+    @Setup(Level.Trial)
+    public void start() {
+        context = BenchmarkApplication.start(rows, store);
+        service = context.getBean(LandParcelService.class);
+        nextCreate = rows + 1;
+    }
+
+    @TearDown(Level.Trial)
+    public void stop() {
+        context.close();
+    }
+
+    private long nextObjectId() {
+        return 1 + (next++ * 7919) % rows;
+    }
+
+    @Benchmark
+    public LandParcel retrieve() {
+        return service.retrieve(nextObjectId());
+    }
+
+    @Benchmark
+    public List<LandParcel> retrievePage() {
+        return service.retrievePage(nextObjectId(), 20);
+    }
+
+    @Benchmark
+    public LandParcel create() {
+        return service.create(nextCreate++, "Created", ParcelStatus.SAVED, 42.0, true);
+    }
+
+    @Benchmark
+    public LandParcel update() {
+        long objectId = nextObjectId();
+        return service.update(objectId, "Updated " + objectId, null, 1.5, null);
+    }
+}
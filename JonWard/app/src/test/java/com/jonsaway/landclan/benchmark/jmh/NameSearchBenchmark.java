@@ -0,0 +1,90 @@
+package com.jonsaway.landclan.benchmark.jmh;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.LandParcelNameIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Time to search parcel names with LandParcelNameIndex (a page of 100), against scanning every name
+// Names are a made-up surname (tens of thousands of distinct ones), a kind of place and sometimes a number,
+// e.g. "Tobarson Hospital 12"
+// Run with: mvn test -Pjmh -Djmh.args="NameSearchBenchmark [-p parcels=4000000]"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx6g")
+public class NameSearchBenchmark {
+    private static final String[] SYLLABLES = { "to", "bar", "son", "ma", "ri", "ley", "ca", "del", "wick", "ham",
+            "ash", "ford", "ben", "lo", "ton", "mer", "ly", "gra", "ham", "stead", "al", "win", "thorp", "ke" };
+    private static final String[] PLACES = { "House", "Office", "School", "Field", "Hospital", "Farm", "Barn", "Mill",
+            "Cottage", "Yard", "Wood", "Lodge", "Works", "Depot", "Chapel", "Garage", "Paddock", "Orchard", "Quarry", "Wharf" };
+
+    @Param("1000000")
+    public int parcels;
+
+    private LandParcelNameIndex index;
+    private List<String> names;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        index = new LandParcelNameIndex();
+        names = new ArrayList<>(parcels);
+        for(long objectId = 1; objectId <= parcels; objectId++) {
+            StringBuilder surname = new StringBuilder();
+            for(int i = 2 + random.nextInt(3); i > 0; i--) {
+                surname.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+            }
+            surname.setCharAt(0, Character.toUpperCase(surname.charAt(0)));
+            String name = surname + " " + PLACES[random.nextInt(PLACES.length)]
+                    + (random.nextInt(4) == 0 ? " " + (1 + random.nextInt(200)) : "");
+            names.add(name);
+            index.parcelRecovered(new LandParcel(objectId, name, ParcelStatus.SAVED, 1, false));
+        }
+    }
+
+    // A whole word shared by 1 in 20 names
+    @Benchmark
+    public List<LandParcel> token() {
+        return index.search("hospital", LandParcelNameIndex.Mode.TOKEN, null, 100);
+    }
+
+    // As typed: a rare surname, then the start of a place
+    @Benchmark
+    public List<LandParcel> prefix() {
+        return index.search("Tobarson Hosp", LandParcelNameIndex.Mode.PREFIX, null, 100);
+    }
+
+    // A two letter prefix: thousands of surnames
+    @Benchmark
+    public List<LandParcel> shortPrefix() {
+        return index.search("ma", LandParcelNameIndex.Mode.PREFIX, null, 100);
+    }
+
+    // Misspelt surname and place
+    @Benchmark
+    public List<LandParcel> fuzzy() {
+        return index.search("Tobarsen Hsopital", LandParcelNameIndex.Mode.FUZZY, null, 100);
+    }
+
+    // The prefix search, by checking every name in turn (as a client downloading every parcel would)
+    @Benchmark
+    public List<String> prefixScan() {
+        List<String> found = new ArrayList<>();
+        for(String name: names) {
+            String lower = name.toLowerCase(Locale.ROOT);
+            if(lower.startsWith("tobarson ") && lower.contains(" hosp") && found.size() < 100) {
+                found.add(name);
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,81 @@
+package com.jonsaway.landclan.benchmark.jmh;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.jonsaway.landclan.export.ParcelColumnWriter;
+import com.jonsaway.landclan.export.ParcelRecordWriter;
+import com.jonsaway.landclan.export.ParcelWriter;
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Time to encode a run of parcels in each export format (to a stream that discards it),
+// without the database or HTTP: a JSON array, newline-delimited JSON, binary records and columns
+// Run with: mvn test -Pjmh -Djmh.args="ParcelExportBenchmark [-p parcels=100000]"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ParcelExportBenchmark {
+    @Param("10000")
+    public int parcels;
+
+    private ObjectMapper objectMapper;
+    private List<LandParcel> landParcels;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        landParcels = new ArrayList<>(parcels);
+        ParcelStatus[] statuses = ParcelStatus.values();
+        for(long objectId = 1; objectId <= parcels; objectId++) {
+            landParcels.add(new LandParcel(objectId, "Parcel " + (objectId % 10_000), statuses[1 + (int) (objectId % 4)], (objectId % 1000) / 10.0, objectId % 2 == 0));
+        }
+    }
+
+    @Benchmark
+    public void json() throws IOException {
+        objectMapper.writeValue(OutputStream.nullOutputStream(), landParcels);
+    }
+
+    // As the controller streams newline-delimited JSON
+    @Benchmark
+    public void ndjson() throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(OutputStream.nullOutputStream())) {
+            generator.setRootValueSeparator(null);
+            ObjectWriter writer = objectMapper.writerFor(LandParcel.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+            for(LandParcel landParcel: landParcels) {
+                writer.writeValue(generator, landParcel);
+                generator.writeRaw('\n');
+            }
+        }
+    }
+
+    @Benchmark
+    public void records() throws IOException {
+        write(new ParcelRecordWriter(OutputStream.nullOutputStream()));
+    }
+
+    @Benchmark
+    public void columns() throws IOException {
+        write(new ParcelColumnWriter(OutputStream.nullOutputStream()));
+    }
+
+    private void write(ParcelWriter writer) throws IOException {
+        for(LandParcel landParcel: landParcels) {
+            writer.write(landParcel);
+        }
+        writer.finish();
+    }
+}
@@ -0,0 +1,68 @@
+package com.jonsaway.landclan.benchmark.jmh;
+
+import com.jonsaway.landclan.limit.ConcurrencyLimit;
+import com.jonsaway.landclan.limit.TokenBucket;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+// Cost of the request limits to each request, with every thread hitting the same bucket and limit
+// (one client, one kind of endpoint: the most contended case), against the same token bucket behind a lock
+// Run with: mvn test -Pjmh -Djmh.args="RequestLimiterBenchmark [-t 8]"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(4)
+public class RequestLimiterBenchmark {
+    // Never runs out, so every acquisition succeeds (and updates the bucket)
+    private static final double RATE = 1e12;
+
+    private final TokenBucket bucket = new TokenBucket(RATE, 1_000, System.nanoTime());
+    private final ConcurrencyLimit limit = new ConcurrencyLimit(1_000);
+    private final LockedTokenBucket lockedBucket = new LockedTokenBucket(RATE, 1_000, System.nanoTime());
+
+    @Benchmark
+    public long tokenBucket() {
+        return bucket.tryAcquire(System.nanoTime());
+    }
+
+    @Benchmark
+    public long lockedTokenBucket() {
+        return lockedBucket.tryAcquire(System.nanoTime());
+    }
+
+    // A whole request's worth: a token, then the limit held and released
+    @Benchmark
+    public boolean request() {
+        if(bucket.tryAcquire(System.nanoTime()) > 0 || !limit.tryAcquire()) {
+            return false;
+        }
+        limit.release();
+        return true;
+    }
+
+    // TokenBucket, with a lock instead of compare-and-set
+    private static class LockedTokenBucket {
+        private final long interval;
+        private final long tolerance;
+        private long full;
+
+        LockedTokenBucket(double rate, int burst, long now) {
+            this.interval = Math.max(1, (long) (1_000_000_000L / rate));
+            this.tolerance = (burst - 1) * interval;
+            this.full = now;
+        }
+
+        synchronized long tryAcquire(long now) {
+            long wait = full - tolerance - now;
+            if(wait > 0) {
+                return wait;
+            }
+            full = Math.max(full, now) + interval;
+            return 0;
+        }
+    }
+}
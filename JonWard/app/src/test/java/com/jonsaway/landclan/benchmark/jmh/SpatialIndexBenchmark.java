@@ -0,0 +1,145 @@
+package com.jonsaway.landclan.benchmark.jmh;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.LandParcelSpatialIndex;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// Time to find parcels by where they are, with LandParcelSpatialIndex and by scanning every parcel:
+// those in a 200m box, those containing a point, and the 10 nearest a point
+// Parcels are random rectangles (up to 50m across) spread over a 100km square; queries go round a fixed set of points
+// Also the time to move a parcel (a change, as the service reports it to the index)
+// Run with: mvn test -Pjmh -Djmh.args="SpatialIndexBenchmark [-p parcels=100000]"
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx4g")
+public class SpatialIndexBenchmark {
+    private static final double EXTENT = 100_000;
+    private static final int QUERIES = 1024;
+
+    @Param("1000000")
+    public int parcels;
+
+    private LandParcelSpatialIndex index;
+    private List<LandParcel> landParcels;
+    private double[] queryX;
+    private double[] queryY;
+    private int query;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        index = new LandParcelSpatialIndex();
+        landParcels = new ArrayList<>(parcels);
+        for(long objectId = 1; objectId <= parcels; objectId++) {
+            double x = random.nextDouble() * EXTENT;
+            double y = random.nextDouble() * EXTENT;
+            LandParcel landParcel = new LandParcel(objectId, "Parcel " + objectId, ParcelStatus.SAVED, 0, false);
+            landParcel.setGeometry(ParcelGeometry.rectangle(x, y, x + 5 + random.nextDouble() * 45, y + 5 + random.nextDouble() * 45));
+            landParcels.add(landParcel);
+            index.parcelRecovered(landParcel);
+        }
+
+        queryX = new double[QUERIES];
+        queryY = new double[QUERIES];
+        for(int i = 0; i < QUERIES; i++) {
+            queryX[i] = random.nextDouble() * EXTENT;
+            queryY[i] = random.nextDouble() * EXTENT;
+        }
+    }
+
+    @Benchmark
+    public List<LandParcel> bboxIndex() {
+        int i = next();
+        return index.within(queryX[i], queryY[i], queryX[i] + 200, queryY[i] + 200, null, 100);
+    }
+
+    @Benchmark
+    public List<LandParcel> bboxScan() {
+        int i = next();
+        double minX = queryX[i], minY = queryY[i], maxX = minX + 200, maxY = minY + 200;
+        List<LandParcel> within = new ArrayList<>();
+        for(LandParcel landParcel: landParcels) {
+            ParcelGeometry geometry = landParcel.getGeometry();
+            if(geometry.minX() <= maxX && geometry.maxX() >= minX && geometry.minY() <= maxY && geometry.maxY() >= minY
+                    && within.size() < 100) {
+                within.add(landParcel);
+            }
+        }
+        return within;
+    }
+
+    @Benchmark
+    public List<LandParcel> containingIndex() {
+        int i = next();
+        return index.containing(queryX[i], queryY[i]);
+    }
+
+    @Benchmark
+    public List<LandParcel> containingScan() {
+        int i = next();
+        List<LandParcel> containing = new ArrayList<>();
+        for(LandParcel landParcel: landParcels) {
+            if(landParcel.getGeometry().contains(queryX[i], queryY[i])) {
+                containing.add(landParcel);
+            }
+        }
+        return containing;
+    }
+
+    @Benchmark
+    public List<LandParcelSpatialIndex.Nearby> nearestIndex() {
+        int i = next();
+        return index.nearest(queryX[i], queryY[i], 10);
+    }
+
+    @Benchmark
+    public List<LandParcelSpatialIndex.Nearby> nearestScan() {
+        int i = next();
+        // Max-heap of the nearest so far
+        PriorityQueue<LandParcelSpatialIndex.Nearby> nearest = new PriorityQueue<>(
+                Comparator.comparingDouble(LandParcelSpatialIndex.Nearby::distance).reversed());
+        for(LandParcel landParcel: landParcels) {
+            double distance = landParcel.getGeometry().distance(queryX[i], queryY[i]);
+            if(nearest.size() < 10) {
+                nearest.add(new LandParcelSpatialIndex.Nearby(distance, landParcel));
+            }
+            else if(distance < nearest.peek().distance()) {
+                nearest.poll();
+                nearest.add(new LandParcelSpatialIndex.Nearby(distance, landParcel));
+            }
+        }
+        List<LandParcelSpatialIndex.Nearby> sorted = new ArrayList<>(nearest);
+        sorted.sort(Comparator.comparingDouble(LandParcelSpatialIndex.Nearby::distance));
+        return sorted;
+    }
+
+    // Move a parcel to one of the query points (and leave it there: its old place is as good as any)
+    @Benchmark
+    public void move() {
+        int i = next();
+        int moved = (int) ((i * 7919L) % parcels);
+        LandParcel before = landParcels.get(moved);
+        LandParcel after = new LandParcel(before.getObjectId(), before.getName(), before.getStatus(), before.getArea(),
+                before.getConstraints(), before.getVersion() + 1);
+        after.setGeometry(ParcelGeometry.rectangle(queryX[i], queryY[i], queryX[i] + 20, queryY[i] + 20));
+        index.parcelChanged(before, after);
+        landParcels.set(moved, after);
+    }
+
+    private int next() {
+        query = (query + 1) % QUERIES;
+        return query;
+    }
+}
@@ -0,0 +1,236 @@
+package com.jonsaway.landclan.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.InMemoryLandParcelService;
+import com.jonsaway.landclan.service.LandParcelService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class LandParcelImporterTests {
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private LandParcelImporter importer;
+    private LandParcelService service;
+
+    @BeforeEach
+    public void init() {
+        service = new InMemoryLandParcelService();
+        importer = new LandParcelImporter();
+        importer.service = service;
+        importer.batchSize = 2;
+    }
+
+    private static ParcelReader csv(String csv) throws IOException {
+        return new CsvParcelReader(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // CSV of parcels 1..count
+    private static String parcels(int count) {
+        StringBuilder csv = new StringBuilder("objectId,name,status,area,constraints\n");
+        for(int objectId = 1; objectId <= count; objectId++) {
+            csv.append(objectId).append(",Parcel ").append(objectId).append(",SAVED,").append(objectId).append(",false\n");
+        }
+        return csv.toString();
+    }
+
+    // Test that valid rows are imported, and invalid ones reported by row, without stopping the import
+    @Test
+    public void testImportCsv() throws IOException {
+        service.create(369, "Charlie School", ParcelStatus.SHORT_LISTED, 103, true);
+
+        ImportReport report = importer.importParcels(csv("""
+                name,objectId,area,status,constraints,notes
+                "House, Alice",123,42,SAVED,true,ignored
+                Bob Office,246,27,approved,FALSE
+
+                Charlie School,369,103,SHORT_LISTED,true
+                Nobody,x,1,SAVED,true
+                David Field,4812,-2.5,SAVED,false
+                Eve Hospital,51020,198,NO_CHANGE,true
+                "Fred ""The"" Lab",6,1.5,UNDER_CONSIDERATION,false
+                """));
+
+        assertThat(report.rows()).isEqualTo(7);
+        assertThat(report.imported()).isEqualTo(3);
+        assertThat(report.failed()).isEqualTo(4);
+        assertThat(report.errors()).extracting(ImportError::row).containsExactlyInAnyOrder(3L, 4L, 5L, 6L);
+        assertThat(report.errors()).filteredOn(error -> error.row() == 5).singleElement()
+                .isEqualTo(new ImportError(5, 4812L, "Invalid area: -2.5"));
+
+        assertThat(service.retrieve(123)).usingRecursiveComparison().ignoringFields("version")
+                .isEqualTo(new LandParcel(123, "House, Alice", ParcelStatus.SAVED, 42, true));
+        assertThat(service.retrieve(246).getStatus()).isEqualTo(ParcelStatus.APPROVED);
+        assertThat(service.retrieve(6).getName()).isEqualTo("Fred \"The\" Lab");
+    }
+
+    // Test that a CSV without the required columns is rejected as a whole
+    @Test
+    public void testImportCsvMissingColumn() {
+        assertThatThrownBy(() -> csv("objectId,name,status,constraints\n1,Alice,SAVED,true\n"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("area");
+    }
+
+    // Test that parcels are read from GeoJSON features (with the objectId in the properties, or as the feature's id)
+    @Test
+    public void testImportGeoJson() throws IOException {
+        String geoJson = """
+                {"type": "FeatureCollection", "name": "parcels", "features": [
+                  {"type": "Feature", "geometry": {"type": "Point", "coordinates": [0.1, 51.5]},
+                   "properties": {"objectId": 123, "name": "Alice House", "status": "SAVED", "area": 42, "constraints": true}},
+                  {"type": "Feature", "id": 246, "geometry": null,
+                   "properties": {"name": "Bob Office", "status": "APPROVED", "area": 27.0, "constraints": false}},
+                  {"type": "Feature", "properties": {"objectId": 369, "name": "Charlie School"}}
+                ], "crs": {"type": "name"}}
+                """;
+        ImportReport report = importer.importParcels(new GeoJsonParcelReader(new ByteArrayInputStream(geoJson.getBytes(StandardCharsets.UTF_8)), OBJECT_MAPPER));
+
+        assertThat(report.rows()).isEqualTo(3);
+        assertThat(report.imported()).isEqualTo(2);
+        assertThat(report.errors()).containsExactly(new ImportError(3, 369L, "Invalid status: null"));
+        assertThat(service.retrieve(123)).usingRecursiveComparison().ignoringFields("version")
+                .isEqualTo(new LandParcel(123, "Alice House", ParcelStatus.SAVED, 42, true));
+        assertThat(service.retrieve(246).getArea()).isEqualTo(27.0);
+    }
+
+    // Test that a Polygon geometry is imported as the parcel's shape (and area), and an invalid one is reported
+    @Test
+    public void testImportGeoJsonPolygon() throws IOException {
+        String geoJson = """
+                {"type": "FeatureCollection", "features": [
+                  {"type": "Feature", "geometry": {"type": "Polygon", "coordinates": [[[0, 0], [4, 0], [4, 3], [0, 3], [0, 0]]]},
+                   "properties": {"objectId": 123, "name": "Alice House", "status": "SAVED", "constraints": true}},
+                  {"type": "Feature", "geometry": {"type": "Polygon", "coordinates": [[[0, 0], [4, 0]]]},
+                   "properties": {"objectId": 246, "name": "Bob Office", "status": "APPROVED", "area": 27.0, "constraints": false}}
+                ]}
+                """;
+        ImportReport report = importer.importParcels(new GeoJsonParcelReader(new ByteArrayInputStream(geoJson.getBytes(StandardCharsets.UTF_8)), OBJECT_MAPPER));
+
+        assertThat(report.imported()).isEqualTo(1);
+        assertThat(report.errors()).singleElement().satisfies(error -> {
+            assertThat(error.objectId()).isEqualTo(246L);
+            assertThat(error.message()).startsWith("Invalid geometry: ");
+        });
+        assertThat(service.retrieve(123).getGeometry()).isEqualTo(ParcelGeometry.rectangle(0, 0, 4, 3));
+        assertThat(service.retrieve(123).getArea()).isEqualTo(12.0);
+    }
+
+    // Test that an interrupted import carries on from its checkpoint, and the checkpoint is removed once it's complete
+    @Test
+    public void testResume(@TempDir Path directory) throws IOException {
+        Path checkpoint = directory.resolve("parcels.csv.checkpoint");
+        // The earlier run got as far as row 4, and had started on rows 5 to 8: it had written row 5
+        Files.writeString(checkpoint, "4 8");
+        service.create(5, "Parcel 5", ParcelStatus.SAVED, 5, false);
+        // Parcels it didn't create: on a row it had reached, and on a row it hadn't
+        service.create(6, "Someone else's", ParcelStatus.SAVED, 6, false);
+        service.create(9, "Parcel 9", ParcelStatus.SAVED, 9, false);
+
+        ImportReport report = importer.importParcels(csv(parcels(10)), checkpoint);
+
+        assertThat(report.rows()).isEqualTo(10);
+        assertThat(report.skipped()).isEqualTo(4);
+        assertThat(report.alreadyImported()).isEqualTo(1);
+        assertThat(report.imported()).isEqualTo(3);
+        assertThat(report.failed()).isEqualTo(2);
+        assertThat(report.errors()).extracting(ImportError::row).containsExactlyInAnyOrder(6L, 9L);
+        assertThat(service.retrievePage(null, 100)).extracting(LandParcel::getObjectId).containsExactly(5L, 6L, 7L, 8L, 9L, 10L);
+        assertThat(service.retrieve(6).getName()).isEqualTo("Someone else's");
+        assertThat(checkpoint).doesNotExist();
+    }
+
+    // Test that a failed import leaves a checkpoint covering what it imported
+    @Test
+    public void testCheckpointOnFailure(@TempDir Path directory) throws IOException {
+        Path checkpoint = directory.resolve("parcels.csv.checkpoint");
+        ParcelReader parcels = csv(parcels(100));
+        AtomicInteger read = new AtomicInteger();
+        ParcelReader failing = new ParcelReader() {
+            @Override
+            public Row next() throws IOException {
+                if(read.incrementAndGet() > 51) {
+                    throw new IOException("Disk on fire");
+                }
+                return parcels.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        assertThatThrownBy(() -> importer.importParcels(failing, checkpoint)).hasMessage("Disk on fire");
+
+        // Every full batch read before the failure was written (and none after it was started)
+        assertThat(Files.readString(checkpoint)).isEqualTo("50 50");
+        assertThat(service.retrievePage(null, 100)).hasSize(50);
+
+        ImportReport report = importer.importParcels(csv(parcels(100)), checkpoint);
+        assertThat(report.skipped()).isEqualTo(50);
+        assertThat(report.imported()).isEqualTo(50);
+        assertThat(service.retrievePage(null, 100)).hasSize(100);
+    }
+
+    // Test that reading waits for the writers, rather than queueing up the whole file
+    @Test
+    public void testBackpressure() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        LandParcelService slowService = mock(LandParcelService.class);
+        when(slowService.batch(any())).thenAnswer(invocation -> {
+            release.await();
+            return service.batch(invocation.getArgument(0));
+        });
+        importer.service = slowService;
+        importer.writers = 1;
+        importer.queueSize = 1;
+
+        ParcelReader parcels = csv(parcels(1000));
+        AtomicInteger read = new AtomicInteger();
+        ParcelReader counting = new ParcelReader() {
+            @Override
+            public Row next() throws IOException {
+                read.incrementAndGet();
+                return parcels.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<ImportReport> report = executor.submit(() -> importer.importParcels(counting));
+            Thread.sleep(200);
+            // One batch being written, one queued, and one waiting to be queued
+            assertThat(read.get()).isLessThanOrEqualTo(3 * importer.batchSize + 1);
+
+            release.countDown();
+            assertThat(report.get(10, TimeUnit.SECONDS).imported()).isEqualTo(1000);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.jonsaway.landclan.jpa;
+
+import com.jonsaway.landclan.rest.ParcelStatus;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+// Verifies the filter query against the real (H2) database, including which indexes it uses
+@DataJpaTest
+public class LandParcelRepositoryTests {
+    private static final int PARCELS = 5_000;
+
+    @Autowired
+    private LandParcelRepository repository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @BeforeEach
+    public void init() {
+        // NB: ANALYZE commits, so the parcels outlive each test's transaction: only add them once
+        if(repository.count() > 0) {
+            return;
+        }
+
+        // Spread the parcels across the statuses, constraints and areas
+        ParcelStatus[] statuses = {ParcelStatus.SAVED, ParcelStatus.SHORT_LISTED, ParcelStatus.UNDER_CONSIDERATION, ParcelStatus.APPROVED};
+        for(long objectId = 1; objectId <= PARCELS; objectId++) {
+            repository.insert(objectId, "Parcel " + objectId, statuses[(int) (objectId % statuses.length)], objectId % 100, objectId % 2 == 0, 0);
+        }
+
+        // Make sure the optimizer has up to date statistics
+        entityManager.createNativeQuery("analyze").executeUpdate();
+    }
+
+    // Test that each criterion is applied, and results are in objectId order
+    @Test
+    public void testFilter() {
+        List<LandParcel> parcels = repository.filter(new LandParcelFilter(null, ParcelStatus.APPROVED, false, 10.0, 20.0), null, 1000);
+        assertThat(parcels).isNotEmpty();
+        assertThat(parcels).allSatisfy(parcel -> {
+            assertThat(parcel.getStatus()).isEqualTo(ParcelStatus.APPROVED);
+            assertThat(parcel.getConstraints()).isFalse();
+            assertThat(parcel.getArea()).isBetween(10.0, 20.0);
+        });
+        assertThat(parcels).extracting(LandParcel::getObjectId).isSorted();
+
+        // Continue from a cursor
+        long cursor = parcels.get(0).getObjectId();
+        List<LandParcel> next = repository.filter(new LandParcelFilter(null, ParcelStatus.APPROVED, false, 10.0, 20.0), cursor, 1000);
+        assertThat(next).hasSize(parcels.size() - 1);
+        assertThat(next.get(0).getObjectId()).isEqualTo(parcels.get(1).getObjectId());
+
+        // Name is an exact match
+        assertThat(repository.filter(new LandParcelFilter("Parcel 42", null, null, null, null), null, 10))
+                .extracting(LandParcel::getObjectId).containsExactly(42L);
+
+        // Limit is honoured
+        assertThat(repository.filter(new LandParcelFilter(null, null, null, null, null), null, 10)).hasSize(10);
+    }
+
+    // Test that filtering by status (and constraints) uses the status index
+    @Test
+    public void testFilterByStatusUsesIndex() {
+        assertThat(plan("where status = 3 and constraints = false and area >= 10 and object_id > 100 order by object_id"))
+                .contains("IDX_LAND_PARCEL_STATUS");
+        assertThat(plan("where status = 3 order by object_id"))
+                .contains("IDX_LAND_PARCEL_STATUS");
+    }
+
+    // Test that filtering by area range uses the area index
+    @Test
+    public void testFilterByAreaUsesIndex() {
+        assertThat(plan("where area >= 10 and area <= 11 order by object_id"))
+                .contains("IDX_LAND_PARCEL_AREA");
+    }
+
+    // Test that filtering by name uses the name index
+    @Test
+    public void testFilterByNameUsesIndex() {
+        assertThat(plan("where name = 'Parcel 42' order by object_id"))
+                .contains("IDX_LAND_PARCEL_NAME");
+    }
+
+    // Test that the native statements' database is checked: H2 passes, anything else fails
+    @Test
+    public void testRequireH2() throws Exception {
+        LandParcelRepositoryImpl.requireH2(dataSource);
+
+        DataSource other = mock(DataSource.class);
+        Connection connection = mock(Connection.class);
+        DatabaseMetaData metaData = mock(DatabaseMetaData.class);
+        when(other.getConnection()).thenReturn(connection);
+        when(connection.getMetaData()).thenReturn(metaData);
+        when(metaData.getDatabaseProductName()).thenReturn("PostgreSQL");
+        when(metaData.getURL()).thenReturn("jdbc:postgresql://localhost/landclan");
+        assertThatThrownBy(() -> LandParcelRepositoryImpl.requireH2(other))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("PostgreSQL");
+    }
+
+    // The query plan H2 chooses for the filter query (as generated by LandParcelRepositoryImpl.filter) with these criteria
+    private String plan(String criteria) {
+        return entityManager.createNativeQuery("explain select object_id, name, status, area, constraints, version from land_parcel "
+                        + criteria + " fetch first 100 rows only")
+                .getSingleResult()
+                .toString()
+                .toUpperCase();
+    }
+}
@@ -0,0 +1,20 @@
+package com.jonsaway.landclan.rest;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+// The API contract (see LandParcelApiContract, in the domain module's tests), against this application
+// Over HTTP, rather than through MockMvc, so long-polls time out as they do for a real client
+// (without the request limits, as for LandParcelControllerTests)
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "landclan.limits.enabled=false")
+public class LandParcelApiContractTests extends LandParcelApiContract {
+    @Autowired
+    private WebTestClient client;
+
+    @Override
+    protected WebTestClient client() {
+        return client;
+    }
+}
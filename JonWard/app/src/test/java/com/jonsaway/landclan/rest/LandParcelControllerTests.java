@@ -0,0 +1,1130 @@
+package com.jonsaway.landclan.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jonsaway.landclan.export.ParcelColumnWriter;
+import com.jonsaway.landclan.export.ParcelRecordWriter;
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.service.LandParcelChangeFeed;
+import com.jonsaway.landclan.service.LandParcelService;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+import org.springframework.test.web.servlet.result.PrintingResultHandler;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.everyItem;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// (without the request limits: these tests read every parcel far more often than a client is allowed to;
+// see RequestLimiterTests)
+@SpringBootTest(properties = "landclan.limits.enabled=false")
+@AutoConfigureMockMvc
+// Export metrics (to Prometheus) as the application does, rather than discarding them as tests normally do
+@AutoConfigureObservability(tracing = false)
+@Import(LandParcelControllerTests.ThrowingController.class)
+public class LandParcelControllerTests {
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private LandParcelChangeFeed changeFeed;
+
+    @BeforeEach
+    public void init() throws Exception {
+        // Ensure that the database is empty before each test.
+        // NB: this is safe for our in-memory tests, but wouldn't want to do this near real data...
+        // NB: for simplicity, just delete the objects we may have added during these tests
+        // (also gets rid of objects created by the 'demo' function in the Application
+
+        // Some of these deletes may fail, if we haven't created them yet. Don't really care...
+        mvc.perform(MockMvcRequestBuilders.delete("/landParcel/123"));
+        mvc.perform(MockMvcRequestBuilders.delete("/landParcel/246"));
+        mvc.perform(MockMvcRequestBuilders.delete("/landParcel/369"));
+        mvc.perform(MockMvcRequestBuilders.delete("/landParcel/4812"));
+        mvc.perform(MockMvcRequestBuilders.delete("/landParcel/51020"));
+
+        // DB should be empty at this point
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("[]")));
+    }
+
+    // Test that we can retrieve all objects from the repository
+    @Test
+    public void testRetrieveAll() throws Exception {
+        // At this point, the repository should be empty
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("[]")));
+
+        // add some entries to the repository
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "SAVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                    .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/246")
+                        .param("name","Bob Office")
+                        .param("status", "APPROVED")
+                        .param("area", "27.0")
+                        .param("constraints", "false"))
+                   .andExpect(status().isOk());
+
+        // Check that we can retrieve the entries
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("[{\"objectId\":123,\"name\":\"Alice House\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true},{\"objectId\":246,\"name\":\"Bob Office\",\"status\":\"APPROVED\",\"area\":27.0,\"constraints\":false}]")));
+    }
+
+    // Test that we can retrieve all objects from the repository a page at a time
+    @Test
+    public void testRetrievePage() throws Exception {
+        // add some entries to the repository (out of order)
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/369")
+                        .param("name","Charlie School")
+                        .param("status", "SHORT_LISTED")
+                        .param("area", "103.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "SAVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/246")
+                        .param("name","Bob Office")
+                        .param("status", "APPROVED")
+                        .param("area", "27.0")
+                        .param("constraints", "false"))
+                .andExpect(status().isOk());
+
+        // First page is ordered by objectId, and links to the next page
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel").param("limit", "2").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.LINK, "</landParcel?limit=2&after=246>; rel=\"next\""))
+                .andExpect(content().string(equalTo("[{\"objectId\":123,\"name\":\"Alice House\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true},{\"objectId\":246,\"name\":\"Bob Office\",\"status\":\"APPROVED\",\"area\":27.0,\"constraints\":false}]")));
+
+        // Last page is not full, so has no link
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel").param("limit", "2").param("after", "246").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.LINK))
+                .andExpect(content().string(equalTo("[{\"objectId\":369,\"name\":\"Charlie School\",\"status\":\"SHORT_LISTED\",\"area\":103.0,\"constraints\":true}]")));
+
+        // Out of range page sizes are rejected
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel").param("limit", "0").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel").param("limit", "1001").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Test that we can retrieve the objects matching a filter, a page at a time
+    @Test
+    public void testRetrieveFiltered() throws Exception {
+        // add some entries to the repository
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "APPROVED")
+                        .param("area", "42.0")
+                        .param("constraints", "false"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/246")
+                        .param("name","Bob Office")
+                        .param("status", "APPROVED")
+                        .param("area", "27.0")
+                        .param("constraints", "false"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/369")
+                        .param("name","Charlie School")
+                        .param("status", "APPROVED")
+                        .param("area", "103.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/4812")
+                        .param("name","David Field")
+                        .param("status", "SAVED")
+                        .param("area", "2.5")
+                        .param("constraints", "false"))
+                .andExpect(status().isOk());
+
+        // Combine criteria, a page at a time
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/filter")
+                        .param("status", "APPROVED")
+                        .param("minArea", "10")
+                        .param("constraints", "false")
+                        .param("limit", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.LINK, "</landParcel/filter?status=APPROVED&constraints=false&minArea=10.0&limit=1&after=123>; rel=\"next\""))
+                .andExpect(content().string(equalTo("[{\"objectId\":123,\"name\":\"Alice House\",\"status\":\"APPROVED\",\"area\":42.0,\"constraints\":false}]")));
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/filter?status=APPROVED&constraints=false&minArea=10.0&limit=1&after=123")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("[{\"objectId\":246,\"name\":\"Bob Office\",\"status\":\"APPROVED\",\"area\":27.0,\"constraints\":false}]")));
+
+        // Area range
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/filter")
+                        .param("minArea", "2.5")
+                        .param("maxArea", "30")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.LINK))
+                .andExpect(jsonPath("$[*].objectId", org.hamcrest.Matchers.contains(246, 4812)));
+
+        // Name
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/filter")
+                        .param("name", "Charlie School")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].objectId", org.hamcrest.Matchers.contains(369)));
+
+        // Out of range page sizes are rejected
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/filter").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Test that we can stream all objects from the repository as newline-delimited JSON
+    @Test
+    public void testStreamAll() throws Exception {
+        // add some entries to the repository (out of order)
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/246")
+                        .param("name","Bob Office")
+                        .param("status", "APPROVED")
+                        .param("area", "27.0")
+                        .param("constraints", "false"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "SAVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk());
+
+        // The response is written asynchronously
+        MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/landParcel").accept(LandParcelRoutes.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(LandParcelRoutes.APPLICATION_NDJSON_VALUE))
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Alice House\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}\n{\"objectId\":246,\"name\":\"Bob Office\",\"status\":\"APPROVED\",\"area\":27.0,\"constraints\":false}\n")));
+    }
+
+    // Test that all parcels can be exported in the binary formats, and read back
+    @Test
+    public void testExport() throws Exception {
+        // add some entries to the repository (out of order)
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/246")
+                        .param("name","Bob Office")
+                        .param("status", "APPROVED")
+                        .param("area", "27.0")
+                        .param("constraints", "false"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "SAVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk());
+
+        for(String mediaType: List.of(ParcelRecordWriter.MEDIA_TYPE, ParcelColumnWriter.MEDIA_TYPE)) {
+            // The response is written asynchronously
+            MvcResult result = mvc.perform(MockMvcRequestBuilders.get("/landParcel").accept(mediaType))
+                    .andExpect(request().asyncStarted())
+                    .andReturn();
+            byte[] export = mvc.perform(MockMvcRequestBuilders.asyncDispatch(result))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(mediaType))
+                    .andReturn().getResponse().getContentAsByteArray();
+
+            List<String> parcels = new ArrayList<>();
+            InputStream in = new ByteArrayInputStream(export);
+            if(mediaType.equals(ParcelRecordWriter.MEDIA_TYPE)) {
+                ParcelRecordWriter.read(in, landParcel -> parcels.add(landParcel.toString()));
+            }
+            else {
+                ParcelColumnWriter.read(in, landParcel -> parcels.add(landParcel.toString()));
+            }
+            assertThat(parcels).containsExactly(
+                    new LandParcel(123, "Alice House", ParcelStatus.SAVED, 42.0, true).toString(),
+                    new LandParcel(246, "Bob Office", ParcelStatus.APPROVED, 27.0, false).toString());
+        }
+    }
+
+    // Test that changes can be long-polled, and streamed as server-sent events
+    @Test
+    public void testChanges() throws Exception {
+        long latest = changeFeed.latest();
+
+        // Waits for the next change
+        MvcResult waiting = mvc.perform(MockMvcRequestBuilders.get("/landParcel/changes")
+                        .param("after", String.valueOf(latest)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "SAVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(waiting))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.latest").value(latest + 1))
+                .andExpect(jsonPath("$.changes[0].sequence").value(latest + 1))
+                .andExpect(jsonPath("$.changes[0].type").value("CREATE"))
+                .andExpect(jsonPath("$.changes[0].objectId").value(123))
+                .andExpect(jsonPath("$.changes[0].before").doesNotExist())
+                .andExpect(jsonPath("$.changes[0].after.name").value("Alice House"));
+
+        // Already available
+        mvc.perform(MockMvcRequestBuilders.patch("/landParcel/123")
+                        .param("status", "APPROVED"))
+                .andExpect(status().isOk());
+        MvcResult available = mvc.perform(MockMvcRequestBuilders.get("/landParcel/changes")
+                        .param("after", String.valueOf(latest + 1)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(available))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changes[0].type").value("UPDATE"))
+                .andExpect(jsonPath("$.changes[0].before.status").value("SAVED"))
+                .andExpect(jsonPath("$.changes[0].after.status").value("APPROVED"));
+
+        // From before a restart
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/changes")
+                        .param("after", String.valueOf(latest + 100)))
+                .andExpect(status().isGone());
+
+        // Streamed, resuming from the Last-Event-ID
+        MvcResult streaming = mvc.perform(MockMvcRequestBuilders.get("/landParcel/changes")
+                        .accept(MediaType.TEXT_EVENT_STREAM)
+                        .header("Last-Event-ID", String.valueOf(latest + 1)))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(MockMvcRequestBuilders.delete("/landParcel/123"))
+                .andExpect(status().isOk());
+        String events = "";
+        for(int attempt = 0; attempt < 100 && !events.contains("id:" + (latest + 3)); attempt++) {
+            Thread.sleep(20);
+            events = streaming.getResponse().getContentAsString();
+        }
+        assertThat(events).doesNotContain("id:" + (latest + 1) + "\n")
+                .contains("id:" + (latest + 2) + "\nevent:change\ndata:{\"sequence\":" + (latest + 2) + ",\"type\":\"UPDATE\"")
+                .contains("id:" + (latest + 3) + "\nevent:change\ndata:{\"sequence\":" + (latest + 3) + ",\"type\":\"DELETE\"");
+    }
+
+    // Test that we can retrieve a given object that exists in the repository
+    @Test
+    public void testRetrieveExistingParcel() throws Exception {
+        // At this point, the repository should be empty
+        // add some entries to the repository
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "SAVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/246")
+                        .param("name","Bob Office")
+                        .param("status", "APPROVED")
+                        .param("area", "27.0")
+                        .param("constraints", "false"))
+                .andExpect(status().isOk());
+
+        // Check that we can retrieve an entry
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/246").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":246,\"name\":\"Bob Office\",\"status\":\"APPROVED\",\"area\":27.0,\"constraints\":false}")));
+    }
+
+    // Test that an attempt to retrieve a non-existant object from the repository will fail
+    @Test
+    public void testRetrieveNonExistantParcel() throws Exception {
+        // At this point, the repository should be empty
+        // add some entries to the repository
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "SAVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/246")
+                        .param("name","Bob Office")
+                        .param("status", "APPROVED")
+                        .param("area", "27.0")
+                        .param("constraints", "false"))
+                .andExpect(status().isOk());
+
+        // Check that retrieve fails for non-existant object
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/12").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string(equalTo("")));
+    }
+
+    // Test we can create a new object in the repository
+    @Test
+    public void testCreateNew() throws Exception {
+        // At this point, the repository should be empty
+        // Add an entry to the repository
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "SAVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Alice House\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}")));
+    }
+
+    // Test that an attempt to create object reusing an id that exists in the repository will fail
+    @Test
+    public void testCreateAlreadyExists() throws Exception {
+        // At this point, the repository should be empty
+        // Add an entry to the repository - this should succeed
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "SAVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Alice House\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}")));
+
+        // Try to add another entry to the repository with the same ID - this should fail
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","NOT Alice")
+                        .param("status", "APPROVED")
+                        .param("area", "423.0")
+                        .param("constraints", "false"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(equalTo("")));
+    }
+
+    // Test we can update an object that exists in the repository
+    @Test
+    public void testUpdateExisting() throws Exception {
+        // At this point, the repository should be empty
+        // Add an entry to the repository
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "SAVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Alice House\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}")));
+
+        // Modify the existing entry
+        mvc.perform(MockMvcRequestBuilders.put("/landParcel/123")
+                        .param("name","Renamed"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Renamed\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}")));
+
+        // We can modify each value in turn...
+        mvc.perform(MockMvcRequestBuilders.put("/landParcel/123")
+                        .param("status", "UNDER_CONSIDERATION"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Renamed\",\"status\":\"UNDER_CONSIDERATION\",\"area\":42.0,\"constraints\":true}")));
+
+        mvc.perform(MockMvcRequestBuilders.put("/landParcel/123")
+                        .param("area", "423.0"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Renamed\",\"status\":\"UNDER_CONSIDERATION\",\"area\":423.0,\"constraints\":true}")));
+
+        mvc.perform(MockMvcRequestBuilders.put("/landParcel/123")
+                        .param("constraints", "false"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Renamed\",\"status\":\"UNDER_CONSIDERATION\",\"area\":423.0,\"constraints\":false}")));
+
+        // ... or modify multiple values simultaneously
+        mvc.perform(MockMvcRequestBuilders.put("/landParcel/123")
+                        .param("name","Renamed Again")
+                        .param("status", "APPROVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Renamed Again\",\"status\":\"APPROVED\",\"area\":42.0,\"constraints\":true}")));
+    }
+
+    // Test that attempt to update an object that does not exist in the repository will fail
+    @Test
+    public void testUpdateNew() throws Exception {
+        // At this point, the repository should be empty
+        // Try to update a non-existant entry - this should fail
+        mvc.perform(MockMvcRequestBuilders.put("/landParcel/123")
+                        .param("name","Renamed Again")
+                        .param("status", "APPROVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string(equalTo("")));
+    }
+
+
+    // Test we can partially update an object that exists in the repository
+    @Test
+    public void testPatchExisting() throws Exception {
+        // At this point, the repository should be empty
+        // Add an entry to the repository
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "SAVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk());
+
+        // Modify a single value
+        mvc.perform(MockMvcRequestBuilders.patch("/landParcel/123")
+                        .param("status", "UNDER_CONSIDERATION"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Alice House\",\"status\":\"UNDER_CONSIDERATION\",\"area\":42.0,\"constraints\":true}")));
+
+        // ... or multiple values simultaneously
+        mvc.perform(MockMvcRequestBuilders.patch("/landParcel/123")
+                        .param("name","Renamed")
+                        .param("area", "423.0")
+                        .param("constraints", "false"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Renamed\",\"status\":\"UNDER_CONSIDERATION\",\"area\":423.0,\"constraints\":false}")));
+
+        // ... or nothing at all
+        mvc.perform(MockMvcRequestBuilders.patch("/landParcel/123"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Renamed\",\"status\":\"UNDER_CONSIDERATION\",\"area\":423.0,\"constraints\":false}")));
+
+        // The changes are visible to subsequent retrieves
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/123").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Renamed\",\"status\":\"UNDER_CONSIDERATION\",\"area\":423.0,\"constraints\":false}")));
+    }
+
+    // Test that attempt to partially update an object that does not exist in the repository will fail
+    @Test
+    public void testPatchNew() throws Exception {
+        // At this point, the repository should be empty
+        mvc.perform(MockMvcRequestBuilders.patch("/landParcel/123")
+                        .param("name","Renamed"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string(equalTo("")));
+        mvc.perform(MockMvcRequestBuilders.patch("/landParcel/123"))
+                .andExpect(status().isNotFound());
+    }
+
+    // Test we can delete an object that exists in the repository
+    @Test
+    public void testDeleteExisting() throws Exception {
+        // At this point, the repository should be empty
+        // Add an entry to the repository
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "SAVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Alice House\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}")));
+
+        // Delete the entry - this should succeed
+        mvc.perform(MockMvcRequestBuilders.delete("/landParcel/123"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("")));
+    }
+
+    // Test that attempt to delete an object that does not exist in the repository will fail
+    @Test
+    public void testDeleteNonExistant() throws Exception {
+        // At this point, the repository should be empty
+        // Try to delete an entry - this should fail
+        mvc.perform(MockMvcRequestBuilders.delete("/landParcel/123"))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string(equalTo("")));
+    }
+
+    // Test that we can apply a batch of mixed operations, each succeeding or failing on its own
+    @Test
+    public void testBatch() throws Exception {
+        // At this point, the repository should be empty
+        // Add an entry to the repository
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "SAVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk());
+
+        String operations = "["
+                + "{\"op\":\"CREATE\",\"objectId\":246,\"name\":\"Bob Office\",\"status\":\"APPROVED\",\"area\":27.0,\"constraints\":false},"
+                + "{\"op\":\"CREATE\",\"objectId\":123,\"name\":\"NOT Alice\",\"status\":\"SAVED\",\"area\":1.0,\"constraints\":false},"
+                + "{\"op\":\"UPDATE\",\"objectId\":123,\"name\":\"Renamed\"},"
+                + "{\"op\":\"UPDATE\",\"objectId\":369,\"name\":\"Missing\"},"
+                + "{\"op\":\"DELETE\",\"objectId\":4812},"
+                + "{\"op\":\"DELETE\",\"objectId\":246}"
+                + "]";
+
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(operations))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("["
+                        + "{\"index\":0,\"op\":\"CREATE\",\"objectId\":246,\"status\":200,\"landParcel\":{\"objectId\":246,\"name\":\"Bob Office\",\"status\":\"APPROVED\",\"area\":27.0,\"constraints\":false}},"
+                        + "{\"index\":1,\"op\":\"CREATE\",\"objectId\":123,\"status\":400},"
+                        + "{\"index\":2,\"op\":\"UPDATE\",\"objectId\":123,\"status\":200,\"landParcel\":{\"objectId\":123,\"name\":\"Renamed\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}},"
+                        + "{\"index\":3,\"op\":\"UPDATE\",\"objectId\":369,\"status\":404},"
+                        + "{\"index\":4,\"op\":\"DELETE\",\"objectId\":4812,\"status\":404},"
+                        + "{\"index\":5,\"op\":\"DELETE\",\"objectId\":246,\"status\":200}"
+                        + "]")));
+
+        // Only the successful operations have been applied
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("[{\"objectId\":123,\"name\":\"Renamed\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}]")));
+    }
+
+    // Test that parcels can be imported from CSV, with invalid rows reported
+    @Test
+    public void testImport() throws Exception {
+        // At this point, the repository should be empty
+        String csv = "objectId,name,status,area,constraints\n"
+                + "123,Alice House,SAVED,42.0,true\n"
+                + "246,Bob Office,NOT_A_STATUS,27.0,false\n";
+
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/import")
+                        .contentType(LandParcelRoutes.TEXT_CSV_VALUE)
+                        .content(csv))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.rows").value(2))
+                .andExpect(jsonPath("$.imported").value(1))
+                .andExpect(jsonPath("$.failed").value(1))
+                .andExpect(jsonPath("$.errors[0].row").value(2))
+                .andExpect(jsonPath("$.errors[0].message").value("Invalid status: NOT_A_STATUS"));
+
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("[{\"objectId\":123,\"name\":\"Alice House\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}]")));
+
+        // A file that can't be read as a whole is rejected
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/import")
+                        .contentType(LandParcelRoutes.TEXT_CSV_VALUE)
+                        .content("objectId,name\n1,Nobody\n"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Test that a batch can be supplied as newline-delimited JSON
+    @Test
+    public void testBatchNdjson() throws Exception {
+        // At this point, the repository should be empty
+        String operations = "{\"op\":\"CREATE\",\"objectId\":123,\"name\":\"Alice House\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}\n"
+                + "{\"op\":\"DELETE\",\"objectId\":123}\n"
+                + "{\"op\":\"CREATE\",\"objectId\":123,\"name\":\"Alice Again\",\"status\":\"APPROVED\",\"area\":4.0,\"constraints\":false}\n";
+
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/batch")
+                        .contentType(LandParcelRoutes.APPLICATION_NDJSON_VALUE)
+                        .content(operations))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("["
+                        + "{\"index\":0,\"op\":\"CREATE\",\"objectId\":123,\"status\":200,\"landParcel\":{\"objectId\":123,\"name\":\"Alice House\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}},"
+                        + "{\"index\":1,\"op\":\"DELETE\",\"objectId\":123,\"status\":200},"
+                        + "{\"index\":2,\"op\":\"CREATE\",\"objectId\":123,\"status\":200,\"landParcel\":{\"objectId\":123,\"name\":\"Alice Again\",\"status\":\"APPROVED\",\"area\":4.0,\"constraints\":false}}"
+                        + "]")));
+
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/123").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Alice Again\",\"status\":\"APPROVED\",\"area\":4.0,\"constraints\":false}")));
+
+        // Malformed operations are rejected
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/batch")
+                        .contentType(LandParcelRoutes.APPLICATION_NDJSON_VALUE)
+                        .content("{\"op\":"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Test that repeated retrieves are counted as cache hits, and that updates are visible immediately
+    @Test
+    public void testRetrieveCached() throws Exception {
+        // At this point, the repository should be empty
+        // Add an entry to the repository
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "SAVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk());
+
+        // Retrieve it twice: the second time comes from the cache
+        String before = mvc.perform(MockMvcRequestBuilders.get("/landParcel/cache/stats"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        for(int i = 0; i < 2; i++) {
+            mvc.perform(MockMvcRequestBuilders.get("/landParcel/123").accept(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isOk())
+                    .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Alice House\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}")));
+        }
+        long hits = objectMapper.readTree(before).get("hitCount").asLong();
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/cache/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.hitCount").value(hits + 1));
+
+        // Updates invalidate the cached copy
+        mvc.perform(MockMvcRequestBuilders.put("/landParcel/123")
+                        .param("name","Renamed"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/123").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Renamed\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}")));
+    }
+
+    // Test that retrieves return an ETag, and honour If-None-Match
+    @Test
+    public void testRetrieveNotModified() throws Exception {
+        // At this point, the repository should be empty
+        // Add an entry to the repository
+        long created = version(mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "SAVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk())
+                .andReturn());
+
+        // Retrieving with the current ETag returns no body
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/123").header(HttpHeaders.IF_NONE_MATCH, eTag(created)))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(equalTo("")));
+
+        // Once modified, the ETag changes and the parcel is returned again
+        mvc.perform(MockMvcRequestBuilders.put("/landParcel/123")
+                        .param("name","Renamed"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag(created + 1)));
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/123").header(HttpHeaders.IF_NONE_MATCH, eTag(created)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag(created + 1)))
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Renamed\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}")));
+    }
+
+    // Test that updates, partial updates and deletes honour If-Match
+    @Test
+    public void testConditionalWrites() throws Exception {
+        // At this point, the repository should be empty
+        // Add an entry to the repository
+        long created = version(mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status", "SAVED")
+                        .param("area", "42.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk())
+                .andReturn());
+
+        // Writes at the current version succeed, and move the version on
+        mvc.perform(MockMvcRequestBuilders.put("/landParcel/123")
+                        .header(HttpHeaders.IF_MATCH, eTag(created))
+                        .param("name","Renamed"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag(created + 1)));
+        mvc.perform(MockMvcRequestBuilders.patch("/landParcel/123")
+                        .header(HttpHeaders.IF_MATCH, eTag(created + 1))
+                        .param("area","1.5"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag(created + 2)));
+
+        // Writes at an old version fail, and change nothing
+        mvc.perform(MockMvcRequestBuilders.put("/landParcel/123")
+                        .header(HttpHeaders.IF_MATCH, eTag(created))
+                        .param("name","Lost Update"))
+                .andExpect(status().isPreconditionFailed());
+        mvc.perform(MockMvcRequestBuilders.patch("/landParcel/123")
+                        .header(HttpHeaders.IF_MATCH, eTag(created + 1))
+                        .param("name","Lost Update"))
+                .andExpect(status().isPreconditionFailed());
+        mvc.perform(MockMvcRequestBuilders.delete("/landParcel/123")
+                        .header(HttpHeaders.IF_MATCH, eTag(created + 1)))
+                .andExpect(status().isPreconditionFailed());
+        mvc.perform(MockMvcRequestBuilders.delete("/landParcel/123")
+                        .header(HttpHeaders.IF_MATCH, "W/" + eTag(created + 2)))
+                .andExpect(status().isPreconditionFailed());
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/123").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Renamed\",\"status\":\"SAVED\",\"area\":1.5,\"constraints\":true}")));
+
+        // Missing parcels are still reported as missing
+        mvc.perform(MockMvcRequestBuilders.put("/landParcel/246")
+                        .header(HttpHeaders.IF_MATCH, eTag(created))
+                        .param("name","Missing"))
+                .andExpect(status().isNotFound());
+
+        // Delete at the current version succeeds
+        mvc.perform(MockMvcRequestBuilders.delete("/landParcel/123")
+                        .header(HttpHeaders.IF_MATCH, eTag(created + 2)))
+                .andExpect(status().isOk());
+    }
+
+    // Test that a parcel deleted and created again doesn't take the ETags of the one before: a client holding one gets
+    // the new parcel, not 304, and can't overwrite (or delete) the new parcel with it
+    @Test
+    public void testConditionalRequestsAfterRecreate() throws Exception {
+        // At this point, the repository should be empty
+        MockHttpServletRequestBuilder create = MockMvcRequestBuilders.post("/landParcel/123")
+                .param("name","Alice House")
+                .param("status", "SAVED")
+                .param("area", "42.0")
+                .param("constraints", "true");
+        long first = version(mvc.perform(create).andExpect(status().isOk()).andReturn());
+        mvc.perform(MockMvcRequestBuilders.put("/landParcel/123")
+                        .param("name","Renamed"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.delete("/landParcel/123"))
+                .andExpect(status().isOk());
+
+        // Created again, just as it was first
+        long second = version(mvc.perform(create).andExpect(status().isOk()).andReturn());
+        assertThat(second).isGreaterThan(first + 1);
+
+        // None of the first parcel's ETags match the second
+        for(String old: List.of(eTag(first), eTag(first + 1))) {
+            mvc.perform(MockMvcRequestBuilders.get("/landParcel/123").header(HttpHeaders.IF_NONE_MATCH, old))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, eTag(second)));
+            mvc.perform(MockMvcRequestBuilders.put("/landParcel/123")
+                            .header(HttpHeaders.IF_MATCH, old)
+                            .param("name","Lost Update"))
+                    .andExpect(status().isPreconditionFailed());
+            mvc.perform(MockMvcRequestBuilders.patch("/landParcel/123")
+                            .header(HttpHeaders.IF_MATCH, old)
+                            .param("name","Lost Update"))
+                    .andExpect(status().isPreconditionFailed());
+            mvc.perform(MockMvcRequestBuilders.delete("/landParcel/123")
+                            .header(HttpHeaders.IF_MATCH, old))
+                    .andExpect(status().isPreconditionFailed());
+        }
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/123").header(HttpHeaders.IF_NONE_MATCH, eTag(second)))
+                .andExpect(status().isNotModified());
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/123").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("{\"objectId\":123,\"name\":\"Alice House\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}")));
+    }
+
+    // Test that a parcel's geometry can be set and removed, and that parcels can be found by where they are
+    @Test
+    public void testGeometry() throws Exception {
+        // At this point, the repository should be empty
+        for(long objectId: new long[] { 123, 246, 369 }) {
+            mvc.perform(MockMvcRequestBuilders.post("/landParcel/" + objectId)
+                            .param("name","Parcel " + objectId)
+                            .param("status", "SAVED")
+                            .param("area", "1.0")
+                            .param("constraints", "false"))
+                    .andExpect(status().isOk());
+        }
+
+        // The area comes from the geometry
+        long created = version(mvc.perform(MockMvcRequestBuilders.get("/landParcel/123")).andReturn());
+        mvc.perform(MockMvcRequestBuilders.put("/landParcel/123/geometry")
+                        .header(HttpHeaders.IF_MATCH, eTag(created))
+                        .contentType(LandParcelRoutes.APPLICATION_GEO_JSON_VALUE)
+                        .content("{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[10,0],[10,5],[0,5],[0,0]]]}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, eTag(created + 1)))
+                .andExpect(jsonPath("$.area").value(50.0))
+                .andExpect(jsonPath("$.geometry.bbox[2]").value(10.0))
+                .andExpect(jsonPath("$.geometry.bbox[3]").value(5.0));
+        mvc.perform(MockMvcRequestBuilders.put("/landParcel/246/geometry")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"Polygon\",\"coordinates\":[[[20,0],[30,0],[30,10],[20,10]]]}"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/123").accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.geometry.coordinates[0][2][0]").value(10.0));
+
+        // Invalid geometries and missing parcels are rejected
+        mvc.perform(MockMvcRequestBuilders.put("/landParcel/369/geometry")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[1,1]]]}"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(MockMvcRequestBuilders.put("/landParcel/4812/geometry")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[1,0],[1,1]]]}"))
+                .andExpect(status().isNotFound());
+
+        // Found by box (a page at a time), point and distance
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/bbox")
+                        .param("minX", "-100").param("minY", "-100").param("maxX", "100").param("maxY", "100")
+                        .param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].objectId", org.hamcrest.Matchers.contains(123)))
+                .andExpect(header().string(HttpHeaders.LINK, containsString("after=123")));
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/bbox")
+                        .param("minX", "-100").param("minY", "-100").param("maxX", "100").param("maxY", "100")
+                        .param("after", "123"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].objectId", org.hamcrest.Matchers.contains(246)));
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/bbox")
+                        .param("minX", "11").param("minY", "0").param("maxX", "19").param("maxY", "10"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("[]")));
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/bbox")
+                        .param("minX", "10").param("minY", "0").param("maxX", "0").param("maxY", "10"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/containing").param("x", "25").param("y", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].objectId", org.hamcrest.Matchers.contains(246)));
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/nearest").param("x", "16").param("y", "2").param("k", "5"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].landParcel.objectId", org.hamcrest.Matchers.contains(246, 123)))
+                .andExpect(jsonPath("$[*].distance", org.hamcrest.Matchers.contains(4.0, 6.0)));
+
+        // Without its geometry, a parcel keeps its area but can't be found by where it is
+        mvc.perform(MockMvcRequestBuilders.delete("/landParcel/246/geometry"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.area").value(100.0))
+                .andExpect(jsonPath("$.geometry").doesNotExist());
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/containing").param("x", "25").param("y", "5"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("[]")));
+
+        // Nor once it's deleted
+        mvc.perform(MockMvcRequestBuilders.delete("/landParcel/123"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/nearest").param("x", "0").param("y", "0"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("[]")));
+    }
+
+    // Test that parcels can be found by the words of their name, a page at a time
+    @Test
+    public void testSearch() throws Exception {
+        // At this point, the repository should be empty
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/246")
+                        .param("name","Bob Office")
+                        .param("status", "APPROVED")
+                        .param("area", "27.0")
+                        .param("constraints", "false"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/51020")
+                        .param("name","Eve Hospital")
+                        .param("status", "SAVED")
+                        .param("area", "198.0")
+                        .param("constraints", "true"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/4812")
+                        .param("name","Hospital Field")
+                        .param("status", "SAVED")
+                        .param("area", "2.5")
+                        .param("constraints", "false"))
+                .andExpect(status().isOk());
+
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/search").param("q", "Bob Off"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("[{\"objectId\":246,\"name\":\"Bob Office\",\"status\":\"APPROVED\",\"area\":27.0,\"constraints\":false}]")));
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/search").param("q", "hospital").param("limit", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].objectId", org.hamcrest.Matchers.contains(4812)))
+                .andExpect(header().string(HttpHeaders.LINK, "</landParcel/search?q=hospital&mode=PREFIX&limit=1&after=4812>; rel=\"next\""));
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/search").param("q", "hospital").param("after", "4812"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].objectId", org.hamcrest.Matchers.contains(51020)));
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/search").param("q", "hosp").param("mode", "TOKEN"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("[]")));
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/search").param("q", "Hsopital").param("mode", "FUZZY"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].objectId", org.hamcrest.Matchers.contains(4812, 51020)));
+
+        // Renames and deletes are followed
+        mvc.perform(MockMvcRequestBuilders.patch("/landParcel/4812").param("name", "David Field"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.delete("/landParcel/51020"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/search").param("q", "hospital"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(equalTo("[]")));
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/search").param("q", "field"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].name").value("David Field"));
+
+        // A query must have words
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/search").param("q", "--"))
+                .andExpect(status().isBadRequest());
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/search").param("q", "bob").param("limit", "0"))
+                .andExpect(status().isBadRequest());
+    }
+
+    // Test that statistics follow creates, updates and deletes
+    @Test
+    public void testStatistics() throws Exception {
+        // The database is empty at this point
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(0))
+                .andExpect(jsonPath("$.area").value(0.0));
+
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name","Alice House")
+                        .param("status","SAVED")
+                        .param("area","42")
+                        .param("constraints","true"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/246")
+                        .param("name","Bob Office")
+                        .param("status","APPROVED")
+                        .param("area","27")
+                        .param("constraints","false"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.patch("/landParcel/123")
+                        .param("status","APPROVED"))
+                .andExpect(status().isOk());
+
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(2))
+                .andExpect(jsonPath("$.area").value(69.0))
+                .andExpect(jsonPath("$.byStatus[?(@.status == 'SAVED')].count").value(everyItem(equalTo(0))))
+                .andExpect(jsonPath("$.byStatus[?(@.status == 'APPROVED' && @.constraints == true)].count").value(1))
+                .andExpect(jsonPath("$.byStatus[?(@.status == 'APPROVED' && @.constraints == false)].area").value(27.0));
+
+        // Deletes are counted too
+        mvc.perform(MockMvcRequestBuilders.delete("/landParcel/246"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.count").value(1))
+                .andExpect(jsonPath("$.area").value(42.0));
+    }
+
+    // Test that service and repository timings, rejected requests, and pool, Hibernate and cache statistics
+    // are exposed to Prometheus
+    @Test
+    public void testMetrics() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel/12"))
+                .andExpect(status().isNotFound());
+
+        mvc.perform(MockMvcRequestBuilders.get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("landclan_requests_rejected_total{exception=\"NoSuchElementException\",status=\"404\"")))
+                .andExpect(content().string(containsString("landclan_service_seconds_bucket{class=\"com.jonsaway.landclan.service.LandParcelServiceImpl\",exception=\"none\",method=\"find\"")))
+                .andExpect(content().string(containsString("spring_data_repository_invocations_seconds_bucket{exception=\"None\",method=\"findByObjectId\"")))
+                .andExpect(content().string(containsString("http_server_requests_seconds_bucket")))
+                .andExpect(content().string(containsString("hikaricp_connections_active")))
+                .andExpect(content().string(containsString("hibernate_statements_total")))
+                .andExpect(content().string(containsString("cache_gets_total{cache=\"landParcel\"")));
+    }
+
+    // The version a response's ETag is for
+    private static long version(MvcResult result) {
+        String eTag = result.getResponse().getHeader(HttpHeaders.ETAG);
+        return Long.parseLong(eTag.substring(1, eTag.length() - 1));
+    }
+
+    // The ETag for a version
+    private static String eTag(long version) {
+        return "\"" + version + "\"";
+    }
+
+    // Bytes allocated by this thread (MockMvc handles each request on the caller's thread) per run of the request,
+    // after warming it up
+    private long allocatedPerRequest(MockHttpServletRequestBuilder request, int expectedStatus) throws Exception {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for(int i = 0; i < 200; i++) {
+            mvc.perform(request).andExpect(status().is(expectedStatus));
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for(int i = 0; i < 200; i++) {
+            mvc.perform(request);
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / 200;
+    }
+
+    // GET /landParcel/{id} as it was before a miss was a result: the service throws, and so does the controller
+    // (the exception path testMissAllocation compares the real one with)
+    @RestController
+    static class ThrowingController {
+        @Autowired
+        LandParcelService service;
+
+        @GetMapping("/throwing/landParcel/{id}")
+        public ResponseEntity<LandParcel> retrieve(@PathVariable("id") long objectId) {
+            try {
+                return ResponseEntity.ok(service.retrieve(objectId));
+            }
+            catch (NoSuchElementException e) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND);
+            }
+        }
+    }
+
+    // The number of exceptions (Throwables) created on this thread by 200 runs of the request, after warming it up
+    // (from JFR's jdk.JavaExceptionThrow event, which is recorded for every Throwable constructed), leaving out the one
+    // MockMvc's print-on-failure handler creates for each request when it looks for an async result
+    private long exceptionsPerRequest(MockHttpServletRequestBuilder request, int expectedStatus) throws Exception {
+        for(int i = 0; i < 200; i++) {
+            mvc.perform(request).andExpect(status().is(expectedStatus));
+        }
+        Path file = Files.createTempFile("exceptions", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("jdk.JavaExceptionThrow").withStackTrace();
+            recording.start();
+            for(int i = 0; i < 200; i++) {
+                mvc.perform(request);
+            }
+            recording.stop();
+            recording.dump(file);
+            long thread = Thread.currentThread().getId();
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> event.getThread() != null && event.getThread().getJavaThreadId() == thread)
+                    .filter(event -> event.getStackTrace().getFrames().stream()
+                            .noneMatch(frame -> frame.getMethod().getType().getName().equals(PrintingResultHandler.class.getName())))
+                    .count();
+        }
+        finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    // Test that a request for a parcel that doesn't exist creates no exception (with its stack trace and message) on the
+    // way to the 404, and so costs less than the exception path, and no more than a request for a parcel that does
+    @Test
+    public void testMissAllocation() throws Exception {
+        mvc.perform(MockMvcRequestBuilders.post("/landParcel/123")
+                        .param("name", "Alice House").param("status", "SAVED").param("area", "42").param("constraints", "true"))
+                .andExpect(status().isOk());
+
+        assertThat(exceptionsPerRequest(MockMvcRequestBuilders.get("/landParcel/12"), 404)).isZero();
+        // (and the recording does see them: the exception path creates two for each request, the service's and the controller's)
+        assertThat(exceptionsPerRequest(MockMvcRequestBuilders.get("/throwing/landParcel/12"), 404)).isGreaterThanOrEqualTo(400);
+
+        long hit = allocatedPerRequest(MockMvcRequestBuilders.get("/landParcel/123"), 200);
+        long miss = allocatedPerRequest(MockMvcRequestBuilders.get("/landParcel/12"), 404);
+        long thrown = allocatedPerRequest(MockMvcRequestBuilders.get("/throwing/landParcel/12"), 404);
+        assertThat(miss).isLessThan(hit);
+        assertThat(miss).isLessThan(thrown);
+    }
+}
@@ -0,0 +1,43 @@
+package com.jonsaway.landclan.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.json.JsonTest;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JsonTest
+public class LandParcelJsonSerializerTests {
+    // Spring's ObjectMapper, with the serialiser registered
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    // Test that parcels are written by the serialiser, exactly as Jackson's bean serialiser writes them
+    @Test
+    public void testSameAsBeanSerialiser() throws Exception {
+        assertThat(objectMapper.getSerializerProviderInstance().findValueSerializer(LandParcel.class))
+                .isInstanceOf(LandParcelJsonSerializer.class);
+
+        LandParcel withGeometry = new LandParcel(246, "Bob Office", ParcelStatus.APPROVED, 27.0, false, 3);
+        withGeometry.setGeometry(ParcelGeometry.rectangle(0, 0, 10, 5));
+        List<LandParcel> landParcels = List.of(
+                new LandParcel(123, "Alice House", ParcelStatus.SAVED, 42.0, true),
+                new LandParcel(Long.MAX_VALUE, "\"Quoted\", é and \n", ParcelStatus.UNDER_CONSIDERATION, 1e-7, false),
+                new LandParcel(-1, null, null, Double.NaN, true),
+                withGeometry);
+
+        ObjectMapper beanMapper = Jackson2ObjectMapperBuilder.json().build();
+        for(LandParcel landParcel: landParcels) {
+            assertThat(objectMapper.writeValueAsString(landParcel)).isEqualTo(beanMapper.writeValueAsString(landParcel));
+        }
+        assertThat(objectMapper.writeValueAsBytes(landParcels)).isEqualTo(beanMapper.writeValueAsBytes(landParcels));
+        assertThat(objectMapper.writeValueAsString(landParcels.get(0)))
+                .isEqualTo("{\"objectId\":123,\"name\":\"Alice House\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}");
+    }
+}
@@ -0,0 +1,89 @@
+package com.jonsaway.landclan.rest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockMvcRequestBuilders;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+// Low limits, so they're easily reached: two scans per client (then one every 1000 seconds), one scan at a time
+@SpringBootTest(properties = { "landclan.limits.client-header=X-Client-Id",
+        "landclan.limits.scan.rate=0.001", "landclan.limits.scan.burst=2", "landclan.limits.scan.concurrency=1" })
+@AutoConfigureMockMvc
+public class RequestLimiterTests {
+    @Autowired
+    private MockMvc mvc;
+
+    @Autowired
+    private RequestLimiter limiter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private static MockHttpServletRequest scan(String client) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/landParcel");
+        request.addHeader("X-Client-Id", client);
+        return request;
+    }
+
+    private double inProgress(String endpoint) {
+        return meterRegistry.get("landclan.requests.in.progress").tag("endpoint", endpoint).gauge().value();
+    }
+
+    // Test that each client has its own buckets, for each kind of endpoint
+    @Test
+    public void testRateLimit() throws Exception {
+        for(int i = 0; i < 2; i++) {
+            mvc.perform(MockMvcRequestBuilders.get("/landParcel").header("X-Client-Id", "greedy"))
+                    .andExpect(status().isOk());
+        }
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel").header("X-Client-Id", "greedy"))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1000"));
+        assertThat(meterRegistry.get("landclan.requests.shed").tag("endpoint", "scan").tag("status", "429").counter().count())
+                .isGreaterThanOrEqualTo(1);
+
+        // Its other requests, and other clients, aren't affected
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel").param("limit", "10").header("X-Client-Id", "greedy"))
+                .andExpect(status().isOk());
+        mvc.perform(MockMvcRequestBuilders.get("/landParcel").header("X-Client-Id", "polite"))
+                .andExpect(status().isOk());
+
+        assertThat(RequestLimiter.endpoint(new MockHttpServletRequest("GET", "/landParcel/123"))).isEqualTo(RequestLimiter.Endpoint.READ);
+        assertThat(RequestLimiter.endpoint(new MockHttpServletRequest("POST", "/landParcel/batch"))).isEqualTo(RequestLimiter.Endpoint.WRITE);
+        assertThat(RequestLimiter.endpoint(scan("x"))).isEqualTo(RequestLimiter.Endpoint.SCAN);
+    }
+
+    // Test that once an endpoint has as many requests in progress as it allows, any more are turned away,
+    // and that its limit is released once the request completes (including an export, which completes asynchronously)
+    @Test
+    public void testConcurrencyLimit() throws Exception {
+        MockHttpServletResponse outer = new MockHttpServletResponse(), inner = new MockHttpServletResponse();
+        limiter.doFilter(scan("first"), outer, (request, response) -> {
+            assertThat(inProgress("scan")).isEqualTo(1);
+            limiter.doFilter(scan("second"), inner, (innerRequest, innerResponse) -> {
+                throw new AssertionError("Should have been shed");
+            });
+        });
+        assertThat(inner.getStatus()).isEqualTo(503);
+        assertThat(inner.getHeader(HttpHeaders.RETRY_AFTER)).isEqualTo("1");
+        assertThat(outer.getStatus()).isEqualTo(200);
+        assertThat(inProgress("scan")).isZero();
+
+        MvcResult export = mvc.perform(MockMvcRequestBuilders.get("/landParcel").header("X-Client-Id", "exporter")
+                        .accept(LandParcelRoutes.APPLICATION_NDJSON_VALUE))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        mvc.perform(MockMvcRequestBuilders.asyncDispatch(export)).andExpect(status().isOk());
+        assertThat(inProgress("scan")).isZero();
+    }
+}
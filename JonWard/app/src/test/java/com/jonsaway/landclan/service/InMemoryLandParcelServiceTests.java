@@ -0,0 +1,345 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelFilter;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.memory.LandParcelJournal;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class InMemoryLandParcelServiceTests {
+    private static final LandParcel PARCEL_123 = new LandParcel(123, "Alice House", ParcelStatus.SAVED, 42, true);
+
+    private static InMemoryLandParcelService newService() {
+        InMemoryLandParcelService service = new InMemoryLandParcelService();
+        service.create(369, "Charlie School", ParcelStatus.SHORT_LISTED, 103, true);
+        service.create(123, "Alice House", ParcelStatus.SAVED, 42, true);
+        service.create(246, "Bob Office", ParcelStatus.APPROVED, 27, false);
+        return service;
+    }
+
+    // A service journaled to this directory, recovering whatever is already there
+    private static InMemoryLandParcelService openService(Path directory) throws IOException {
+        InMemoryLandParcelService service = new InMemoryLandParcelService();
+        service.directory = directory.toString();
+        service.fsync = LandParcelJournal.FsyncPolicy.ALWAYS;
+        // Small segments, so the log rolls over
+        service.segmentSize = 4096;
+        service.open();
+        return service;
+    }
+
+    private static List<Long> objectIds(Iterable<LandParcel> landParcels) {
+        List<Long> objectIds = new ArrayList<>();
+        landParcels.forEach(landParcel -> objectIds.add(landParcel.getObjectId()));
+        return objectIds;
+    }
+
+    // Test that we can create and retrieve parcels, and that duplicates and missing parcels are rejected
+    @Test
+    public void testCreateAndRetrieve() {
+        InMemoryLandParcelService service = newService();
+
+        assertThat(service.retrieve(123)).usingRecursiveComparison().ignoringFields("version").isEqualTo(PARCEL_123);
+        assertThatThrownBy(() -> service.retrieve(12))
+                .isInstanceOf(NoSuchElementException.class);
+        assertThatThrownBy(() -> service.create(123, "NOT Alice", ParcelStatus.SAVED, 1, false))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(service.retrieve(123).getName()).isEqualTo("Alice House");
+    }
+
+    // Test that all parcels, and pages of them, are returned in objectId order
+    @Test
+    public void testRetrieveInOrder() {
+        InMemoryLandParcelService service = newService();
+
+        assertThat(objectIds(service.retrieveAll())).containsExactly(123L, 246L, 369L);
+        assertThat(objectIds(service.retrievePage(null, 2))).containsExactly(123L, 246L);
+        assertThat(objectIds(service.retrievePage(246L, 2))).containsExactly(369L);
+        assertThat(service.retrievePage(369L, 2)).isEmpty();
+
+        List<LandParcel> streamed = new ArrayList<>();
+        service.streamAll(streamed::add);
+        assertThat(objectIds(streamed)).containsExactly(123L, 246L, 369L);
+    }
+
+    // Test filtering on each attribute
+    @Test
+    public void testRetrieveFiltered() {
+        InMemoryLandParcelService service = newService();
+
+        assertThat(objectIds(service.retrieveFiltered(new LandParcelFilter("Bob Office", null, null, null, null), null, 10)))
+                .containsExactly(246L);
+        assertThat(service.retrieveFiltered(new LandParcelFilter("Nobody", null, null, null, null), null, 10))
+                .isEmpty();
+        assertThat(objectIds(service.retrieveFiltered(new LandParcelFilter(null, ParcelStatus.SAVED, null, null, null), null, 10)))
+                .containsExactly(123L);
+        assertThat(objectIds(service.retrieveFiltered(new LandParcelFilter(null, null, true, null, null), null, 10)))
+                .containsExactly(123L, 369L);
+        assertThat(objectIds(service.retrieveFiltered(new LandParcelFilter(null, null, null, 27.0, 42.0), null, 10)))
+                .containsExactly(123L, 246L);
+        assertThat(objectIds(service.retrieveFiltered(new LandParcelFilter(null, null, true, null, null), 123L, 1)))
+                .containsExactly(369L);
+    }
+
+    // Test that updates only change the supplied values, and move the version on
+    @Test
+    public void testUpdate() {
+        InMemoryLandParcelService service = newService();
+        long created = service.retrieve(123).getVersion();
+
+        LandParcel updated = service.update(123, "Renamed", ParcelStatus.NO_CHANGE, null, false);
+        assertThat(updated).usingRecursiveComparison()
+                .isEqualTo(new LandParcel(123, "Renamed", ParcelStatus.SAVED, 42, false, created + 1));
+        assertThat(service.retrieve(123)).usingRecursiveComparison().isEqualTo(updated);
+
+        LandParcel patched = service.patch(123, null, ParcelStatus.APPROVED, 1.5, null, created + 1);
+        assertThat(patched).usingRecursiveComparison()
+                .isEqualTo(new LandParcel(123, "Renamed", ParcelStatus.APPROVED, 1.5, false, created + 2));
+
+        // Nothing to change
+        assertThat(service.patch(123, null, null, null, null).getVersion()).isEqualTo(created + 2);
+
+        assertThatThrownBy(() -> service.update(123, "Lost Update", null, null, null, created + 1))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThatThrownBy(() -> service.update(12, "Missing", null, null, null))
+                .isInstanceOf(NoSuchElementException.class);
+        assertThat(service.retrieve(123).getName()).isEqualTo("Renamed");
+    }
+
+    // Test that deletes remove just the one parcel
+    @Test
+    public void testDelete() {
+        InMemoryLandParcelService service = newService();
+
+        assertThatThrownBy(() -> service.delete(123, 5L))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        service.delete(123, service.retrieve(123).getVersion());
+        assertThatThrownBy(() -> service.retrieve(123))
+                .isInstanceOf(NoSuchElementException.class);
+        assertThatThrownBy(() -> service.delete(123))
+                .isInstanceOf(NoSuchElementException.class);
+
+        // The other parcels are unaffected (although the last one has moved into the deleted one's place)
+        assertThat(objectIds(service.retrieveAll())).containsExactly(246L, 369L);
+        assertThat(service.retrieve(246).getName()).isEqualTo("Bob Office");
+        assertThat(service.retrieve(369).getName()).isEqualTo("Charlie School");
+    }
+
+    // Test that each batch operation succeeds or fails on its own
+    @Test
+    public void testBatch() {
+        InMemoryLandParcelService service = newService();
+
+        List<BatchResult> results = service.batch(List.of(
+                BatchOperation.create(4812, "David Field", ParcelStatus.UNDER_CONSIDERATION, 2.5, false),
+                BatchOperation.create(123, "Again", ParcelStatus.SAVED, 1, true),
+                new BatchOperation(BatchOperation.Type.CREATE, 51020L, "Missing values", null, null, null),
+                BatchOperation.update(246, null, null, 30.0, null),
+                BatchOperation.update(12, "Missing", null, null, null),
+                BatchOperation.delete(369),
+                BatchOperation.delete(369)));
+
+        assertThat(results).extracting(BatchResult::status).containsExactly(200, 400, 400, 200, 404, 200, 404);
+        assertThat(results.get(3).landParcel().getArea()).isEqualTo(30.0);
+        assertThat(objectIds(service.retrieveAll())).containsExactly(123L, 246L, 4812L);
+    }
+
+    // Test that listeners see every change
+    @Test
+    public void testStatistics() {
+        InMemoryLandParcelService service = new InMemoryLandParcelService();
+        LandParcelStatistics statistics = new LandParcelStatistics();
+        service.listeners = List.of(statistics);
+
+        service.create(123, "Alice House", ParcelStatus.SAVED, 42, true);
+        service.create(246, "Bob Office", ParcelStatus.APPROVED, 27, false);
+        service.patch(123, null, ParcelStatus.APPROVED, null, null);
+        service.delete(246);
+
+        assertThat(statistics.summary().count()).isEqualTo(1);
+        assertThat(statistics.summary().area()).isEqualTo(42.0);
+    }
+
+    // Test many creates and deletes, so the store and its index grow and rows move around
+    @Test
+    public void testManyParcels() {
+        InMemoryLandParcelService service = new InMemoryLandParcelService();
+        for(long objectId = 1; objectId <= 10_000; objectId++) {
+            service.create(objectId, "Parcel " + (objectId % 100), ParcelStatus.SAVED, objectId, objectId % 3 == 0);
+        }
+        for(long objectId = 1; objectId <= 10_000; objectId += 2) {
+            service.delete(objectId);
+        }
+
+        for(long objectId = 1; objectId <= 10_000; objectId++) {
+            long id = objectId;
+            if(objectId % 2 == 1) {
+                assertThatThrownBy(() -> service.retrieve(id)).isInstanceOf(NoSuchElementException.class);
+            }
+            else {
+                assertThat(service.retrieve(objectId)).usingRecursiveComparison().ignoringFields("version")
+                        .isEqualTo(new LandParcel(objectId, "Parcel " + (objectId % 100), ParcelStatus.SAVED, objectId, objectId % 3 == 0));
+            }
+        }
+        assertThat(objectIds(service.retrievePage(9_000L, 3))).containsExactly(9_002L, 9_004L, 9_006L);
+    }
+
+    // Test that every change survives a restart, whether it's in the log or a snapshot
+    @Test
+    public void testRecovery(@TempDir Path directory) throws IOException {
+        InMemoryLandParcelService service = openService(directory);
+        for(long objectId = 1; objectId <= 200; objectId++) {
+            service.create(objectId, "Parcel " + (objectId % 10), ParcelStatus.SAVED, objectId, objectId % 3 == 0);
+        }
+        long created = service.retrieve(2).getVersion();
+        service.snapshot();
+        service.update(2, "Renamed", ParcelStatus.APPROVED, null, null);
+        service.update(4, null, null, null, null, null);
+        service.delete(1);
+        service.create(1000, null, null, 1.5, false);
+        List<LandParcel> expected = service.retrievePage(null, 1000);
+
+        // Not closed, as if the process had died: the snapshot plus the log since
+        InMemoryLandParcelService recovered = openService(directory);
+        assertThat(recovered.retrievePage(null, 1000)).usingRecursiveComparison().isEqualTo(expected);
+        assertThat(recovered.retrieve(2).getVersion()).isEqualTo(created + 1);
+        assertThat(recovered.retrieve(1000).getName()).isNull();
+
+        // Closed cleanly: just a snapshot
+        recovered.delete(3);
+        recovered.close();
+        InMemoryLandParcelService reopened = openService(directory);
+        assertThat(objectIds(reopened.retrieveAll())).hasSize(199).doesNotContain(1L, 3L).contains(1000L);
+        reopened.close();
+        try (var files = Files.list(directory)) {
+            assertThat(files.filter(file -> file.getFileName().toString().startsWith("snapshot-"))).hasSize(1);
+        }
+    }
+
+    // Test that a geometry sets the area, and survives a restart, from the log and from a snapshot
+    @Test
+    public void testGeometry(@TempDir Path directory) throws IOException {
+        InMemoryLandParcelService service = openService(directory);
+        service.create(123, "Alice House", ParcelStatus.SAVED, 42, true);
+        service.create(246, "Bob Office", ParcelStatus.APPROVED, 27, false);
+        service.snapshot();
+
+        ParcelGeometry square = ParcelGeometry.rectangle(0, 0, 10, 10);
+        assertThat(service.updateGeometry(123, square, service.retrieve(123).getVersion()).getArea()).isEqualTo(100.0);
+        // The area can't be changed separately
+        assertThat(service.update(123, null, null, 5.0, null).getArea()).isEqualTo(100.0);
+        service.batch(List.of(BatchOperation.create(369, "Charlie School", ParcelStatus.SAVED, ParcelGeometry.rectangle(20, 0, 22, 3), false)));
+        assertThat(service.retrieve(369).getArea()).isEqualTo(6.0);
+        assertThatThrownBy(() -> service.updateGeometry(246, square, 3L)).isInstanceOf(OptimisticLockingFailureException.class);
+
+        // From the log
+        LandParcelSpatialIndex index = new LandParcelSpatialIndex();
+        InMemoryLandParcelService recovered = new InMemoryLandParcelService();
+        recovered.listeners = List.of(index);
+        recovered.directory = directory.toString();
+        recovered.open();
+        assertThat(recovered.retrieve(123).getGeometry()).isEqualTo(square);
+        assertThat(recovered.retrieve(123).getArea()).isEqualTo(100.0);
+        assertThat(recovered.retrieve(246).getGeometry()).isNull();
+        assertThat(index.size()).isEqualTo(2);
+        assertThat(index.containing(21, 1)).extracting(LandParcel::getObjectId).containsExactly(369L);
+
+        // From a snapshot, having removed one
+        recovered.updateGeometry(369, null, null);
+        recovered.close();
+        InMemoryLandParcelService reopened = openService(directory);
+        assertThat(reopened.retrieve(123).getGeometry()).isEqualTo(square);
+        assertThat(reopened.retrieve(369).getGeometry()).isNull();
+        assertThat(reopened.retrieve(369).getArea()).isEqualTo(6.0);
+    }
+
+    // Test that recovery stops at a torn write, keeping everything before it
+    @Test
+    public void testRecoveryFromTornWrite(@TempDir Path directory) throws IOException {
+        InMemoryLandParcelService service = openService(directory);
+        service.create(123, "Alice House", ParcelStatus.SAVED, 42, true);
+        service.create(246, "Bob Office", ParcelStatus.APPROVED, 27, false);
+
+        // Corrupt the last record (the second create), as a crash part way through writing it would
+        try (RandomAccessFile log = new RandomAccessFile(directory.resolve("log-0").toFile(), "rw")) {
+            int first = log.readInt();
+            log.seek(8 + first + 8 + 10);
+            log.write(0xFF);
+        }
+
+        InMemoryLandParcelService recovered = openService(directory);
+        assertThat(objectIds(recovered.retrieveAll())).containsExactly(123L);
+        assertThat(recovered.retrieve(123)).usingRecursiveComparison().ignoringFields("version").isEqualTo(PARCEL_123);
+    }
+
+    // Test that listeners start from the recovered parcels
+    @Test
+    public void testRecoveredStatistics(@TempDir Path directory) throws IOException {
+        InMemoryLandParcelService service = openService(directory);
+        service.create(123, "Alice House", ParcelStatus.SAVED, 42, true);
+        service.create(246, "Bob Office", ParcelStatus.APPROVED, 27, false);
+
+        InMemoryLandParcelService recovered = new InMemoryLandParcelService();
+        LandParcelStatistics statistics = new LandParcelStatistics();
+        recovered.listeners = List.of(statistics);
+        recovered.directory = directory.toString();
+        recovered.open();
+
+        assertThat(statistics.summary().count()).isEqualTo(2);
+        assertThat(statistics.summary().area()).isEqualTo(69.0);
+    }
+
+    // Test that concurrent writes to the same parcel reach the change feed in the order they were stored: replaying the
+    // feed sees each version of the parcel in turn, ending with the one stored
+    @Test
+    public void testConcurrentWritesInOrder() throws Exception {
+        LandParcelChangeFeed feed = new LandParcelChangeFeed();
+        feed.capacity = 10_000;
+        feed.init();
+        InMemoryLandParcelService service = new InMemoryLandParcelService();
+        // (pausing first, to widen the gap between a change being stored and the feed being told of it)
+        service.listeners = List.of((before, after) -> {
+            LockSupport.parkNanos(10_000);
+            feed.parcelChanged(before, after);
+        });
+        long created = service.create(123, "Alice House", ParcelStatus.SAVED, 42.0, true).getVersion();
+
+        List<Thread> writers = new ArrayList<>();
+        for(int writer = 0; writer < 4; writer++) {
+            int name = writer;
+            writers.add(new Thread(() -> {
+                for(int i = 0; i < 500; i++) {
+                    service.patch(123, "Writer " + name, null, (double) i, null);
+                }
+            }));
+        }
+        writers.forEach(Thread::start);
+        for(Thread writer: writers) {
+            writer.join();
+        }
+
+        List<LandParcelChangeFeed.Change> changes = feed.read(0, 10_000).changes();
+        assertThat(changes).hasSize(2001);
+        for(int i = 0; i < changes.size(); i++) {
+            assertThat(changes.get(i).version()).isEqualTo(created + i);
+            if(i > 0) {
+                assertThat(changes.get(i).before()).usingRecursiveComparison().isEqualTo(changes.get(i - 1).after());
+            }
+        }
+        assertThat(changes.get(2000).after()).usingRecursiveComparison().isEqualTo(service.retrieve(123));
+    }
+}
@@ -0,0 +1,113 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.rest.ParcelStatus;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Counts the SQL statements issued by each write, against the real (H2) database
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "logging.level.org.hibernate.engine.internal.StatisticalLoggingSessionEventListener=WARN"
+})
+public class LandParcelServiceStatementTests {
+    @Autowired
+    private LandParcelServiceImpl service;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    public void init() {
+        // Start each test from an empty database
+        for(long objectId: new long[] {0, 123}) {
+            try {
+                service.delete(objectId);
+            }
+            catch (NoSuchElementException e) {
+                // Didn't exist: fine
+            }
+        }
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+    }
+
+    // Test that create is a single INSERT, whether or not the parcel already exists
+    @Test
+    public void testCreate() {
+        service.create(123, "Alice House", ParcelStatus.SAVED, 42, true);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        assertThatThrownBy(() -> service.create(123, "NOT Alice", ParcelStatus.SAVED, 42, true))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    // Test that update is a single statement (the same one as patch)
+    @Test
+    public void testUpdate() {
+        service.create(123, "Alice House", ParcelStatus.SAVED, 42, true);
+
+        statistics.clear();
+        assertThat(service.update(123, "Renamed", ParcelStatus.NO_CHANGE, null, null).getName()).isEqualTo("Renamed");
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        assertThatThrownBy(() -> service.update(12, "Renamed", ParcelStatus.NO_CHANGE, null, null))
+                .isInstanceOf(NoSuchElementException.class);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    // Test that patch is a single statement, which returns enough to work out the new state
+    @Test
+    public void testPatch() {
+        service.create(123, "Alice House", ParcelStatus.SAVED, 42, true);
+
+        statistics.clear();
+        assertThat(service.patch(123, null, ParcelStatus.APPROVED, null, null).getStatus()).isEqualTo(ParcelStatus.APPROVED);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        assertThatThrownBy(() -> service.patch(12, "Renamed", ParcelStatus.NO_CHANGE, null, null))
+                .isInstanceOf(NoSuchElementException.class);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    // Test that delete is a single DELETE, whether or not the parcel exists
+    @Test
+    public void testDelete() {
+        service.create(123, "Alice House", ParcelStatus.SAVED, 42, true);
+
+        statistics.clear();
+        service.delete(123);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+
+        statistics.clear();
+        assertThatThrownBy(() -> service.delete(123))
+                .isInstanceOf(NoSuchElementException.class);
+        assertThat(statistics.getPrepareStatementCount()).isEqualTo(1);
+    }
+
+    // Test that objectId 0 behaves like any other id
+    // (Spring Data treats a primitive id of 0 as 'new', so deleteById(0) used to silently do nothing)
+    @Test
+    public void testObjectIdZero() {
+        service.create(0, "Zero", ParcelStatus.SAVED, 1, false);
+        assertThat(service.update(0, "Renamed", ParcelStatus.NO_CHANGE, null, null).getName()).isEqualTo("Renamed");
+        service.delete(0);
+        assertThatThrownBy(() -> service.retrieve(0)).isInstanceOf(NoSuchElementException.class);
+    }
+}
@@ -0,0 +1,477 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelRepository;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+
+public class LandParcelServiceTests {
+    // Some test data, common to all tests
+    private static final LandParcel PARCEL_123 = new LandParcel(123, "Alice House", ParcelStatus.SAVED, 42, true);
+    private static final LandParcel PARCEL_246 = new LandParcel(246, "Bob Office", ParcelStatus.APPROVED, 27, false);
+    private static final LandParcel PARCEL_369 = new LandParcel(369, "Charlie School", ParcelStatus.SHORT_LISTED, 103, true);
+    private static final List<LandParcel> THREE_PARCELS = Arrays.asList(PARCEL_123, PARCEL_246, PARCEL_369);
+
+    // Create a service with its collaborators (other than the repository, which each test supplies)
+    private static LandParcelServiceImpl newService() {
+        LandParcelServiceImpl service = new LandParcelServiceImpl();
+        service.entityManager = mock(EntityManager.class);
+        service.transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+        service.cache = new LandParcelCache(100, Duration.ofMinutes(5), Duration.ofSeconds(30));
+        service.listeners = List.of();
+        return service;
+    }
+
+    // Test that we can retrieve all objects from the repository
+    @Test
+    public void testRetrieveAll() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use a mock repository containing known data
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+        when(mockRepo.findAll()).thenReturn(THREE_PARCELS);
+
+        service.repository = mockRepo;
+
+        // Service should return all the objects in the repository
+        Iterable<LandParcel> iter = service.retrieveAll();
+        int count = 0;
+        for(LandParcel elem: iter)
+        {
+            assertThat(elem.getObjectId()).isEqualTo(THREE_PARCELS.get(count).getObjectId());
+            count++;
+        }
+
+        assertThat(count == 3);
+    }
+
+    // Test that we can retrieve objects from the repository a page at a time
+    @Test
+    public void testRetrievePage() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use a mock repository containing known data
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+        when(mockRepo.findAllByOrderByObjectIdAsc(Limit.of(2))).thenReturn(Arrays.asList(PARCEL_123, PARCEL_246));
+        when(mockRepo.findByObjectIdGreaterThanOrderByObjectIdAsc(246, Limit.of(2))).thenReturn(List.of(PARCEL_369));
+
+        service.repository = mockRepo;
+
+        // First page starts from the beginning, later pages start after the cursor
+        assertThat(service.retrievePage(null, 2)).containsExactly(PARCEL_123, PARCEL_246);
+        assertThat(service.retrievePage(246L, 2)).containsExactly(PARCEL_369);
+    }
+
+    // Test that we can retrieve a given object that exists in the repository
+    @Test
+    public void testRetrieveExistingParcel() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use a mock repository containing known data
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+        when(mockRepo.findByObjectId(246)).thenReturn(PARCEL_246);
+
+        service.repository = mockRepo;
+
+        // Service should return the requested object from the repository
+        LandParcel parcel = service.retrieve(246);
+        assertThat(parcel).isEqualTo(PARCEL_246);
+    }
+
+    // Test that an attempt to retrieve a non-existant object from the repository will fail
+    @Test
+    public void testRetrieveNonExistantParcel() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use an empty mock repository
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+
+        service.repository = mockRepo;
+
+        // Check that retrieve fails for non-existant object
+        assertThatThrownBy(() -> {
+            LandParcel parcel = service.retrieve(12);
+        }).isInstanceOf(NoSuchElementException.class)
+                .hasMessageContaining("objectId=12");
+
+    }
+
+    // Test we can create a new object in the repository
+    @Test
+    public void testCreateNew() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use an empty mock repository
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+        when(mockRepo.insert(eq(12L), eq("new"), eq(ParcelStatus.APPROVED), eq(21.0), eq(false), anyLong())).thenReturn(1);
+
+        service.repository = mockRepo;
+
+        // Service should return the newly created object
+        LandParcel parcel = service.create(12, "new", ParcelStatus.APPROVED, 21, false);
+        assertThat(parcel.getObjectId()).isEqualTo(12);
+        assertThat(parcel.getName()).isEqualTo("new");
+        assertThat(parcel.getStatus()).isEqualTo(ParcelStatus.APPROVED);
+        assertThat(parcel.getArea()).isEqualTo(21);
+        assertThat(parcel.getConstraints()).isFalse();
+
+        // The parcel is inserted, at the version it's returned with, without checking whether it exists first
+        verify(mockRepo, times(1)).insert(12, "new", ParcelStatus.APPROVED, 21, false, parcel.getVersion());
+        verify(mockRepo, never()).existsById(anyLong());
+        verify(mockRepo, never()).save(any());
+    }
+
+    // Test that an attempt to create object reusing an id that exists in the repository will fail
+    @Test
+    public void testCreateAlreadyExists() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use a mock repository containing the objectId we want to create
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+        when(mockRepo.insert(eq(123L), any(), any(), anyDouble(), anyBoolean(), anyLong()))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        service.repository = mockRepo;
+
+        // Check that create fails for already-existing object
+        assertThatThrownBy(() -> {
+            LandParcel parcel = service.create(123, "new", ParcelStatus.SAVED, 21.0, true);
+        }).isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("objectId=123");
+    }
+
+    // Test we can update an object that exists in the repository
+    @Test
+    public void testUpdateExisting() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use a mock repository containing the objectId we want to update
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+
+        // repo will return the parcel as it was before the update
+        when(mockRepo.patch(123, "new", ParcelStatus.APPROVED, 21.0, false, null)).thenReturn(PARCEL_123);
+
+        service.repository = mockRepo;
+
+        // modify all the values on the parcel, in a single statement (no read back)
+        LandParcel parcel = service.update(123, "new", ParcelStatus.APPROVED, 21.0, false);
+        assertThat(parcel).usingRecursiveComparison()
+                .isEqualTo(new LandParcel(123, "new", ParcelStatus.APPROVED, 21, false, 1));
+        verify(mockRepo, never()).findByObjectId(anyLong());
+
+        // NO_CHANGE is passed to the repository as null (leave unchanged)
+        when(mockRepo.patch(123, null, null, 42.0, null, null)).thenReturn(PARCEL_123);
+        service.update(123, null, ParcelStatus.NO_CHANGE, 42.0, null);
+        verify(mockRepo, times(1)).patch(123, null, null, 42.0, null, null);
+        verify(mockRepo, never()).save(any());
+    }
+
+    // Test that attempt to update an object that does not exist in the repository will fail
+    @Test
+    public void testUpdateNew() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use an empty mock repository
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+
+        service.repository = mockRepo;
+
+        // Check that update fails for non-existant object
+        assertThatThrownBy(() -> {
+            LandParcel parcel = service.update(12, "new", ParcelStatus.APPROVED, 21.0, false);
+        }).isInstanceOf(NoSuchElementException.class)
+                .hasMessageContaining("objectId=12");
+    }
+
+
+    // Test we can partially update an object that exists in the repository
+    @Test
+    public void testPatchExisting() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use a mock repository containing the objectId we want to patch
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+        when(mockRepo.patch(123, null, ParcelStatus.APPROVED, null, null, null)).thenReturn(PARCEL_123);
+
+        service.repository = mockRepo;
+
+        // Only the supplied values are passed on, and the parcel isn't read first
+        LandParcel parcel = service.patch(123, null, ParcelStatus.APPROVED, null, null);
+        assertThat(parcel).usingRecursiveComparison()
+                .isEqualTo(new LandParcel(123, "Alice House", ParcelStatus.APPROVED, 42, true, 1));
+        verify(mockRepo, never()).findByObjectId(anyLong());
+
+        // NO_CHANGE is passed to the repository as null (leave unchanged)
+        when(mockRepo.patch(123, "renamed", null, null, null, null)).thenReturn(PARCEL_123);
+        service.patch(123, "renamed", ParcelStatus.NO_CHANGE, null, null);
+        verify(mockRepo, times(1)).patch(123, "renamed", null, null, null, null);
+    }
+
+    // Test that attempt to partially update an object that does not exist in the repository will fail
+    @Test
+    public void testPatchNew() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use an empty mock repository
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+
+        service.repository = mockRepo;
+
+        // Check that patch fails for non-existant object
+        assertThatThrownBy(() -> {
+            LandParcel parcel = service.patch(12, "new", ParcelStatus.NO_CHANGE, null, null);
+        }).isInstanceOf(NoSuchElementException.class)
+                .hasMessageContaining("objectId=12");
+    }
+
+    // Test we can delete an object that exists in the repository
+    @Test
+    public void testDeleteExisting() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use a mock repository containing the objectId we want to delete
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+        when(mockRepo.deleteByObjectId(123, null)).thenReturn(PARCEL_123);
+
+        service.repository = mockRepo;
+
+        // delete the parcel, in a single statement
+        service.delete(123);
+        verify(mockRepo, times(1)).deleteByObjectId(123, null);
+        verify(mockRepo, never()).existsById(anyLong());
+    }
+
+    // Test that attempt to delete an object that does not exist in the repository will fail
+    @Test
+    public void testDeleteNonExistant() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use an empty mock repository
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+
+        service.repository = mockRepo;
+
+        // Check that delete fails for non-existant object
+        assertThatThrownBy(() -> {
+            service.delete(12);
+        }).isInstanceOf(NoSuchElementException.class)
+                .hasMessageContaining("objectId=12");
+    }
+
+    // Test that a batch checks existence once per chunk, and reports each operation's outcome
+    @Test
+    public void testBatch() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use a mock repository containing a single parcel
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+        LandParcel existing = new LandParcel(123, "Alice House", ParcelStatus.SAVED, 42, true);
+        when(mockRepo.findAllById(any())).thenReturn(List.of(existing));
+
+        service.repository = mockRepo;
+
+        List<BatchResult> results = service.batch(Arrays.asList(
+                BatchOperation.create(123, "new", ParcelStatus.SAVED, 21.0, true),
+                BatchOperation.create(246, "new", ParcelStatus.SAVED, 21.0, true),
+                BatchOperation.update(123, "renamed", ParcelStatus.NO_CHANGE, null, null),
+                BatchOperation.update(12, "missing", ParcelStatus.NO_CHANGE, null, null),
+                BatchOperation.delete(12),
+                BatchOperation.delete(246)));
+
+        assertThat(results).extracting(BatchResult::status).containsExactly(400, 200, 200, 404, 404, 200);
+        assertThat(existing.getName()).isEqualTo("renamed");
+
+        // Existence of all parcels in the chunk is checked in one query
+        verify(mockRepo, times(1)).findAllById(any());
+        verify(mockRepo, never()).existsById(anyLong());
+        verify(service.entityManager, times(1)).persist(any());
+        verify(service.entityManager, times(1)).remove(any());
+    }
+
+    // Test that repeated retrieves (of both existing and non-existant objects) are served from the cache
+    @Test
+    public void testRetrieveIsCached() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use a mock repository containing known data
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+        when(mockRepo.findByObjectId(246)).thenReturn(PARCEL_246);
+
+        service.repository = mockRepo;
+
+        // Only the first retrieve of each object goes to the repository
+        for(int i = 0; i < 3; i++) {
+            assertThat(service.retrieve(246)).isEqualTo(PARCEL_246);
+            assertThatThrownBy(() -> service.retrieve(12)).isInstanceOf(NoSuchElementException.class);
+        }
+        verify(mockRepo, times(1)).findByObjectId(246);
+        verify(mockRepo, times(1)).findByObjectId(12);
+
+        assertThat(service.cache.statistics().hitCount()).isEqualTo(4);
+        assertThat(service.cache.statistics().missCount()).isEqualTo(2);
+    }
+
+    // Test that creates, updates and deletes invalidate the cached object
+    @Test
+    public void testWritesInvalidateCache() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use a mock repository, initially empty
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+        LandParcel created = new LandParcel(12, "new", ParcelStatus.APPROVED, 21, true);
+        when(mockRepo.insert(anyLong(), any(), any(), anyDouble(), anyBoolean(), anyLong())).thenReturn(1);
+        when(mockRepo.patch(anyLong(), any(), any(), any(), any(), any())).thenReturn(created);
+        when(mockRepo.deleteByObjectId(anyLong(), any())).thenReturn(created);
+
+        service.repository = mockRepo;
+
+        // The miss is cached...
+        assertThatThrownBy(() -> service.retrieve(12)).isInstanceOf(NoSuchElementException.class);
+
+        // ... until the object is created
+        service.create(12, "new", ParcelStatus.APPROVED, 21, true);
+        when(mockRepo.findByObjectId(12)).thenReturn(created);
+        assertThat(service.retrieve(12)).isEqualTo(created);
+
+        // The update is visible straight away
+        LandParcel updated = service.update(12, "renamed", ParcelStatus.NO_CHANGE, null, null);
+        when(mockRepo.findByObjectId(12)).thenReturn(updated);
+        assertThat(service.retrieve(12)).isEqualTo(updated);
+
+        // As is the delete
+        service.delete(12);
+        when(mockRepo.findByObjectId(12)).thenReturn(null);
+        assertThatThrownBy(() -> service.retrieve(12)).isInstanceOf(NoSuchElementException.class);
+    }
+
+    // Test that a conditional update fails if the object has moved on to another version
+    @Test
+    public void testUpdateWrongVersion() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use a mock repository containing the objectId we want to update, at a different version
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+        when(mockRepo.existsById(123L)).thenReturn(true);
+
+        service.repository = mockRepo;
+
+        // Check that the update, patch and delete fail with a conflict, rather than as missing
+        assertThatThrownBy(() -> service.update(123, "new", ParcelStatus.NO_CHANGE, null, null, 3L))
+                .isInstanceOf(OptimisticLockingFailureException.class)
+                .hasMessageContaining("objectId=123");
+        assertThatThrownBy(() -> service.patch(123, "new", ParcelStatus.NO_CHANGE, null, null, 3L))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+        assertThatThrownBy(() -> service.delete(123, 3L))
+                .isInstanceOf(OptimisticLockingFailureException.class);
+
+        // ... but a missing parcel is still reported as missing
+        assertThatThrownBy(() -> service.delete(12, 3L))
+                .isInstanceOf(NoSuchElementException.class);
+    }
+
+    // Test that statistics are seeded from the repository, then follow each change without further queries
+    @Test
+    public void testStatistics() throws Exception {
+        LandParcelServiceImpl service = newService();
+
+        // Use a mock repository containing PARCEL_123
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+        LandParcelRepository.Summary saved = mock(LandParcelRepository.Summary.class);
+        when(saved.getStatus()).thenReturn(ParcelStatus.SAVED);
+        when(saved.getConstraints()).thenReturn(true);
+        when(saved.getCount()).thenReturn(1L);
+        when(saved.getArea()).thenReturn(42.0);
+        when(mockRepo.summarise()).thenReturn(List.of(saved));
+        when(mockRepo.insert(anyLong(), any(), any(), anyDouble(), anyBoolean(), anyLong())).thenReturn(1);
+        when(mockRepo.patch(123, null, ParcelStatus.APPROVED, null, false, null)).thenReturn(PARCEL_123);
+        when(mockRepo.deleteByObjectId(246, null)).thenReturn(PARCEL_246);
+
+        JpaStoredLandParcels stored = new JpaStoredLandParcels();
+        stored.repository = mockRepo;
+        LandParcelStatistics statistics = new LandParcelStatistics();
+        statistics.stored = stored;
+        statistics.seed();
+
+        service.repository = mockRepo;
+        service.listeners = List.of(statistics);
+
+        assertThat(statistics.summary().count()).isEqualTo(1);
+        assertThat(statistics.summary().area()).isEqualTo(42.0);
+
+        // Create, move 123 to another status, then delete the created parcel
+        service.create(246, "Bob Office", ParcelStatus.APPROVED, 27, false);
+        assertThat(statistics.summary().count()).isEqualTo(2);
+        service.patch(123, null, ParcelStatus.APPROVED, null, false);
+        service.delete(246);
+
+        LandParcelStatistics.Summary summary = statistics.summary();
+        assertThat(summary.count()).isEqualTo(1);
+        assertThat(summary.area()).isEqualTo(42.0);
+        assertThat(summary.byStatus())
+                .filteredOn(entry -> entry.count() != 0)
+                .containsExactly(new LandParcelStatistics.Entry(ParcelStatus.APPROVED, false, 1, 42.0));
+        verify(mockRepo, times(1)).summarise();
+    }
+
+
+    // Bytes allocated by this thread per run of the operation, after warming it up
+    private static long allocatedPerCall(Runnable operation) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for(int i = 0; i < 10_000; i++) {
+            operation.run();
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for(int i = 0; i < 10_000; i++) {
+            operation.run();
+        }
+        return (threads.getCurrentThreadAllocatedBytes() - before) / 10_000;
+    }
+
+    // Test that the result-typed lookups and writes report a parcel that doesn't exist (or has moved on) without
+    // creating an exception: a miss allocates no more than a hit, and far less than the throwing retrieve
+    @Test
+    public void testOutcomeAllocation() {
+        LandParcelServiceImpl service = newService();
+        LandParcelRepository mockRepo = mock(LandParcelRepository.class);
+        when(mockRepo.findByObjectId(123)).thenReturn(PARCEL_123);
+        service.repository = mockRepo;
+
+        assertThat(service.find(123).landParcel()).isSameAs(PARCEL_123);
+        assertThat(service.find(12)).isSameAs(ParcelOutcome.NOT_FOUND);
+        assertThat(service.tryDelete(12, null)).isSameAs(ParcelOutcome.NOT_FOUND);
+        assertThat(service.tryPatch(12, "Nobody", null, null, null, null)).isSameAs(ParcelOutcome.NOT_FOUND);
+        when(mockRepo.existsById(123L)).thenReturn(true);
+        assertThat(service.tryUpdate(123, "Stale", null, null, null, 99L)).isSameAs(ParcelOutcome.VERSION_MISMATCH);
+
+        // (hits and misses are both cached, so neither reaches the repository)
+        long hit = allocatedPerCall(() -> service.find(123));
+        long miss = allocatedPerCall(() -> service.find(12));
+        long thrown = allocatedPerCall(() -> {
+            try {
+                service.retrieve(12);
+            }
+            catch (NoSuchElementException e) {
+                // Expected
+            }
+        });
+        assertThat(miss).isLessThanOrEqualTo(hit);
+        // (an exception, its stack trace and message come to a few kilobytes)
+        assertThat(miss).isLessThan(thrown / 4);
+    }
+}
@@ -0,0 +1,135 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelFilter;
+import com.jonsaway.landclan.jpa.LandParcelRepository;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.test.annotation.DirtiesContext;
+
+import java.util.NoSuchElementException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Updates written behind, against the real (H2) database
+// Only flushed when the tests ask (or when there's no room: at most two parcels wait)
+@SpringBootTest(properties = { "spring.datasource.url=jdbc:h2:mem:writebehind",
+        "landclan.write-behind.enabled=true", "landclan.write-behind.flush-interval=PT1H",
+        "landclan.write-behind.capacity=2", "landclan.write-behind.max-wait=PT5S" })
+public class LandParcelWriteBehindTests {
+    @Autowired
+    private LandParcelService service;
+
+    @Autowired
+    private LandParcelWriteBehind writeBehind;
+
+    @Autowired
+    private LandParcelRepository repository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    // The version parcel 123 was created at
+    private long created;
+
+    @BeforeEach
+    public void init() {
+        // Start each test from an empty database (deletes flush anything waiting first)
+        for(long objectId: new long[] {1, 2, 3, 123}) {
+            try {
+                service.delete(objectId);
+            }
+            catch (NoSuchElementException e) {
+                // Didn't exist: fine
+            }
+        }
+        created = service.create(123, "Alice House", ParcelStatus.SAVED, 42, true).getVersion();
+    }
+
+    private double count(String name) {
+        return meterRegistry.get(name).counter().count();
+    }
+
+    // Test that a burst of updates is acknowledged (and read back) at once, and written as one
+    @Test
+    public void testCoalescing() {
+        double writes = count("landclan.write.behind.writes");
+        for(int i = 1; i <= 5; i++) {
+            assertThat(service.update(123, "Alice " + i, null, null, null).getVersion()).isEqualTo(created + i);
+        }
+        service.patch(123, null, ParcelStatus.APPROVED, null, null);
+        assertThat(service.retrieve(123).getName()).isEqualTo("Alice 5");
+        assertThat(service.retrieve(123).getStatus()).isEqualTo(ParcelStatus.APPROVED);
+        assertThat(repository.findByObjectId(123).getVersion()).isEqualTo(created);
+
+        writeBehind.flush();
+        LandParcel stored = repository.findByObjectId(123);
+        assertThat(stored.getName()).isEqualTo("Alice 5");
+        assertThat(stored.getStatus()).isEqualTo(ParcelStatus.APPROVED);
+        assertThat(stored.getVersion()).isEqualTo(created + 6);
+        assertThat(count("landclan.write.behind.writes") - writes).isEqualTo(1);
+        assertThat(writeBehind.pendingCount()).isZero();
+
+        // Versions carry on from the view (before and after a flush)
+        assertThat(service.update(123, null, null, 1.5, null, created + 6).getVersion()).isEqualTo(created + 7);
+        assertThatThrownBy(() -> service.update(123, null, null, 2.5, null, created + 6)).isInstanceOf(OptimisticLockingFailureException.class);
+        assertThatThrownBy(() -> service.update(456, "Nobody", null, null, null)).isInstanceOf(NoSuchElementException.class);
+        assertThat(writeBehind.pendingCount()).isEqualTo(1);
+    }
+
+    // Test that reads of more than one parcel (and other writes) see the updates waiting to be written
+    @Test
+    public void testReadYourWrites() {
+        service.patch(123, null, ParcelStatus.APPROVED, null, null);
+        assertThat(service.retrieveFiltered(new LandParcelFilter(null, ParcelStatus.APPROVED, null, null, null), null, 10))
+                .extracting(LandParcel::getObjectId).containsExactly(123L);
+        assertThat(writeBehind.pendingCount()).isZero();
+
+        service.update(123, "Alice Office", null, null, null);
+        service.delete(123, created + 2);
+        assertThat(repository.findByObjectId(123)).isNull();
+    }
+
+    // Test that once as many parcels as there's room for are waiting, an update to another waits for a flush
+    @Test
+    public void testBackpressure() {
+        for(long objectId = 1; objectId <= 3; objectId++) {
+            service.create(objectId, "Parcel " + objectId, ParcelStatus.SAVED, 1, false);
+        }
+        for(long objectId = 1; objectId <= 3; objectId++) {
+            service.update(objectId, "Updated " + objectId, null, null, null);
+            assertThat(writeBehind.pendingCount()).isLessThanOrEqualTo(2);
+        }
+        for(long objectId = 1; objectId <= 3; objectId++) {
+            assertThat(service.retrieve(objectId).getName()).isEqualTo("Updated " + objectId);
+        }
+        assertThat(repository.findByObjectId(1).getName()).isEqualTo("Updated 1");
+    }
+
+    // Test that a parcel changed behind the write-behind's back keeps that change, and the waiting updates are dropped
+    @Test
+    public void testConflict() {
+        double conflicts = count("landclan.write.behind.conflicts");
+        service.update(123, "Alice Office", null, null, null);
+        repository.patch(123, "Somebody Else", null, null, null, null);
+
+        writeBehind.flush();
+        assertThat(count("landclan.write.behind.conflicts") - conflicts).isEqualTo(1);
+        assertThat(service.retrieve(123).getName()).isEqualTo("Somebody Else");
+    }
+
+    // Test that anything waiting is written on shutdown
+    @Test
+    @DirtiesContext
+    public void testClose() throws Exception {
+        service.update(123, "Alice Office", null, null, null);
+        writeBehind.close();
+        assertThat(repository.findByObjectId(123).getName()).isEqualTo("Alice Office");
+    }
+}
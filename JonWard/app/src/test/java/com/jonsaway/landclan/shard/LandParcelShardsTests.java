@@ -0,0 +1,252 @@
+package com.jonsaway.landclan.shard;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelFilter;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.BatchOperation;
+import com.jonsaway.landclan.jpa.LandParcelRepository;
+import com.jonsaway.landclan.service.BatchResult;
+import com.jonsaway.landclan.service.LandParcelCache;
+import com.jonsaway.landclan.service.LandParcelLocks;
+import com.jonsaway.landclan.service.LandParcelService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// Land parcels sharded over three embedded H2 databases, by range: shard 0 owns the ids below 100, shard 1 from 100,
+// and shard 2 from 200
+@SpringBootTest(properties = {
+        "landclan.shards.urls=jdbc:h2:mem:shard0,jdbc:h2:mem:shard1,jdbc:h2:mem:shard2",
+        "landclan.shards.split-points=100,200" })
+public class LandParcelShardsTests {
+    @Autowired
+    private LandParcelService service;
+
+    @Autowired
+    private LandParcelShards shards;
+
+    @Autowired
+    private ShardRebalancer rebalancer;
+
+    @Autowired
+    private LandParcelRepository repository;
+
+    @Autowired
+    private LandParcelCache cache;
+
+    @Autowired
+    private LandParcelLocks locks;
+
+    @BeforeEach
+    public void init() {
+        // Start each test from empty shards, split as configured
+        for(LandParcel landParcel: service.retrieveAll()) {
+            service.delete(landParcel.getObjectId());
+        }
+        shards.setMap(ShardMap.of(3, new long[] {100, 200}, false));
+    }
+
+    // The object ids stored on a shard, in order
+    private List<Long> storedOn(int shard) {
+        return new JdbcTemplate(shards.dataSource.shards().get(shard))
+                .queryForList("select object_id from land_parcel order by object_id", Long.class);
+    }
+
+    private void create(long... objectIds) {
+        for(long objectId: objectIds) {
+            service.create(objectId, "Parcel " + objectId, objectId % 20 == 0 ? ParcelStatus.APPROVED : ParcelStatus.SAVED, objectId, false);
+        }
+    }
+
+    private static List<Long> ids(Iterable<LandParcel> landParcels) {
+        List<Long> ids = new ArrayList<>();
+        landParcels.forEach(landParcel -> ids.add(landParcel.getObjectId()));
+        return ids;
+    }
+
+    // Test that each operation on a single parcel goes to (only) the shard that owns it
+    @Test
+    public void testPointOperations() {
+        create(50, 150, 250);
+        assertThat(storedOn(0)).containsExactly(50L);
+        assertThat(storedOn(1)).containsExactly(150L);
+        assertThat(storedOn(2)).containsExactly(250L);
+        assertThatThrownBy(() -> service.create(150, "Again", ParcelStatus.SAVED, 1, false)).isInstanceOf(IllegalArgumentException.class);
+
+        long created = service.retrieve(150).getVersion();
+        assertThat(service.update(150, "Bob Office", null, null, null).getVersion()).isEqualTo(created + 1);
+        service.patch(250, null, ParcelStatus.APPROVED, null, null);
+        assertThat(service.retrieve(150).getName()).isEqualTo("Bob Office");
+        assertThat(service.retrieve(250).getStatus()).isEqualTo(ParcelStatus.APPROVED);
+        assertThatThrownBy(() -> service.update(150, "Stale", null, null, null, created)).isInstanceOf(OptimisticLockingFailureException.class);
+        assertThatThrownBy(() -> service.update(160, "Nobody", null, null, null, 0L)).isInstanceOf(NoSuchElementException.class);
+
+        service.delete(250);
+        assertThat(storedOn(2)).isEmpty();
+        assertThatThrownBy(() -> service.retrieve(250)).isInstanceOf(NoSuchElementException.class);
+    }
+
+    // Test that pages, filtered pages, every parcel and the stream are read from every shard, and merged in order
+    @Test
+    public void testFanOut() {
+        create(210, 10, 110, 220, 20, 120, 30);
+        assertThat(ids(service.retrievePage(null, 4))).containsExactly(10L, 20L, 30L, 110L);
+        assertThat(ids(service.retrievePage(30L, 3))).containsExactly(110L, 120L, 210L);
+        assertThat(ids(service.retrievePage(220L, 3))).isEmpty();
+        assertThat(ids(service.retrieveFiltered(new LandParcelFilter(null, ParcelStatus.APPROVED, null, null, null), null, 10)))
+                .containsExactly(20L, 120L, 220L);
+        assertThat(ids(service.retrieveAll())).containsExactly(10L, 20L, 30L, 110L, 120L, 210L, 220L);
+
+        List<Long> streamed = new ArrayList<>();
+        service.streamAll(landParcel -> streamed.add(landParcel.getObjectId()));
+        assertThat(streamed).containsExactly(10L, 20L, 30L, 110L, 120L, 210L, 220L);
+
+        // A consumer that gives up stops the stream
+        assertThatThrownBy(() -> service.streamAll(landParcel -> {
+            throw new IllegalStateException("Gone");
+        })).isInstanceOf(IllegalStateException.class);
+    }
+
+    // Test that a batch is applied on each operation's shard, with the results in the order of the operations
+    @Test
+    public void testBatch() {
+        List<BatchResult> results = service.batch(Arrays.asList(
+                BatchOperation.create(205, "Eve Hospital", ParcelStatus.SAVED, 198.0, true),
+                BatchOperation.create(5, "Alice House", ParcelStatus.SAVED, 42.0, true),
+                BatchOperation.create(105, "Bob Office", ParcelStatus.APPROVED, 27.0, false),
+                BatchOperation.update(5, "Alice Home", null, null, null),
+                BatchOperation.delete(105),
+                BatchOperation.delete(106)));
+        assertThat(results).extracting(BatchResult::index).containsExactly(0, 1, 2, 3, 4, 5);
+        assertThat(results).extracting(BatchResult::objectId).containsExactly(205L, 5L, 105L, 5L, 105L, 106L);
+        assertThat(results).extracting(BatchResult::status).containsExactly(200, 200, 200, 200, 200, 404);
+
+        assertThat(storedOn(0)).containsExactly(5L);
+        assertThat(storedOn(1)).isEmpty();
+        assertThat(storedOn(2)).containsExactly(205L);
+        assertThat(service.retrieve(5).getName()).isEqualTo("Alice Home");
+    }
+
+    // Test that moving a range copies its parcels to the new shard, routes them there, and removes them from the old
+    @Test
+    public void testMove() {
+        create(50, 150, 160, 250);
+        long moving = service.update(160, "Moving", null, null, null).getVersion();
+
+        assertThat(rebalancer.move(150, 199, 2)).isEqualTo(2);
+        assertThat(storedOn(1)).isEmpty();
+        assertThat(storedOn(2)).containsExactly(150L, 160L, 250L);
+        assertThat(shards.shardOf(150)).isEqualTo(2);
+        assertThat(shards.shardOf(120)).isEqualTo(1);
+        assertThat(new JdbcTemplate(shards.dataSource.shards().get(0)).queryForList("select lower_bound from shard_range order by lower_bound", Long.class))
+                .containsExactly(Long.MIN_VALUE, 100L, 150L);
+
+        // Moved as is, and written where they are now
+        assertThat(service.retrieve(160).getName()).isEqualTo("Moving");
+        assertThat(service.update(160, "Moved", null, null, null, moving).getVersion()).isEqualTo(moving + 1);
+        assertThat(service.retrievePage(null, 10)).extracting(LandParcel::getObjectId).containsExactly(50L, 150L, 160L, 250L);
+
+        // Again: nothing left to move
+        assertThat(rebalancer.move(150, 199, 2)).isZero();
+        assertThatThrownBy(() -> rebalancer.move(0, 10, 3)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Test that a read of a single parcel routed to its old shard, but reaching it only after the move has deleted the
+    // parcel there, is run again on the new shard (rather than missing), and that the move discards the range's
+    // cached parcels and misses (only)
+    @Test
+    public void testReadDuringMove() throws Exception {
+        create(50, 150);
+        service.find(50);
+        service.find(150);
+        service.find(170);
+
+        CountDownLatch routed = new CountDownLatch(1);
+        CountDownLatch moved = new CountDownLatch(1);
+        CompletableFuture<LandParcel> read = CompletableFuture.supplyAsync(() -> shards.read(150, () -> {
+            routed.countDown();
+            await(moved);
+            return repository.findByObjectId(150);
+        }));
+        routed.await();
+        assertThat(rebalancer.move(150, 199, 2)).isEqualTo(1);
+        moved.countDown();
+        assertThat(read.get().getName()).isEqualTo("Parcel 150");
+
+        // (a cached entry is returned without calling the loader)
+        assertThat(cache.get(50, objectId -> null)).isNotNull();
+        assertThat(cache.get(150, objectId -> null)).isNull();
+        assertThat(cache.get(170, objectId -> new LandParcel(170, "Not cached", ParcelStatus.SAVED, 1, false))).isNotNull();
+        cache.invalidateAll();
+    }
+
+    // Test that a single write, a sharded batch and a move, all at once, don't deadlock: a single write waiting for the
+    // move mustn't be holding a parcel the batch (which the move waits for) needs
+    @Test
+    public void testWritesDuringMove() throws Exception {
+        create(5, 50);
+        ReentrantReadWriteLock moves = (ReentrantReadWriteLock) shards.moves();
+
+        // Hold up the batch, part way through locking its parcels (5, then 50), with moves held off
+        ReentrantLock first = locks.of(5);
+        first.lock();
+        CompletableFuture<List<BatchResult>> batch;
+        CompletableFuture<Long> move;
+        CompletableFuture<LandParcel> update;
+        try {
+            batch = CompletableFuture.supplyAsync(() -> service.batch(List.of(
+                    BatchOperation.update(5, "Batch", null, null, null),
+                    BatchOperation.update(50, "Batch", null, null, null))));
+            waitFor(first::hasQueuedThreads);
+
+            // A move waiting for the batch, then a write to the batch's other parcel waiting for the move
+            move = CompletableFuture.supplyAsync(() -> rebalancer.move(150, 199, 2));
+            waitFor(() -> moves.getQueueLength() == 1);
+            update = CompletableFuture.supplyAsync(() -> service.update(50, "Single", null, null, null));
+            waitFor(() -> moves.getQueueLength() == 2);
+        }
+        finally {
+            first.unlock();
+        }
+
+        assertThat(batch.get(10, TimeUnit.SECONDS)).extracting(BatchResult::status).containsExactly(200, 200);
+        assertThat(move.get(10, TimeUnit.SECONDS)).isZero();
+        assertThat(update.get(10, TimeUnit.SECONDS).getName()).isEqualTo("Single");
+        assertThat(service.retrieve(5).getName()).isEqualTo("Batch");
+    }
+
+    private static void waitFor(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while(!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("waiting").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.jonsaway.landclan.shard;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ShardMapTests {
+    // Test that ids are routed by range, and that a range assigned to another shard splits (and merges) the ranges
+    @Test
+    public void testRanges() {
+        ShardMap map = ShardMap.of(3, new long[] {100, 200}, false);
+        assertThat(map.shardOf(Long.MIN_VALUE)).isZero();
+        assertThat(map.shardOf(99)).isZero();
+        assertThat(map.shardOf(100)).isEqualTo(1);
+        assertThat(map.shardOf(199)).isEqualTo(1);
+        assertThat(map.shardOf(Long.MAX_VALUE)).isEqualTo(2);
+
+        ShardMap moved = map.assign(150, 249, 0);
+        assertThat(moved.ranges()).containsExactly(new ShardMap.Range(Long.MIN_VALUE, 99, 0),
+                new ShardMap.Range(100, 149, 1), new ShardMap.Range(150, 249, 0), new ShardMap.Range(250, Long.MAX_VALUE, 2));
+        assertThat(moved.shardOf(150)).isZero();
+        assertThat(moved.shardOf(250)).isEqualTo(2);
+        assertThat(moved.owns(1, 0, 120)).isTrue();
+        assertThat(moved.owns(1, 150, 1000)).isFalse();
+
+        // Back again: neighbouring ranges of the same shard merge
+        ShardMap back = moved.assign(100, 149, 0);
+        assertThat(back.ranges()).containsExactly(new ShardMap.Range(Long.MIN_VALUE, 249, 0), new ShardMap.Range(250, Long.MAX_VALUE, 2));
+        assertThat(ShardMap.of(back.ranges(), false).ranges()).isEqualTo(back.ranges());
+
+        // (right to the ends)
+        assertThat(map.assign(Long.MIN_VALUE, Long.MAX_VALUE, 1).ranges()).containsExactly(new ShardMap.Range(Long.MIN_VALUE, Long.MAX_VALUE, 1));
+    }
+
+    // Test that hashed ids spread evenly over the shards, even when they're consecutive
+    @Test
+    public void testHashed() {
+        ShardMap map = ShardMap.of(4, new long[0], true);
+        assertThat(map.ranges()).hasSize(4);
+        int[] counts = new int[4];
+        for(long objectId = 1; objectId <= 100_000; objectId++) {
+            counts[map.shardOf(objectId)]++;
+        }
+        for(int count: counts) {
+            assertThat(count).isBetween(24_000, 26_000);
+        }
+        assertThat(map.shardOf(12345)).isEqualTo(map.shardOf(12345));
+    }
+
+    // Test that maps which don't cover every key, or aren't in order, are refused
+    @Test
+    public void testInvalid() {
+        assertThatThrownBy(() -> ShardMap.of(3, new long[0], false)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ShardMap.of(3, new long[] {200, 100}, false)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ShardMap.of(3, new long[] {100}, false)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> ShardMap.of(List.of(new ShardMap.Range(Long.MIN_VALUE, 10, 0),
+                new ShardMap.Range(12, Long.MAX_VALUE, 1)), false)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(ShardMap.of(1, new long[0], false).shardOf(42)).isZero();
+    }
+}
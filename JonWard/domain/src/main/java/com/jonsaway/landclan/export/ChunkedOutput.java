@@ -0,0 +1,63 @@
+package com.jonsaway.landclan.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+// Big-endian values, gathered into a buffer and written to a stream a chunk at a time
+// (cheaper than a DataOutputStream over a BufferedOutputStream, which goes through a synchronized write per value)
+class ChunkedOutput {
+    static final int CHUNK_SIZE = 1 << 16;
+
+    private final OutputStream out;
+    private final ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+
+    ChunkedOutput(OutputStream out) {
+        this.out = out;
+    }
+
+    void putByte(int value) throws IOException {
+        room(1).put((byte) value);
+    }
+
+    void putInt(int value) throws IOException {
+        room(Integer.BYTES).putInt(value);
+    }
+
+    void putLong(long value) throws IOException {
+        room(Long.BYTES).putLong(value);
+    }
+
+    void putDouble(double value) throws IOException {
+        room(Double.BYTES).putDouble(value);
+    }
+
+    void put(byte[] bytes, int offset, int length) throws IOException {
+        if(length > buffer.capacity()) {
+            flushBuffer();
+            out.write(bytes, offset, length);
+        }
+        else {
+            room(length).put(bytes, offset, length);
+        }
+    }
+
+    // Write out what's buffered, and flush the stream
+    void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    // The buffer, with room for this many bytes (writing out what's buffered, if need be)
+    private ByteBuffer room(int length) throws IOException {
+        if(buffer.remaining() < length) {
+            flushBuffer();
+        }
+        return buffer;
+    }
+
+    private void flushBuffer() throws IOException {
+        out.write(buffer.array(), 0, buffer.position());
+        buffer.clear();
+    }
+}
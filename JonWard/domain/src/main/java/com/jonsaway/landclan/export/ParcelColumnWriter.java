@@ -0,0 +1,149 @@
+package com.jonsaway.landclan.export;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.rest.ParcelStatus;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+
+// Land parcels in columns (application/vnd.landclan.parcel-columns), a block of up to BLOCK_SIZE parcels at a time
+// All numbers are big-endian:
+// - the magic number "LPC1"
+// - per block: the number of parcels in it (int), then each column in turn, for every parcel in the block:
+//   - objectIds: long each
+//   - statuses: byte each (the ParcelStatus ordinal, -1 for none)
+//   - areas: double each
+//   - constraints: a bit each, packed into bytes (parcel i is bit i % 8 of byte i / 8)
+//   - names: the block's distinct names (int count, then per name its length in bytes and UTF-8),
+//     then an int each (an index into those names, -1 for none)
+// - a block of 0 parcels, marking the end
+// A reader after one attribute (e.g. to total the areas) can skip the other columns; repeated names are written once
+// per block; and each column compresses well, being values of one type. Memory use is one block, however many parcels
+public class ParcelColumnWriter implements ParcelWriter {
+    public static final String MEDIA_TYPE = "application/vnd.landclan.parcel-columns";
+    public static final int BLOCK_SIZE = 8192;
+
+    static final int MAGIC = 0x4C504331; // "LPC1"
+    private static final ParcelStatus[] STATUSES = ParcelStatus.values();
+
+    private final ChunkedOutput out;
+
+    // The block being filled
+    private final long[] objectIds = new long[BLOCK_SIZE];
+    private final byte[] statuses = new byte[BLOCK_SIZE];
+    private final double[] areas = new double[BLOCK_SIZE];
+    private final byte[] constraints = new byte[(BLOCK_SIZE + 7) / 8];
+    private final int[] nameIndexes = new int[BLOCK_SIZE];
+    private final Map<String, Integer> names = new HashMap<>();
+    private String[] nameList = new String[64];
+    private int count;
+
+    public ParcelColumnWriter(OutputStream out) throws IOException {
+        this.out = new ChunkedOutput(out);
+        this.out.putInt(MAGIC);
+    }
+
+    @Override
+    public void write(LandParcel landParcel) throws IOException {
+        objectIds[count] = landParcel.getObjectId();
+        statuses[count] = landParcel.getStatus() != null ? (byte) landParcel.getStatus().ordinal() : -1;
+        areas[count] = landParcel.getArea();
+        if(landParcel.getConstraints()) {
+            constraints[count >>> 3] |= (byte) (1 << (count & 7));
+        }
+        nameIndexes[count] = landParcel.getName() != null ? names.computeIfAbsent(landParcel.getName(), this::addName) : -1;
+
+        if(++count == BLOCK_SIZE) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if(count > 0) {
+            writeBlock();
+        }
+        out.putInt(0);
+        out.flush();
+    }
+
+    private int addName(String name) {
+        int index = names.size();
+        if(index == nameList.length) {
+            nameList = Arrays.copyOf(nameList, index * 2);
+        }
+        nameList[index] = name;
+        return index;
+    }
+
+    private void writeBlock() throws IOException {
+        out.putInt(count);
+        for(int i = 0; i < count; i++) {
+            out.putLong(objectIds[i]);
+        }
+        out.put(statuses, 0, count);
+        for(int i = 0; i < count; i++) {
+            out.putDouble(areas[i]);
+        }
+        out.put(constraints, 0, (count + 7) / 8);
+
+        out.putInt(names.size());
+        for(int index = 0; index < names.size(); index++) {
+            byte[] name = nameList[index].getBytes(StandardCharsets.UTF_8);
+            out.putInt(name.length);
+            out.put(name, 0, name.length);
+        }
+        for(int i = 0; i < count; i++) {
+            out.putInt(nameIndexes[i]);
+        }
+
+        count = 0;
+        Arrays.fill(constraints, (byte) 0);
+        names.clear();
+        Arrays.fill(nameList, null);
+    }
+
+    // Read an export, passing each parcel to the consumer in turn
+    // Throws EOFException if the export is truncated
+    public static void read(InputStream in, Consumer<LandParcel> consumer) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        if(data.readInt() != MAGIC) {
+            throw new IOException("Not a land parcel column export");
+        }
+
+        int count;
+        while((count = data.readInt()) != 0) {
+            long[] objectIds = new long[count];
+            for(int i = 0; i < count; i++) {
+                objectIds[i] = data.readLong();
+            }
+            byte[] statuses = new byte[count];
+            data.readFully(statuses);
+            double[] areas = new double[count];
+            for(int i = 0; i < count; i++) {
+                areas[i] = data.readDouble();
+            }
+            byte[] constraints = new byte[(count + 7) / 8];
+            data.readFully(constraints);
+            String[] names = new String[data.readInt()];
+            for(int index = 0; index < names.length; index++) {
+                byte[] name = new byte[data.readInt()];
+                data.readFully(name);
+                names[index] = new String(name, StandardCharsets.UTF_8);
+            }
+
+            for(int i = 0; i < count; i++) {
+                int nameIndex = data.readInt();
+                consumer.accept(new LandParcel(objectIds[i],
+                        nameIndex >= 0 ? names[nameIndex] : null,
+                        statuses[i] >= 0 ? STATUSES[statuses[i]] : null,
+                        areas[i],
+                        (constraints[i >>> 3] & (1 << (i & 7))) != 0));
+            }
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.jonsaway.landclan.export;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.rest.ParcelStatus;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+// Land parcels as length-prefixed binary records (application/vnd.landclan.parcel-records)
+// All numbers are big-endian:
+// - the magic number "LPR1"
+// - per parcel: its length (int, excluding itself), then
+//   objectId (long), status (byte: the ParcelStatus ordinal, -1 for none), area (double), constraints (byte: 0 or 1),
+//   and the name's length in bytes (int, -1 for none) followed by the name in UTF-8
+// - a length of 0, marking the end (so a truncated export can be told from a complete one)
+// A record can be skipped by its length without decoding it, and later versions may add fields at the end of a record
+public class ParcelRecordWriter implements ParcelWriter {
+    public static final String MEDIA_TYPE = "application/vnd.landclan.parcel-records";
+
+    static final int MAGIC = 0x4C505231; // "LPR1"
+    private static final ParcelStatus[] STATUSES = ParcelStatus.values();
+    // Fixed part of a record: objectId, status, area, constraints and the name's length
+    private static final int FIXED_LENGTH = Long.BYTES + 1 + Double.BYTES + 1 + Integer.BYTES;
+
+    private final ChunkedOutput out;
+
+    public ParcelRecordWriter(OutputStream out) throws IOException {
+        this.out = new ChunkedOutput(out);
+        this.out.putInt(MAGIC);
+    }
+
+    @Override
+    public void write(LandParcel landParcel) throws IOException {
+        byte[] name = landParcel.getName() != null ? landParcel.getName().getBytes(StandardCharsets.UTF_8) : null;
+        out.putInt(FIXED_LENGTH + (name != null ? name.length : 0));
+        out.putLong(landParcel.getObjectId());
+        out.putByte(landParcel.getStatus() != null ? landParcel.getStatus().ordinal() : -1);
+        out.putDouble(landParcel.getArea());
+        out.putByte(landParcel.getConstraints() ? 1 : 0);
+        if(name != null) {
+            out.putInt(name.length);
+            out.put(name, 0, name.length);
+        }
+        else {
+            out.putInt(-1);
+        }
+    }
+
+    @Override
+    public void finish() throws IOException {
+        out.putInt(0);
+        out.flush();
+    }
+
+    // Read an export, passing each parcel to the consumer in turn
+    // Throws EOFException if the export is truncated
+    public static void read(InputStream in, Consumer<LandParcel> consumer) throws IOException {
+        DataInputStream data = new DataInputStream(new BufferedInputStream(in, 1 << 16));
+        if(data.readInt() != MAGIC) {
+            throw new IOException("Not a land parcel record export");
+        }
+
+        int length;
+        while((length = data.readInt()) != 0) {
+            long objectId = data.readLong();
+            byte status = data.readByte();
+            double area = data.readDouble();
+            boolean constraints = data.readByte() != 0;
+            int nameLength = data.readInt();
+            String name = null;
+            if(nameLength >= 0) {
+                byte[] bytes = new byte[nameLength];
+                data.readFully(bytes);
+                name = new String(bytes, StandardCharsets.UTF_8);
+            }
+            // (skip any fields added since)
+            data.skipNBytes(length - FIXED_LENGTH - Math.max(nameLength, 0));
+            consumer.accept(new LandParcel(objectId, name, status >= 0 ? STATUSES[status] : null, area, constraints));
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.jonsaway.landclan.export;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+
+import java.io.IOException;
+
+// Writes land parcels to a stream, one at a time, in some export format
+// finish() must be called after the last parcel: it writes the end of the export, and flushes it
+// (the stream itself is left open)
+public interface ParcelWriter {
+    void write(LandParcel landParcel) throws IOException;
+
+    void finish() throws IOException;
+}
@@ -0,0 +1,112 @@
+package com.jonsaway.landclan.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads land parcels from CSV, a line at a time
+// The first line names the columns: objectId, name, status, area and constraints are required, in any order
+// (other columns are ignored). Values may be quoted ("..."), with "" for a quote within them, but not span lines
+// Blank lines are skipped
+public class CsvParcelReader implements ParcelReader {
+    private static final String[] COLUMNS = { "objectId", "name", "status", "area", "constraints" };
+
+    private final BufferedReader reader;
+    // Position of each of COLUMNS in a line
+    private final int[] positions = new int[COLUMNS.length];
+    private long number;
+
+    public CsvParcelReader(InputStream in) throws IOException {
+        reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+
+        String header = reader.readLine();
+        if(header == null) {
+            throw new IOException("CSV has no header line");
+        }
+        // (ignoring a byte order mark)
+        List<String> names = split(header.startsWith("\uFEFF") ? header.substring(1) : header);
+        for(int column = 0; column < COLUMNS.length; column++) {
+            positions[column] = -1;
+            for(int position = 0; position < names.size(); position++) {
+                if(names.get(position).trim().equalsIgnoreCase(COLUMNS[column])) {
+                    positions[column] = position;
+                }
+            }
+            if(positions[column] < 0) {
+                throw new IOException("CSV header has no '" + COLUMNS[column] + "' column");
+            }
+        }
+    }
+
+    @Override
+    public Row next() throws IOException {
+        String line;
+        do {
+            line = reader.readLine();
+            if(line == null) {
+                return null;
+            }
+        } while(line.isBlank());
+
+        number++;
+        List<String> values;
+        try {
+            values = split(line);
+        }
+        catch (IllegalArgumentException e) {
+            return new Row(number, null, null, e.getMessage());
+        }
+        return ParcelReader.row(number, value(values, 0), value(values, 1), value(values, 2), value(values, 3), value(values, 4));
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    // The value of one of COLUMNS (null if the line is too short to have it)
+    private String value(List<String> values, int column) {
+        return positions[column] < values.size() ? values.get(positions[column]) : null;
+    }
+
+    // The comma-separated values of a line
+    private static List<String> split(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        for(int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if(quoted) {
+                if(c != '"') {
+                    value.append(c);
+                }
+                else if(i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                }
+                else {
+                    quoted = false;
+                }
+            }
+            else if(c == '"') {
+                quoted = true;
+            }
+            else if(c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            }
+            else {
+                value.append(c);
+            }
+        }
+        if(quoted) {
+            throw new IllegalArgumentException("Unterminated quoted value");
+        }
+        values.add(value.toString());
+        return values;
+    }
+}
@@ -0,0 +1,103 @@
+package com.jonsaway.landclan.importer;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+// Reads land parcels from a GeoJSON FeatureCollection, a feature at a time
+// Each feature's properties hold objectId, name, status, area and constraints
+// (the objectId may be the feature's id instead); a Polygon geometry is the parcel's shape, and its area
+// is taken from that. Everything else (including other kinds of geometry) is ignored
+// Only one feature is held in memory at a time, however many the file has
+public class GeoJsonParcelReader implements ParcelReader {
+    private final JsonParser parser;
+    private final ObjectMapper objectMapper;
+    // Whether the parser is within the features array
+    private boolean inFeatures;
+    private long number;
+
+    public GeoJsonParcelReader(InputStream in, ObjectMapper objectMapper) throws IOException {
+        this.objectMapper = objectMapper;
+        parser = objectMapper.getFactory().createParser(in);
+        if(parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new IOException("GeoJSON isn't an object");
+        }
+    }
+
+    @Override
+    public Row next() throws IOException {
+        if(!inFeatures && !findFeatures()) {
+            return null;
+        }
+
+        JsonToken token = parser.nextToken();
+        if(token == JsonToken.END_ARRAY) {
+            // (a second features array is ignored)
+            inFeatures = false;
+            findFeatures();
+            return null;
+        }
+        if(token != JsonToken.START_OBJECT) {
+            throw new IOException("GeoJSON feature isn't an object, at " + parser.currentLocation());
+        }
+
+        number++;
+        JsonNode feature = objectMapper.readTree(parser);
+        JsonNode properties = feature.path("properties");
+        JsonNode objectId = properties.has("objectId") ? properties.get("objectId") : feature.get("id");
+
+        ParcelGeometry geometry = null;
+        JsonNode geometryNode = feature.path("geometry");
+        if(geometryNode.path("type").asText().equals("Polygon")) {
+            try {
+                geometry = objectMapper.treeToValue(geometryNode, ParcelGeometry.class);
+            }
+            catch (JsonProcessingException | IllegalArgumentException e) {
+                String reason = e.getCause() != null ? e.getCause().getMessage() : e.getMessage();
+                return new Row(number, objectId != null && objectId.canConvertToLong() ? objectId.asLong() : null, null,
+                        "Invalid geometry: " + reason);
+            }
+        }
+
+        return ParcelReader.row(number, text(objectId), text(properties.get("name")), text(properties.get("status")),
+                text(properties.get("area")), text(properties.get("constraints")), geometry);
+    }
+
+    @Override
+    public void close() throws IOException {
+        parser.close();
+    }
+
+    // Move on to the features array
+    // Returns false if there isn't one
+    private boolean findFeatures() throws IOException {
+        JsonToken token;
+        while((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            boolean features = parser.currentName().equals("features");
+            token = parser.nextToken();
+            if(features && !inFeatures && number == 0) {
+                if(token != JsonToken.START_ARRAY) {
+                    throw new IOException("GeoJSON features isn't an array");
+                }
+                inFeatures = true;
+                return true;
+            }
+            parser.skipChildren();
+        }
+        if(token != JsonToken.END_OBJECT && token != null) {
+            throw new IOException("Malformed GeoJSON, at " + parser.currentLocation());
+        }
+        return false;
+    }
+
+    // A value as text (null for a missing or null value)
+    private static String text(JsonNode value) {
+        return value == null || value.isNull() ? null : value.asText();
+    }
+}
@@ -0,0 +1,11 @@
+package com.jonsaway.landclan.importer;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// A parcel that couldn't be imported
+// 'row' is the parcel's number in the file (from 1), 'objectId' its object id (if it could be read)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ImportError(long row,
+                          Long objectId,
+                          String message) {
+}
@@ -0,0 +1,21 @@
+package com.jonsaway.landclan.importer;
+
+import java.util.List;
+
+// The outcome of an import
+// - rows: parcels read from the file (including those skipped)
+// - imported: parcels created
+// - skipped: parcels before the checkpoint, imported by an earlier (interrupted) run
+// - alreadyImported: parcels after the checkpoint that already existed, when resuming
+//   (the earlier run imported them, but crashed before its checkpoint caught up): only rows the earlier run had
+//   handed to a writer, whose parcel is stored just as the row has it
+// - failed: parcels that were invalid, or couldn't be created (e.g. because they already exist)
+// - errors: why, for the first of the failed parcels (up to landclan.import.max-errors)
+public record ImportReport(long rows,
+                           long imported,
+                           long skipped,
+                           long alreadyImported,
+                           long failed,
+                           List<ImportError> errors,
+                           long millis) {
+}
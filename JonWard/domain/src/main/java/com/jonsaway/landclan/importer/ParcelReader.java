@@ -0,0 +1,113 @@
+package com.jonsaway.landclan.importer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.service.BatchOperation;
+import com.jonsaway.landclan.rest.ParcelStatus;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// Reads land parcels to import from a file, one at a time, so a file of any size can be imported in bounded memory
+// Each parcel is validated as it's read: an invalid parcel is returned as a row with an error, rather than
+// stopping the import. Only a file that can't be read any further (e.g. malformed JSON) throws IOException
+public interface ParcelReader extends Closeable {
+    enum Format {
+        // A header line naming the columns (objectId, name, status, area, constraints, in any order),
+        // then a parcel per line
+        CSV,
+        // A FeatureCollection, with a parcel's values in each feature's properties
+        // (the objectId may be the feature's id instead), and its shape (if it has one) as the feature's geometry (a Polygon)
+        GEOJSON
+    }
+
+    // A parcel read from the file
+    // 'number' counts the parcels in the file, from 1 (the same parcel has the same number each time the file is read)
+    // 'operation' is the create for a valid parcel (null if the parcel is invalid)
+    // 'objectId' is the parcel's object id, if it could be read
+    // 'error' says why the parcel is invalid (null if it's valid)
+    record Row(long number, Long objectId, BatchOperation operation, String error) {
+    }
+
+    // The next parcel, or null at the end of the file
+    Row next() throws IOException;
+
+    // A reader of this format
+    static ParcelReader of(Format format, InputStream in, ObjectMapper objectMapper) throws IOException {
+        return switch (format) {
+            case CSV -> new CsvParcelReader(in);
+            case GEOJSON -> new GeoJsonParcelReader(in, objectMapper);
+        };
+    }
+
+    // A reader of this file, in the format its extension says (.csv, or .geojson/.json)
+    static ParcelReader open(Path file, ObjectMapper objectMapper) throws IOException {
+        return of(format(file), Files.newInputStream(file), objectMapper);
+    }
+
+    static Format format(Path file) {
+        String name = file.getFileName().toString().toLowerCase();
+        if(name.endsWith(".csv")) {
+            return Format.CSV;
+        }
+        if(name.endsWith(".geojson") || name.endsWith(".json")) {
+            return Format.GEOJSON;
+        }
+        throw new IllegalArgumentException("Can't tell the format of " + file + " (expected .csv, .geojson or .json)");
+    }
+
+    // Validate a parcel's values (as text, as read from the file)
+    // All values are required, as for a single create
+    static Row row(long number, String objectId, String name, String status, String area, String constraints) {
+        return row(number, objectId, name, status, area, constraints, null);
+    }
+
+    // As above, for a parcel with a geometry (if not null), in which case the area isn't needed (it's the geometry's)
+    static Row row(long number, String objectId, String name, String status, String area, String constraints, ParcelGeometry geometry) {
+        Long id;
+        try {
+            id = Long.valueOf(objectId.trim());
+        }
+        catch (NullPointerException | NumberFormatException e) {
+            return new Row(number, null, null, "Invalid objectId: " + objectId);
+        }
+
+        if(name == null) {
+            return new Row(number, id, null, "Missing name");
+        }
+
+        ParcelStatus parcelStatus;
+        try {
+            parcelStatus = ParcelStatus.valueOf(status.trim().toUpperCase());
+        }
+        catch (NullPointerException | IllegalArgumentException e) {
+            parcelStatus = null;
+        }
+        if(parcelStatus == null || parcelStatus == ParcelStatus.NO_CHANGE) {
+            return new Row(number, id, null, "Invalid status: " + status);
+        }
+
+        double parcelArea;
+        try {
+            parcelArea = geometry != null ? geometry.area() : Double.parseDouble(area.trim());
+        }
+        catch (NullPointerException | NumberFormatException e) {
+            parcelArea = Double.NaN;
+        }
+        if(!Double.isFinite(parcelArea) || parcelArea < 0) {
+            return new Row(number, id, null, "Invalid area: " + area);
+        }
+
+        if(constraints == null || !(constraints.trim().equalsIgnoreCase("true") || constraints.trim().equalsIgnoreCase("false"))) {
+            return new Row(number, id, null, "Invalid constraints: " + constraints);
+        }
+
+        boolean parcelConstraints = Boolean.parseBoolean(constraints.trim());
+        return new Row(number, id, geometry != null
+                ? BatchOperation.create(id, name, parcelStatus, geometry, parcelConstraints)
+                : BatchOperation.create(id, name, parcelStatus, parcelArea, parcelConstraints), null);
+    }
+}
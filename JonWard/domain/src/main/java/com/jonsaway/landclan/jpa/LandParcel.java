@@ -0,0 +1,151 @@
+package com.jonsaway.landclan.jpa;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import jakarta.persistence.Column;
+import jakarta.persistence.Convert;
+import jakarta.persistence.Entity;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+import jakarta.persistence.Version;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+@Entity
+@Table(indexes = {
+        // findByName, and filtering by name
+        @Index(name = "idx_land_parcel_name", columnList = "name"),
+        // filtering by status (and constraints), in objectId order for keyset pagination
+        @Index(name = "idx_land_parcel_status", columnList = "status, constraints, objectId"),
+        // filtering by area range
+        @Index(name = "idx_land_parcel_area", columnList = "area")
+})
+public class LandParcel {
+
+    @Id
+    private long objectId;
+    private String name;
+    private ParcelStatus status;
+    private double area;
+    private boolean constraints;
+
+    // The parcel's shape (optional): if it has one, its area is always the geometry's area
+    @Convert(converter = ParcelGeometryConverter.class)
+    @Column(length = ParcelGeometry.MAX_BYTES)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ParcelGeometry geometry;
+
+    // Incremented on every modification, for optimistic concurrency control
+    // (exposed to REST clients as the ETag, rather than in the body)
+    // Starts at firstVersion(), so never repeats, even for a parcel deleted and created again
+    @Version
+    private long version;
+
+    // Bits of a version left for the modifications after the first
+    private static final int MODIFICATION_BITS = 20;
+    // The creation time (in milliseconds) of the last parcel created
+    private static final AtomicLong lastCreated = new AtomicLong();
+
+    protected LandParcel() {}
+
+    public LandParcel(long objectId, String name, ParcelStatus status, double area, boolean constraints) {
+        this.objectId = objectId;
+        this.name = name;
+        this.status = status;
+        this.area = area;
+        this.constraints = constraints;
+    }
+
+    public LandParcel(long objectId, String name, ParcelStatus status, double area, boolean constraints, long version) {
+        this(objectId, name, status, area, constraints);
+        this.version = version;
+    }
+
+    // The version for a new parcel to start at: the time it's created (in milliseconds, and after the last one created
+    // here), shifted up past room for a million modifications
+    // So a parcel deleted and created again starts above any version it reached before, and never gives a client the
+    // same version (or ETag) for two different parcels
+    // (if parcels are created faster than one a millisecond, the creation times run ahead of the clock until they slow)
+    // Limits: versions are only unique as long as
+    // - the clock doesn't go back across a restart: within a run the times never go back, but a restart after the clock
+    //   is set back (or running ahead of it, above) can hand out creation times it has handed out before
+    // - there's one instance: lastCreated is per process, so two instances writing the same database can create
+    //   parcels at the same millisecond, and give them the same version
+    // - a parcel is modified fewer than 2^20 (about a million) times: nothing stops it at the top of its range, so its
+    //   version then runs into the range of a parcel created a millisecond after it (and is no longer 'above any
+    //   version it reached before' if it's deleted and created again within that millisecond)
+    // Versions are stored as they are (not worked out again from the clock), so none of this affects the optimistic
+    // locking of a parcel: only a client comparing ETags across a parcel deleted and created again
+    public static long firstVersion() {
+        return lastCreated.accumulateAndGet(System.currentTimeMillis(), (last, now) -> Math.max(last + 1, now)) << MODIFICATION_BITS;
+    }
+
+    // A detached copy of this parcel, as it is now
+    public LandParcel copy() {
+        LandParcel copy = new LandParcel(objectId, name, status, area, constraints, version);
+        copy.geometry = geometry;
+        return copy;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(
+                "LandParcel[objectId=%d, name='%s', status=%s, area=%f, constraints=%s]",
+                objectId, name, status, area, constraints);
+    }
+
+    public long getObjectId() {
+        return objectId;
+    }
+
+    public String getName() {
+        return name;
+    }
+    public void setName(String name) {
+        this.name=name;
+    }
+
+    public ParcelStatus getStatus() {
+        return status;
+    }
+    public void setStatus(ParcelStatus status) {
+        this.status=status;
+    }
+
+    public double getArea() {
+        return area;
+    }
+    // Ignored if the parcel has a geometry: the area is derived from that, so can't go stale
+    public void setArea(double area) {
+        if(geometry == null) {
+            this.area=area;
+        }
+    }
+
+    public boolean getConstraints() {
+        return constraints;
+    }
+    public void setConstraints(boolean constraints) {
+        this.constraints=constraints;
+    }
+
+    public ParcelGeometry getGeometry() {
+        return geometry;
+    }
+    // Also sets the area, to the geometry's (removing the geometry leaves the area as it was)
+    public void setGeometry(ParcelGeometry geometry) {
+        this.geometry=geometry;
+        if(geometry != null) {
+            this.area=geometry.area();
+        }
+    }
+
+    @JsonIgnore
+    public long getVersion() {
+        return version;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.jonsaway.landclan.jpa;
+
+import com.jonsaway.landclan.rest.ParcelStatus;
+
+// Criteria for filtering land parcels
+// Null values match anything; minArea and maxArea are inclusive
+public record LandParcelFilter(String name,
+                               ParcelStatus status,
+                               Boolean constraints,
+                               Double minArea,
+                               Double maxArea) {
+}
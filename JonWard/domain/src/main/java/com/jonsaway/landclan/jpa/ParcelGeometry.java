@@ -0,0 +1,270 @@
+package com.jonsaway.landclan.jpa;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// The shape of a land parcel: a polygon (an outer ring, then any holes), in projected coordinates
+// (e.g. metres on the British National Grid), so distances and areas can be worked out directly
+// Immutable: the bounding box and area are worked out once, when it's created
+// Read and written (as JSON) as a GeoJSON Polygon, with its bounding box:
+// {"type":"Polygon","coordinates":[[[x,y],[x,y],...],...],"bbox":[minX,minY,maxX,maxY]}
+@JsonPropertyOrder({ "type", "coordinates", "bbox" })
+@JsonIgnoreProperties(value = "bbox", allowGetters = true)
+public final class ParcelGeometry {
+    // Most points held across all the rings (so a stored geometry fits in MAX_BYTES)
+    public static final int MAX_POINTS = 65_000;
+    public static final int MAX_BYTES = 1 << 20;
+
+    // Each ring as x0, y0, x1, y1, ..., closed (the last point is the first point again)
+    private final double[][] rings;
+    private final double minX;
+    private final double minY;
+    private final double maxX;
+    private final double maxY;
+    private final double area;
+
+    // Throws IllegalArgumentException if a ring has fewer than 3 distinct points, or a coordinate isn't finite
+    // (rings that aren't closed are closed; otherwise the polygon isn't checked, e.g. for crossing edges)
+    public ParcelGeometry(double[][] rings) {
+        if(rings.length == 0) {
+            throw new IllegalArgumentException("A polygon needs an outer ring");
+        }
+
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        double area = 0;
+        int points = 0;
+        this.rings = new double[rings.length][];
+        for(int ring = 0; ring < rings.length; ring++) {
+            double[] coordinates = close(rings[ring]);
+            points += coordinates.length / 2;
+            if(points > MAX_POINTS) {
+                throw new IllegalArgumentException("A polygon can have at most " + MAX_POINTS + " points");
+            }
+            for(int i = 0; i < coordinates.length; i += 2) {
+                minX = Math.min(minX, coordinates[i]);
+                minY = Math.min(minY, coordinates[i + 1]);
+                maxX = Math.max(maxX, coordinates[i]);
+                maxY = Math.max(maxY, coordinates[i + 1]);
+            }
+            // Holes are taken away from the outer ring, whichever way round their points are
+            double ringArea = Math.abs(signedArea(coordinates));
+            area += ring == 0 ? ringArea : -ringArea;
+            this.rings[ring] = coordinates;
+        }
+
+        this.minX = minX;
+        this.minY = minY;
+        this.maxX = maxX;
+        this.maxY = maxY;
+        this.area = Math.max(area, 0);
+    }
+
+    // An axis-aligned rectangle
+    public static ParcelGeometry rectangle(double minX, double minY, double maxX, double maxY) {
+        return new ParcelGeometry(new double[][] { { minX, minY, maxX, minY, maxX, maxY, minX, maxY, minX, minY } });
+    }
+
+    // From a GeoJSON Polygon's type and coordinates
+    @JsonCreator
+    public static ParcelGeometry fromGeoJson(@JsonProperty("type") String type,
+                                             @JsonProperty("coordinates") double[][][] coordinates) {
+        if(!"Polygon".equals(type)) {
+            throw new IllegalArgumentException("Geometry must be a Polygon, not " + type);
+        }
+        if(coordinates == null) {
+            throw new IllegalArgumentException("Polygon has no coordinates");
+        }
+
+        double[][] rings = new double[coordinates.length][];
+        for(int ring = 0; ring < coordinates.length; ring++) {
+            rings[ring] = new double[coordinates[ring].length * 2];
+            for(int point = 0; point < coordinates[ring].length; point++) {
+                if(coordinates[ring][point].length < 2) {
+                    throw new IllegalArgumentException("A position needs an x and a y");
+                }
+                rings[ring][point * 2] = coordinates[ring][point][0];
+                rings[ring][point * 2 + 1] = coordinates[ring][point][1];
+            }
+        }
+        return new ParcelGeometry(rings);
+    }
+
+    public String getType() {
+        return "Polygon";
+    }
+
+    public double[][][] getCoordinates() {
+        double[][][] coordinates = new double[rings.length][][];
+        for(int ring = 0; ring < rings.length; ring++) {
+            coordinates[ring] = new double[rings[ring].length / 2][];
+            for(int point = 0; point < coordinates[ring].length; point++) {
+                coordinates[ring][point] = new double[] { rings[ring][point * 2], rings[ring][point * 2 + 1] };
+            }
+        }
+        return coordinates;
+    }
+
+    public double[] getBbox() {
+        return new double[] { minX, minY, maxX, maxY };
+    }
+
+    public double minX() {
+        return minX;
+    }
+
+    public double minY() {
+        return minY;
+    }
+
+    public double maxX() {
+        return maxX;
+    }
+
+    public double maxY() {
+        return maxY;
+    }
+
+    // Area enclosed by the outer ring, less any holes, in square coordinate units
+    public double area() {
+        return area;
+    }
+
+    // Whether the point is inside the polygon (and not in a hole)
+    // Points exactly on an edge may be either
+    public boolean contains(double x, double y) {
+        if(x < minX || x > maxX || y < minY || y > maxY) {
+            return false;
+        }
+
+        // Count the edges crossed by a ray from the point to +x: inside if that's odd (holes included)
+        boolean inside = false;
+        for(double[] ring: rings) {
+            for(int i = 0; i < ring.length - 2; i += 2) {
+                double x1 = ring[i], y1 = ring[i + 1], x2 = ring[i + 2], y2 = ring[i + 3];
+                if((y1 > y) != (y2 > y) && x < x1 + (y - y1) * (x2 - x1) / (y2 - y1)) {
+                    inside = !inside;
+                }
+            }
+        }
+        return inside;
+    }
+
+    // Distance from the point to the polygon: 0 if it's inside, otherwise to the nearest edge
+    public double distance(double x, double y) {
+        if(contains(x, y)) {
+            return 0;
+        }
+
+        double nearest = Double.POSITIVE_INFINITY;
+        for(double[] ring: rings) {
+            for(int i = 0; i < ring.length - 2; i += 2) {
+                nearest = Math.min(nearest, segmentDistanceSquared(x, y, ring[i], ring[i + 1], ring[i + 2], ring[i + 3]));
+            }
+        }
+        return Math.sqrt(nearest);
+    }
+
+    // Bytes taken by writeTo()
+    public int byteSize() {
+        int size = Integer.BYTES;
+        for(double[] ring: rings) {
+            size += Integer.BYTES + ring.length * Double.BYTES;
+        }
+        return size;
+    }
+
+    // Write the rings compactly: the number of rings, then each one's number of points and coordinates
+    public void writeTo(ByteBuffer out) {
+        out.putInt(rings.length);
+        for(double[] ring: rings) {
+            out.putInt(ring.length / 2);
+            for(double coordinate: ring) {
+                out.putDouble(coordinate);
+            }
+        }
+    }
+
+    // Read a geometry written by writeTo()
+    public static ParcelGeometry readFrom(ByteBuffer in) {
+        double[][] rings = new double[in.getInt()][];
+        for(int ring = 0; ring < rings.length; ring++) {
+            rings[ring] = new double[in.getInt() * 2];
+            in.asDoubleBuffer().get(rings[ring]);
+            in.position(in.position() + rings[ring].length * Double.BYTES);
+        }
+        return new ParcelGeometry(rings);
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(byteSize());
+        writeTo(buffer);
+        return buffer.array();
+    }
+
+    public static ParcelGeometry fromBytes(byte[] bytes) {
+        return readFrom(ByteBuffer.wrap(bytes));
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other instanceof ParcelGeometry geometry && Arrays.deepEquals(rings, geometry.rings);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.deepHashCode(rings);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Polygon[rings=%d, bbox=(%f, %f, %f, %f)]", rings.length, minX, minY, maxX, maxY);
+    }
+
+    // A copy of the ring, closed if it isn't already
+    private static double[] close(double[] ring) {
+        if(ring.length % 2 != 0) {
+            throw new IllegalArgumentException("A ring needs an x and a y for each point");
+        }
+        for(double coordinate: ring) {
+            if(!Double.isFinite(coordinate)) {
+                throw new IllegalArgumentException("Coordinates must be finite numbers");
+            }
+        }
+
+        int length = ring.length;
+        boolean closed = length >= 2 && ring[0] == ring[length - 2] && ring[1] == ring[length - 1];
+        if((closed ? length / 2 - 1 : length / 2) < 3) {
+            throw new IllegalArgumentException("A ring needs at least 3 points");
+        }
+        if(closed) {
+            return ring.clone();
+        }
+        double[] closedRing = Arrays.copyOf(ring, length + 2);
+        closedRing[length] = ring[0];
+        closedRing[length + 1] = ring[1];
+        return closedRing;
+    }
+
+    // Shoelace formula: positive if the points run anticlockwise
+    private static double signedArea(double[] ring) {
+        double sum = 0;
+        for(int i = 0; i < ring.length - 2; i += 2) {
+            sum += ring[i] * ring[i + 3] - ring[i + 2] * ring[i + 1];
+        }
+        return sum / 2;
+    }
+
+    private static double segmentDistanceSquared(double x, double y, double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1, dy = y2 - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+        double nearestX = x1 + t * dx - x, nearestY = y1 + t * dy - y;
+        return nearestX * nearestX + nearestY * nearestY;
+    }
+}
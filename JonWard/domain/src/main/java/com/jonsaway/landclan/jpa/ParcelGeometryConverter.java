@@ -0,0 +1,20 @@
+package com.jonsaway.landclan.jpa;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+// Stores a ParcelGeometry as a single binary column (see ParcelGeometry.writeTo)
+// Only the object id's parcel is ever looked up by it, so the database needn't understand it:
+// spatial queries are answered by LandParcelSpatialIndex
+@Converter
+public class ParcelGeometryConverter implements AttributeConverter<ParcelGeometry, byte[]> {
+    @Override
+    public byte[] convertToDatabaseColumn(ParcelGeometry geometry) {
+        return geometry == null ? null : geometry.toBytes();
+    }
+
+    @Override
+    public ParcelGeometry convertToEntityAttribute(byte[] bytes) {
+        return bytes == null ? null : ParcelGeometry.fromBytes(bytes);
+    }
+}
@@ -0,0 +1,43 @@
+package com.jonsaway.landclan.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Allows at most 'limit' holders at a time; anyone over the limit is turned away rather than made to wait
+// Lock-free: a count, raised with compare-and-set only while it's under the limit
+public class ConcurrencyLimit {
+    private final int limit;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    public ConcurrencyLimit(int limit) {
+        if(limit < 1) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        this.limit = limit;
+    }
+
+    // Returns true if acquired (and it must be released), or false if already at the limit
+    public boolean tryAcquire() {
+        while(true) {
+            int current = inFlight.get();
+            if(current >= limit) {
+                return false;
+            }
+            if(inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        inFlight.decrementAndGet();
+    }
+
+    // Number currently held
+    public int inFlight() {
+        return inFlight.get();
+    }
+
+    public int limit() {
+        return limit;
+    }
+}
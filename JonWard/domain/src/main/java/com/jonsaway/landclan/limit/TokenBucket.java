@@ -0,0 +1,39 @@
+package com.jonsaway.landclan.limit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Allows 'rate' acquisitions per second on average, and up to 'burst' at once after a quiet spell
+// Held as a single time (the "theoretical arrival time" of the generic cell rate algorithm): when the bucket would
+// next be full, if nothing more were taken. Taking a token moves it on by one interval; there's a token to take
+// while it's less than 'burst' intervals ahead of now
+// Lock-free: an acquisition is a read and a compare-and-set, retried if another thread got there first
+public class TokenBucket {
+    private final long interval;
+    private final long tolerance;
+    private final AtomicLong full;
+
+    // 'now' is the time (System.nanoTime()) the bucket starts full at
+    public TokenBucket(double rate, int burst, long now) {
+        if(rate <= 0 || burst < 1) {
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        }
+        this.interval = Math.max(1, (long) (1_000_000_000L / rate));
+        this.tolerance = (burst - 1) * interval;
+        this.full = new AtomicLong(now);
+    }
+
+    // Take a token, at time 'now' (System.nanoTime())
+    // Returns 0 if one was taken, otherwise how long (in nanoseconds) until there will be one
+    public long tryAcquire(long now) {
+        while(true) {
+            long current = full.get();
+            long wait = current - tolerance - now;
+            if(wait > 0) {
+                return wait;
+            }
+            if(full.compareAndSet(current, Math.max(current, now) + interval)) {
+                return 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.jonsaway.landclan.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import com.jonsaway.landclan.jpa.LandParcel;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+
+// Writes a land parcel as JSON, field by field, in place of Jackson's reflective bean serialisation
+// (which goes through each getter by reflection, boxing the numbers as it goes)
+// The field names and statuses are encoded (quoted and escaped) once, here, and copied out as they are
+// Writes exactly what the bean serialiser would: objectId, name, status, area, constraints, then the geometry only if
+// there is one (and never the version)
+// Registered with Spring's ObjectMapper (as a @JsonComponent), so used for every response holding parcels: single
+// parcels, pages and lists, the NDJSON stream, batch results and the change feed
+@JsonComponent
+public class LandParcelJsonSerializer extends StdSerializer<LandParcel> {
+    private static final SerializedString OBJECT_ID = new SerializedString("objectId");
+    private static final SerializedString NAME = new SerializedString("name");
+    private static final SerializedString STATUS = new SerializedString("status");
+    private static final SerializedString AREA = new SerializedString("area");
+    private static final SerializedString CONSTRAINTS = new SerializedString("constraints");
+    private static final SerializedString GEOMETRY = new SerializedString("geometry");
+
+    // Each status's name, by ordinal
+    private static final SerializedString[] STATUSES = new SerializedString[ParcelStatus.values().length];
+    static {
+        for(ParcelStatus status: ParcelStatus.values()) {
+            STATUSES[status.ordinal()] = new SerializedString(status.name());
+        }
+    }
+
+    public LandParcelJsonSerializer() {
+        super(LandParcel.class);
+    }
+
+    @Override
+    public void serialize(LandParcel landParcel, JsonGenerator generator, SerializerProvider provider) throws IOException {
+        generator.writeStartObject(landParcel);
+        generator.writeFieldName(OBJECT_ID);
+        generator.writeNumber(landParcel.getObjectId());
+        generator.writeFieldName(NAME);
+        generator.writeString(landParcel.getName());
+        generator.writeFieldName(STATUS);
+        if(landParcel.getStatus() == null) {
+            generator.writeNull();
+        }
+        else {
+            generator.writeString(STATUSES[landParcel.getStatus().ordinal()]);
+        }
+        generator.writeFieldName(AREA);
+        generator.writeNumber(landParcel.getArea());
+        generator.writeFieldName(CONSTRAINTS);
+        generator.writeBoolean(landParcel.getConstraints());
+        // (rare, and variable in size: left to Jackson)
+        if(landParcel.getGeometry() != null) {
+            generator.writeFieldName(GEOMETRY);
+            provider.defaultSerializeValue(landParcel.getGeometry(), generator);
+        }
+        generator.writeEndObject();
+    }
+}
@@ -0,0 +1,107 @@
+package com.jonsaway.landclan.rest;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelFilter;
+import com.jonsaway.landclan.service.LandParcelNameIndex;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.util.Optional;
+
+// The land parcel API: its paths, media types and limits, and the Link and ETag headers it returns
+// Shared by the blocking (Spring MVC) and reactive (WebFlux) controllers, so their routes and responses can't drift
+// apart (LandParcelApiContract, in the tests, holds both to the same status codes)
+public final class LandParcelRoutes {
+    public static final String LAND_PARCELS = "/landParcel";
+    public static final String LAND_PARCEL = "/landParcel/{id}";
+    public static final String GEOMETRY = "/landParcel/{id}/geometry";
+    public static final String FILTER = "/landParcel/filter";
+    public static final String BBOX = "/landParcel/bbox";
+    public static final String CONTAINING = "/landParcel/containing";
+    public static final String NEAREST = "/landParcel/nearest";
+    public static final String SEARCH = "/landParcel/search";
+    public static final String BATCH = "/landParcel/batch";
+    public static final String IMPORT = "/landParcel/import";
+    public static final String CHANGES = "/landParcel/changes";
+    public static final String CACHE_STATS = "/landParcel/cache/stats";
+    public static final String STATS = "/landParcel/stats";
+
+    // Newline-delimited JSON, used when streaming all land parcels
+    public static final String APPLICATION_NDJSON_VALUE = "application/x-ndjson";
+
+    // Media types accepted by the import
+    public static final String TEXT_CSV_VALUE = "text/csv";
+    public static final String APPLICATION_GEO_JSON_VALUE = "application/geo+json";
+
+    // Largest page that may be requested in a single paginated retrieve
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private LandParcelRoutes() {
+    }
+
+    // Whether a page size (or count of nearest parcels) may be requested
+    public static boolean validLimit(int limit) {
+        return limit >= 1 && limit <= MAX_PAGE_SIZE;
+    }
+
+    // The Link header value (rel="next") for the page of all parcels after 'last'
+    public static String nextPage(int limit, long last) {
+        return String.format("<%s?limit=%d&after=%d>; rel=\"next\"", LAND_PARCELS, limit, last);
+    }
+
+    // The Link header value (rel="next") for the page of filtered parcels after 'last'
+    public static String nextFilteredPage(LandParcelFilter filter, int limit, long last) {
+        return link(UriComponentsBuilder.fromPath(FILTER)
+                .queryParamIfPresent("name", Optional.ofNullable(filter.name()))
+                .queryParamIfPresent("status", Optional.ofNullable(filter.status()))
+                .queryParamIfPresent("constraints", Optional.ofNullable(filter.constraints()))
+                .queryParamIfPresent("minArea", Optional.ofNullable(filter.minArea()))
+                .queryParamIfPresent("maxArea", Optional.ofNullable(filter.maxArea()))
+                .queryParam("limit", limit)
+                .queryParam("after", last));
+    }
+
+    // The Link header value (rel="next") for the page of parcels within a box after 'last'
+    public static String nextWithinPage(double minX, double minY, double maxX, double maxY, int limit, long last) {
+        return String.format("<%s?minX=%s&minY=%s&maxX=%s&maxY=%s&limit=%d&after=%d>; rel=\"next\"",
+                BBOX, minX, minY, maxX, maxY, limit, last);
+    }
+
+    // The Link header value (rel="next") for the page of search results after 'last'
+    public static String nextSearchPage(String query, LandParcelNameIndex.Mode mode, int limit, long last) {
+        return link(UriComponentsBuilder.fromPath(SEARCH)
+                .queryParam("q", query)
+                .queryParam("mode", mode)
+                .queryParam("limit", limit)
+                .queryParam("after", last));
+    }
+
+    // The (strong) ETag for a land parcel: its version (which isn't reused, even if the parcel is deleted and created again)
+    public static String eTag(LandParcel landParcel) {
+        return "\"" + landParcel.getVersion() + "\"";
+    }
+
+    // The version an If-Match header requires (null if there's no header, or it matches any version)
+    // Only a single, strong ETag is supported: anything else can't match, so is a failed precondition
+    public static Long ifMatchVersion(String ifMatch) {
+        if(ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+
+        String eTag = ifMatch.trim();
+        if(eTag.length() > 2 && eTag.startsWith("\"") && eTag.endsWith("\"")) {
+            try {
+                return Long.parseLong(eTag.substring(1, eTag.length() - 1));
+            }
+            catch (NumberFormatException e) {
+                // Not one of ours: fall through
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED);
+    }
+
+    private static String link(UriComponentsBuilder next) {
+        return String.format("<%s>; rel=\"next\"", next.encode().toUriString());
+    }
+}
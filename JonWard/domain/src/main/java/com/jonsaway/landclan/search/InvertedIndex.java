@@ -0,0 +1,202 @@
+package com.jonsaway.landclan.search;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiPredicate;
+
+// Finds keys (e.g. object ids) by the words of their text (e.g. a parcel's name)
+// Text is split into tokens (runs of letters and digits, lower-cased); each token has a PostingList of the keys
+// whose text has it (held in a TokenTrie, for prefix and fuzzy terms), as does each prefix of up to
+// SHORT_PREFIX_LENGTH characters (which would otherwise match too many tokens to go through)
+// Not thread-safe
+public class InvertedIndex {
+    // Longer tokens are cut short (to bound the work done matching fuzzy terms)
+    public static final int MAX_TOKEN_LENGTH = 64;
+
+    // Prefixes this short match too many tokens to go through, so they have postings of their own
+    static final int SHORT_PREFIX_LENGTH = 2;
+
+    private final TokenTrie tokens = new TokenTrie();
+    private final Map<String, PostingList> shortPrefixes = new HashMap<>();
+
+    // How a term in a query is matched against tokens
+    public enum Match {
+        // The whole token
+        TOKEN,
+        // The start of a token
+        PREFIX,
+        // The whole token, allowing a few single-character edits (insertions, deletions or substitutions)
+        FUZZY
+    }
+
+    // A term in a query: its text (a token) and how it's matched
+    public record Term(String text, Match match, int maxEdits) {
+        // Whether the token matches this term
+        public boolean matches(String token) {
+            return switch(match) {
+                case TOKEN -> token.equals(text);
+                case PREFIX -> token.startsWith(text);
+                case FUZZY -> Math.abs(token.length() - text.length()) <= maxEdits && editDistance(text, token, maxEdits) <= maxEdits;
+            };
+        }
+    }
+
+    // The tokens a term matches, and their postings
+    // 'truncated' if there were more than the limit asked for (in which case only the first are included,
+    // and 'postings' is a lower bound)
+    public record Expansion(List<PostingList> lists, long postings, boolean truncated) {
+    }
+
+    // The distinct tokens of the text, in order (none for null)
+    public static List<String> tokenize(String text) {
+        if(text == null) {
+            return List.of();
+        }
+
+        Set<String> found = new LinkedHashSet<>();
+        int start = -1;
+        for(int i = 0; i <= text.length(); i++) {
+            boolean inToken = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if(inToken && start < 0) {
+                start = i;
+            }
+            else if(!inToken && start >= 0) {
+                String token = text.substring(start, i).toLowerCase(Locale.ROOT);
+                found.add(token.length() > MAX_TOKEN_LENGTH ? token.substring(0, MAX_TOKEN_LENGTH) : token);
+                start = -1;
+            }
+        }
+        return new ArrayList<>(found);
+    }
+
+    // Edits allowed by a fuzzy term of this length: none for 1-2 characters, 1 for 3-5 and 2 beyond that
+    public static int maxEdits(String term) {
+        return term.length() <= 2 ? 0 : term.length() <= 5 ? 1 : 2;
+    }
+
+    // Whether every term matches one of the text's tokens
+    public static boolean matches(List<Term> terms, String text) {
+        List<String> textTokens = tokenize(text);
+        for(Term term: terms) {
+            if(textTokens.stream().noneMatch(term::matches)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void add(long key, String text) {
+        List<String> textTokens = tokenize(text);
+        for(String token: textTokens) {
+            tokens.getOrAdd(token).add(key);
+        }
+        for(String prefix: shortPrefixes(textTokens)) {
+            shortPrefixes.computeIfAbsent(prefix, p -> new PostingList()).add(key);
+        }
+    }
+
+    public void remove(long key, String text) {
+        List<String> textTokens = tokenize(text);
+        for(String token: textTokens) {
+            PostingList list = tokens.get(token);
+            if(list != null && list.remove(key) && list.isEmpty()) {
+                tokens.remove(token);
+            }
+        }
+        for(String prefix: shortPrefixes(textTokens)) {
+            remove(shortPrefixes, prefix, key);
+        }
+    }
+
+    // Number of distinct tokens
+    public int tokenCount() {
+        return tokens.size();
+    }
+
+    // The postings of (up to 'limit') tokens the term matches
+    public Expansion expand(Term term, int limit) {
+        if(term.match() == Match.TOKEN) {
+            PostingList list = tokens.get(term.text());
+            return list == null ? new Expansion(List.of(), 0, false) : new Expansion(List.of(list), list.size(), false);
+        }
+        if(term.match() == Match.PREFIX && term.text().length() <= SHORT_PREFIX_LENGTH) {
+            PostingList list = shortPrefixes.get(term.text());
+            return list == null ? new Expansion(List.of(), 0, false) : new Expansion(List.of(list), list.size(), false);
+        }
+
+        List<PostingList> lists = new ArrayList<>();
+        long[] postings = new long[1];
+        boolean[] truncated = new boolean[1];
+        BiPredicate<String, PostingList> collect = (token, list) -> {
+            if(lists.size() == limit) {
+                truncated[0] = true;
+                return false;
+            }
+            lists.add(list);
+            postings[0] += list.size();
+            return true;
+        };
+        if(term.match() == Match.PREFIX) {
+            tokens.visitPrefixed(term.text(), collect);
+        }
+        else {
+            tokens.visitFuzzy(term.text(), term.maxEdits(), collect);
+        }
+        return new Expansion(lists, postings[0], truncated[0]);
+    }
+
+    // The tokens within 'maxEdits' edits of the term, in order
+    List<String> fuzzy(String term, int maxEdits) {
+        List<String> found = new ArrayList<>();
+        tokens.visitFuzzy(term, maxEdits, (token, list) -> found.add(token));
+        return found;
+    }
+
+    // The distinct prefixes, up to SHORT_PREFIX_LENGTH long, of the tokens
+    private static Set<String> shortPrefixes(List<String> textTokens) {
+        Set<String> prefixes = new HashSet<>();
+        for(String token: textTokens) {
+            for(int length = 1; length <= Math.min(SHORT_PREFIX_LENGTH, token.length()); length++) {
+                prefixes.add(token.substring(0, length));
+            }
+        }
+        return prefixes;
+    }
+
+    private static void remove(Map<String, PostingList> postings, String prefix, long key) {
+        PostingList list = postings.get(prefix);
+        if(list != null && list.remove(key) && list.isEmpty()) {
+            postings.remove(prefix);
+        }
+    }
+
+    // Levenshtein distance between the strings, or (as soon as it's known to be) more than 'limit'
+    static int editDistance(String a, String b, int limit) {
+        int[] previous = new int[b.length() + 1], row = new int[b.length() + 1];
+        for(int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for(int i = 1; i <= a.length(); i++) {
+            row[0] = i;
+            int smallest = row[0];
+            for(int j = 1; j <= b.length(); j++) {
+                int substitute = previous[j - 1] + (a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1);
+                row[j] = Math.min(substitute, Math.min(previous[j], row[j - 1]) + 1);
+                smallest = Math.min(smallest, row[j]);
+            }
+            if(smallest > limit) {
+                return limit + 1;
+            }
+            int[] swap = previous;
+            previous = row;
+            row = swap;
+        }
+        return previous[b.length()];
+    }
+}
@@ -0,0 +1,168 @@
+package com.jonsaway.landclan.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// A sorted set of keys (e.g. the object ids of the parcels whose name has a given token)
+// Held as blocks of up to BLOCK_SIZE sorted longs, so adding or removing a key only moves
+// the rest of one block, however long the list, and there's no boxing
+// Not thread-safe
+public class PostingList {
+    static final int BLOCK_SIZE = 512;
+
+    // Each block's keys, in order (the first 'sizes[i]' of each array are used)
+    private final List<long[]> blocks = new ArrayList<>();
+    private int[] sizes = new int[1];
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    // Returns false if the key is already there
+    public boolean add(long key) {
+        if(blocks.isEmpty()) {
+            blocks.add(new long[4]);
+            sizes[0] = 0;
+        }
+
+        int block = blockFor(key);
+        long[] keys = blocks.get(block);
+        int index = Arrays.binarySearch(keys, 0, sizes[block], key);
+        if(index >= 0) {
+            return false;
+        }
+
+        index = -index - 1;
+        if(sizes[block] == BLOCK_SIZE) {
+            // Split the block in half, then add to whichever half the key belongs in
+            long[] upper = new long[BLOCK_SIZE];
+            int half = BLOCK_SIZE / 2;
+            System.arraycopy(keys, half, upper, 0, half);
+            insertBlock(block + 1, upper, half);
+            sizes[block] = half;
+            if(index > half) {
+                block++;
+                keys = upper;
+                index -= half;
+            }
+        }
+        else if(sizes[block] == keys.length) {
+            keys = Arrays.copyOf(keys, Math.min(keys.length * 2, BLOCK_SIZE));
+            blocks.set(block, keys);
+        }
+
+        System.arraycopy(keys, index, keys, index + 1, sizes[block] - index);
+        keys[index] = key;
+        sizes[block]++;
+        size++;
+        return true;
+    }
+
+    // Returns false if the key isn't there
+    public boolean remove(long key) {
+        if(blocks.isEmpty()) {
+            return false;
+        }
+
+        int block = blockFor(key);
+        long[] keys = blocks.get(block);
+        int index = Arrays.binarySearch(keys, 0, sizes[block], key);
+        if(index < 0) {
+            return false;
+        }
+
+        System.arraycopy(keys, index + 1, keys, index, sizes[block] - index - 1);
+        sizes[block]--;
+        size--;
+        if(sizes[block] == 0 && blocks.size() > 1) {
+            blocks.remove(block);
+            System.arraycopy(sizes, block + 1, sizes, block, blocks.size() - block);
+        }
+        return true;
+    }
+
+    public boolean contains(long key) {
+        if(blocks.isEmpty()) {
+            return false;
+        }
+        int block = blockFor(key);
+        return Arrays.binarySearch(blocks.get(block), 0, sizes[block], key) >= 0;
+    }
+
+    // A cursor over the keys greater than 'after' (or all of them, if 'after' is null), in order
+    // Only valid until the list is next changed
+    public Cursor cursor(Long after) {
+        Cursor cursor = new Cursor();
+        if(after == null) {
+            cursor.block = 0;
+            cursor.index = 0;
+        }
+        else if(!blocks.isEmpty()) {
+            cursor.block = blockFor(after);
+            int index = Arrays.binarySearch(blocks.get(cursor.block), 0, sizes[cursor.block], after);
+            cursor.index = index >= 0 ? index + 1 : -index - 1;
+        }
+        cursor.settle();
+        return cursor;
+    }
+
+    public class Cursor {
+        private int block;
+        private int index;
+
+        // Whether there's a key at the cursor
+        public boolean valid() {
+            return block < blocks.size();
+        }
+
+        // The key at the cursor (if valid)
+        public long key() {
+            return blocks.get(block)[index];
+        }
+
+        public void next() {
+            index++;
+            settle();
+        }
+
+        // Move on to the next block once this one is finished
+        private void settle() {
+            while(block < blocks.size() && index >= sizes[block]) {
+                block++;
+                index = 0;
+            }
+        }
+    }
+
+    // The block the key is in, or would go in: the last whose first key is no greater than it (or the first block)
+    private int blockFor(long key) {
+        int low = 1, high = blocks.size() - 1;
+        int found = 0;
+        while(low <= high) {
+            int middle = (low + high) >>> 1;
+            if(blocks.get(middle)[0] <= key) {
+                found = middle;
+                low = middle + 1;
+            }
+            else {
+                high = middle - 1;
+            }
+        }
+        return found;
+    }
+
+    private void insertBlock(int block, long[] keys, int keysSize) {
+        blocks.add(block, keys);
+        if(sizes.length < blocks.size()) {
+            sizes = Arrays.copyOf(sizes, sizes.length * 2);
+        }
+        System.arraycopy(sizes, block, sizes, block + 1, blocks.size() - 1 - block);
+        sizes[block] = keysSize;
+    }
+}
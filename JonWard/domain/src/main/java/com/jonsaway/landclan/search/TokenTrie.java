@@ -0,0 +1,183 @@
+package com.jonsaway.landclan.search;
+
+import java.util.Arrays;
+import java.util.function.BiPredicate;
+
+// The postings of each token, as a trie: a node per character, each node's children in character order
+// (so tokens are visited in the same order as sorting them)
+// A prefix is a single node, and a fuzzy match prunes a whole subtree as soon as its path is too far from the term,
+// without searching for where the next subtree starts
+// Not thread-safe
+class TokenTrie {
+    private static final char[] NO_LABELS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    private static final class Node {
+        // Each child's character, in order, and the child
+        char[] labels = NO_LABELS;
+        Node[] children = NO_CHILDREN;
+        // The postings of the token ending here (if there is one)
+        PostingList postings;
+
+        Node child(char label) {
+            int index = Arrays.binarySearch(labels, label);
+            return index >= 0 ? children[index] : null;
+        }
+    }
+
+    private final Node root = new Node();
+    private int size;
+
+    // Number of tokens
+    int size() {
+        return size;
+    }
+
+    // The token's postings (or null, if there's no such token)
+    PostingList get(String token) {
+        Node node = find(token);
+        return node == null ? null : node.postings;
+    }
+
+    // The token's postings, adding (empty) ones if it's new
+    PostingList getOrAdd(String token) {
+        Node node = root;
+        for(int i = 0; i < token.length(); i++) {
+            char label = token.charAt(i);
+            int index = Arrays.binarySearch(node.labels, label);
+            if(index < 0) {
+                index = -index - 1;
+                Node child = new Node();
+                node.labels = insert(node.labels, index, label);
+                Node[] children = new Node[node.children.length + 1];
+                System.arraycopy(node.children, 0, children, 0, index);
+                System.arraycopy(node.children, index, children, index + 1, node.children.length - index);
+                children[index] = child;
+                node.children = children;
+            }
+            node = node.children[index];
+        }
+        if(node.postings == null) {
+            node.postings = new PostingList();
+            size++;
+        }
+        return node.postings;
+    }
+
+    // Remove the token (and any nodes left without a token beneath them)
+    void remove(String token) {
+        Node[] path = new Node[token.length() + 1];
+        path[0] = root;
+        for(int i = 0; i < token.length(); i++) {
+            path[i + 1] = path[i].child(token.charAt(i));
+            if(path[i + 1] == null) {
+                return;
+            }
+        }
+        if(path[token.length()].postings == null) {
+            return;
+        }
+
+        path[token.length()].postings = null;
+        size--;
+        for(int i = token.length(); i > 0 && path[i].postings == null && path[i].children.length == 0; i--) {
+            Node parent = path[i - 1];
+            int index = Arrays.binarySearch(parent.labels, token.charAt(i - 1));
+            parent.labels = delete(parent.labels, index);
+            Node[] children = new Node[parent.children.length - 1];
+            System.arraycopy(parent.children, 0, children, 0, index);
+            System.arraycopy(parent.children, index + 1, children, index, children.length - index);
+            parent.children = children;
+        }
+    }
+
+    // Visit each token starting with the prefix, in order, until the visitor returns false
+    void visitPrefixed(String prefix, BiPredicate<String, PostingList> visitor) {
+        Node node = find(prefix);
+        if(node != null) {
+            StringBuilder token = new StringBuilder(prefix);
+            visit(node, token, visitor);
+        }
+    }
+
+    // Visit each token within 'maxEdits' edits of the term, in order, until the visitor returns false
+    // Each node extends the row of the edit distance table of its parent's path by one character: once every entry
+    // of a node's row is over 'maxEdits', so is every token beneath it, so they're skipped
+    void visitFuzzy(String term, int maxEdits, BiPredicate<String, PostingList> visitor) {
+        int[][] rows = new int[InvertedIndex.MAX_TOKEN_LENGTH + 1][term.length() + 1];
+        for(int j = 0; j <= term.length(); j++) {
+            rows[0][j] = j;
+        }
+        visitFuzzy(root, new StringBuilder(), term, maxEdits, rows, visitor);
+    }
+
+    private boolean visitFuzzy(Node node, StringBuilder token, String term, int maxEdits, int[][] rows,
+                               BiPredicate<String, PostingList> visitor) {
+        int depth = token.length();
+        if(node.postings != null && rows[depth][term.length()] <= maxEdits && !visitor.test(token.toString(), node.postings)) {
+            return false;
+        }
+
+        for(int child = 0; child < node.children.length; child++) {
+            char label = node.labels[child];
+            int[] above = rows[depth], row = rows[depth + 1];
+            row[0] = depth + 1;
+            int smallest = row[0];
+            for(int j = 1; j <= term.length(); j++) {
+                int substitute = above[j - 1] + (term.charAt(j - 1) == label ? 0 : 1);
+                row[j] = Math.min(substitute, Math.min(above[j], row[j - 1]) + 1);
+                smallest = Math.min(smallest, row[j]);
+            }
+            if(smallest > maxEdits) {
+                continue;
+            }
+
+            token.append(label);
+            boolean more = visitFuzzy(node.children[child], token, term, maxEdits, rows, visitor);
+            token.setLength(depth);
+            if(!more) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean visit(Node node, StringBuilder token, BiPredicate<String, PostingList> visitor) {
+        if(node.postings != null && !visitor.test(token.toString(), node.postings)) {
+            return false;
+        }
+        int depth = token.length();
+        for(int child = 0; child < node.children.length; child++) {
+            token.append(node.labels[child]);
+            boolean more = visit(node.children[child], token, visitor);
+            token.setLength(depth);
+            if(!more) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Node find(String path) {
+        Node node = root;
+        for(int i = 0; i < path.length() && node != null; i++) {
+            node = node.child(path.charAt(i));
+        }
+        return node;
+    }
+
+    private static char[] insert(char[] labels, int index, char label) {
+        char[] inserted = new char[labels.length + 1];
+        System.arraycopy(labels, 0, inserted, 0, index);
+        System.arraycopy(labels, index, inserted, index + 1, labels.length - index);
+        inserted[index] = label;
+        return inserted;
+    }
+
+    private static char[] delete(char[] labels, int index) {
+        char[] deleted = new char[labels.length - 1];
+        System.arraycopy(labels, 0, deleted, 0, index);
+        System.arraycopy(labels, index + 1, deleted, index, deleted.length - index);
+        return deleted;
+    }
+}
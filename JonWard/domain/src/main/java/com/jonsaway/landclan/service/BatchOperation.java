@@ -0,0 +1,45 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.rest.ParcelStatus;
+
+// A single create, update or delete within a batch request
+// Attributes follow the single-item operations:
+// - CREATE requires all attributes (except the geometry, and the area if there is a geometry)
+// - UPDATE only modifies the non-null attributes
+// - DELETE only requires the objectId
+// A parcel with a geometry takes its area from it (so any area supplied is ignored)
+public record BatchOperation(Type op,
+                             Long objectId,
+                             String name,
+                             ParcelStatus status,
+                             Double area,
+                             Boolean constraints,
+                             ParcelGeometry geometry) {
+
+    public BatchOperation(Type op, Long objectId, String name, ParcelStatus status, Double area, Boolean constraints) {
+        this(op, objectId, name, status, area, constraints, null);
+    }
+
+    public enum Type {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    public static BatchOperation create(long objectId, String name, ParcelStatus status, double area, boolean constraints) {
+        return new BatchOperation(Type.CREATE, objectId, name, status, area, constraints);
+    }
+
+    public static BatchOperation create(long objectId, String name, ParcelStatus status, ParcelGeometry geometry, boolean constraints) {
+        return new BatchOperation(Type.CREATE, objectId, name, status, null, constraints, geometry);
+    }
+
+    public static BatchOperation update(long objectId, String name, ParcelStatus status, Double area, Boolean constraints) {
+        return new BatchOperation(Type.UPDATE, objectId, name, status, area, constraints);
+    }
+
+    public static BatchOperation delete(long objectId) {
+        return new BatchOperation(Type.DELETE, objectId, null, null, null, null);
+    }
+}
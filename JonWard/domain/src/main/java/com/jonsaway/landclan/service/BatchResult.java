@@ -0,0 +1,16 @@
+package com.jonsaway.landclan.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.jonsaway.landclan.jpa.LandParcel;
+
+// The outcome of a single operation within a batch request
+// 'index' is the position of the operation in the request
+// 'status' is the HTTP status the equivalent single-item request would have returned (200, 400 or 404)
+// 'landParcel' is the created or updated object (omitted for deletes and failures)
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record BatchResult(int index,
+                          BatchOperation.Type op,
+                          Long objectId,
+                          int status,
+                          LandParcel landParcel) {
+}
@@ -0,0 +1,122 @@
+package com.jonsaway.landclan.service;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.jonsaway.landclan.jpa.LandParcel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.LongFunction;
+import java.util.function.LongPredicate;
+
+// Bounded read-through cache of land parcels, keyed by object id
+// - entries are evicted by size (W-TinyLFU) and by age
+// - misses are cached as empty entries, with their own (shorter) age limit
+// - a parcel is only loaded once, however many callers miss on it at the same time
+// Writers must invalidate the entry once their change has been committed
+// The statistics are also published as metrics (cache.gets, cache.evictions, ... with cache="landParcel")
+@Component
+public class LandParcelCache implements MeterBinder {
+    private final AsyncCache<Long, Optional<LandParcel>> cache;
+
+    public LandParcelCache(@Value("${landclan.cache.maximum-size:10000}") long maximumSize,
+                           @Value("${landclan.cache.expire-after-write:PT5M}") Duration expireAfterWrite,
+                           @Value("${landclan.cache.negative-expire-after-write:PT30S}") Duration negativeExpireAfterWrite) {
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfter(new Expiry<Long, Optional<LandParcel>>() {
+                    @Override
+                    public long expireAfterCreate(Long objectId, Optional<LandParcel> landParcel, long currentTime) {
+                        return (landParcel.isPresent() ? expireAfterWrite : negativeExpireAfterWrite).toNanos();
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(Long objectId, Optional<LandParcel> landParcel, long currentTime, long currentDuration) {
+                        return expireAfterCreate(objectId, landParcel, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(Long objectId, Optional<LandParcel> landParcel, long currentTime, long currentDuration) {
+                        // Reading doesn't extend an entry's life
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+    }
+
+    // Retrieve a land parcel by object id, using the loader if it isn't cached
+    // Returns null if the parcel doesn't exist
+    public LandParcel get(long objectId, LongFunction<LandParcel> loader) {
+        // Only a placeholder is stored while holding the cache's lock: the loader runs afterwards, on this thread
+        // (a synchronous cache would run the loader inside the lock, which pins a virtual thread to its carrier
+        // while it waits for a database connection, and can starve the connection pool's other users)
+        CompletableFuture<Optional<LandParcel>> loading = new CompletableFuture<>();
+        CompletableFuture<Optional<LandParcel>> cached = cache.get(objectId, (id, executor) -> loading);
+        if(cached == loading) {
+            try {
+                loading.complete(Optional.ofNullable(loader.apply(objectId)));
+            }
+            catch (RuntimeException e) {
+                // Not cached: the next caller tries again
+                loading.completeExceptionally(e);
+                throw e;
+            }
+        }
+
+        // Other callers wait for the load in progress
+        return cached.join().orElse(null);
+    }
+
+    // As get(), without blocking: the loader starts a load and returns its future, and the result completes with
+    // the parcel, or null if it doesn't exist
+    // A failed load isn't cached, so the next caller tries again
+    public CompletableFuture<LandParcel> getAsync(long objectId, LongFunction<CompletableFuture<LandParcel>> loader) {
+        return cache.get(objectId, (id, executor) -> loader.apply(id).thenApply(Optional::ofNullable))
+                .thenApply(landParcel -> landParcel.orElse(null));
+    }
+
+    // Discard any cached entry (including a cached miss) for this object id
+    public void invalidate(long objectId) {
+        cache.synchronous().invalidate(objectId);
+    }
+
+    // Discard any cached entries (including cached misses) for the object ids matching the predicate
+    // (reads every key in the cache)
+    public void invalidateIf(LongPredicate objectIds) {
+        cache.synchronous().asMap().keySet().removeIf(objectIds::test);
+    }
+
+    // Discard all cached entries
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    // Hit, miss and eviction counts, for sizing the cache
+    public Statistics statistics() {
+        CacheStats stats = cache.synchronous().stats();
+        return new Statistics(cache.synchronous().estimatedSize(), stats.hitCount(), stats.missCount(), stats.hitRate(),
+                stats.evictionCount(), stats.averageLoadPenalty());
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        CaffeineCacheMetrics.monitor(registry, cache, "landParcel");
+    }
+
+    public record Statistics(long size,
+                             long hitCount,
+                             long missCount,
+                             double hitRate,
+                             long evictionCount,
+                             double averageLoadPenaltyNanos) {
+    }
+}
@@ -0,0 +1,131 @@
+package com.jonsaway.landclan.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.jonsaway.landclan.jpa.LandParcel;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// An ordered feed of every change to a land parcel, so consumers can keep up with changes
+// rather than re-reading every parcel
+// Each change gets the next sequence number (from 1), and carries the parcel as it was before and after
+// The changes to each parcel are in the order they were stored (the stores tell listeners of a parcel's changes one
+// at a time, in that order: see LandParcelListener), so replaying the feed leaves each parcel as it is now
+// Only the latest landclan.changes.capacity changes are held (in a ring buffer): a consumer that falls further
+// behind than that (or that asks for a sequence number from before a restart) gets ExpiredException, and must
+// re-read every parcel before following the feed again
+@Component
+public class LandParcelChangeFeed implements LandParcelListener {
+    @Value("${landclan.changes.capacity:65536}")
+    int capacity = 65536;
+
+    // Changes, each at (sequence - 1) % capacity
+    private Change[] changes;
+    // Sequence number of the latest change (0 before the first)
+    private long latest;
+    // Called (once) at the next change
+    private final List<Runnable> waiters = new ArrayList<>();
+
+    @PostConstruct
+    public void init() {
+        changes = new Change[capacity];
+    }
+
+    public enum Type {
+        CREATE,
+        UPDATE,
+        DELETE
+    }
+
+    // A single change: 'before' is omitted for a create, 'after' for a delete
+    // 'version' is the parcel's version after the change (or when it was deleted)
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public record Change(long sequence,
+                         Type type,
+                         long objectId,
+                         long version,
+                         LandParcel before,
+                         LandParcel after) {
+    }
+
+    // Changes read from the feed: 'latest' is the sequence number to read on from
+    public record Changes(List<Change> changes,
+                          long latest) {
+    }
+
+    // The changes asked for are no longer held
+    public static class ExpiredException extends RuntimeException {
+        public ExpiredException(String message) {
+            super(message);
+        }
+    }
+
+    @Override
+    public void parcelChanged(LandParcel before, LandParcel after) {
+        List<Runnable> waiting;
+        synchronized(this) {
+            latest++;
+            LandParcel parcel = after != null ? after : before;
+            // (copies: the parcels passed to listeners may be changed afterwards, e.g. a cached entity)
+            changes[(int) ((latest - 1) % capacity)] = new Change(latest,
+                    before == null ? Type.CREATE : after == null ? Type.DELETE : Type.UPDATE,
+                    parcel.getObjectId(), parcel.getVersion(),
+                    before != null ? before.copy() : null, after != null ? after.copy() : null);
+
+            if(waiters.isEmpty()) {
+                return;
+            }
+            waiting = new ArrayList<>(waiters);
+            waiters.clear();
+        }
+        waiting.forEach(Runnable::run);
+    }
+
+    // Recovered parcels (e.g. by InMemoryLandParcelService at startup) existed already: they aren't changes
+    @Override
+    public void parcelRecovered(LandParcel landParcel) {
+    }
+
+    // Up to 'limit' changes after sequence number 'after' (0 for all of those still held), oldest first
+    // Throws ExpiredException if any of them are no longer held
+    public synchronized Changes read(long after, int limit) {
+        if(after > latest) {
+            throw new ExpiredException(String.format("No change %d yet (latest is %d): is it from before a restart?", after, latest));
+        }
+        long oldest = Math.max(1, latest - capacity + 1);
+        if(after + 1 < oldest && after != 0) {
+            throw new ExpiredException(String.format("Changes after %d are no longer held (oldest is %d)", after, oldest));
+        }
+
+        long from = Math.max(after + 1, oldest);
+        long to = Math.min(latest, after + (long) limit);
+        List<Change> read = new ArrayList<>((int) Math.max(0, to - from + 1));
+        for(long sequence = from; sequence <= to; sequence++) {
+            read.add(changes[(int) ((sequence - 1) % capacity)]);
+        }
+        return new Changes(read, read.isEmpty() ? after : to);
+    }
+
+    // Call the waiter at the next change after sequence number 'after'
+    // Returns false (without calling it) if there already is one, to be read straight away
+    public synchronized boolean await(long after, Runnable waiter) {
+        if(latest > after) {
+            return false;
+        }
+        waiters.add(waiter);
+        return true;
+    }
+
+    // Stop waiting (e.g. the consumer has gone away)
+    public synchronized void cancel(Runnable waiter) {
+        waiters.remove(waiter);
+    }
+
+    // Sequence number of the latest change
+    public synchronized long latest() {
+        return latest;
+    }
+}
@@ -0,0 +1,20 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+
+// Notified of every change made through the land parcel service (the app's, or the reactive application's), once it
+// has been stored
+// 'before' is null for a create, 'after' is null for a delete
+// Called on the writing thread, so implementations must be quick and thread-safe
+// Called before the parcel's next write can start (the app holds the parcel's lock: see LandParcelLocks; the reactive
+// application holds its place in the parcel's queue: see ParcelWriteQueue), so the changes to a parcel arrive in the
+// order they were stored (those to different parcels may arrive at once)
+public interface LandParcelListener {
+    void parcelChanged(LandParcel before, LandParcel after);
+
+    // A parcel already stored, found at startup (e.g. by InMemoryLandParcelService, recovering its journal)
+    // By default, treated as if it had just been created
+    default void parcelRecovered(LandParcel landParcel) {
+        parcelChanged(null, landParcel);
+    }
+}
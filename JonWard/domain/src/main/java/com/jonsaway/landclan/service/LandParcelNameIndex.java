@@ -0,0 +1,255 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.search.InvertedIndex;
+import com.jonsaway.landclan.search.PostingList;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Finds land parcels by the words of their name: "Hospital", "Bob Off" (as it's being typed) or "Hsopital"
+// An InvertedIndex of the tokens of every parcel's name, plus a copy of each parcel (in object id order),
+// so searches are answered without going back to the store
+// Built from the stored parcels at startup, then kept up to date from each change
+// (and from parcels recovered at startup, e.g. by the app's InMemoryLandParcelService)
+// Each parcel's changes arrive in the order they were stored (see LandParcelListener), so a delete is the last change to
+// a parcel until it's created again: nothing is kept of deleted parcels
+// Any number of searches, or a single change, at a time
+@Component
+public class LandParcelNameIndex implements LandParcelListener {
+    private static final Logger log = LoggerFactory.getLogger(LandParcelNameIndex.class);
+
+    // Most terms in a search
+    public static final int MAX_TERMS = 8;
+    // Most tokens a single term is expanded to before the search reads the parcels in order instead
+    static final int MAX_EXPANSIONS = 1024;
+    // A term matching at most this many parcels drives the search without the terms after it being expanded
+    static final int SELECTIVE = 128;
+    // Most tokens an expanded term may match to be checked against their postings, rather than each parcel's name
+    static final int MAX_CHECKED_LISTS = 16;
+
+    // Whole words, then prefixes, then fuzzy terms; longer (i.e. more selective) terms first
+    private static final Comparator<InvertedIndex.Term> EXPANSION_COST = Comparator
+            .comparing(InvertedIndex.Term::match, Comparator.comparingInt(match -> switch(match) {
+                case TOKEN -> 0;
+                case PREFIX -> 1;
+                case FUZZY -> 2;
+            }))
+            .thenComparingInt(term -> -term.text().length());
+
+    @Autowired
+    StoredLandParcels stored;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final InvertedIndex index = new InvertedIndex();
+    private final TreeMap<Long, LandParcel> parcels = new TreeMap<>();
+
+    public enum Mode {
+        // Every word must be a whole word of the name, except the last, which may be the start of one
+        PREFIX,
+        // Every word must be a whole word of the name
+        TOKEN,
+        // Every word must be close to a whole word of the name (see InvertedIndex.maxEdits)
+        FUZZY
+    }
+
+    // Build the index from the stored parcels before we start taking requests
+    @PostConstruct
+    public void build() {
+        long start = System.nanoTime();
+        stored.forEach(false, this::parcelRecovered);
+        if(size() > 0) {
+            log.info("Indexed {} land parcel names ({} words) in {} ms", size(), tokenCount(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    @Override
+    public void parcelChanged(LandParcel before, LandParcel after) {
+        long objectId = after != null ? after.getObjectId() : before.getObjectId();
+        lock.writeLock().lock();
+        try {
+            LandParcel indexed = parcels.get(objectId);
+            if(indexed != null && after != null && indexed.getVersion() > after.getVersion()) {
+                // Already overtaken by a later change (a safeguard: each parcel's changes arrive in order)
+                return;
+            }
+
+            if(indexed != null) {
+                index.remove(objectId, indexed.getName());
+                parcels.remove(objectId);
+            }
+            if(after != null) {
+                index.add(objectId, after.getName());
+                parcels.put(objectId, after.copy());
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Up to 'limit' parcels whose name matches the query, with an objectId greater than 'after'
+    // (or from the lowest objectId, if 'after' is null), ordered by object id
+    // Throws IllegalArgumentException if the query has no words, or more than MAX_TERMS
+    //
+    // The term matching the fewest parcels drives the search (of those expanded: see EXPANSION_COST and SELECTIVE):
+    // the parcels of each token it matches are merged in object id order, and each is checked against the other
+    // terms, until there are enough
+    // Unless that term matches so many tokens, or so large a share of the parcels, that it's quicker to read the
+    // parcels in order and check each one: e.g. a one letter prefix
+    public List<LandParcel> search(String query, Mode mode, Long after, int limit) {
+        List<InvertedIndex.Term> terms = terms(query, mode);
+        List<LandParcel> found = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            // Cheapest to expand first, so the costlier ones can be left to be checked against each name
+            // once there's a selective enough driver
+            List<InvertedIndex.Term> byCost = new ArrayList<>(terms);
+            byCost.sort(EXPANSION_COST);
+            InvertedIndex.Expansion[] expansions = new InvertedIndex.Expansion[byCost.size()];
+            int driving = -1;
+            for(int i = 0; i < byCost.size(); i++) {
+                if(driving >= 0 && expansions[driving].postings() <= SELECTIVE) {
+                    break;
+                }
+                expansions[i] = index.expand(byCost.get(i), MAX_EXPANSIONS);
+                if(!expansions[i].truncated() && (driving < 0 || expansions[i].postings() < expansions[driving].postings())) {
+                    driving = i;
+                }
+            }
+
+            InvertedIndex.Expansion driver = driving >= 0 ? expansions[driving] : null;
+            if(driver != null && driver.postings() == 0) {
+                return found;
+            }
+            // Parcels read in order for every match (roughly), against the postings to position (one per token)
+            if(driver == null || (long) limit * parcels.size() / driver.postings() < driver.lists().size()) {
+                for(LandParcel landParcel: (after == null ? parcels : parcels.tailMap(after, false)).values()) {
+                    if(InvertedIndex.matches(terms, landParcel.getName())) {
+                        found.add(landParcel);
+                        if(found.size() == limit) {
+                            break;
+                        }
+                    }
+                }
+                return found;
+            }
+
+            // Each other term is checked against the postings of the (few) tokens it matches, if it's been expanded,
+            // or the words of the parcel's name
+            List<List<PostingList>> checkPostings = new ArrayList<>();
+            List<InvertedIndex.Term> checkNames = new ArrayList<>();
+            for(int i = 0; i < byCost.size(); i++) {
+                if(i == driving) {
+                    continue;
+                }
+                if(expansions[i] != null && !expansions[i].truncated() && expansions[i].lists().size() <= MAX_CHECKED_LISTS) {
+                    checkPostings.add(expansions[i].lists());
+                }
+                else {
+                    checkNames.add(byCost.get(i));
+                }
+            }
+
+            // Merge the driving term's postings, lowest object id first
+            PriorityQueue<PostingList.Cursor> cursors = new PriorityQueue<>(driver.lists().size(), Comparator.comparingLong(PostingList.Cursor::key));
+            for(PostingList list: driver.lists()) {
+                PostingList.Cursor cursor = list.cursor(after);
+                if(cursor.valid()) {
+                    cursors.add(cursor);
+                }
+            }
+            long previous = 0;
+            boolean first = true;
+            while(!cursors.isEmpty() && found.size() < limit) {
+                PostingList.Cursor cursor = cursors.poll();
+                long objectId = cursor.key();
+                cursor.next();
+                if(cursor.valid()) {
+                    cursors.add(cursor);
+                }
+
+                // (a name may have several of the tokens)
+                if(!first && objectId == previous) {
+                    continue;
+                }
+                first = false;
+                previous = objectId;
+                if(!inEvery(checkPostings, objectId)) {
+                    continue;
+                }
+                LandParcel landParcel = parcels.get(objectId);
+                if(checkNames.isEmpty() || InvertedIndex.matches(checkNames, landParcel.getName())) {
+                    found.add(landParcel);
+                }
+            }
+            return found;
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Number of parcels indexed
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return parcels.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Number of distinct words across the names
+    public int tokenCount() {
+        lock.readLock().lock();
+        try {
+            return index.tokenCount();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Whether the key is in one of the postings of each term
+    private static boolean inEvery(List<List<PostingList>> checkPostings, long objectId) {
+        for(List<PostingList> lists: checkPostings) {
+            if(lists.stream().noneMatch(list -> list.contains(objectId))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<InvertedIndex.Term> terms(String query, Mode mode) {
+        List<String> words = InvertedIndex.tokenize(query);
+        if(words.isEmpty()) {
+            throw new IllegalArgumentException("Search has no words");
+        }
+        if(words.size() > MAX_TERMS) {
+            throw new IllegalArgumentException("Search has more than " + MAX_TERMS + " words");
+        }
+
+        List<InvertedIndex.Term> terms = new ArrayList<>(words.size());
+        for(int i = 0; i < words.size(); i++) {
+            String word = words.get(i);
+            terms.add(switch(mode) {
+                case PREFIX -> new InvertedIndex.Term(word, i == words.size() - 1 ? InvertedIndex.Match.PREFIX : InvertedIndex.Match.TOKEN, 0);
+                case TOKEN -> new InvertedIndex.Term(word, InvertedIndex.Match.TOKEN, 0);
+                case FUZZY -> new InvertedIndex.Term(word, InvertedIndex.Match.FUZZY, InvertedIndex.maxEdits(word));
+            });
+        }
+        return terms;
+    }
+}
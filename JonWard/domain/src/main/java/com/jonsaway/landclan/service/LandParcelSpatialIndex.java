@@ -0,0 +1,180 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.spatial.RTree;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Finds land parcels by where they are: those in a box, those containing a point, and those nearest a point
+// An R-tree of the bounding box of every parcel that has a geometry, each entry holding a copy of the parcel,
+// so queries are answered without going back to the store
+// Built from the stored parcels at startup (packed in one go), then kept up to date from each change
+// (and from parcels recovered at startup, e.g. by the app's InMemoryLandParcelService)
+// Each parcel's changes arrive in the order they were stored (see LandParcelListener), so a delete is the last change to
+// a parcel until it's created again: nothing is kept of deleted parcels
+// Any number of queries, or a single change, at a time
+@Component
+public class LandParcelSpatialIndex implements LandParcelListener {
+    private static final Logger log = LoggerFactory.getLogger(LandParcelSpatialIndex.class);
+
+    private static final Comparator<LandParcel> BY_OBJECT_ID = Comparator.comparingLong(LandParcel::getObjectId);
+
+    @Autowired
+    StoredLandParcels stored;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private RTree<LandParcel> tree = new RTree<>();
+
+    // A parcel found by nearest(), and how far it is from the point (0 if the point is inside it)
+    public record Nearby(double distance, LandParcel landParcel) {
+    }
+
+    // Build the index from the stored parcels before we start taking requests
+    @PostConstruct
+    public void build() {
+        long start = System.nanoTime();
+        List<RTree.Entry<LandParcel>> entries = new ArrayList<>();
+        stored.forEach(true, landParcel -> entries.add(entry(landParcel.copy())));
+
+        RTree<LandParcel> built = RTree.load(entries);
+        lock.writeLock().lock();
+        try {
+            tree = built;
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+        if(!entries.isEmpty()) {
+            log.info("Indexed {} land parcel geometries in {} ms", entries.size(), (System.nanoTime() - start) / 1_000_000);
+        }
+    }
+
+    @Override
+    public void parcelChanged(LandParcel before, LandParcel after) {
+        boolean wasIndexed = before != null && before.getGeometry() != null;
+        boolean isIndexed = after != null && after.getGeometry() != null;
+        if(!wasIndexed && !isIndexed) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            LandParcel indexed = null;
+            if(wasIndexed) {
+                ParcelGeometry geometry = before.getGeometry();
+                indexed = tree.remove(before.getObjectId(), geometry.minX(), geometry.minY(), geometry.maxX(), geometry.maxY());
+                if(indexed == null) {
+                    // Not where 'before' says (a safeguard: each parcel's changes arrive in order): find it anyway
+                    indexed = tree.remove(before.getObjectId());
+                }
+            }
+
+            if(indexed != null && after != null && indexed.getVersion() > after.getVersion()) {
+                // Already overtaken by a later change: keep that
+                tree.insert(indexed.getObjectId(), indexed.getGeometry().minX(), indexed.getGeometry().minY(),
+                        indexed.getGeometry().maxX(), indexed.getGeometry().maxY(), indexed);
+            }
+            else if(isIndexed) {
+                RTree.Entry<LandParcel> entry = entry(after.copy());
+                tree.insert(entry.key(), entry.minX(), entry.minY(), entry.maxX(), entry.maxY(), entry.value());
+            }
+        }
+        finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Up to 'limit' parcels whose bounding box overlaps the box (edges included), with an objectId greater than 'after'
+    // (or from the lowest objectId, if 'after' is null), ordered by object id
+    // Keeps the lowest 'limit' object ids seen, so memory use doesn't depend on how many parcels are in the box
+    public List<LandParcel> within(double minX, double minY, double maxX, double maxY, Long after, int limit) {
+        // Max-heap of the lowest object ids so far, so the highest can be replaced
+        PriorityQueue<LandParcel> lowest = new PriorityQueue<>(BY_OBJECT_ID.reversed());
+        lock.readLock().lock();
+        try {
+            tree.search(minX, minY, maxX, maxY, landParcel -> {
+                if(after != null && landParcel.getObjectId() <= after) {
+                    return;
+                }
+                if(lowest.size() < limit) {
+                    lowest.add(landParcel);
+                }
+                else if(limit > 0 && landParcel.getObjectId() < lowest.peek().getObjectId()) {
+                    lowest.poll();
+                    lowest.add(landParcel);
+                }
+            });
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+
+        List<LandParcel> page = new ArrayList<>(lowest);
+        page.sort(BY_OBJECT_ID);
+        return page;
+    }
+
+    // The parcels whose geometry contains the point, ordered by object id
+    public List<LandParcel> containing(double x, double y) {
+        List<LandParcel> containing = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            tree.search(x, y, x, y, landParcel -> {
+                if(landParcel.getGeometry().contains(x, y)) {
+                    containing.add(landParcel);
+                }
+            });
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+
+        containing.sort(BY_OBJECT_ID);
+        return containing;
+    }
+
+    // The (up to) k parcels nearest the point, nearest first, by distance to their geometry
+    public List<Nearby> nearest(double x, double y, int k) {
+        List<RTree.Neighbour<LandParcel>> neighbours;
+        lock.readLock().lock();
+        try {
+            neighbours = tree.nearest(x, y, k, landParcel -> landParcel.getGeometry().distance(x, y));
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+
+        List<Nearby> nearby = new ArrayList<>(neighbours.size());
+        for(RTree.Neighbour<LandParcel> neighbour: neighbours) {
+            nearby.add(new Nearby(neighbour.distance(), neighbour.value()));
+        }
+        return nearby;
+    }
+
+    // Number of parcels indexed (i.e. with a geometry)
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return tree.size();
+        }
+        finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static RTree.Entry<LandParcel> entry(LandParcel landParcel) {
+        ParcelGeometry geometry = landParcel.getGeometry();
+        return new RTree.Entry<>(landParcel.getObjectId(), geometry.minX(), geometry.minY(), geometry.maxX(), geometry.maxY(), landParcel);
+    }
+}
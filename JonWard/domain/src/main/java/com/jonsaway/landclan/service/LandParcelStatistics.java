@@ -0,0 +1,95 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+
+// Count and total area of land parcels, by status and constraints
+// Seeded from the stored parcels at startup, then kept up to date from each change
+// Counters are LongAdder/DoubleAdder (striped internally), so concurrent writers don't contend,
+// and reading them doesn't depend on the number of parcels
+@Component
+public class LandParcelStatistics implements LandParcelListener {
+    private static final ParcelStatus[] STATUSES = ParcelStatus.values();
+
+    // One cell per (status, constraints) pair: index is status.ordinal() * 2 + (constraints ? 1 : 0)
+    private final LongAdder[] counts = new LongAdder[STATUSES.length * 2];
+    private final DoubleAdder[] areas = new DoubleAdder[STATUSES.length * 2];
+
+    @Autowired
+    StoredLandParcels stored;
+
+    public LandParcelStatistics() {
+        for(int cell = 0; cell < counts.length; cell++) {
+            counts[cell] = new LongAdder();
+            areas[cell] = new DoubleAdder();
+        }
+    }
+
+    // Seed the counters with the stored totals (a single aggregate query per store) before we start taking requests
+    @PostConstruct
+    public void seed() {
+        for(Entry entry: stored.summarise()) {
+            if(entry.status() != null) {
+                int cell = cell(entry.status(), entry.constraints());
+                counts[cell].add(entry.count());
+                areas[cell].add(entry.area());
+            }
+        }
+    }
+
+    @Override
+    public void parcelChanged(LandParcel before, LandParcel after) {
+        if(before != null && before.getStatus() != null) {
+            int cell = cell(before.getStatus(), before.getConstraints());
+            counts[cell].decrement();
+            areas[cell].add(-before.getArea());
+        }
+        if(after != null && after.getStatus() != null) {
+            int cell = cell(after.getStatus(), after.getConstraints());
+            counts[cell].increment();
+            areas[cell].add(after.getArea());
+        }
+    }
+
+    // The current totals, overall and for each status and constraints value
+    // (NO_CHANGE is only included if any parcels have been stored with it)
+    // NB: writes in progress may be reflected in some counters and not others
+    public Summary summary() {
+        long totalCount = 0;
+        double totalArea = 0;
+        List<Entry> byStatus = new ArrayList<>(counts.length);
+
+        for(ParcelStatus status: STATUSES) {
+            for(boolean constraints: new boolean[] {false, true}) {
+                int cell = cell(status, constraints);
+                long count = counts[cell].sum();
+                double area = areas[cell].sum();
+                if(status != ParcelStatus.NO_CHANGE || count != 0) {
+                    byStatus.add(new Entry(status, constraints, count, area));
+                }
+                totalCount += count;
+                totalArea += area;
+            }
+        }
+
+        return new Summary(totalCount, totalArea, byStatus);
+    }
+
+    private static int cell(ParcelStatus status, boolean constraints) {
+        return status.ordinal() * 2 + (constraints ? 1 : 0);
+    }
+
+    public record Summary(long count, double area, List<Entry> byStatus) {
+    }
+
+    public record Entry(ParcelStatus status, boolean constraints, long count, double area) {
+    }
+}
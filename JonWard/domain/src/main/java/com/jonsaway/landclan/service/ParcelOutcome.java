@@ -0,0 +1,46 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import org.springframework.dao.OptimisticLockingFailureException;
+
+import java.util.NoSuchElementException;
+
+// The outcome of an operation on a single land parcel, returned rather than thrown (see LandParcelService.find)
+// - OK: 'landParcel' is the parcel as retrieved, or as updated (null for a delete)
+// - NOT_FOUND: no parcel exists with the object id
+// - VERSION_MISMATCH: the parcel is no longer at the version given
+// The failures (and a delete) are shared instances, so a miss creates nothing: no exception, stack trace or message
+public record ParcelOutcome(Status status, LandParcel landParcel) {
+    public enum Status {
+        OK,
+        NOT_FOUND,
+        VERSION_MISMATCH
+    }
+
+    public static final ParcelOutcome NOT_FOUND = new ParcelOutcome(Status.NOT_FOUND, null);
+    public static final ParcelOutcome VERSION_MISMATCH = new ParcelOutcome(Status.VERSION_MISMATCH, null);
+    public static final ParcelOutcome DELETED = new ParcelOutcome(Status.OK, null);
+
+    public static ParcelOutcome ok(LandParcel landParcel) {
+        return new ParcelOutcome(Status.OK, landParcel);
+    }
+
+    public boolean isOk() {
+        return status == Status.OK;
+    }
+
+    // The parcel, if the operation succeeded
+    // Otherwise throws what the throwing API throws for the failure, for the operation on the object id (at the version):
+    // Throws NoSuchElement exception if parcel doesn't exist
+    // Throws OptimisticLockingFailureException if parcel is at a different version
+    public LandParcel orElseThrow(long objectId, Long version, String operation) {
+        return switch (status) {
+            case OK -> landParcel;
+            case NOT_FOUND -> throw new NoSuchElementException(operation == null
+                    ? String.format("No Land Parcel exists with objectId=%d", objectId)
+                    : String.format("No Land Parcel exists with objectId=%d - ignoring %s", objectId, operation));
+            case VERSION_MISMATCH -> throw new OptimisticLockingFailureException(
+                    String.format("Land Parcel with objectId=%d is no longer at version %d - ignoring %s", objectId, version, operation));
+        };
+    }
+}
@@ -0,0 +1,17 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+// The parcels already stored, read once at startup to seed LandParcelStatistics and the name and spatial indexes
+// Each application implements it over its own store (JPA or R2DBC), reading every shard if sharded
+public interface StoredLandParcels {
+    // Every stored parcel (only those with a geometry, if 'withGeometry'), in no particular order
+    // The parcel passed may be reused or detached once the action returns: copy it to keep it
+    void forEach(boolean withGeometry, Consumer<LandParcel> action);
+
+    // Count and total area of the stored parcels, for each status and constraints value stored
+    List<LandParcelStatistics.Entry> summarise();
+}
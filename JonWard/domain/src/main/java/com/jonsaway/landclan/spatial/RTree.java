@@ -0,0 +1,459 @@
+package com.jonsaway.landclan.spatial;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+
+// An R-tree: a balanced tree of bounding boxes, for finding the entries that overlap a box, or are nearest
+// a point, without looking at them all
+// Each entry is a key (e.g. an object id), a bounding box and a value; each node holds up to MAX_ENTRIES
+// entries (in a leaf) or child nodes (in a branch), and a branch holds the box around each child's contents
+// - insert descends to the child whose box grows least, and splits nodes that overflow, along whichever axis
+//   (and at whichever point) gives the smallest total area
+// - remove finds the entry by its box and key, and dissolves any node left with fewer than MIN_ENTRIES,
+//   re-inserting its entries
+// - load builds a tree from scratch by Sort-Tile-Recursive packing: much quicker than inserting, with fuller,
+//   less overlapping nodes
+// The boxes are held in arrays in each node, so searching a node doesn't touch the entries themselves
+// Not thread-safe: callers must serialise writes, and not read while writing
+public class RTree<T> {
+    static final int MAX_ENTRIES = 16;
+    static final int MIN_ENTRIES = 6;
+
+    private Node root = new Node(true);
+    private int size;
+    private int height = 1;
+
+    // An entry, for load()
+    public record Entry<T>(long key, double minX, double minY, double maxX, double maxY, T value) {
+    }
+
+    // A value found by nearest(), and its distance from the point
+    public record Neighbour<T>(T value, double distance) {
+    }
+
+    // A tree holding these entries
+    public static <T> RTree<T> load(List<Entry<T>> entries) {
+        RTree<T> tree = new RTree<>();
+        if(entries.isEmpty()) {
+            return tree;
+        }
+
+        // Leaves: tiles of entries close to each other
+        List<Node> level = new ArrayList<>();
+        for(List<Entry<T>> tile: tile(entries, e -> e.minX() + e.maxX(), e -> e.minY() + e.maxY())) {
+            Node leaf = new Node(true);
+            for(Entry<T> entry: tile) {
+                leaf.add(entry.key(), entry.minX(), entry.minY(), entry.maxX(), entry.maxY(), entry.value());
+            }
+            level.add(leaf);
+        }
+
+        // Then tiles of those nodes, and so on, up to a single root
+        while(level.size() > 1) {
+            List<Box> boxes = new ArrayList<>(level.size());
+            for(Node node: level) {
+                boxes.add(node.box());
+            }
+            level = new ArrayList<>();
+            for(List<Box> tile: tile(boxes, b -> b.minX() + b.maxX(), b -> b.minY() + b.maxY())) {
+                Node branch = new Node(false);
+                for(Box box: tile) {
+                    branch.add(0, box.minX(), box.minY(), box.maxX(), box.maxY(), box.node());
+                }
+                level.add(branch);
+            }
+            tree.height++;
+        }
+
+        tree.root = level.get(0);
+        tree.size = entries.size();
+        return tree;
+    }
+
+    // Number of entries held
+    public int size() {
+        return size;
+    }
+
+    // Number of levels of nodes (1 for a single leaf)
+    public int height() {
+        return height;
+    }
+
+    // Add an entry (there may already be others with the same key)
+    public void insert(long key, double minX, double minY, double maxX, double maxY, T value) {
+        add(key, minX, minY, maxX, maxY, value);
+        size++;
+    }
+
+    // Insert an entry under the root, growing a level if the root splits
+    private void add(long key, double minX, double minY, double maxX, double maxY, Object value) {
+        Node sibling = insert(root, key, minX, minY, maxX, maxY, value);
+        if(sibling != null) {
+            // The root has split: grow a level
+            Node newRoot = new Node(false);
+            Box box = root.box();
+            newRoot.add(0, box.minX(), box.minY(), box.maxX(), box.maxY(), root);
+            box = sibling.box();
+            newRoot.add(0, box.minX(), box.minY(), box.maxX(), box.maxY(), sibling);
+            root = newRoot;
+            height++;
+        }
+    }
+
+    // Remove the entry with this key and box (as it was inserted)
+    // Returns its value, or null if there's no such entry
+    public T remove(long key, double minX, double minY, double maxX, double maxY) {
+        return remove(key, new Box(minX, minY, maxX, maxY, null));
+    }
+
+    // Remove the entry with this key, wherever it is (looking at every entry, if need be)
+    // Returns its value, or null if there's no such entry
+    public T remove(long key) {
+        return remove(key, null);
+    }
+
+    // Pass the value of every entry whose box overlaps this one (edges included) to the consumer
+    @SuppressWarnings("unchecked")
+    public void search(double minX, double minY, double maxX, double maxY, Consumer<T> consumer) {
+        List<Node> pending = new ArrayList<>();
+        pending.add(root);
+        while(!pending.isEmpty()) {
+            Node node = pending.remove(pending.size() - 1);
+            for(int i = 0; i < node.count; i++) {
+                if(node.minX[i] <= maxX && node.maxX[i] >= minX && node.minY[i] <= maxY && node.maxY[i] >= minY) {
+                    if(node.leaf) {
+                        consumer.accept((T) node.items[i]);
+                    }
+                    else {
+                        pending.add((Node) node.items[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    // The (up to) k values nearest the point, nearest first, by the given distance to each value
+    // That distance must be no less than the distance to the value's box (e.g. 0 inside a polygon, otherwise
+    // the distance to its nearest edge): nodes and entries are visited nearest box first, and only entries whose
+    // box is nearer than the k-th nearest value so far have their distance worked out
+    @SuppressWarnings("unchecked")
+    public List<Neighbour<T>> nearest(double x, double y, int k, ToDoubleFunction<T> distance) {
+        List<Neighbour<T>> nearest = new ArrayList<>(Math.min(k, size));
+        if(k <= 0 || size == 0) {
+            return nearest;
+        }
+
+        // Nodes (by box distance), entries (by box distance, then again by their own distance) in one queue
+        PriorityQueue<Candidate> queue = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance));
+        queue.add(new Candidate(0, root, false));
+        while(!queue.isEmpty() && nearest.size() < k) {
+            Candidate candidate = queue.poll();
+            if(candidate.item() instanceof Node node) {
+                for(int i = 0; i < node.count; i++) {
+                    queue.add(new Candidate(boxDistance(node, i, x, y), node.items[i], false));
+                }
+            }
+            else if(candidate.exact()) {
+                nearest.add(new Neighbour<>((T) candidate.item(), candidate.distance()));
+            }
+            else {
+                queue.add(new Candidate(distance.applyAsDouble((T) candidate.item()), candidate.item(), true));
+            }
+        }
+        return nearest;
+    }
+
+    // Something waiting to be looked at by nearest(): a node, an entry's value (at its box distance), or an entry's
+    // value at its exact distance
+    private record Candidate(double distance, Object item, boolean exact) {
+    }
+
+    // A node and the box around its contents
+    private record Box(double minX, double minY, double maxX, double maxY, Node node) {
+    }
+
+    private static final class Node {
+        final boolean leaf;
+        int count;
+        // The box of each entry (in a leaf) or child (in a branch), with room for one extra before a split
+        final double[] minX = new double[MAX_ENTRIES + 1];
+        final double[] minY = new double[MAX_ENTRIES + 1];
+        final double[] maxX = new double[MAX_ENTRIES + 1];
+        final double[] maxY = new double[MAX_ENTRIES + 1];
+        // Each entry's value (in a leaf) or child Node (in a branch)
+        final Object[] items = new Object[MAX_ENTRIES + 1];
+        // Each entry's key (in a leaf)
+        final long[] keys;
+
+        Node(boolean leaf) {
+            this.leaf = leaf;
+            keys = leaf ? new long[MAX_ENTRIES + 1] : null;
+        }
+
+        void add(long key, double minX, double minY, double maxX, double maxY, Object item) {
+            set(count++, key, minX, minY, maxX, maxY, item);
+        }
+
+        void set(int i, long key, double minX, double minY, double maxX, double maxY, Object item) {
+            if(leaf) {
+                keys[i] = key;
+            }
+            this.minX[i] = minX;
+            this.minY[i] = minY;
+            this.maxX[i] = maxX;
+            this.maxY[i] = maxY;
+            items[i] = item;
+        }
+
+        // Remove the entry or child at i (the last one moves into its place)
+        void removeAt(int i) {
+            int last = --count;
+            set(i, leaf ? keys[last] : 0, minX[last], minY[last], maxX[last], maxY[last], items[last]);
+            items[last] = null;
+        }
+
+        // Set the box of child i to the box around its contents
+        void refit(int i) {
+            Box box = ((Node) items[i]).box();
+            minX[i] = box.minX();
+            minY[i] = box.minY();
+            maxX[i] = box.maxX();
+            maxY[i] = box.maxY();
+        }
+
+        // The box around this node's contents
+        Box box() {
+            double boxMinX = Double.POSITIVE_INFINITY, boxMinY = Double.POSITIVE_INFINITY;
+            double boxMaxX = Double.NEGATIVE_INFINITY, boxMaxY = Double.NEGATIVE_INFINITY;
+            for(int i = 0; i < count; i++) {
+                boxMinX = Math.min(boxMinX, minX[i]);
+                boxMinY = Math.min(boxMinY, minY[i]);
+                boxMaxX = Math.max(boxMaxX, maxX[i]);
+                boxMaxY = Math.max(boxMaxY, maxY[i]);
+            }
+            return new Box(boxMinX, boxMinY, boxMaxX, boxMaxY, this);
+        }
+    }
+
+    // Insert into the subtree under this node
+    // Returns the new sibling of the node if it had to be split (for its parent to add)
+    private Node insert(Node node, long key, double minX, double minY, double maxX, double maxY, Object value) {
+        if(node.leaf) {
+            node.add(key, minX, minY, maxX, maxY, value);
+        }
+        else {
+            int best = chooseChild(node, minX, minY, maxX, maxY);
+            Node child = (Node) node.items[best];
+            Node sibling = insert(child, key, minX, minY, maxX, maxY, value);
+            if(sibling != null) {
+                node.refit(best);
+                Box box = sibling.box();
+                node.add(0, box.minX(), box.minY(), box.maxX(), box.maxY(), sibling);
+            }
+            else {
+                node.minX[best] = Math.min(node.minX[best], minX);
+                node.minY[best] = Math.min(node.minY[best], minY);
+                node.maxX[best] = Math.max(node.maxX[best], maxX);
+                node.maxY[best] = Math.max(node.maxY[best], maxY);
+            }
+        }
+        return node.count > MAX_ENTRIES ? split(node) : null;
+    }
+
+    // The child whose box would grow least to take in this box (the smallest, if there's a tie)
+    private static int chooseChild(Node node, double minX, double minY, double maxX, double maxY) {
+        int best = 0;
+        double bestGrowth = Double.POSITIVE_INFINITY;
+        double bestArea = Double.POSITIVE_INFINITY;
+        for(int i = 0; i < node.count; i++) {
+            double area = (node.maxX[i] - node.minX[i]) * (node.maxY[i] - node.minY[i]);
+            double grown = (Math.max(node.maxX[i], maxX) - Math.min(node.minX[i], minX))
+                    * (Math.max(node.maxY[i], maxY) - Math.min(node.minY[i], minY));
+            double growth = grown - area;
+            if(growth < bestGrowth || (growth == bestGrowth && area < bestArea)) {
+                best = i;
+                bestGrowth = growth;
+                bestArea = area;
+            }
+        }
+        return best;
+    }
+
+    // Split an overflowing node in two, leaving the first part in the node
+    // Returns the new node holding the second part
+    // Tries the entries in order along each axis (by centre), split at each point that leaves both parts at least
+    // MIN_ENTRIES, and takes whichever gives the smallest total area of the two boxes
+    private static Node split(Node node) {
+        int count = node.count;
+        Integer[] bestOrder = null;
+        int bestSplit = 0;
+        double bestArea = Double.POSITIVE_INFINITY;
+        for(int axis = 0; axis < 2; axis++) {
+            double[] low = axis == 0 ? node.minX : node.minY;
+            double[] high = axis == 0 ? node.maxX : node.maxY;
+            Integer[] order = new Integer[count];
+            for(int i = 0; i < count; i++) {
+                order[i] = i;
+            }
+            Arrays.sort(order, Comparator.comparingDouble(i -> low[i] + high[i]));
+
+            // Area of the box around the first i entries, and around the last count - i
+            double[] leading = areas(node, order, false);
+            double[] trailing = areas(node, order, true);
+            for(int split = MIN_ENTRIES; split <= count - MIN_ENTRIES; split++) {
+                double area = leading[split] + trailing[split];
+                if(area < bestArea) {
+                    bestArea = area;
+                    bestOrder = order;
+                    bestSplit = split;
+                }
+            }
+        }
+
+        // Copy the entries out in the chosen order, then share them between the two nodes
+        long[] keys = new long[count];
+        double[][] boxes = new double[count][];
+        Object[] items = new Object[count];
+        for(int i = 0; i < count; i++) {
+            int from = bestOrder[i];
+            keys[i] = node.leaf ? node.keys[from] : 0;
+            boxes[i] = new double[] { node.minX[from], node.minY[from], node.maxX[from], node.maxY[from] };
+            items[i] = node.items[from];
+        }
+        Node sibling = new Node(node.leaf);
+        node.count = 0;
+        for(int i = 0; i < count; i++) {
+            (i < bestSplit ? node : sibling).add(keys[i], boxes[i][0], boxes[i][1], boxes[i][2], boxes[i][3], items[i]);
+        }
+        for(int i = node.count; i < count; i++) {
+            node.items[i] = null;
+        }
+        return sibling;
+    }
+
+    // areas[i] is the area of the box around the first i entries in this order (or, if 'fromEnd', the last count - i)
+    private static double[] areas(Node node, Integer[] order, boolean fromEnd) {
+        int count = order.length;
+        double[] areas = new double[count + 1];
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for(int n = 1; n <= count; n++) {
+            int i = order[fromEnd ? count - n : n - 1];
+            minX = Math.min(minX, node.minX[i]);
+            minY = Math.min(minY, node.minY[i]);
+            maxX = Math.max(maxX, node.maxX[i]);
+            maxY = Math.max(maxY, node.maxY[i]);
+            areas[fromEnd ? count - n : n] = (maxX - minX) * (maxY - minY);
+        }
+        return areas;
+    }
+
+    // Remove the entry with this key, looking only under boxes that contain 'box' (or everywhere, if it's null)
+    @SuppressWarnings("unchecked")
+    private T remove(long key, Box box) {
+        List<Node> orphans = new ArrayList<>();
+        Object[] removed = new Object[1];
+        if(!remove(root, key, box, orphans, removed)) {
+            return null;
+        }
+        size--;
+
+        // A root with a single child is a level too many
+        while(!root.leaf && root.count == 1) {
+            root = (Node) root.items[0];
+            height--;
+        }
+        if(!root.leaf && root.count == 0) {
+            root = new Node(true);
+            height = 1;
+        }
+
+        // Put back the entries of any nodes dissolved on the way
+        for(Node orphan: orphans) {
+            reinsert(orphan);
+        }
+        return (T) removed[0];
+    }
+
+    // Remove the entry from the subtree under this node, collecting any nodes left underfull
+    // Returns whether it was found
+    private boolean remove(Node node, long key, Box box, List<Node> orphans, Object[] removed) {
+        if(node.leaf) {
+            for(int i = 0; i < node.count; i++) {
+                if(node.keys[i] == key && (box == null || (node.minX[i] == box.minX() && node.minY[i] == box.minY()
+                        && node.maxX[i] == box.maxX() && node.maxY[i] == box.maxY()))) {
+                    removed[0] = node.items[i];
+                    node.removeAt(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        for(int i = 0; i < node.count; i++) {
+            // (only a child whose box contains the entry's box can hold it)
+            if(box != null && (node.minX[i] > box.minX() || node.minY[i] > box.minY()
+                    || node.maxX[i] < box.maxX() || node.maxY[i] < box.maxY())) {
+                continue;
+            }
+            Node child = (Node) node.items[i];
+            if(remove(child, key, box, orphans, removed)) {
+                if(child.count < MIN_ENTRIES) {
+                    node.removeAt(i);
+                    orphans.add(child);
+                }
+                else {
+                    node.refit(i);
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Insert every entry under this (detached) node again
+    private void reinsert(Node node) {
+        for(int i = 0; i < node.count; i++) {
+            if(node.leaf) {
+                add(node.keys[i], node.minX[i], node.minY[i], node.maxX[i], node.maxY[i], node.items[i]);
+            }
+            else {
+                reinsert((Node) node.items[i]);
+            }
+        }
+    }
+
+    // Distance from the point to the box of entry or child i (0 if it's inside)
+    private static double boxDistance(Node node, int i, double x, double y) {
+        double dx = Math.max(0, Math.max(node.minX[i] - x, x - node.maxX[i]));
+        double dy = Math.max(0, Math.max(node.minY[i] - y, y - node.maxY[i]));
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    // Sort-Tile-Recursive: group the items into runs of up to MAX_ENTRIES that lie close together
+    // Sorted by x (centre), cut into vertical slices of about sqrt(runs) runs each, then each slice sorted by y
+    // and cut into runs
+    private static <E> List<List<E>> tile(List<E> items, ToDoubleFunction<E> centreX, ToDoubleFunction<E> centreY) {
+        List<E> sorted = new ArrayList<>(items);
+        sorted.sort(Comparator.comparingDouble(centreX));
+
+        int runs = (sorted.size() + MAX_ENTRIES - 1) / MAX_ENTRIES;
+        int slices = (int) Math.ceil(Math.sqrt(runs));
+        int sliceSize = slices * MAX_ENTRIES;
+        List<List<E>> tiles = new ArrayList<>(runs);
+        for(int sliceStart = 0; sliceStart < sorted.size(); sliceStart += sliceSize) {
+            List<E> slice = new ArrayList<>(sorted.subList(sliceStart, Math.min(sliceStart + sliceSize, sorted.size())));
+            slice.sort(Comparator.comparingDouble(centreY));
+            for(int start = 0; start < slice.size(); start += MAX_ENTRIES) {
+                tiles.add(slice.subList(start, Math.min(start + MAX_ENTRIES, slice.size())));
+            }
+        }
+        return tiles;
+    }
+}
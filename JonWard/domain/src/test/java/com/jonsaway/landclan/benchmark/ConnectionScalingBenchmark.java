@@ -0,0 +1,124 @@
+package com.jonsaway.landclan.benchmark;
+
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.BatchOperation;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Memory per concurrent connection, and latency, of a web stack serving the land parcel API
+// The app (blocking: servlet/JPA) and the reactive application (WebFlux/R2DBC) each run this against themselves
+// (as ConnectionScalingBenchmarkTests), with the same requests, so their results can be compared line for line
+// Opens many connections at once, each waiting on a slow (simulated remote) database,
+// and samples the process's resident memory and thread count while they are all in flight
+// The connection pool must be large enough not to be the limit, so this measures the cost of the web stack
+public abstract class ConnectionScalingBenchmark {
+    protected static final int PARCELS = 1_000;
+    protected static final int CONNECTIONS = Integer.getInteger("benchmark.connections", 2_000);
+    protected static final int DB_LATENCY_MS = Integer.getInteger("benchmark.db-latency-ms", 100);
+
+    // The stack's name, for the results
+    protected abstract String stack();
+
+    // The port the application under test is listening on
+    protected abstract int port();
+
+    // Apply the operations (creating the parcels to read)
+    protected abstract void batch(List<BatchOperation> operations);
+
+    @Test
+    public void benchmarkConnections() throws Exception {
+        List<BatchOperation> operations = new ArrayList<>(PARCELS);
+        for(long objectId = 1; objectId <= PARCELS; objectId++) {
+            operations.add(BatchOperation.create(objectId, "Parcel " + objectId, ParcelStatus.SAVED, 42.0, true));
+        }
+        batch(operations);
+
+        // Warm up, so we're not measuring class loading and JIT
+        burst(port(), 200);
+        burst(port(), 200);
+
+        Result result = burst(port(), CONNECTIONS);
+        System.out.printf("%s stack: %,d concurrent connections: %,.1f KB resident memory per connection, " +
+                        "%,d threads at peak, p50 %.0f ms, p99 %.0f ms, %,d errors%n",
+                stack(), CONNECTIONS, result.residentBytes() / 1024.0 / CONNECTIONS, result.threads(),
+                result.p50Nanos() / 1e6, result.p99Nanos() / 1e6, result.errors());
+    }
+
+    // Send count requests at once (each on its own connection), and wait for all of them
+    private Result burst(int port, int count) throws Exception {
+        // Each client waits without a thread, so the client side costs the same for both stacks
+        HttpClient client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+
+        System.gc();
+        long baselineResident = residentBytes();
+        AtomicLong peakResident = new AtomicLong(baselineResident);
+        AtomicInteger peakThreads = new AtomicInteger();
+        ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor();
+        sampler.scheduleAtFixedRate(() -> {
+            peakResident.accumulateAndGet(residentBytes(), Math::max);
+            peakThreads.accumulateAndGet(ManagementFactory.getThreadMXBean().getThreadCount(), Math::max);
+        }, 0, 5, TimeUnit.MILLISECONDS);
+
+        long[] latencies = new long[count];
+        AtomicInteger errors = new AtomicInteger();
+        CompletableFuture<?>[] responses = new CompletableFuture<?>[count];
+        for(int request = 0; request < count; request++) {
+            int index = request;
+            long sent = System.nanoTime();
+            responses[request] = client.sendAsync(
+                            HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/landParcel?limit=20&after=" + (request % PARCELS))).build(),
+                            HttpResponse.BodyHandlers.discarding())
+                    .handle((response, e) -> {
+                        latencies[index] = System.nanoTime() - sent;
+                        if(e != null || response.statusCode() != 200) {
+                            errors.incrementAndGet();
+                        }
+                        return null;
+                    });
+        }
+        CompletableFuture.allOf(responses).join();
+
+        sampler.shutdown();
+        sampler.awaitTermination(1, TimeUnit.SECONDS);
+
+        Arrays.sort(latencies);
+        return new Result(peakResident.get() - baselineResident, peakThreads.get(), errors.get(),
+                latencies[count / 2], latencies[count * 99 / 100]);
+    }
+
+    // Resident set size of this process (heap, thread stacks and everything else), from /proc on Linux
+    // Falls back to the heap in use elsewhere
+    private static long residentBytes() {
+        try {
+            for(String line: Files.readAllLines(Path.of("/proc/self/status"))) {
+                if(line.startsWith("VmRSS:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+                }
+            }
+        }
+        catch (IOException | NumberFormatException e) {
+            // Not Linux: fall through
+        }
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+
+    private record Result(long residentBytes, int threads, int errors, long p50Nanos, long p99Nanos) {
+    }
+}
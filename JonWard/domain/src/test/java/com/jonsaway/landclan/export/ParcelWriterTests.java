@@ -0,0 +1,89 @@
+package com.jonsaway.landclan.export;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ParcelWriterTests {
+    private interface Reader {
+        void read(InputStream in, Consumer<LandParcel> consumer) throws IOException;
+    }
+
+    private interface Writer {
+        ParcelWriter create(OutputStream out) throws IOException;
+    }
+
+    // More than a block's worth (for the column format), with missing and non-ASCII names and missing statuses
+    private static List<LandParcel> parcels() {
+        List<LandParcel> parcels = new ArrayList<>();
+        ParcelStatus[] statuses = ParcelStatus.values();
+        for(long objectId = 1; objectId <= ParcelColumnWriter.BLOCK_SIZE * 2L + 10; objectId++) {
+            String name = objectId % 7 == 0 ? null : objectId % 5 == 0 ? "Čapek Feld " + objectId : "Parcel " + (objectId % 100);
+            ParcelStatus status = objectId % 11 == 0 ? null : statuses[1 + (int) (objectId % 4)];
+            parcels.add(new LandParcel(objectId, name, status, objectId / 8.0, objectId % 3 == 0));
+        }
+        return parcels;
+    }
+
+    private static byte[] export(Writer writer, List<LandParcel> parcels) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ParcelWriter parcelWriter = writer.create(out);
+        for(LandParcel landParcel: parcels) {
+            parcelWriter.write(landParcel);
+        }
+        parcelWriter.finish();
+        return out.toByteArray();
+    }
+
+    private static List<LandParcel> read(Reader reader, byte[] export) throws IOException {
+        List<LandParcel> parcels = new ArrayList<>();
+        reader.read(new ByteArrayInputStream(export), parcels::add);
+        return parcels;
+    }
+
+    private static void testRoundTrip(Writer writer, Reader reader) throws IOException {
+        List<LandParcel> parcels = parcels();
+        byte[] export = export(writer, parcels);
+        // (LandParcel has no equals(), but its toString() has every exported attribute)
+        assertThat(read(reader, export)).map(LandParcel::toString).containsExactlyElementsOf(parcels.stream().map(LandParcel::toString).toList());
+
+        // Nothing at all
+        assertThat(read(reader, export(writer, List.of()))).isEmpty();
+
+        // A truncated export can't be mistaken for a complete one
+        assertThatThrownBy(() -> read(reader, Arrays.copyOf(export, export.length - 4)))
+                .isInstanceOf(EOFException.class);
+    }
+
+    // Test that parcels are read back as they were written, as records
+    @Test
+    public void testRecords() throws IOException {
+        testRoundTrip(ParcelRecordWriter::new, ParcelRecordWriter::read);
+    }
+
+    // Test that parcels are read back as they were written, in columns
+    @Test
+    public void testColumns() throws IOException {
+        testRoundTrip(ParcelColumnWriter::new, ParcelColumnWriter::read);
+    }
+
+    // Test that the columns are smaller than the records, for repetitive names
+    @Test
+    public void testColumnsCompact() throws IOException {
+        List<LandParcel> parcels = parcels();
+        assertThat(export(ParcelColumnWriter::new, parcels).length).isLessThan(export(ParcelRecordWriter::new, parcels).length);
+    }
+}
@@ -0,0 +1,63 @@
+package com.jonsaway.landclan.jpa;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class ParcelGeometryTests {
+    // A 10 x 10 square with a 2 x 2 hole in the middle
+    private static final ParcelGeometry WITH_HOLE = new ParcelGeometry(new double[][] {
+            { 0, 0, 10, 0, 10, 10, 0, 10 },
+            { 4, 4, 4, 6, 6, 6, 6, 4, 4, 4 } });
+
+    // Test the bounding box, area, containment and distance, holes included
+    @Test
+    public void testShape() {
+        assertThat(WITH_HOLE.getBbox()).containsExactly(0, 0, 10, 10);
+        assertThat(WITH_HOLE.area()).isEqualTo(96.0);
+
+        assertThat(WITH_HOLE.contains(1, 1)).isTrue();
+        assertThat(WITH_HOLE.contains(5, 5)).isFalse();
+        assertThat(WITH_HOLE.contains(11, 5)).isFalse();
+
+        assertThat(WITH_HOLE.distance(1, 1)).isZero();
+        assertThat(WITH_HOLE.distance(5, 5)).isEqualTo(1.0);
+        assertThat(WITH_HOLE.distance(13, 14)).isEqualTo(5.0);
+        assertThat(WITH_HOLE.distance(5, -2)).isEqualTo(2.0);
+
+        // Rings are closed, whichever way round they go
+        assertThat(WITH_HOLE.getCoordinates()[0].length).isEqualTo(5);
+        assertThat(ParcelGeometry.rectangle(0, 0, 3, 2).area()).isEqualTo(6.0);
+    }
+
+    // Test that a geometry is stored and read back exactly
+    @Test
+    public void testBytes() {
+        byte[] bytes = WITH_HOLE.toBytes();
+        assertThat(bytes).hasSize(WITH_HOLE.byteSize());
+        assertThat(ParcelGeometry.fromBytes(bytes)).isEqualTo(WITH_HOLE);
+        assertThat(new ParcelGeometryConverter().convertToEntityAttribute(null)).isNull();
+    }
+
+    // Test that it's read and written as a GeoJSON Polygon, and that anything else is rejected
+    @Test
+    public void testJson() throws Exception {
+        ObjectMapper objectMapper = new ObjectMapper();
+        String json = objectMapper.writeValueAsString(ParcelGeometry.rectangle(0, 0, 1, 2));
+        assertThat(json).isEqualTo("{\"type\":\"Polygon\",\"coordinates\":[[[0.0,0.0],[1.0,0.0],[1.0,2.0],[0.0,2.0],[0.0,0.0]]],\"bbox\":[0.0,0.0,1.0,2.0]}");
+        assertThat(objectMapper.readValue(json, ParcelGeometry.class)).isEqualTo(ParcelGeometry.rectangle(0, 0, 1, 2));
+
+        // Not closed
+        assertThat(objectMapper.readValue("{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[1,0],[1,2],[0,2]]]}", ParcelGeometry.class))
+                .isEqualTo(ParcelGeometry.rectangle(0, 0, 1, 2));
+
+        assertThatThrownBy(() -> objectMapper.readValue("{\"type\":\"MultiPolygon\",\"coordinates\":[[[0,0],[1,0],[1,2]]]}", ParcelGeometry.class))
+                .isInstanceOf(JsonProcessingException.class)
+                .hasMessageContaining("must be a Polygon");
+        assertThatThrownBy(() -> objectMapper.readValue("{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[1,0],[0,0]]]}", ParcelGeometry.class))
+                .isInstanceOf(JsonProcessingException.class)
+                .hasMessageContaining("at least 3 points");
+    }
+}
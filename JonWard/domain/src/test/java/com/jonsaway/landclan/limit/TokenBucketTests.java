@@ -0,0 +1,85 @@
+package com.jonsaway.landclan.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenBucketTests {
+    private static final long SECOND = 1_000_000_000L;
+
+    // Test that a burst is allowed, then the rate, and that a quiet spell fills the bucket (but no further)
+    @Test
+    public void testTokenBucket() {
+        long start = 12345 * SECOND;
+        TokenBucket bucket = new TokenBucket(10, 3, start);
+        assertThat(bucket.tryAcquire(start)).isZero();
+        assertThat(bucket.tryAcquire(start)).isZero();
+        assertThat(bucket.tryAcquire(start)).isZero();
+        assertThat(bucket.tryAcquire(start)).isEqualTo(SECOND / 10);
+        assertThat(bucket.tryAcquire(start + SECOND / 20)).isEqualTo(SECOND / 20);
+
+        // One token every 100 ms
+        assertThat(bucket.tryAcquire(start + SECOND / 10)).isZero();
+        assertThat(bucket.tryAcquire(start + SECOND / 10)).isEqualTo(SECOND / 10);
+
+        // A minute later, only a burst's worth
+        long later = start + 60 * SECOND;
+        for(int i = 0; i < 3; i++) {
+            assertThat(bucket.tryAcquire(later)).isZero();
+        }
+        assertThat(bucket.tryAcquire(later)).isPositive();
+
+        // (times either side of zero)
+        TokenBucket negative = new TokenBucket(0.5, 1, -SECOND);
+        assertThat(negative.tryAcquire(-SECOND)).isZero();
+        assertThat(negative.tryAcquire(0)).isEqualTo(SECOND);
+        assertThat(negative.tryAcquire(SECOND)).isZero();
+    }
+
+    // Test that however many threads race for them, only the burst's tokens (or the limit's permits) are handed out
+    @Test
+    public void testConcurrentAcquire() throws Exception {
+        long now = System.nanoTime();
+        TokenBucket bucket = new TokenBucket(0.001, 1000, now);
+        ConcurrencyLimit limit = new ConcurrencyLimit(100);
+        AtomicInteger tokens = new AtomicInteger(), permits = new AtomicInteger();
+        CountDownLatch ready = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for(int t = 0; t < 8; t++) {
+            Thread thread = new Thread(() -> {
+                try {
+                    ready.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                for(int i = 0; i < 10_000; i++) {
+                    if(bucket.tryAcquire(now) == 0) {
+                        tokens.incrementAndGet();
+                    }
+                    if(limit.tryAcquire()) {
+                        permits.incrementAndGet();
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        ready.countDown();
+        for(Thread thread: threads) {
+            thread.join();
+        }
+        assertThat(tokens.get()).isEqualTo(1000);
+        assertThat(permits.get()).isEqualTo(100);
+        assertThat(limit.inFlight()).isEqualTo(100);
+
+        limit.release();
+        assertThat(limit.tryAcquire()).isTrue();
+        assertThat(limit.tryAcquire()).isFalse();
+    }
+}
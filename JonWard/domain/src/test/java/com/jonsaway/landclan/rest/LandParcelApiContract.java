@@ -0,0 +1,501 @@
+package com.jonsaway.landclan.rest;
+
+import com.jonsaway.landclan.export.ParcelColumnWriter;
+import com.jonsaway.landclan.export.ParcelRecordWriter;
+import com.jonsaway.landclan.jpa.LandParcel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.MultipartBodyBuilder;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import org.springframework.web.reactive.function.BodyInserters;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static com.jonsaway.landclan.rest.LandParcelRoutes.*;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.hasItem;
+
+// The land parcel API's routes and status codes, as every application serving it must answer them
+// Each application runs these against itself (the app through MockMvc, the reactive application through WebFlux),
+// by extending this and supplying a client; the routes come from LandParcelRoutes too, so neither can drift from the other
+// The tests only use object ids from BASE up (deleting them before and after each test), and the far corner of the
+// map, so they don't depend on, or disturb, whatever else the application holds
+public abstract class LandParcelApiContract {
+    protected static final long BASE = 9_000_000_000L;
+    protected static final long ALICE_ID = BASE + 1;
+    protected static final long BOB_ID = BASE + 2;
+    protected static final long CHARLIE_ID = BASE + 3;
+
+    private static final String ALICE = "{\"objectId\":" + ALICE_ID + ",\"name\":\"Alice House\",\"status\":\"SAVED\",\"area\":42.0,\"constraints\":true}";
+    private static final String BOB = "{\"objectId\":" + BOB_ID + ",\"name\":\"Bob Office\",\"status\":\"APPROVED\",\"area\":27.0,\"constraints\":false}";
+    private static final String CHARLIE = "{\"objectId\":" + CHARLIE_ID + ",\"name\":\"Charlie School\",\"status\":\"SHORT_LISTED\",\"area\":103.0,\"constraints\":true}";
+
+    // A 10 x 5 rectangle, a long way from anything else on the map
+    private static final double X = 1_000_000;
+    private static final double Y = 1_000_000;
+    private static final String RECTANGLE = "{\"type\":\"Polygon\",\"coordinates\":[[[" + X + "," + Y + "],[" + (X + 10) + "," + Y + "],["
+            + (X + 10) + "," + (Y + 5) + "],[" + X + "," + (Y + 5) + "],[" + X + "," + Y + "]]]}";
+
+    // The client to send the requests with, bound to the application under test
+    protected abstract WebTestClient client();
+
+    @BeforeEach
+    @AfterEach
+    public void deleteParcels() {
+        // Some of these deletes will fail, as we haven't created them. Don't really care...
+        for(long objectId = BASE; objectId <= BASE + 10; objectId++) {
+            client().delete().uri(LAND_PARCEL, objectId).exchange();
+        }
+    }
+
+    // Create a land parcel, sending its attributes as (url-encoded) form fields
+    private WebTestClient.ResponseSpec create(long objectId, String name, String status, String area, String constraints) {
+        return client().post().uri(LAND_PARCEL, objectId)
+                .body(BodyInserters.fromFormData("name", name)
+                        .with("status", status)
+                        .with("area", area)
+                        .with("constraints", constraints))
+                .exchange();
+    }
+
+    private void createAliceBobAndCharlie() {
+        create(ALICE_ID, "Alice House", "SAVED", "42.0", "true").expectStatus().isOk();
+        create(BOB_ID, "Bob Office", "APPROVED", "27.0", "false").expectStatus().isOk();
+        create(CHARLIE_ID, "Charlie School", "SHORT_LISTED", "103.0", "true").expectStatus().isOk();
+    }
+
+    // The ETag of a parcel, as it is now
+    private String eTag(long objectId) {
+        return client().get().uri(LAND_PARCEL, objectId).exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseHeaders().getETag();
+    }
+
+    // Test that we can retrieve all parcels, as a JSON array (the default), as newline-delimited JSON, and exported
+    // as binary records and as columns
+    @Test
+    public void testRetrieveAll() throws Exception {
+        createAliceBobAndCharlie();
+
+        client().get().uri(LAND_PARCELS).exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_JSON)
+                .expectBody().jsonPath("$[*].objectId").value(hasItem(ALICE_ID));
+        client().get().uri(LAND_PARCELS).accept(MediaType.APPLICATION_JSON).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).value(containsString(ALICE + "," + BOB + "," + CHARLIE));
+
+        client().get().uri(LAND_PARCELS).accept(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE)).exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(APPLICATION_NDJSON_VALUE)
+                .expectBody(String.class).value(containsString(ALICE + "\n" + BOB + "\n" + CHARLIE + "\n"));
+
+        byte[] records = client().get().uri(LAND_PARCELS).accept(MediaType.parseMediaType(ParcelRecordWriter.MEDIA_TYPE)).exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(ParcelRecordWriter.MEDIA_TYPE)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        List<LandParcel> recordParcels = new ArrayList<>();
+        ParcelRecordWriter.read(new ByteArrayInputStream(records), recordParcels::add);
+        assertThat(recordParcels).extracting(LandParcel::getObjectId).contains(ALICE_ID, BOB_ID, CHARLIE_ID);
+
+        byte[] columns = client().get().uri(LAND_PARCELS).accept(MediaType.parseMediaType(ParcelColumnWriter.MEDIA_TYPE)).exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(ParcelColumnWriter.MEDIA_TYPE)
+                .expectBody(byte[].class).returnResult().getResponseBody();
+        List<LandParcel> columnParcels = new ArrayList<>();
+        ParcelColumnWriter.read(new ByteArrayInputStream(columns), columnParcels::add);
+        assertThat(columnParcels).extracting(LandParcel::getName).contains("Alice House", "Bob Office", "Charlie School");
+    }
+
+    // Test that we can retrieve all parcels a page at a time
+    @Test
+    public void testRetrievePage() {
+        createAliceBobAndCharlie();
+
+        // A full page links to the next page
+        client().get().uri(LAND_PARCELS + "?limit=2&after=" + BASE).exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.LINK, nextPage(2, BOB_ID))
+                .expectBody(String.class).isEqualTo("[" + ALICE + "," + BOB + "]");
+
+        // The last page is not full, so has no link
+        client().get().uri(LAND_PARCELS + "?limit=2&after=" + BOB_ID).exchange()
+                .expectStatus().isOk()
+                .expectHeader().doesNotExist(HttpHeaders.LINK)
+                .expectBody(String.class).isEqualTo("[" + CHARLIE + "]");
+
+        // Out of range page sizes are rejected
+        client().get().uri(LAND_PARCELS + "?limit=0").exchange().expectStatus().isBadRequest();
+        client().get().uri(LAND_PARCELS + "?limit=" + (MAX_PAGE_SIZE + 1)).exchange().expectStatus().isBadRequest();
+    }
+
+    // Test that we can retrieve the parcels matching a filter, a page at a time
+    @Test
+    public void testRetrieveFiltered() {
+        createAliceBobAndCharlie();
+
+        client().get().uri(FILTER + "?status=APPROVED&minArea=20&constraints=false&after=" + BASE).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("[" + BOB + "]");
+
+        client().get().uri(FILTER + "?minArea=40&limit=1&after=" + BASE).exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.LINK, "</landParcel/filter?minArea=40.0&limit=1&after=" + ALICE_ID + ">; rel=\"next\"")
+                .expectBody(String.class).isEqualTo("[" + ALICE + "]");
+
+        client().get().uri(FILTER + "?limit=0").exchange().expectStatus().isBadRequest();
+        client().get().uri(FILTER + "?status=NOT_A_STATUS").exchange().expectStatus().isBadRequest();
+    }
+
+    // Test retrieving a single parcel, with its ETag (and 304 if the client already has that version), and 404 for
+    // one that doesn't exist
+    @Test
+    public void testRetrieve() {
+        String eTag = create(ALICE_ID, "Alice House", "SAVED", "42.0", "true")
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(ALICE)
+                .returnResult().getResponseHeaders().getETag();
+        assertThat(eTag).matches("\"[0-9]+\"");
+
+        client().get().uri(LAND_PARCEL, ALICE_ID).exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, eTag)
+                .expectBody(String.class).isEqualTo(ALICE);
+
+        client().get().uri(LAND_PARCEL, ALICE_ID).header(HttpHeaders.IF_NONE_MATCH, eTag).exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+
+        client().get().uri(LAND_PARCEL, BASE).exchange()
+                .expectStatus().isNotFound();
+    }
+
+    // Test that creates may be sent as multipart form data, and are rejected if the parcel already exists, or a value
+    // is missing or invalid
+    @Test
+    public void testCreate() {
+        MultipartBodyBuilder multipart = new MultipartBodyBuilder();
+        multipart.part("name", "Alice House");
+        multipart.part("status", "SAVED");
+        multipart.part("area", "42.0");
+        multipart.part("constraints", "true");
+        client().post().uri(LAND_PARCEL, ALICE_ID)
+                .body(BodyInserters.fromMultipartData(multipart.build()))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(ALICE);
+
+        create(ALICE_ID, "Alice Again", "SAVED", "42.0", "true").expectStatus().isBadRequest();
+        create(BOB_ID, "Bob Office", "APPROVED", "not a number", "false").expectStatus().isBadRequest();
+        create(BOB_ID, "Bob Office", "NOT_A_STATUS", "27.0", "false").expectStatus().isBadRequest();
+        client().post().uri(LAND_PARCEL, BOB_ID).body(BodyInserters.fromFormData("name", "Bob Office")).exchange()
+                .expectStatus().isBadRequest();
+
+        client().get().uri(LAND_PARCEL, BOB_ID).exchange()
+                .expectStatus().isNotFound();
+    }
+
+    // Test update, patch and delete, including of parcels that don't exist
+    @Test
+    public void testWrites() {
+        createAliceBobAndCharlie();
+        String created = eTag(ALICE_ID);
+
+        String updated = client().put().uri(LAND_PARCEL, ALICE_ID).body(BodyInserters.fromFormData("name", "Renamed")).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(ALICE.replace("Alice House", "Renamed"))
+                .returnResult().getResponseHeaders().getETag();
+        assertThat(updated).isNotEqualTo(created);
+
+        // Values may also be sent as query parameters
+        String patched = client().patch().uri(LAND_PARCEL + "?status=APPROVED&area=1.5", ALICE_ID).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(ALICE.replace("Alice House", "Renamed").replace("SAVED", "APPROVED").replace("42.0", "1.5"))
+                .returnResult().getResponseHeaders().getETag();
+        assertThat(patched).isNotEqualTo(updated);
+
+        client().put().uri(LAND_PARCEL, BASE).body(BodyInserters.fromFormData("name", "Missing")).exchange()
+                .expectStatus().isNotFound();
+        client().patch().uri(LAND_PARCEL + "?name=Missing", BASE).exchange()
+                .expectStatus().isNotFound();
+        client().patch().uri(LAND_PARCEL + "?status=NOT_A_STATUS", ALICE_ID).exchange()
+                .expectStatus().isBadRequest();
+
+        client().delete().uri(LAND_PARCEL, ALICE_ID).exchange()
+                .expectStatus().isOk();
+        client().delete().uri(LAND_PARCEL, ALICE_ID).exchange()
+                .expectStatus().isNotFound();
+        client().get().uri(LAND_PARCEL, ALICE_ID).exchange()
+                .expectStatus().isNotFound();
+    }
+
+    // Test that writes with an If-Match header only succeed at that version
+    @Test
+    public void testConditionalWrites() {
+        createAliceBobAndCharlie();
+        String created = eTag(ALICE_ID);
+
+        String updated = client().put().uri(LAND_PARCEL, ALICE_ID).header(HttpHeaders.IF_MATCH, created)
+                .body(BodyInserters.fromFormData("name", "Renamed")).exchange()
+                .expectStatus().isOk()
+                .returnResult(String.class).getResponseHeaders().getETag();
+
+        client().put().uri(LAND_PARCEL, ALICE_ID).header(HttpHeaders.IF_MATCH, created)
+                .body(BodyInserters.fromFormData("name", "Lost Update")).exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        client().patch().uri(LAND_PARCEL + "?name=Lost", ALICE_ID).header(HttpHeaders.IF_MATCH, created).exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        client().put().uri(GEOMETRY, ALICE_ID).header(HttpHeaders.IF_MATCH, created)
+                .contentType(MediaType.parseMediaType(APPLICATION_GEO_JSON_VALUE)).bodyValue(RECTANGLE).exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+        client().delete().uri(LAND_PARCEL, ALICE_ID).header(HttpHeaders.IF_MATCH, created).exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        // Weak ETags (and anything else that isn't one of ours) can't match
+        client().delete().uri(LAND_PARCEL, ALICE_ID).header(HttpHeaders.IF_MATCH, "W/" + updated).exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED);
+
+        // Missing parcels are still reported as missing
+        client().delete().uri(LAND_PARCEL, BASE).header(HttpHeaders.IF_MATCH, created).exchange()
+                .expectStatus().isNotFound();
+
+        client().delete().uri(LAND_PARCEL, ALICE_ID).header(HttpHeaders.IF_MATCH, updated).exchange()
+                .expectStatus().isOk();
+    }
+
+    // Test that a batch reports each operation's outcome, whether sent as JSON or newline-delimited JSON, and is
+    // rejected if any operation is malformed
+    @Test
+    public void testBatch() {
+        client().post().uri(BATCH).contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"op\":\"CREATE\",\"objectId\":" + ALICE_ID + ",\"name\":\"Alice House\",\"status\":\"SAVED\",\"area\":42,\"constraints\":true},"
+                        + "{\"op\":\"CREATE\",\"objectId\":" + ALICE_ID + ",\"name\":\"Again\",\"status\":\"SAVED\",\"area\":1,\"constraints\":true},"
+                        + "{\"op\":\"UPDATE\",\"objectId\":" + BASE + ",\"name\":\"Missing\"}]")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("["
+                        + "{\"index\":0,\"op\":\"CREATE\",\"objectId\":" + ALICE_ID + ",\"status\":200,\"landParcel\":" + ALICE + "},"
+                        + "{\"index\":1,\"op\":\"CREATE\",\"objectId\":" + ALICE_ID + ",\"status\":400},"
+                        + "{\"index\":2,\"op\":\"UPDATE\",\"objectId\":" + BASE + ",\"status\":404}]");
+
+        client().post().uri(BATCH).contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .bodyValue("{\"op\":\"UPDATE\",\"objectId\":" + ALICE_ID + ",\"area\":1.5}\n"
+                        + "{\"op\":\"DELETE\",\"objectId\":" + ALICE_ID + "}\n"
+                        + "{\"op\":\"CREATE\",\"objectId\":" + ALICE_ID + ",\"name\":\"Alice House\",\"status\":\"SAVED\",\"area\":42,\"constraints\":true}\n")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("["
+                        + "{\"index\":0,\"op\":\"UPDATE\",\"objectId\":" + ALICE_ID + ",\"status\":200,\"landParcel\":" + ALICE.replace("42.0", "1.5") + "},"
+                        + "{\"index\":1,\"op\":\"DELETE\",\"objectId\":" + ALICE_ID + ",\"status\":200},"
+                        + "{\"index\":2,\"op\":\"CREATE\",\"objectId\":" + ALICE_ID + ",\"status\":200,\"landParcel\":" + ALICE + "}]");
+
+        client().post().uri(BATCH).contentType(MediaType.parseMediaType(APPLICATION_NDJSON_VALUE))
+                .bodyValue("{\"op\":\"DELETE\",\"objectId\":" + ALICE_ID + "}\nnot json\n")
+                .exchange()
+                .expectStatus().isBadRequest();
+        client().post().uri(BATCH).contentType(MediaType.APPLICATION_JSON)
+                .bodyValue("[{\"op\":\"NOT_AN_OP\",\"objectId\":" + ALICE_ID + "}]")
+                .exchange()
+                .expectStatus().isBadRequest();
+
+        // (nothing from the malformed batches was applied)
+        client().get().uri(LAND_PARCEL, ALICE_ID).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(ALICE);
+    }
+
+    // Test that a parcel's geometry can be set and removed, and that parcels can be found by where they are
+    @Test
+    public void testGeometry() {
+        createAliceBobAndCharlie();
+
+        // The area comes from the geometry
+        client().put().uri(GEOMETRY, ALICE_ID)
+                .contentType(MediaType.parseMediaType(APPLICATION_GEO_JSON_VALUE)).bodyValue(RECTANGLE).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.area").isEqualTo(50.0)
+                .jsonPath("$.geometry.type").isEqualTo("Polygon");
+
+        // Not a polygon, or no such parcel
+        client().put().uri(GEOMETRY, BOB_ID)
+                .contentType(MediaType.APPLICATION_JSON).bodyValue("{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[1,1]]]}").exchange()
+                .expectStatus().isBadRequest();
+        client().put().uri(GEOMETRY, BASE)
+                .contentType(MediaType.APPLICATION_JSON).bodyValue(RECTANGLE).exchange()
+                .expectStatus().isNotFound();
+
+        client().get().uri(BBOX + "?minX={minX}&minY={minY}&maxX={maxX}&maxY={maxY}", X - 1, Y - 1, X + 1, Y + 1).exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$[*].objectId").value(contains(ALICE_ID));
+        client().get().uri(BBOX + "?minX={minX}&minY={minY}&maxX={maxX}&maxY={maxY}", X + 1, Y + 1, X - 1, Y - 1).exchange()
+                .expectStatus().isBadRequest();
+
+        client().get().uri(CONTAINING + "?x={x}&y={y}", X + 5, Y + 2.5).exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$[*].objectId").value(contains(ALICE_ID));
+
+        client().get().uri(NEAREST + "?x={x}&y={y}&k=1", X + 5, Y + 2.5).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$[0].distance").isEqualTo(0.0)
+                .jsonPath("$[0].landParcel.objectId").isEqualTo(ALICE_ID);
+        client().get().uri(NEAREST + "?x=0&y=0&k=0").exchange()
+                .expectStatus().isBadRequest();
+
+        // Without its geometry, a parcel keeps its area, but can't be found by where it is
+        client().delete().uri(GEOMETRY, ALICE_ID).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.area").isEqualTo(50.0)
+                .jsonPath("$.geometry").doesNotExist();
+        client().get().uri(CONTAINING + "?x={x}&y={y}", X + 5, Y + 2.5).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("[]");
+    }
+
+    // Test that parcels can be found by the words of their name
+    @Test
+    public void testSearch() {
+        create(ALICE_ID, "Quillfeather Barn", "SAVED", "42.0", "true").expectStatus().isOk();
+        create(BOB_ID, "Quillfeather Mill", "SAVED", "27.0", "true").expectStatus().isOk();
+
+        client().get().uri(SEARCH + "?q=quillfeath&limit=1").exchange()
+                .expectStatus().isOk()
+                .expectHeader().valueEquals(HttpHeaders.LINK, "</landParcel/search?q=quillfeath&mode=PREFIX&limit=1&after=" + ALICE_ID + ">; rel=\"next\"")
+                .expectBody().jsonPath("$[*].name").value(contains("Quillfeather Barn"));
+
+        client().get().uri(SEARCH + "?q={q}&mode=TOKEN", "quillfeather mill").exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$[*].objectId").value(contains(BOB_ID));
+
+        // No words, a bad mode, or a bad page size
+        client().get().uri(SEARCH + "?q={q}", " ").exchange().expectStatus().isBadRequest();
+        client().get().uri(SEARCH + "?q=quillfeather&mode=NOT_A_MODE").exchange().expectStatus().isBadRequest();
+        client().get().uri(SEARCH + "?q=quillfeather&limit=0").exchange().expectStatus().isBadRequest();
+    }
+
+    // Test that changes can be polled for, and that the poll returns nothing (with the same 'latest') if there have
+    // been none by the timeout
+    @Test
+    public void testChanges() {
+        long latest = latestChange();
+        create(ALICE_ID, "Alice House", "SAVED", "42.0", "true").expectStatus().isOk();
+        client().delete().uri(LAND_PARCEL, ALICE_ID).exchange().expectStatus().isOk();
+
+        client().get().uri(CHANGES + "?after={after}&timeout=PT5S", latest).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.changes[*].objectId").value(contains(ALICE_ID, ALICE_ID))
+                .jsonPath("$.changes[0].sequence").isEqualTo(latest + 1)
+                .jsonPath("$.latest").isEqualTo(latest + 2);
+
+        client().get().uri(CHANGES + "?after={after}&limit=1&timeout=PT5S", latest).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.changes.length()").isEqualTo(1)
+                .jsonPath("$.latest").isEqualTo(latest + 1);
+
+        client().get().uri(CHANGES + "?after={after}&timeout=PT0.2S", latest + 2).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.changes.length()").isEqualTo(0)
+                .jsonPath("$.latest").isEqualTo(latest + 2);
+
+        // A bad page size, or changes that aren't held (here, that haven't happened yet)
+        client().get().uri(CHANGES + "?limit=0").exchange()
+                .expectStatus().isBadRequest();
+        client().get().uri(CHANGES + "?after={after}", latest + 1_000_000).exchange()
+                .expectStatus().isEqualTo(HttpStatus.GONE);
+
+        // As a stream, the same is an "expired" event, which ends it
+        client().get().uri(CHANGES + "?after={after}", latest + 1_000_000).accept(MediaType.TEXT_EVENT_STREAM).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).value(containsString("event:expired"));
+    }
+
+    // Test that parcels can be imported from CSV, with invalid rows and parcels that already exist reported by row,
+    // and that a file that can't be read as a whole is rejected
+    @Test
+    public void testImport() {
+        create(CHARLIE_ID, "Charlie School", "SHORT_LISTED", "103.0", "true").expectStatus().isOk();
+        String csv = "objectId,name,status,area,constraints\n"
+                + ALICE_ID + ",Alice House,SAVED,42.0,true\n"
+                + BOB_ID + ",Bob Office,NOT_A_STATUS,27.0,false\n"
+                + CHARLIE_ID + ",Charlie Again,SAVED,1.0,true\n";
+
+        client().post().uri(IMPORT).contentType(MediaType.parseMediaType(TEXT_CSV_VALUE))
+                .bodyValue(csv)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.rows").isEqualTo(3)
+                .jsonPath("$.imported").isEqualTo(1)
+                .jsonPath("$.failed").isEqualTo(2)
+                .jsonPath("$.errors[0].row").isEqualTo(2)
+                .jsonPath("$.errors[0].message").isEqualTo("Invalid status: NOT_A_STATUS")
+                .jsonPath("$.errors[1].row").isEqualTo(3);
+
+        client().get().uri(LAND_PARCEL, ALICE_ID).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(ALICE);
+        client().get().uri(LAND_PARCEL, CHARLIE_ID).exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo(CHARLIE);
+
+        client().post().uri(IMPORT).contentType(MediaType.parseMediaType(TEXT_CSV_VALUE))
+                .bodyValue("objectId,name\n" + BOB_ID + ",Nobody\n")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    // Test that the statistics follow creates, updates and deletes, and that the cache's are reported
+    @Test
+    public void testStatistics() {
+        Map<?, ?> before = statistics();
+
+        createAliceBobAndCharlie();
+        client().delete().uri(LAND_PARCEL, CHARLIE_ID).exchange().expectStatus().isOk();
+        client().patch().uri(LAND_PARCEL + "?area=40", ALICE_ID).exchange().expectStatus().isOk();
+
+        Map<?, ?> after = statistics();
+        assertThat(((Number) after.get("count")).longValue() - ((Number) before.get("count")).longValue()).isEqualTo(2);
+        assertThat(((Number) after.get("area")).doubleValue() - ((Number) before.get("area")).doubleValue()).isCloseTo(67.0, within(1e-6));
+
+        client().get().uri(CACHE_STATS).exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.hitCount").exists()
+                .jsonPath("$.missCount").exists();
+    }
+
+    private Map<?, ?> statistics() {
+        return client().get().uri(STATS).exchange()
+                .expectStatus().isOk()
+                .expectBody(Map.class).returnResult().getResponseBody();
+    }
+
+    // The sequence number of the latest change, read a page at a time from the oldest held
+    private long latestChange() {
+        long latest = 0;
+        while(true) {
+            Map<?, ?> changes = client().get().uri(CHANGES + "?after={after}&limit={limit}&timeout=PT0.1S", latest, MAX_PAGE_SIZE).exchange()
+                    .expectStatus().isOk()
+                    .expectBody(Map.class).returnResult().getResponseBody();
+            latest = ((Number) changes.get("latest")).longValue();
+            if(((List<?>) changes.get("changes")).size() < MAX_PAGE_SIZE) {
+                return latest;
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.jonsaway.landclan.search;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class InvertedIndexTests {
+    private static List<Long> keys(PostingList list, Long after) {
+        List<Long> keys = new ArrayList<>();
+        for(PostingList.Cursor cursor = list.cursor(after); cursor.valid(); cursor.next()) {
+            keys.add(cursor.key());
+        }
+        return keys;
+    }
+
+    // Random lower-case words of 1-8 letters, from a small alphabet (so plenty are close to each other)
+    private static String randomWord(Random random) {
+        char[] word = new char[1 + random.nextInt(8)];
+        for(int i = 0; i < word.length; i++) {
+            word[i] = (char) ('a' + random.nextInt(5));
+        }
+        return new String(word);
+    }
+
+    // Test that a posting list holds the same keys as a sorted set, across many blocks
+    @Test
+    public void testPostingList() {
+        Random random = new Random(42);
+        PostingList list = new PostingList();
+        TreeSet<Long> expected = new TreeSet<>();
+        for(int i = 0; i < 20_000; i++) {
+            long key = random.nextInt(10_000) - 5_000;
+            if(random.nextInt(3) == 0) {
+                assertThat(list.remove(key)).isEqualTo(expected.remove(key));
+            }
+            else {
+                assertThat(list.add(key)).isEqualTo(expected.add(key));
+            }
+        }
+        assertThat(list.size()).isEqualTo(expected.size());
+        assertThat(keys(list, null)).containsExactlyElementsOf(expected);
+        assertThat(keys(list, 1234L)).containsExactlyElementsOf(expected.tailSet(1234L, false));
+        assertThat(list.contains(expected.first())).isTrue();
+
+        // Keys added in order (the usual case) fill whole blocks
+        PostingList ordered = new PostingList();
+        for(long key = 0; key < 5 * PostingList.BLOCK_SIZE; key++) {
+            ordered.add(key);
+        }
+        assertThat(keys(ordered, 100L)).hasSize(5 * PostingList.BLOCK_SIZE - 101);
+        for(long key = 0; key < 5 * PostingList.BLOCK_SIZE; key++) {
+            ordered.remove(key);
+        }
+        assertThat(ordered.isEmpty()).isTrue();
+        assertThat(keys(ordered, null)).isEmpty();
+        assertThat(keys(ordered, 3L)).isEmpty();
+    }
+
+    // Test that text is split into distinct lower-case words
+    @Test
+    public void testTokenize() {
+        assertThat(InvertedIndex.tokenize("Bob's  Office (North), bob's 2nd")).containsExactly("bob", "s", "office", "north", "2nd");
+        assertThat(InvertedIndex.tokenize("Crème Brûlée")).containsExactly("crème", "brûlée");
+        assertThat(InvertedIndex.tokenize(" - ")).isEmpty();
+        assertThat(InvertedIndex.tokenize(null)).isEmpty();
+        assertThat(InvertedIndex.tokenize("x".repeat(100)).get(0)).hasSize(InvertedIndex.MAX_TOKEN_LENGTH);
+    }
+
+    // Test that each kind of term matches the same tokens as checking each one
+    @Test
+    public void testExpand() {
+        Random random = new Random(7);
+        InvertedIndex index = new InvertedIndex();
+        TreeSet<String> words = new TreeSet<>();
+        List<String> texts = new ArrayList<>();
+        for(long key = 0; key < 2_000; key++) {
+            String first = randomWord(random), second = randomWord(random);
+            words.add(first);
+            words.add(second);
+            texts.add(first + " " + second);
+            index.add(key, first + " " + second);
+        }
+        assertThat(index.tokenCount()).isEqualTo(words.size());
+
+        for(int i = 0; i < 100; i++) {
+            String text = randomWord(random);
+            for(InvertedIndex.Term term: List.of(new InvertedIndex.Term(text, InvertedIndex.Match.TOKEN, 0),
+                    new InvertedIndex.Term(text, InvertedIndex.Match.PREFIX, 0),
+                    new InvertedIndex.Term(text, InvertedIndex.Match.FUZZY, 1),
+                    new InvertedIndex.Term(text, InvertedIndex.Match.FUZZY, 2))) {
+                List<String> expected = words.stream().filter(term::matches).toList();
+                if(term.match() == InvertedIndex.Match.FUZZY) {
+                    assertThat(index.fuzzy(text, term.maxEdits())).containsExactlyElementsOf(expected);
+                }
+                InvertedIndex.Expansion expansion = index.expand(term, Integer.MAX_VALUE);
+                assertThat(expansion.truncated()).isFalse();
+                if(term.match() == InvertedIndex.Match.PREFIX && text.length() <= InvertedIndex.SHORT_PREFIX_LENGTH) {
+                    // A list of its own
+                    assertThat(expansion.postings()).isEqualTo(texts.stream().filter(t -> InvertedIndex.matches(List.of(term), t)).count());
+                }
+                else {
+                    assertThat(expansion.lists()).hasSize(expected.size());
+                }
+            }
+        }
+
+        // Limited
+        InvertedIndex.Expansion truncated = index.expand(new InvertedIndex.Term("aaa", InvertedIndex.Match.PREFIX, 0), 3);
+        assertThat(truncated.truncated()).isTrue();
+        assertThat(truncated.lists()).hasSize(3);
+
+        // Once every text with a token is removed, so are its postings (short prefixes included)
+        for(long key = 0; key < 2_000; key++) {
+            index.remove(key, texts.get((int) key));
+        }
+        assertThat(index.tokenCount()).isZero();
+        assertThat(index.expand(new InvertedIndex.Term("a", InvertedIndex.Match.PREFIX, 0), 3).postings()).isZero();
+    }
+
+    // Test the edit distance, and that it gives up once past the limit
+    @Test
+    public void testEditDistance() {
+        assertThat(InvertedIndex.editDistance("hospital", "hsopital", 5)).isEqualTo(2);
+        assertThat(InvertedIndex.editDistance("office", "offices", 5)).isEqualTo(1);
+        assertThat(InvertedIndex.editDistance("kitten", "sitting", 5)).isEqualTo(3);
+        assertThat(InvertedIndex.editDistance("kitten", "sitting", 1)).isEqualTo(2);
+        assertThat(InvertedIndex.editDistance("", "abc", 5)).isEqualTo(3);
+        assertThat(InvertedIndex.maxEdits("ab")).isZero();
+        assertThat(InvertedIndex.maxEdits("hospital")).isEqualTo(2);
+    }
+}
@@ -0,0 +1,97 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class LandParcelChangeFeedTests {
+    private LandParcelChangeFeed feed;
+
+    @BeforeEach
+    public void init() {
+        feed = new LandParcelChangeFeed();
+        feed.capacity = 4;
+        feed.init();
+    }
+
+    // Test that each change is numbered in order, with the parcel before and after
+    @Test
+    public void testChanges() {
+        LandParcel created = new LandParcel(123, "Alice House", ParcelStatus.SAVED, 42.0, true, 0);
+        LandParcel modified = new LandParcel(123, "Alice House", ParcelStatus.APPROVED, 42.0, true, 1);
+        feed.parcelChanged(null, created);
+        feed.parcelChanged(created, modified);
+        feed.parcelChanged(modified, null);
+
+        LandParcelChangeFeed.Changes changes = feed.read(0, 10);
+        assertThat(changes.latest()).isEqualTo(3);
+        assertThat(changes.changes()).extracting(LandParcelChangeFeed.Change::sequence).containsExactly(1L, 2L, 3L);
+        assertThat(changes.changes()).extracting(LandParcelChangeFeed.Change::type).containsExactly(
+                LandParcelChangeFeed.Type.CREATE, LandParcelChangeFeed.Type.UPDATE, LandParcelChangeFeed.Type.DELETE);
+        assertThat(changes.changes()).extracting(LandParcelChangeFeed.Change::version).containsExactly(0L, 1L, 1L);
+
+        LandParcelChangeFeed.Change update = changes.changes().get(1);
+        assertThat(update.before().getStatus()).isEqualTo(ParcelStatus.SAVED);
+        assertThat(update.after().getStatus()).isEqualTo(ParcelStatus.APPROVED);
+        assertThat(changes.changes().get(0).before()).isNull();
+        assertThat(changes.changes().get(2).after()).isNull();
+
+        // Held as they were, even if the parcel is changed afterwards
+        modified.setName("Changed");
+        assertThat(feed.read(1, 1).changes().get(0).after().getName()).isEqualTo("Alice House");
+
+        // Read on from where we left off, a page at a time
+        assertThat(feed.read(1, 1).changes()).extracting(LandParcelChangeFeed.Change::sequence).containsExactly(2L);
+        assertThat(feed.read(1, 1).latest()).isEqualTo(2);
+        assertThat(feed.read(3, 10).changes()).isEmpty();
+        assertThat(feed.read(3, 10).latest()).isEqualTo(3);
+
+        // Recovered parcels aren't changes
+        feed.parcelRecovered(created);
+        assertThat(feed.latest()).isEqualTo(3);
+    }
+
+    // Test that only the latest changes are held, and that asking for any others is refused
+    @Test
+    public void testExpired() {
+        for(long objectId = 1; objectId <= 6; objectId++) {
+            feed.parcelChanged(null, new LandParcel(objectId, "Parcel", ParcelStatus.SAVED, 1.0, false, 0));
+        }
+
+        // 3..6 are held
+        assertThat(feed.read(2, 10).changes()).extracting(LandParcelChangeFeed.Change::sequence).containsExactly(3L, 4L, 5L, 6L);
+        assertThat(feed.read(0, 10).changes()).extracting(LandParcelChangeFeed.Change::objectId).containsExactly(3L, 4L, 5L, 6L);
+        assertThatThrownBy(() -> feed.read(1, 10)).isInstanceOf(LandParcelChangeFeed.ExpiredException.class);
+
+        // From the future (or, more likely, before a restart)
+        assertThatThrownBy(() -> feed.read(7, 10)).isInstanceOf(LandParcelChangeFeed.ExpiredException.class);
+    }
+
+    // Test that a waiter is called once, at the next change, unless there are changes already or it's cancelled
+    @Test
+    public void testAwait() {
+        AtomicInteger called = new AtomicInteger();
+        Runnable waiter = called::incrementAndGet;
+        assertThat(feed.await(0, waiter)).isTrue();
+        assertThat(called).hasValue(0);
+
+        LandParcel landParcel = new LandParcel(123, "Alice House", ParcelStatus.SAVED, 42.0, true, 0);
+        feed.parcelChanged(null, landParcel);
+        feed.parcelChanged(landParcel, null);
+        assertThat(called).hasValue(1);
+
+        // Already available
+        assertThat(feed.await(0, waiter)).isFalse();
+
+        assertThat(feed.await(2, waiter)).isTrue();
+        feed.cancel(waiter);
+        feed.parcelChanged(null, landParcel);
+        assertThat(called).hasValue(1);
+    }
+}
@@ -0,0 +1,127 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.search.InvertedIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.*;
+
+public class LandParcelNameIndexTests {
+    private static final String[] WORDS = { "Alice", "Bob", "Charlie", "House", "Office", "School", "Field", "Hospital",
+            "North", "South", "Farm", "Barn", "Mill", "Cottage" };
+
+    private LandParcelNameIndex index;
+
+    @BeforeEach
+    public void init() {
+        index = new LandParcelNameIndex();
+        index.parcelChanged(null, new LandParcel(123, "Alice House", ParcelStatus.SAVED, 42, true));
+        index.parcelChanged(null, new LandParcel(246, "Bob Office", ParcelStatus.APPROVED, 27, false));
+        index.parcelChanged(null, new LandParcel(369, "Charlie School", ParcelStatus.SHORT_LISTED, 103, true));
+        index.parcelChanged(null, new LandParcel(51020, "Eve Hospital", ParcelStatus.SAVED, 198, true));
+        index.parcelChanged(null, new LandParcel(51021, "Hospital Car Park", ParcelStatus.SAVED, 3, false));
+    }
+
+    private List<Long> search(String query, LandParcelNameIndex.Mode mode) {
+        return objectIds(index.search(query, mode, null, 100));
+    }
+
+    private static List<Long> objectIds(List<LandParcel> landParcels) {
+        return landParcels.stream().map(LandParcel::getObjectId).toList();
+    }
+
+    // Test each mode of search
+    @Test
+    public void testSearch() {
+        assertThat(search("Hospital", LandParcelNameIndex.Mode.PREFIX)).containsExactly(51020L, 51021L);
+        assertThat(search("bob off", LandParcelNameIndex.Mode.PREFIX)).containsExactly(246L);
+        assertThat(search("off bob", LandParcelNameIndex.Mode.PREFIX)).isEmpty();
+        assertThat(search("HOSP", LandParcelNameIndex.Mode.PREFIX)).containsExactly(51020L, 51021L);
+
+        assertThat(search("hosp", LandParcelNameIndex.Mode.TOKEN)).isEmpty();
+        assertThat(search("park, car", LandParcelNameIndex.Mode.TOKEN)).containsExactly(51021L);
+
+        assertThat(search("Hsopital", LandParcelNameIndex.Mode.FUZZY)).containsExactly(51020L, 51021L);
+        assertThat(search("Charly Scool", LandParcelNameIndex.Mode.FUZZY)).containsExactly(369L);
+        assertThat(search("Bib", LandParcelNameIndex.Mode.FUZZY)).containsExactly(246L);
+        // (too short to allow an edit)
+        assertThat(search("Ev", LandParcelNameIndex.Mode.FUZZY)).isEmpty();
+
+        // A page at a time
+        assertThat(objectIds(index.search("hospital", LandParcelNameIndex.Mode.PREFIX, null, 1))).containsExactly(51020L);
+        assertThat(objectIds(index.search("hospital", LandParcelNameIndex.Mode.PREFIX, 51020L, 1))).containsExactly(51021L);
+
+        assertThatThrownBy(() -> index.search(" - ", LandParcelNameIndex.Mode.PREFIX, null, 10)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> index.search("a b c d e f g h i", LandParcelNameIndex.Mode.PREFIX, null, 10)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    // Test that renames and deletes are followed, and that a change reported late doesn't undo a later one
+    @Test
+    public void testChanges() {
+        LandParcel bob = new LandParcel(246, "Bob Office", ParcelStatus.APPROVED, 27, false, 0);
+        LandParcel renamed = new LandParcel(246, "Bob Hospital", ParcelStatus.APPROVED, 27, false, 1);
+        LandParcel approved = new LandParcel(246, "Bob Hospital", ParcelStatus.SAVED, 27, false, 2);
+        index.parcelChanged(bob, renamed);
+        index.parcelChanged(renamed, approved);
+        assertThat(search("office", LandParcelNameIndex.Mode.PREFIX)).isEmpty();
+        assertThat(search("hospital", LandParcelNameIndex.Mode.PREFIX)).containsExactly(246L, 51020L, 51021L);
+        assertThat(index.search("bob", LandParcelNameIndex.Mode.PREFIX, null, 1).get(0).getStatus()).isEqualTo(ParcelStatus.SAVED);
+
+        // Out of order
+        index.parcelChanged(bob, renamed);
+        assertThat(index.search("bob", LandParcelNameIndex.Mode.PREFIX, null, 1).get(0).getVersion()).isEqualTo(2);
+
+        index.parcelChanged(approved, null);
+        assertThat(search("bob", LandParcelNameIndex.Mode.PREFIX)).isEmpty();
+        assertThat(index.size()).isEqualTo(4);
+
+        // Parcels without a name can't be found by one
+        index.parcelChanged(null, new LandParcel(7, null, ParcelStatus.SAVED, 1, false));
+        assertThat(index.size()).isEqualTo(5);
+        assertThat(search("null", LandParcelNameIndex.Mode.PREFIX)).isEmpty();
+    }
+
+    // Test that searches find the same parcels as checking every name, whichever way they're answered
+    // (by merging the postings of a selective term, or reading the parcels in order for a broad one)
+    @Test
+    public void testManyParcels() {
+        Random random = new Random(42);
+        index = new LandParcelNameIndex();
+        List<LandParcel> landParcels = new ArrayList<>();
+        for(long objectId = 1; objectId <= 20_000; objectId++) {
+            String name = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + objectId;
+            LandParcel landParcel = new LandParcel(objectId, name, ParcelStatus.SAVED, 1, false);
+            landParcels.add(landParcel);
+            index.parcelChanged(null, landParcel);
+        }
+
+        // "1" expands to thousands of numbers; "barn 1" and "mill 77" are answered from barn's and mill's postings;
+        // "hosp" is a prefix of a word in around 1 in 7 names
+        for(String query: List.of("1", "barn 1", "mill 77", "hosp", "farm mill", "cotage 12", "zzz", "school zzz")) {
+            for(LandParcelNameIndex.Mode mode: LandParcelNameIndex.Mode.values()) {
+                List<String> words = InvertedIndex.tokenize(query);
+                List<InvertedIndex.Term> terms = new ArrayList<>();
+                for(int i = 0; i < words.size(); i++) {
+                    String word = words.get(i);
+                    terms.add(switch(mode) {
+                        case PREFIX -> new InvertedIndex.Term(word, i == words.size() - 1 ? InvertedIndex.Match.PREFIX : InvertedIndex.Match.TOKEN, 0);
+                        case TOKEN -> new InvertedIndex.Term(word, InvertedIndex.Match.TOKEN, 0);
+                        case FUZZY -> new InvertedIndex.Term(word, InvertedIndex.Match.FUZZY, InvertedIndex.maxEdits(word));
+                    });
+                }
+                List<Long> expected = landParcels.stream()
+                        .filter(landParcel -> landParcel.getObjectId() > 5_000 && InvertedIndex.matches(terms, landParcel.getName()))
+                        .map(LandParcel::getObjectId)
+                        .limit(50)
+                        .toList();
+                assertThat(objectIds(index.search(query, mode, 5_000L, 50))).as(query + " " + mode).containsExactlyElementsOf(expected);
+            }
+        }
+    }
+}
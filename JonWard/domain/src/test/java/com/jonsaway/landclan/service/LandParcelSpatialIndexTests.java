@@ -0,0 +1,65 @@
+package com.jonsaway.landclan.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class LandParcelSpatialIndexTests {
+    private LandParcelSpatialIndex index;
+
+    @BeforeEach
+    public void init() {
+        index = new LandParcelSpatialIndex();
+        index.parcelChanged(null, parcel(123, "Alice House", ParcelGeometry.rectangle(0, 0, 10, 10), 0));
+        index.parcelChanged(null, parcel(246, "Bob Office", ParcelGeometry.rectangle(20, 0, 30, 10), 0));
+    }
+
+    private static LandParcel parcel(long objectId, String name, ParcelGeometry geometry, long version) {
+        LandParcel landParcel = new LandParcel(objectId, name, ParcelStatus.SAVED, 1, false, version);
+        landParcel.setGeometry(geometry);
+        return landParcel;
+    }
+
+    private List<Long> within(double minX, double minY, double maxX, double maxY) {
+        return index.within(minX, minY, maxX, maxY, null, 100).stream().map(LandParcel::getObjectId).toList();
+    }
+
+    // Test that moves, deletes and re-creates are followed, and that a change reported late doesn't undo a later one
+    @Test
+    public void testChanges() {
+        LandParcel bob = parcel(246, "Bob Office", ParcelGeometry.rectangle(20, 0, 30, 10), 0);
+        LandParcel moved = parcel(246, "Bob Office", ParcelGeometry.rectangle(40, 0, 50, 10), 1);
+        LandParcel renamed = parcel(246, "Bob Hospital", ParcelGeometry.rectangle(40, 0, 50, 10), 2);
+        index.parcelChanged(bob, moved);
+        index.parcelChanged(moved, renamed);
+        assertThat(within(15, 0, 35, 10)).isEmpty();
+        assertThat(index.containing(45, 5)).extracting(LandParcel::getName).containsExactly("Bob Hospital");
+
+        // Out of order
+        index.parcelChanged(bob, moved);
+        assertThat(index.containing(45, 5)).extracting(LandParcel::getVersion).containsExactly(2L);
+
+        index.parcelChanged(renamed, null);
+        assertThat(index.containing(45, 5)).isEmpty();
+        assertThat(index.size()).isEqualTo(1);
+
+        // Created again, somewhere else
+        index.parcelChanged(null, parcel(246, "Bob Barn", ParcelGeometry.rectangle(60, 0, 70, 10), 3));
+        assertThat(within(-100, -100, 100, 100)).containsExactly(123L, 246L);
+        assertThat(index.containing(65, 5)).extracting(LandParcel::getName).containsExactly("Bob Barn");
+
+        // Geometry removed, then deleted
+        LandParcel alice = parcel(123, "Alice House", ParcelGeometry.rectangle(0, 0, 10, 10), 0);
+        LandParcel removed = parcel(123, "Alice House", null, 1);
+        index.parcelChanged(alice, removed);
+        assertThat(index.containing(5, 5)).isEmpty();
+        index.parcelChanged(removed, null);
+        assertThat(index.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,136 @@
+package com.jonsaway.landclan.spatial;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Checks the tree against a brute force search of the same boxes
+public class RTreeTests {
+    private static final int ENTRIES = 5_000;
+
+    private static RTree.Entry<Long> randomEntry(Random random, long key) {
+        double x = random.nextDouble() * 1000;
+        double y = random.nextDouble() * 1000;
+        return new RTree.Entry<>(key, x, y, x + random.nextDouble() * 20, y + random.nextDouble() * 20, key);
+    }
+
+    private static List<Long> search(RTree<Long> tree, double minX, double minY, double maxX, double maxY) {
+        List<Long> found = new ArrayList<>();
+        tree.search(minX, minY, maxX, maxY, found::add);
+        return found;
+    }
+
+    private static List<Long> bruteForce(Map<Long, RTree.Entry<Long>> entries, double minX, double minY, double maxX, double maxY) {
+        List<Long> found = new ArrayList<>();
+        for(RTree.Entry<Long> entry: entries.values()) {
+            if(entry.minX() <= maxX && entry.maxX() >= minX && entry.minY() <= maxY && entry.maxY() >= minY) {
+                found.add(entry.key());
+            }
+        }
+        return found;
+    }
+
+    // Distance from the point to the nearest edge of the box (0 inside it)
+    private static double distance(RTree.Entry<Long> entry, double x, double y) {
+        double dx = Math.max(0, Math.max(entry.minX() - x, x - entry.maxX()));
+        double dy = Math.max(0, Math.max(entry.minY() - y, y - entry.maxY()));
+        return Math.hypot(dx, dy);
+    }
+
+    private static void check(RTree<Long> tree, Map<Long, RTree.Entry<Long>> entries, Random random) {
+        assertThat(tree.size()).isEqualTo(entries.size());
+        for(int i = 0; i < 50; i++) {
+            double x = random.nextDouble() * 1000;
+            double y = random.nextDouble() * 1000;
+            double size = random.nextDouble() * 100;
+            assertThat(search(tree, x, y, x + size, y + size)).containsExactlyInAnyOrderElementsOf(bruteForce(entries, x, y, x + size, y + size));
+
+            List<RTree.Neighbour<Long>> nearest = tree.nearest(x, y, 5, key -> distance(entries.get(key), x, y));
+            List<Double> expected = entries.values().stream()
+                    .map(entry -> distance(entry, x, y))
+                    .sorted()
+                    .limit(5)
+                    .toList();
+            assertThat(nearest).extracting(RTree.Neighbour::distance).containsExactlyElementsOf(expected);
+            assertThat(nearest).isSortedAccordingTo(Comparator.comparingDouble(RTree.Neighbour::distance));
+        }
+    }
+
+    // Test that inserted entries are found, and removed ones aren't
+    @Test
+    public void testInsertAndRemove() {
+        Random random = new Random(42);
+        RTree<Long> tree = new RTree<>();
+        Map<Long, RTree.Entry<Long>> entries = new HashMap<>();
+        for(long key = 0; key < ENTRIES; key++) {
+            RTree.Entry<Long> entry = randomEntry(random, key);
+            tree.insert(key, entry.minX(), entry.minY(), entry.maxX(), entry.maxY(), key);
+            entries.put(key, entry);
+        }
+        assertThat(tree.height()).isGreaterThan(2);
+        check(tree, entries, random);
+
+        // Remove most of them: by their box, or (for some) wherever they are
+        for(long key = 0; key < ENTRIES; key++) {
+            if(key % 5 == 0) {
+                continue;
+            }
+            RTree.Entry<Long> entry = entries.remove(key);
+            Long removed = key % 2 == 0
+                    ? tree.remove(key, entry.minX(), entry.minY(), entry.maxX(), entry.maxY())
+                    : tree.remove(key);
+            assertThat(removed).isEqualTo(key);
+        }
+        check(tree, entries, random);
+
+        // Not there (any more), or not where it's said to be
+        assertThat(tree.remove(1)).isNull();
+        RTree.Entry<Long> kept = entries.get(5L);
+        assertThat(tree.remove(5, kept.maxX() + 1, kept.maxY() + 1, kept.maxX() + 2, kept.maxY() + 2)).isNull();
+        assertThat(tree.size()).isEqualTo(entries.size());
+
+        // Empty it
+        for(long key: new ArrayList<>(entries.keySet())) {
+            assertThat(tree.remove(key)).isEqualTo(key);
+        }
+        assertThat(tree.size()).isZero();
+        assertThat(search(tree, 0, 0, 2000, 2000)).isEmpty();
+        assertThat(tree.nearest(0, 0, 5, key -> 0)).isEmpty();
+    }
+
+    // Test that a bulk loaded tree answers the same as one built an entry at a time, and can still be changed
+    @Test
+    public void testLoad() {
+        Random random = new Random(7);
+        List<RTree.Entry<Long>> list = new ArrayList<>();
+        Map<Long, RTree.Entry<Long>> entries = new HashMap<>();
+        for(long key = 0; key < ENTRIES; key++) {
+            RTree.Entry<Long> entry = randomEntry(random, key);
+            list.add(entry);
+            entries.put(key, entry);
+        }
+
+        RTree<Long> tree = RTree.load(list);
+        check(tree, entries, random);
+
+        for(long key = ENTRIES; key < ENTRIES + 500; key++) {
+            RTree.Entry<Long> entry = randomEntry(random, key);
+            tree.insert(key, entry.minX(), entry.minY(), entry.maxX(), entry.maxY(), key);
+            entries.put(key, entry);
+        }
+        for(long key = 0; key < ENTRIES; key += 3) {
+            assertThat(tree.remove(key)).isEqualTo(key);
+            entries.remove(key);
+        }
+        check(tree, entries, random);
+
+        assertThat(RTree.<Long>load(List.of()).size()).isZero();
+    }
+}
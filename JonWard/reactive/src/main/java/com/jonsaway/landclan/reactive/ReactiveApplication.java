@@ -0,0 +1,25 @@
+package com.jonsaway.landclan.reactive;
+
+import com.jonsaway.landclan.rest.LandParcelJsonSerializer;
+import com.jonsaway.landclan.service.LandParcelCache;
+import com.jonsaway.landclan.service.LandParcelChangeFeed;
+import com.jonsaway.landclan.service.LandParcelNameIndex;
+import com.jonsaway.landclan.service.LandParcelSpatialIndex;
+import com.jonsaway.landclan.service.LandParcelStatistics;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.Import;
+
+// Non-blocking variant of the land parcel service: the same routes (LandParcelRoutes) and status codes as the app, on
+// WebFlux and R2DBC
+// Requests don't hold a thread while they wait (for the database, for a change, or for a slow client), so many
+// concurrent connections are served by a handful of event loop threads
+// The cache, statistics, change feed, name and spatial indexes and JSON format are the domain module's, as the app's are
+@SpringBootApplication
+@Import({ LandParcelCache.class, LandParcelStatistics.class, LandParcelChangeFeed.class, LandParcelNameIndex.class,
+        LandParcelSpatialIndex.class, LandParcelJsonSerializer.class })
+public class ReactiveApplication {
+    public static void main(String[] args) {
+        SpringApplication.run(ReactiveApplication.class, args);
+    }
+}
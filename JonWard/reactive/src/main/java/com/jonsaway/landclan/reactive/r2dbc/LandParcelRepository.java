@@ -0,0 +1,286 @@
+package com.jonsaway.landclan.reactive.r2dbc;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelFilter;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.LandParcelStatistics;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Readable;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.sql.init.dependency.DependsOnDatabaseInitialization;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.StringJoiner;
+
+// Non-blocking access to the land_parcel table (see schema.sql: the table Hibernate generates for the app)
+// Uses the same statements as the app's repository (LandParcelRepositoryImpl), so each single-parcel write is a single
+// statement: H2's OLD TABLE returns the row as it was before an UPDATE or DELETE, without reading it first
+// NB: OLD TABLE is H2's alone, so startup fails on any other database (see init), rather than at the first write
+// status is stored as its ordinal, the geometry as ParcelGeometry.toBytes()
+@Repository
+@DependsOnDatabaseInitialization
+public class LandParcelRepository {
+    private static final String COLUMNS = "object_id, name, status, area, constraints, version, geometry";
+    private static final ParcelStatus[] STATUSES = ParcelStatus.values();
+
+    @Autowired
+    DatabaseClient client;
+
+    @Autowired
+    ConnectionFactory connectionFactory;
+
+    // Fail unless the database is H2 (the only one the statements here run on)
+    @PostConstruct
+    public void init() {
+        String product = connectionFactory.getMetadata().getName();
+        if(!"H2".equals(product)) {
+            throw new IllegalStateException("Land parcels are stored with H2's SQL (OLD TABLE), which " + product + " doesn't support");
+        }
+    }
+
+    // All land parcels (only those with a geometry, if 'withGeometry'), ordered by object id
+    // Rows are emitted as they are read, and only as fast as they're taken (backpressure), so the table is never
+    // held in memory
+    public Flux<LandParcel> findAll(boolean withGeometry) {
+        return client.sql("select " + COLUMNS + " from land_parcel" + (withGeometry ? " where geometry is not null" : "") + " order by object_id")
+                .map(LandParcelRepository::toLandParcel)
+                .all();
+    }
+
+    // Keyset pagination, ordered by object id
+    // Returns up to 'limit' parcels with an objectId greater than 'after' (or from the start, if null)
+    public Flux<LandParcel> findPage(Long after, int limit) {
+        return filter(new LandParcelFilter(null, null, null, null, null), after, limit);
+    }
+
+    // A page of the land parcels matching the filter, ordered by object id
+    // Only the supplied criteria are added to the query, so the database can choose the best index for them
+    public Flux<LandParcel> filter(LandParcelFilter filter, Long after, int limit) {
+        StringBuilder sql = new StringBuilder("select " + COLUMNS + " from land_parcel where 1 = 1");
+        Map<String, Object> values = new LinkedHashMap<>();
+        if(filter.name() != null) {
+            sql.append(" and name = :name");
+            values.put("name", filter.name());
+        }
+        if(filter.status() != null) {
+            sql.append(" and status = :status");
+            values.put("status", filter.status().ordinal());
+        }
+        if(filter.constraints() != null) {
+            sql.append(" and constraints = :constraints");
+            values.put("constraints", filter.constraints());
+        }
+        if(filter.minArea() != null) {
+            sql.append(" and area >= :minArea");
+            values.put("minArea", filter.minArea());
+        }
+        if(filter.maxArea() != null) {
+            sql.append(" and area <= :maxArea");
+            values.put("maxArea", filter.maxArea());
+        }
+        if(after != null) {
+            sql.append(" and object_id > :after");
+            values.put("after", after);
+        }
+        sql.append(" order by object_id limit :limit");
+        values.put("limit", limit);
+
+        return client.sql(sql.toString())
+                .bindValues(values)
+                .map(LandParcelRepository::toLandParcel)
+                .all();
+    }
+
+    // The land parcel with this object id (empty if there isn't one)
+    public Mono<LandParcel> findByObjectId(long objectId) {
+        return client.sql("select " + COLUMNS + " from land_parcel where object_id = :objectId")
+                .bind("objectId", objectId)
+                .map(LandParcelRepository::toLandParcel)
+                .one();
+    }
+
+    // The land parcels with these object ids (those that exist), in no particular order
+    public Flux<LandParcel> findAllById(Collection<Long> objectIds) {
+        if(objectIds.isEmpty()) {
+            return Flux.empty();
+        }
+        return client.sql("select " + COLUMNS + " from land_parcel where object_id in (:objectIds)")
+                .bind("objectIds", objectIds)
+                .map(LandParcelRepository::toLandParcel)
+                .all();
+    }
+
+    public Mono<Boolean> existsByObjectId(long objectId) {
+        return client.sql("select 1 from land_parcel where object_id = :objectId")
+                .bind("objectId", objectId)
+                .map(row -> true)
+                .first()
+                .defaultIfEmpty(false);
+    }
+
+    // Insert a new land parcel (with its geometry, if it has one)
+    // Fails with DataIntegrityViolationException if a parcel already exists with this object id
+    public Mono<Void> insert(LandParcel landParcel) {
+        return bindGeometry(client.sql("insert into land_parcel (" + COLUMNS + ") values (:objectId, :name, :status, :area, :constraints, :version, :geometry)")
+                        .bind("objectId", landParcel.getObjectId())
+                        .bind("name", landParcel.getName())
+                        .bind("status", landParcel.getStatus().ordinal())
+                        .bind("area", landParcel.getArea())
+                        .bind("constraints", landParcel.getConstraints())
+                        .bind("version", landParcel.getVersion()), landParcel.getGeometry())
+                .then();
+    }
+
+    // Update only the non-null attributes of an existing land parcel, and increment its version, in a single statement
+    // If 'version' is not null, the parcel is only updated if it is still at that version
+    // Returns the parcel as it was before the update (empty if none exists with this object id, or it's at a
+    // different version)
+    // If there are no values to write, the parcel is left as it is (at the same version)
+    public Mono<LandParcel> patch(long objectId, String name, ParcelStatus status, Double area, Boolean constraints, Long version) {
+        StringJoiner set = new StringJoiner(", ");
+        Map<String, Object> values = new LinkedHashMap<>();
+        if(name != null) {
+            set.add("name = :name");
+            values.put("name", name);
+        }
+        if(status != null) {
+            set.add("status = :status");
+            values.put("status", status.ordinal());
+        }
+        if(area != null) {
+            // (a parcel with a geometry keeps the geometry's area)
+            set.add("area = case when geometry is null then :area else area end");
+            values.put("area", area);
+        }
+        if(constraints != null) {
+            set.add("constraints = :constraints");
+            values.put("constraints", constraints);
+        }
+
+        // Nothing to change: just read the current state
+        String sql = set.length() == 0
+                ? "select " + COLUMNS + " from land_parcel where " + where(version)
+                : "select " + COLUMNS + " from old table (update land_parcel set " + set + ", version = version + 1 where " + where(version) + ")";
+
+        return bindKey(client.sql(sql).bindValues(values), objectId, version)
+                .map(LandParcelRepository::toLandParcel)
+                .one();
+    }
+
+    // Replace (or, if null, remove) the geometry of an existing land parcel, and increment its version, in a single statement
+    // The area is set to the new geometry's area (removing the geometry leaves the area as it was)
+    // If 'version' is not null, the parcel is only updated if it is still at that version
+    // Returns the parcel as it was before the update (empty if none exists with this object id, or it's at a
+    // different version)
+    public Mono<LandParcel> updateGeometry(long objectId, ParcelGeometry geometry, Long version) {
+        String set = geometry == null ? "geometry = null" : "geometry = :geometry, area = :area";
+        DatabaseClient.GenericExecuteSpec spec = bindKey(client.sql("select " + COLUMNS + " from old table (update land_parcel set " + set + ", version = version + 1 where " + where(version) + ")"),
+                objectId, version);
+        if(geometry != null) {
+            spec = spec.bind("geometry", geometry.toBytes())
+                    .bind("area", geometry.area());
+        }
+        return spec.map(LandParcelRepository::toLandParcel).one();
+    }
+
+    // Delete a land parcel, in a single statement
+    // If 'version' is not null, only deletes the parcel if it is still at that version
+    // Returns the parcel as it was before the delete (empty if none exists with this object id, or it's at a
+    // different version)
+    public Mono<LandParcel> deleteByObjectId(long objectId, Long version) {
+        return bindKey(client.sql("select " + COLUMNS + " from old table (delete from land_parcel where " + where(version) + ")"), objectId, version)
+                .map(LandParcelRepository::toLandParcel)
+                .one();
+    }
+
+    // Write every attribute of an existing land parcel (including its geometry, and its new version), only if the stored
+    // parcel is still at 'version'
+    // Fails with OptimisticLockingFailureException if it no longer exists, or is at a different version
+    public Mono<Void> write(LandParcel landParcel, long version) {
+        return bindGeometry(client.sql("update land_parcel set name = :name, status = :status, area = :area, constraints = :constraints, "
+                        + "geometry = :geometry, version = :newVersion where object_id = :objectId and version = :version")
+                        .bind("name", landParcel.getName())
+                        .bind("status", landParcel.getStatus().ordinal())
+                        .bind("area", landParcel.getArea())
+                        .bind("constraints", landParcel.getConstraints())
+                        .bind("newVersion", landParcel.getVersion())
+                        .bind("objectId", landParcel.getObjectId())
+                        .bind("version", version), landParcel.getGeometry())
+                .fetch()
+                .rowsUpdated()
+                .flatMap(rows -> requireWritten(rows, landParcel.getObjectId(), version));
+    }
+
+    // Delete a land parcel, only if it is still at 'version'
+    // Fails with OptimisticLockingFailureException if it no longer exists, or is at a different version
+    public Mono<Void> delete(long objectId, long version) {
+        return client.sql("delete from land_parcel where object_id = :objectId and version = :version")
+                .bind("objectId", objectId)
+                .bind("version", version)
+                .fetch()
+                .rowsUpdated()
+                .flatMap(rows -> requireWritten(rows, objectId, version));
+    }
+
+    // Count and total area of the land parcels with each status and constraints value
+    public Flux<LandParcelStatistics.Entry> summarise() {
+        return client.sql("select status, constraints, count(*) as count, sum(area) as area from land_parcel group by status, constraints")
+                .map(row -> new LandParcelStatistics.Entry(STATUSES[number(row, "status").intValue()],
+                        Boolean.TRUE.equals(row.get("constraints", Boolean.class)),
+                        number(row, "count").longValue(),
+                        number(row, "area").doubleValue()))
+                .all();
+    }
+
+    // Match a parcel by object id and, if not null, version
+    private static String where(Long version) {
+        return version == null ? "object_id = :objectId" : "object_id = :objectId and version = :version";
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindKey(DatabaseClient.GenericExecuteSpec spec, long objectId, Long version) {
+        spec = spec.bind("objectId", objectId);
+        return version != null ? spec.bind("version", version) : spec;
+    }
+
+    private static DatabaseClient.GenericExecuteSpec bindGeometry(DatabaseClient.GenericExecuteSpec spec, ParcelGeometry geometry) {
+        return geometry != null ? spec.bind("geometry", geometry.toBytes()) : spec.bindNull("geometry", byte[].class);
+    }
+
+    private static Mono<Void> requireWritten(long rows, long objectId, long version) {
+        if(rows == 0) {
+            return Mono.error(new OptimisticLockingFailureException(
+                    String.format("Land Parcel with objectId=%d is no longer at version %d", objectId, version)));
+        }
+        return Mono.empty();
+    }
+
+    // H2 returns each numeric column as its own type (Byte, Long, Double...)
+    private static Number number(Readable row, String column) {
+        return (Number) row.get(column);
+    }
+
+    // Build a land parcel from a row of COLUMNS
+    private static LandParcel toLandParcel(Readable row) {
+        Number status = number(row, "status");
+        LandParcel landParcel = new LandParcel(number(row, "object_id").longValue(),
+                row.get("name", String.class),
+                status == null ? null : STATUSES[status.intValue()],
+                number(row, "area").doubleValue(),
+                Boolean.TRUE.equals(row.get("constraints", Boolean.class)),
+                number(row, "version").longValue());
+        byte[] geometry = row.get("geometry", byte[].class);
+        if(geometry != null) {
+            landParcel.setGeometry(ParcelGeometry.fromBytes(geometry));
+        }
+        return landParcel;
+    }
+}
@@ -0,0 +1,116 @@
+package com.jonsaway.landclan.reactive.rest;
+
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscription;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.BaseSubscriber;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+// A request body as an InputStream, for a reader that blocks (so it must never be read on an event loop thread)
+// Only asks for the next buffer once the last has been read, so it holds one buffer at a time however large the body
+// Closing it before the end cancels the rest of the body
+class BodyInputStream extends InputStream {
+    // Marks the end of the body, in the queue
+    private static final Object END = new Object();
+
+    // Buffers received but not yet read, then END or the error the body failed with
+    private final BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+    private final BaseSubscriber<DataBuffer> subscriber = new BaseSubscriber<>() {
+        @Override
+        protected void hookOnSubscribe(Subscription subscription) {
+            request(1);
+        }
+
+        @Override
+        protected void hookOnNext(DataBuffer buffer) {
+            received.add(buffer);
+        }
+
+        @Override
+        protected void hookOnComplete() {
+            received.add(END);
+        }
+
+        @Override
+        protected void hookOnError(Throwable error) {
+            received.add(error);
+        }
+    };
+
+    // The buffer being read, and whether the end has been reached
+    private DataBuffer current;
+    private boolean finished;
+
+    BodyInputStream(Publisher<DataBuffer> body) {
+        body.subscribe(subscriber);
+    }
+
+    @Override
+    public int read() throws IOException {
+        byte[] b = new byte[1];
+        return read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if(len == 0) {
+            return 0;
+        }
+        while(current == null || current.readableByteCount() == 0) {
+            if(current != null) {
+                DataBufferUtils.release(current);
+                current = null;
+            }
+            if(finished) {
+                return -1;
+            }
+
+            Object next;
+            try {
+                next = received.take();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted waiting for the request body");
+            }
+            if(next == END) {
+                finished = true;
+            }
+            else if(next instanceof Throwable error) {
+                finished = true;
+                throw new IOException("Failed to read the request body", error);
+            }
+            else {
+                current = (DataBuffer) next;
+                subscriber.request(1);
+            }
+        }
+
+        int n = Math.min(len, current.readableByteCount());
+        current.read(b, off, n);
+        return n;
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        subscriber.dispose();
+        if(current != null) {
+            DataBufferUtils.release(current);
+            current = null;
+        }
+        // (the subscriber can't add anything more, once cancelled)
+        for(Object next: received) {
+            if(next instanceof DataBuffer buffer) {
+                DataBufferUtils.release(buffer);
+            }
+        }
+        received.clear();
+    }
+}
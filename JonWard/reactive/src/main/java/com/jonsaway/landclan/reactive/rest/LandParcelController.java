@@ -0,0 +1,572 @@
+package com.jonsaway.landclan.reactive.rest;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.jonsaway.landclan.export.ParcelColumnWriter;
+import com.jonsaway.landclan.export.ParcelRecordWriter;
+import com.jonsaway.landclan.export.ParcelWriter;
+import com.jonsaway.landclan.importer.ImportReport;
+import com.jonsaway.landclan.importer.ParcelReader;
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelFilter;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.reactive.service.LandParcelImporter;
+import com.jonsaway.landclan.reactive.service.LandParcelService;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.BatchOperation;
+import com.jonsaway.landclan.service.BatchResult;
+import com.jonsaway.landclan.service.LandParcelCache;
+import com.jonsaway.landclan.service.LandParcelChangeFeed;
+import com.jonsaway.landclan.service.LandParcelNameIndex;
+import com.jonsaway.landclan.service.LandParcelSpatialIndex;
+import com.jonsaway.landclan.service.LandParcelStatistics;
+import com.jonsaway.landclan.service.ParcelOutcome;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.server.ServerWebExchange;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.jonsaway.landclan.rest.LandParcelRoutes.*;
+
+// The land parcel API, served by WebFlux: the same routes (LandParcelRoutes), parameters and status codes as the app's
+// LandParcelController (LandParcelApiContract, in the domain module's tests, holds both to them)
+// Nothing here blocks: each request is a pipeline that runs (on an event loop thread) as its data arrives
+@RestController
+public class LandParcelController {
+    // Most changes read from the feed at a time, for a stream
+    private static final int READ_SIZE = 500;
+
+    // Bytes of an export gathered before they're written to the response
+    private static final int EXPORT_CHUNK_SIZE = 1 << 16;
+
+    @Autowired
+    LandParcelService service;
+
+    @Autowired
+    LandParcelCache cache;
+
+    @Autowired
+    LandParcelStatistics statistics;
+
+    @Autowired
+    LandParcelSpatialIndex spatialIndex;
+
+    @Autowired
+    LandParcelNameIndex nameIndex;
+
+    @Autowired
+    LandParcelImporter importer;
+
+    @Autowired
+    LandParcelChangeFeed changeFeed;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    // A stream of changes is closed after this long (clients reconnect)
+    @Value("${landclan.changes.stream-timeout:PT30M}")
+    Duration streamTimeout = Duration.ofMinutes(30);
+
+    // retrieve all land parcels
+    // curl "http://localhost:8081/landParcel"
+    // The JSON array is written as parcels are read from the database
+    @GetMapping(LAND_PARCELS)
+    public Flux<LandParcel> retrieve() {
+        return service.retrieveAll();
+    }
+
+    // Retrieve a page of land parcels, ordered by object id
+    // curl "http://localhost:8081/landParcel?limit=100&after=4812"
+    // A 'Link' header (rel="next") is returned if there may be further pages
+    // Returns 400 (bad request) if limit is not between 1 and MAX_PAGE_SIZE
+    @GetMapping(value = LAND_PARCELS, params = "limit")
+    public Mono<ResponseEntity<List<LandParcel>>> retrievePage(@RequestParam(value = "limit") int limit,
+                                                               @RequestParam(value = "after", required = false) Long after) {
+        if(!validLimit(limit)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST));
+        }
+
+        return service.retrievePage(after, limit)
+                .collectList()
+                .map(page -> {
+                    // A full page means there may be more to come: tell the caller where to continue from
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if(page.size() == limit) {
+                        response.header(HttpHeaders.LINK, nextPage(limit, page.get(page.size() - 1).getObjectId()));
+                    }
+                    return response.body(page);
+                });
+    }
+
+    // Retrieve a page of land parcels matching a filter, ordered by object id
+    // curl "http://localhost:8081/landParcel/filter?status=APPROVED&minArea=10&constraints=false&limit=100"
+    // All of the criteria are optional: name, status and constraints must match exactly, minArea and maxArea are inclusive
+    // Paginated in the same way as retrieving all parcels (limit defaults to 100)
+    // Returns 400 (bad request) if limit is not between 1 and MAX_PAGE_SIZE
+    @GetMapping(FILTER)
+    public Mono<ResponseEntity<List<LandParcel>>> retrieveFiltered(@RequestParam(value = "name", required = false) String name,
+                                                                   @RequestParam(value = "status", required = false) ParcelStatus status,
+                                                                   @RequestParam(value = "constraints", required = false) Boolean constraints,
+                                                                   @RequestParam(value = "minArea", required = false) Double minArea,
+                                                                   @RequestParam(value = "maxArea", required = false) Double maxArea,
+                                                                   @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                                   @RequestParam(value = "after", required = false) Long after) {
+        if(!validLimit(limit)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST));
+        }
+
+        LandParcelFilter filter = new LandParcelFilter(name, status, constraints, minArea, maxArea);
+        return service.retrieveFiltered(filter, after, limit)
+                .collectList()
+                .map(page -> {
+                    // A full page means there may be more to come: tell the caller where to continue from
+                    ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+                    if(page.size() == limit) {
+                        response.header(HttpHeaders.LINK, nextFilteredPage(filter, limit, page.get(page.size() - 1).getObjectId()));
+                    }
+                    return response.body(page);
+                });
+    }
+
+    // Stream all land parcels as newline-delimited JSON (one parcel per line), ordered by object id
+    // curl -H "Accept: application/x-ndjson" "http://localhost:8081/landParcel"
+    // Written a chunk at a time rather than a parcel at a time (which would send a tiny chunk per parcel), and rows are
+    // only read from the database as fast as the client takes them, so a slow client costs no more memory
+    @GetMapping(value = LAND_PARCELS, produces = APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<Flux<DataBuffer>> stream() {
+        return export(APPLICATION_NDJSON_VALUE, this::ndjsonWriter);
+    }
+
+    // Export all land parcels as length-prefixed binary records (see ParcelRecordWriter), ordered by object id
+    // curl -H "Accept: application/vnd.landclan.parcel-records" "http://localhost:8081/landParcel" -o parcels.bin
+    @GetMapping(value = LAND_PARCELS, produces = ParcelRecordWriter.MEDIA_TYPE)
+    public ResponseEntity<Flux<DataBuffer>> exportRecords() {
+        return export(ParcelRecordWriter.MEDIA_TYPE, ParcelRecordWriter::new);
+    }
+
+    // Export all land parcels in columns, a block at a time (see ParcelColumnWriter), ordered by object id
+    // curl -H "Accept: application/vnd.landclan.parcel-columns" "http://localhost:8081/landParcel" -o parcels.lpc
+    @GetMapping(value = LAND_PARCELS, produces = ParcelColumnWriter.MEDIA_TYPE)
+    public ResponseEntity<Flux<DataBuffer>> exportColumns() {
+        return export(ParcelColumnWriter.MEDIA_TYPE, ParcelColumnWriter::new);
+    }
+
+    // Retrieve a land parcel by object id
+    // curl "http://localhost:8081/landParcel/1"
+    // The ETag header identifies the parcel's version: send it back in If-None-Match
+    // to get 304 (not modified), rather than the parcel, if it hasn't changed since
+    @GetMapping(LAND_PARCEL)
+    public Mono<ResponseEntity<LandParcel>> retrieve(@PathVariable("id") long objectId, ServerWebExchange exchange) {
+        return service.find(objectId)
+                .map(outcome -> {
+                    if(!outcome.isOk()) {
+                        // No land parcel exists with the specified object id
+                        return rejected(outcome);
+                    }
+
+                    LandParcel landParcel = outcome.landParcel();
+                    String eTag = eTag(landParcel);
+                    if(exchange.checkNotModified(eTag)) {
+                        // Client already has this version: 304, with no body
+                        return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).build();
+                    }
+                    return ResponseEntity.ok().eTag(eTag).body(landParcel);
+                });
+    }
+
+    // Create a new land parcel
+    // curl -X POST "http://localhost:8081/landParcel/6" -F "name=\"Fred\"" -F"status=SAVED" -F "area=42" -F "constraints=false"
+    // Object id must not already exist in database
+    // All values are required
+    // Returns 400 (bad request) if any of the values is missing or invalid
+    // Returns the created object (and its ETag)
+    @PostMapping(LAND_PARCEL)
+    public Mono<ResponseEntity<LandParcel>> create(@PathVariable("id") long objectId,
+                                                   @ModelAttribute LandParcelForm form) {
+        if(form.name() == null || form.status() == null || form.area() == null || form.constraints() == null) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST));
+        }
+
+        return service.create(objectId, form.name(), form.status(), form.area(), form.constraints())
+                // A land parcel already exists with the specified object id
+                .onErrorMap(IllegalArgumentException.class, e -> rejected(HttpStatus.BAD_REQUEST, e))
+                .map(landParcel -> ResponseEntity.ok().eTag(eTag(landParcel)).body(landParcel));
+    }
+
+    // update an existing land parcel
+    // curl -X PUT "http://localhost:8081/landParcel/6" -F "name=\"Fred Laboratory\"" -F "area=1.23"
+    // Only updates the specified values
+    // If an If-Match header is supplied, only updates the parcel if it's still at that version
+    // (returns 412 (precondition failed) if it isn't)
+    // Returns the updated object (and its ETag)
+    @PutMapping(LAND_PARCEL)
+    public Mono<ResponseEntity<LandParcel>> update(@PathVariable("id") long objectId,
+                                                   @ModelAttribute LandParcelForm form,
+                                                   @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return Mono.defer(() -> service.tryUpdate(objectId, form.name(), form.status(), form.area(), form.constraints(), ifMatchVersion(ifMatch)))
+                .map(this::written);
+    }
+
+    // partially update an existing land parcel
+    // curl -X PATCH "http://localhost:8081/landParcel/6" -F "status=APPROVED"
+    // Only the specified values are written, in a single statement: other values are left untouched
+    // If an If-Match header is supplied, only updates the parcel if it's still at that version
+    // (returns 412 (precondition failed) if it isn't)
+    // Returns the updated object (and its ETag)
+    @PatchMapping(LAND_PARCEL)
+    public Mono<ResponseEntity<LandParcel>> patch(@PathVariable("id") long objectId,
+                                                  @ModelAttribute LandParcelForm form,
+                                                  @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return Mono.defer(() -> service.tryPatch(objectId, form.name(), form.status(), form.area(), form.constraints(), ifMatchVersion(ifMatch)))
+                .map(this::written);
+    }
+
+    // delete a land parcel by object id
+    // curl -X DELETE "http://localhost:8081/landParcel/6"
+    // If an If-Match header is supplied, only deletes the parcel if it's still at that version
+    // (returns 412 (precondition failed) if it isn't)
+    @DeleteMapping(LAND_PARCEL)
+    public Mono<ResponseEntity<Void>> delete(@PathVariable("id") long objectId,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return Mono.defer(() -> service.tryDelete(objectId, ifMatchVersion(ifMatch)))
+                .map(outcome -> outcome.isOk() ? ResponseEntity.ok().<Void>build() : rejected(outcome));
+    }
+
+    // set (or replace) the geometry of an existing land parcel, as a GeoJSON Polygon
+    // curl -X PUT "http://localhost:8081/landParcel/6/geometry" -H "Content-Type: application/geo+json" -d '{"type":"Polygon","coordinates":[[[0,0],[10,0],[10,5],[0,5],[0,0]]]}'
+    // The parcel's area becomes the polygon's area (and stays that way, until the geometry is removed)
+    // If an If-Match header is supplied, only updates the parcel if it's still at that version
+    // (returns 412 (precondition failed) if it isn't)
+    // Returns the updated object (and its ETag), or 400 (bad request) if the geometry isn't a valid polygon
+    @PutMapping(value = GEOMETRY, consumes = { MediaType.APPLICATION_JSON_VALUE, APPLICATION_GEO_JSON_VALUE })
+    public Mono<ResponseEntity<LandParcel>> updateGeometry(@PathVariable("id") long objectId,
+                                                           @RequestBody ParcelGeometry geometry,
+                                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return Mono.defer(() -> service.updateGeometry(objectId, geometry, ifMatchVersion(ifMatch)))
+                .map(this::written);
+    }
+
+    // remove the geometry of an existing land parcel (its area stays as it was)
+    // curl -X DELETE "http://localhost:8081/landParcel/6/geometry"
+    // If-Match is handled as for setting it
+    @DeleteMapping(GEOMETRY)
+    public Mono<ResponseEntity<LandParcel>> deleteGeometry(@PathVariable("id") long objectId,
+                                                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return Mono.defer(() -> service.updateGeometry(objectId, null, ifMatchVersion(ifMatch)))
+                .map(this::written);
+    }
+
+    // Retrieve a page of land parcels whose bounding box overlaps a box (e.g. a map tile), ordered by object id
+    // curl "http://localhost:8081/landParcel/bbox?minX=0&minY=0&maxX=1000&maxY=1000&limit=100"
+    // Only parcels with a geometry are included; paginated in the same way as retrieving all parcels (limit defaults to 100)
+    // Returns 400 (bad request) if the box is inside out, or limit is not between 1 and MAX_PAGE_SIZE
+    // (answered from the spatial index, in memory, so there's nothing to wait for)
+    @GetMapping(BBOX)
+    public ResponseEntity<List<LandParcel>> retrieveWithin(@RequestParam(value = "minX") double minX,
+                                                           @RequestParam(value = "minY") double minY,
+                                                           @RequestParam(value = "maxX") double maxX,
+                                                           @RequestParam(value = "maxY") double maxY,
+                                                           @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                           @RequestParam(value = "after", required = false) Long after) {
+        if(!validLimit(limit) || !(minX <= maxX) || !(minY <= maxY)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+
+        List<LandParcel> page = spatialIndex.within(minX, minY, maxX, maxY, after, limit);
+
+        // A full page means there may be more to come: tell the caller where to continue from
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if(page.size() == limit) {
+            response.header(HttpHeaders.LINK, nextWithinPage(minX, minY, maxX, maxY, limit, page.get(page.size() - 1).getObjectId()));
+        }
+        return response.body(page);
+    }
+
+    // Retrieve the land parcels whose geometry contains a point, ordered by object id
+    // curl "http://localhost:8081/landParcel/containing?x=5&y=2.5"
+    @GetMapping(CONTAINING)
+    public List<LandParcel> retrieveContaining(@RequestParam(value = "x") double x,
+                                               @RequestParam(value = "y") double y) {
+        return spatialIndex.containing(x, y);
+    }
+
+    // Retrieve the k land parcels nearest a point (by distance to their geometry: 0 if the point is inside), nearest first
+    // curl "http://localhost:8081/landParcel/nearest?x=5&y=2.5&k=10"
+    // Returns 400 (bad request) if k is not between 1 and MAX_PAGE_SIZE
+    @GetMapping(NEAREST)
+    public List<LandParcelSpatialIndex.Nearby> retrieveNearest(@RequestParam(value = "x") double x,
+                                                               @RequestParam(value = "y") double y,
+                                                               @RequestParam(value = "k", defaultValue = "10") int k) {
+        if(!validLimit(k)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+        return spatialIndex.nearest(x, y, k);
+    }
+
+    // Search for land parcels by the words of their name, a page at a time, ordered by object id
+    // curl "http://localhost:8081/landParcel/search?q=Bob%20Off&limit=20"
+    // mode is PREFIX (the default), TOKEN or FUZZY, as for the app
+    // Paginated in the same way as retrieving all parcels (limit defaults to 100)
+    // Returns 400 (bad request) if the query has no words (or too many), or limit is not between 1 and MAX_PAGE_SIZE
+    @GetMapping(SEARCH)
+    public ResponseEntity<List<LandParcel>> search(@RequestParam(value = "q") String query,
+                                                   @RequestParam(value = "mode", defaultValue = "PREFIX") LandParcelNameIndex.Mode mode,
+                                                   @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                   @RequestParam(value = "after", required = false) Long after) {
+        if(!validLimit(limit)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+
+        List<LandParcel> page;
+        try {
+            page = nameIndex.search(query, mode, after, limit);
+        }
+        catch (IllegalArgumentException e) {
+            throw rejected(HttpStatus.BAD_REQUEST, e);
+        }
+
+        // A full page means there may be more to come: tell the caller where to continue from
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if(page.size() == limit) {
+            response.header(HttpHeaders.LINK, nextSearchPage(query, mode, limit, page.get(page.size() - 1).getObjectId()));
+        }
+        return response.body(page);
+    }
+
+    // Apply a batch of creates, updates and deletes, in order
+    // curl -X POST "http://localhost:8081/landParcel/batch" -H "Content-Type: application/json" -d '[{"op":"CREATE","objectId":6,"name":"Fred","status":"SAVED","area":42,"constraints":false},{"op":"DELETE","objectId":123}]'
+    // or, as newline-delimited JSON (one operation per line)
+    // curl -X POST "http://localhost:8081/landParcel/batch" -H "Content-Type: application/x-ndjson" --data-binary @operations.ndjson
+    // Each operation follows the same rules as the single-item requests, and succeeds or fails on its own
+    // Returns one result per operation, with the status code the single-item request would have returned
+    // Returns 400 (bad request) if any operation is malformed
+    @PostMapping(value = BATCH, consumes = { MediaType.APPLICATION_JSON_VALUE, APPLICATION_NDJSON_VALUE })
+    public Mono<List<BatchResult>> batch(@RequestBody Flux<BatchOperation> operations) {
+        return operations.collectList().flatMap(service::batch);
+    }
+
+    // Import land parcels in bulk, from CSV or GeoJSON
+    // curl -X POST "http://localhost:8081/landParcel/import" -H "Content-Type: text/csv" --data-binary @parcels.csv
+    // curl -X POST "http://localhost:8081/landParcel/import" -H "Content-Type: application/geo+json" --data-binary @parcels.geojson
+    // The body is read as it arrives (see LandParcelImporter), so it can be of any size
+    // Every parcel is created (all values are required); invalid parcels, and those that already exist, are
+    // reported by row, and don't stop the rest being imported
+    // Returns 400 (bad request) if the body can't be read as a whole (e.g. the CSV header is missing a column)
+    @PostMapping(value = IMPORT, consumes = { TEXT_CSV_VALUE, APPLICATION_GEO_JSON_VALUE })
+    public Mono<ImportReport> importParcels(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                            ServerWebExchange exchange) {
+        ParcelReader.Format format = contentType.isCompatibleWith(MediaType.parseMediaType(TEXT_CSV_VALUE))
+                ? ParcelReader.Format.CSV : ParcelReader.Format.GEOJSON;
+        return importer.importParcels(() -> ParcelReader.of(format, new BodyInputStream(exchange.getRequest().getBody()), objectMapper))
+                // Malformed file
+                .onErrorMap(IOException.class, e -> rejected(HttpStatus.BAD_REQUEST, e));
+    }
+
+    // Long-poll for changes to land parcels, in order
+    // curl "http://localhost:8081/landParcel/changes?after=1234&limit=100&timeout=PT60S"
+    // Returns up to 'limit' changes with a sequence number greater than 'after' (or from the oldest still held, if 0),
+    // as soon as there are any, or none if there are still none after 'timeout'; either way, 'latest' is the
+    // sequence number to ask for changes after next time
+    // Returns 400 (bad request) if limit is not between 1 and MAX_PAGE_SIZE, and 410 (gone) if the changes are
+    // no longer held (the caller must re-read every parcel)
+    @GetMapping(CHANGES)
+    public Mono<LandParcelChangeFeed.Changes> changes(@RequestParam(value = "after", defaultValue = "0") long after,
+                                                      @RequestParam(value = "limit", defaultValue = "100") int limit,
+                                                      @RequestParam(value = "timeout", defaultValue = "PT30S") Duration timeout) {
+        if(!validLimit(limit)) {
+            return Mono.error(new ResponseStatusException(HttpStatus.BAD_REQUEST));
+        }
+
+        return Mono.fromCallable(() -> changeFeed.read(after, limit))
+                // Otherwise, wait for the next change (unless one has arrived since)
+                .flatMap(changes -> changes.changes().isEmpty() ? nextChange(after).then(Mono.fromCallable(() -> changeFeed.read(after, limit))) : Mono.just(changes))
+                .timeout(timeout, Mono.fromSupplier(() -> new LandParcelChangeFeed.Changes(List.of(), after)))
+                // Too far behind (or from before a restart), or overtaken by a flood of changes before responding
+                .onErrorMap(LandParcelChangeFeed.ExpiredException.class, e -> rejected(HttpStatus.GONE, e));
+    }
+
+    // Stream changes to land parcels, as server-sent events
+    // curl -N "http://localhost:8081/landParcel/changes?after=1234" -H "Accept: text/event-stream"
+    // Each change is a "change" event, identified by its sequence number; a reconnecting client resumes after its
+    // Last-Event-ID (if it has one), otherwise after 'after' (or from the oldest change still held, if 0)
+    // If the changes are no longer held, an "expired" event is sent and the stream ends
+    // The stream is closed after landclan.changes.stream-timeout (the client reconnects)
+    @GetMapping(value = CHANGES, produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> streamChanges(@RequestParam(value = "after", defaultValue = "0") long after,
+                                                       @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        // Sequence number of the last change sent
+        AtomicLong position = new AtomicLong(lastEventId != null ? lastEventId : after);
+        return Mono.defer(() -> {
+                    // Every change available, or (once there's another) none
+                    LandParcelChangeFeed.Changes changes = changeFeed.read(position.get(), READ_SIZE);
+                    if(changes.changes().isEmpty()) {
+                        return nextChange(position.get()).thenReturn(List.<LandParcelChangeFeed.Change>of());
+                    }
+                    position.set(changes.latest());
+                    return Mono.just(changes.changes());
+                })
+                .repeat()
+                .concatMapIterable(changes -> changes)
+                .map(change -> ServerSentEvent.<Object>builder(change)
+                        .id(String.valueOf(change.sequence()))
+                        .event("change")
+                        .build())
+                .onErrorResume(LandParcelChangeFeed.ExpiredException.class,
+                        e -> Mono.just(ServerSentEvent.<Object>builder(e.getMessage()).event("expired").build()))
+                .take(streamTimeout);
+    }
+
+    // Retrieve the hit, miss and eviction counts of the land parcel cache
+    // curl "http://localhost:8081/landParcel/cache/stats"
+    @GetMapping(CACHE_STATS)
+    public LandParcelCache.Statistics cacheStatistics() {
+        return cache.statistics();
+    }
+
+    // Retrieve the count and total area of land parcels, overall and by status and constraints
+    // Maintained as parcels change, so doesn't scan the table
+    // curl "http://localhost:8081/landParcel/stats"
+    @GetMapping(STATS)
+    public LandParcelStatistics.Summary statistics() {
+        return statistics.summary();
+    }
+
+    // Completes at the next change after sequence number 'after' (straight away, if there already is one)
+    // Takes no thread while it waits: the feed calls back, and a caller going away stops the wait
+    private Mono<Void> nextChange(long after) {
+        return Mono.create(sink -> {
+            Runnable waiter = sink::success;
+            if(changeFeed.await(after, waiter)) {
+                sink.onDispose(() -> changeFeed.cancel(waiter));
+            }
+            else {
+                sink.success();
+            }
+        });
+    }
+
+    // The response to a single-parcel write: the updated object (and its ETag), or why it couldn't be written
+    private ResponseEntity<LandParcel> written(ParcelOutcome outcome) {
+        if(!outcome.isOk()) {
+            // No land parcel exists with the specified object id, or it's been modified since the client's version
+            return rejected(outcome);
+        }
+        LandParcel landParcel = outcome.landParcel();
+        return ResponseEntity.ok().eTag(eTag(landParcel)).body(landParcel);
+    }
+
+    // Count a request rejected because of the given exception (as landclan.requests.rejected, by status and exception)
+    // Returns the exception to fail with, to reject it
+    private ResponseStatusException rejected(HttpStatus status, Throwable cause) {
+        meterRegistry.counter("landclan.requests.rejected",
+                "status", String.valueOf(status.value()),
+                "exception", cause.getClass().getSimpleName()).increment();
+        return new ResponseStatusException(status);
+    }
+
+    // Count a request rejected because of a failed outcome, as above (tagged with the exception the app's throwing
+    // methods report the failure with, so the two applications' counts can be compared)
+    // Returns the response to reject it with: 404 (not found) or 412 (precondition failed), with no body
+    private <T> ResponseEntity<T> rejected(ParcelOutcome outcome) {
+        HttpStatus status = outcome.status() == ParcelOutcome.Status.NOT_FOUND ? HttpStatus.NOT_FOUND : HttpStatus.PRECONDITION_FAILED;
+        meterRegistry.counter("landclan.requests.rejected",
+                "status", String.valueOf(status.value()),
+                "exception", outcome.status() == ParcelOutcome.Status.NOT_FOUND
+                        ? NoSuchElementException.class.getSimpleName()
+                        : OptimisticLockingFailureException.class.getSimpleName()).increment();
+        return ResponseEntity.status(status).build();
+    }
+
+    // Stream all land parcels through a ParcelWriter, to the response a chunk at a time, as they are read
+    private ResponseEntity<Flux<DataBuffer>> export(String mediaType, ParcelWriterFactory writerFactory) {
+        Flux<DataBuffer> body = Flux.defer(() -> {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream(EXPORT_CHUNK_SIZE);
+            ParcelWriter writer;
+            try {
+                writer = writerFactory.create(buffer);
+            }
+            catch (IOException e) {
+                return Flux.error(e);
+            }
+
+            return service.retrieveAll()
+                    .<DataBuffer>handle((landParcel, sink) -> {
+                        try {
+                            writer.write(landParcel);
+                        }
+                        catch (IOException e) {
+                            sink.error(new UncheckedIOException(e));
+                            return;
+                        }
+                        if(buffer.size() >= EXPORT_CHUNK_SIZE) {
+                            sink.next(take(buffer));
+                        }
+                    })
+                    .concatWith(Mono.fromCallable(() -> {
+                        writer.finish();
+                        return take(buffer);
+                    }));
+        });
+
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(mediaType))
+                .body(body);
+    }
+
+    // What's been written to the buffer, as a data buffer of its own (leaving the buffer empty)
+    private static DataBuffer take(ByteArrayOutputStream buffer) {
+        DataBuffer chunk = DefaultDataBufferFactory.sharedInstance.wrap(buffer.toByteArray());
+        buffer.reset();
+        return chunk;
+    }
+
+    // Parcels as newline-delimited JSON, written to the stream as the generator's buffer fills
+    private ParcelWriter ndjsonWriter(OutputStream outputStream) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+        // Each parcel is terminated by a newline, rather than separated by a space
+        generator.setRootValueSeparator(null);
+        ObjectWriter writer = objectMapper.writerFor(LandParcel.class).without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        return new ParcelWriter() {
+            @Override
+            public void write(LandParcel landParcel) throws IOException {
+                writer.writeValue(generator, landParcel);
+                generator.writeRaw('\n');
+            }
+
+            @Override
+            public void finish() throws IOException {
+                generator.flush();
+            }
+        };
+    }
+
+    private interface ParcelWriterFactory {
+        ParcelWriter create(OutputStream outputStream) throws IOException;
+    }
+}
@@ -0,0 +1,12 @@
+package com.jonsaway.landclan.reactive.rest;
+
+import com.jonsaway.landclan.rest.ParcelStatus;
+
+// The attributes supplied to a create, update or patch request
+// Bound from query parameters or form fields (url-encoded or multipart), as the app's request parameters are
+// Any of them may be missing (null): create requires them all
+public record LandParcelForm(String name,
+                             ParcelStatus status,
+                             Double area,
+                             Boolean constraints) {
+}
@@ -0,0 +1,193 @@
+package com.jonsaway.landclan.reactive.rest;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.jonsaway.landclan.limit.ConcurrencyLimit;
+import com.jonsaway.landclan.limit.TokenBucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Locale;
+
+import static com.jonsaway.landclan.rest.LandParcelRoutes.CHANGES;
+import static com.jonsaway.landclan.rest.LandParcelRoutes.LAND_PARCELS;
+
+// Sheds requests to /landParcel before they reach the controller, with the same limits (and properties) as the app's
+// RequestLimiter
+// - each client has a token bucket per kind of endpoint: once it's empty, 429 (TOO_MANY_REQUESTS)
+// - each kind of endpoint has a limit on the requests in progress, across all clients: once it's reached,
+//   503 (SERVICE_UNAVAILABLE)
+// Either way with a Retry-After header (in seconds), and straight away: requests are never queued
+// A request is in progress until its response has been written (or it fails, or the client goes away)
+// Requests shed are counted as landclan.requests.shed (by endpoint and status), and those in progress are gauged
+// as landclan.requests.in.progress (by endpoint)
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class RequestLimiter implements WebFilter {
+    public enum Endpoint {
+        // A parcel, a page of parcels, a search, the statistics, ...
+        READ,
+        // Every parcel (GET /landParcel without a limit, in any representation)
+        SCAN,
+        // Anything but GET (or HEAD)
+        WRITE
+    }
+
+    @Value("${landclan.limits.enabled:true}")
+    boolean enabled = true;
+
+    @Value("${landclan.limits.client-header:}")
+    String clientHeader = "";
+
+    // Clients tracked at once, and how long one is tracked for once idle (by then, its buckets are full again)
+    @Value("${landclan.limits.clients:100000}")
+    long maximumClients = 100_000;
+
+    @Value("${landclan.limits.client-idle-timeout:PT10M}")
+    Duration clientIdleTimeout = Duration.ofMinutes(10);
+
+    // Retry-After sent with a 503
+    @Value("${landclan.limits.retry-after:PT1S}")
+    Duration retryAfter = Duration.ofSeconds(1);
+
+    // Per client: requests per second, and the most at once; across all clients: the most in progress
+    @Value("${landclan.limits.read.rate:1000}")
+    double readRate = 1000;
+
+    @Value("${landclan.limits.read.burst:2000}")
+    int readBurst = 2000;
+
+    @Value("${landclan.limits.read.concurrency:150}")
+    int readConcurrency = 150;
+
+    @Value("${landclan.limits.scan.rate:0.5}")
+    double scanRate = 0.5;
+
+    @Value("${landclan.limits.scan.burst:5}")
+    int scanBurst = 5;
+
+    @Value("${landclan.limits.scan.concurrency:4}")
+    int scanConcurrency = 4;
+
+    @Value("${landclan.limits.write.rate:500}")
+    double writeRate = 500;
+
+    @Value("${landclan.limits.write.burst:1000}")
+    int writeBurst = 1000;
+
+    @Value("${landclan.limits.write.concurrency:50}")
+    int writeConcurrency = 50;
+
+    @Autowired
+    MeterRegistry meterRegistry;
+
+    // Each client's buckets, by endpoint ordinal
+    private Cache<String, TokenBucket[]> clients;
+    private final ConcurrencyLimit[] limits = new ConcurrencyLimit[Endpoint.values().length];
+    private final Counter[] rateLimited = new Counter[Endpoint.values().length];
+    private final Counter[] overloaded = new Counter[Endpoint.values().length];
+
+    @PostConstruct
+    public void init() {
+        clients = Caffeine.newBuilder()
+                .maximumSize(maximumClients)
+                .expireAfterAccess(clientIdleTimeout)
+                .build();
+        limits[Endpoint.READ.ordinal()] = new ConcurrencyLimit(readConcurrency);
+        limits[Endpoint.SCAN.ordinal()] = new ConcurrencyLimit(scanConcurrency);
+        limits[Endpoint.WRITE.ordinal()] = new ConcurrencyLimit(writeConcurrency);
+        for(Endpoint endpoint: Endpoint.values()) {
+            String tag = endpoint.name().toLowerCase(Locale.ROOT);
+            Gauge.builder("landclan.requests.in.progress", limits[endpoint.ordinal()], ConcurrencyLimit::inFlight)
+                    .tag("endpoint", tag)
+                    .register(meterRegistry);
+            rateLimited[endpoint.ordinal()] = meterRegistry.counter("landclan.requests.shed",
+                    "endpoint", tag, "status", String.valueOf(HttpStatus.TOO_MANY_REQUESTS.value()));
+            overloaded[endpoint.ordinal()] = meterRegistry.counter("landclan.requests.shed",
+                    "endpoint", tag, "status", String.valueOf(HttpStatus.SERVICE_UNAVAILABLE.value()));
+        }
+    }
+
+    // The kind of endpoint a request is for
+    public static Endpoint endpoint(ServerHttpRequest request) {
+        HttpMethod method = request.getMethod();
+        if(!method.equals(HttpMethod.GET) && !method.equals(HttpMethod.HEAD)) {
+            return Endpoint.WRITE;
+        }
+        return path(request).equals(LAND_PARCELS) && !request.getQueryParams().containsKey("limit") ? Endpoint.SCAN : Endpoint.READ;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if(!enabled || !path(request).startsWith(LAND_PARCELS)) {
+            return chain.filter(exchange);
+        }
+
+        Endpoint endpoint = endpoint(request);
+        long now = System.nanoTime();
+        TokenBucket[] buckets = clients.get(client(request), client -> new TokenBucket[] {
+                new TokenBucket(readRate, readBurst, now),
+                new TokenBucket(scanRate, scanBurst, now),
+                new TokenBucket(writeRate, writeBurst, now) });
+        long wait = buckets[endpoint.ordinal()].tryAcquire(now);
+        if(wait > 0) {
+            rateLimited[endpoint.ordinal()].increment();
+            return shed(exchange.getResponse(), HttpStatus.TOO_MANY_REQUESTS, wait);
+        }
+
+        // The change feed's long-polls and streams spend nearly all their time waiting (without a thread),
+        // so they're only rate limited
+        if(path(request).startsWith(CHANGES)) {
+            return chain.filter(exchange);
+        }
+
+        ConcurrencyLimit limit = limits[endpoint.ordinal()];
+        if(!limit.tryAcquire()) {
+            overloaded[endpoint.ordinal()].increment();
+            return shed(exchange.getResponse(), HttpStatus.SERVICE_UNAVAILABLE, retryAfter.toNanos());
+        }
+        // (released however the request ends: completed, failed, or cancelled by the client going away)
+        return chain.filter(exchange)
+                .doFinally(signal -> limit.release());
+    }
+
+    private String client(ServerHttpRequest request) {
+        if(!clientHeader.isEmpty()) {
+            String client = request.getHeaders().getFirst(clientHeader);
+            if(client != null && !client.isBlank()) {
+                return client;
+            }
+        }
+        InetSocketAddress address = request.getRemoteAddress();
+        return address != null && address.getAddress() != null ? address.getAddress().getHostAddress() : "";
+    }
+
+    private static String path(ServerHttpRequest request) {
+        return request.getPath().pathWithinApplication().value();
+    }
+
+    private static Mono<Void> shed(ServerHttpResponse response, HttpStatus status, long retryAfterNanos) {
+        response.setStatusCode(status);
+        response.getHeaders().set(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (retryAfterNanos + 999_999_999) / 1_000_000_000)));
+        return response.setComplete();
+    }
+}
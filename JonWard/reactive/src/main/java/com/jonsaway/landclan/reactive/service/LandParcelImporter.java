@@ -0,0 +1,116 @@
+package com.jonsaway.landclan.reactive.service;
+
+import com.jonsaway.landclan.importer.ImportError;
+import com.jonsaway.landclan.importer.ImportReport;
+import com.jonsaway.landclan.importer.ParcelReader;
+import com.jonsaway.landclan.service.BatchResult;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Imports land parcels in bulk, from a ParcelReader, as the app's LandParcelImporter does (without its checkpoints)
+// - the reader (which blocks, waiting for the file) runs on a bounded elastic thread, never an event loop
+// - the valid parcels are grouped into batches, and up to landclan.import.writers batches are created at once, with
+//   LandParcelService.batch
+// - reading only runs ahead of the writers by a few batches (backpressure), so memory use doesn't depend on the size
+//   of the file
+@Service
+public class LandParcelImporter {
+    @Autowired
+    LandParcelService service;
+
+    // Parcels created per batch
+    @Value("${landclan.import.batch-size:500}")
+    int batchSize = 500;
+
+    // Batches created at once
+    @Value("${landclan.import.writers:4}")
+    int writers = 4;
+
+    // Errors reported individually (any more are only counted)
+    @Value("${landclan.import.max-errors:1000}")
+    int maxErrors = 1000;
+
+    // Import every parcel the reader (opened once subscribed, and closed at the end) has to offer
+    // Fails with IOException if the file can't be read as a whole
+    public Mono<ImportReport> importParcels(Callable<ParcelReader> open) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            AtomicLong rows = new AtomicLong();
+            AtomicLong imported = new AtomicLong();
+            AtomicLong failed = new AtomicLong();
+            List<ImportError> errors = Collections.synchronizedList(new ArrayList<>());
+
+            return Flux.using(open, this::rows, this::close)
+                    .subscribeOn(Schedulers.boundedElastic())
+                    .filter(row -> {
+                        rows.incrementAndGet();
+                        if(row.operation() == null) {
+                            failed(new ImportError(row.number(), row.objectId(), row.error()), failed, errors);
+                            return false;
+                        }
+                        return true;
+                    })
+                    .buffer(batchSize)
+                    .flatMap(batch -> service.batch(batch.stream().map(ParcelReader.Row::operation).toList())
+                            .doOnNext(results -> {
+                                for(BatchResult result: results) {
+                                    if(result.status() == HttpStatus.OK.value()) {
+                                        imported.incrementAndGet();
+                                    }
+                                    else {
+                                        // (all values were validated, so the create can only have failed because the parcel exists)
+                                        ParcelReader.Row row = batch.get(result.index());
+                                        failed(new ImportError(row.number(), row.objectId(), "Land Parcel already exists"), failed, errors);
+                                    }
+                                }
+                            }), writers)
+                    .then(Mono.fromSupplier(() -> new ImportReport(rows.get(), imported.get(), 0, 0, failed.get(),
+                            List.copyOf(errors), (System.nanoTime() - start) / 1_000_000)));
+        });
+    }
+
+    // The reader's rows, read as they're asked for
+    private Flux<ParcelReader.Row> rows(ParcelReader reader) {
+        return Flux.generate(sink -> {
+            try {
+                ParcelReader.Row row = reader.next();
+                if(row != null) {
+                    sink.next(row);
+                }
+                else {
+                    sink.complete();
+                }
+            }
+            catch (IOException e) {
+                sink.error(e);
+            }
+        });
+    }
+
+    private void close(ParcelReader reader) {
+        try {
+            reader.close();
+        }
+        catch (IOException e) {
+            // Read as far as we need
+        }
+    }
+
+    private void failed(ImportError error, AtomicLong failed, List<ImportError> errors) {
+        if(failed.incrementAndGet() <= maxErrors) {
+            errors.add(error);
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.jonsaway.landclan.reactive.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelFilter;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.BatchOperation;
+import com.jonsaway.landclan.service.BatchResult;
+import com.jonsaway.landclan.service.ParcelOutcome;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+// The app's LandParcelService, without blocking: each method returns at once, and its result is emitted once the
+// database has answered
+// Failures a client can cause (a missing parcel, or one at another version) are outcomes, not errors
+public interface LandParcelService {
+    // Retrieve all land parcels, ordered by object id
+    // Emitted as they are read, only as fast as they're taken
+    public Flux<LandParcel> retrieveAll();
+
+    // Retrieve a page of land parcels, ordered by object id
+    // Emits up to 'limit' parcels with an objectId greater than 'after'
+    // (or from the lowest objectId, if 'after' is null)
+    public Flux<LandParcel> retrievePage(Long after, int limit);
+
+    // Retrieve a page of land parcels matching the filter, ordered by object id, as above
+    public Flux<LandParcel> retrieveFiltered(LandParcelFilter filter, Long after, int limit);
+
+    // Retrieve a land parcel by object id
+    // Emits the parcel, or ParcelOutcome.NOT_FOUND
+    public Mono<ParcelOutcome> find(long objectId);
+
+    // Create a new land parcel
+    // Emits the created object
+    // Fails with IllegalArgumentException if parcel already exists
+    public Mono<LandParcel> create(long objectId,
+                                   String name,
+                                   ParcelStatus status,
+                                   double area,
+                                   boolean constraints);
+
+    // Update an existing land parcel
+    // Only modifies non-null values
+    // (a parcel with a geometry keeps the geometry's area, whatever area is given)
+    // If version is not null, only updates the parcel if it is still at that version
+    // Emits the updated object, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    public Mono<ParcelOutcome> tryUpdate(long objectId,
+                                         String name,
+                                         ParcelStatus status,
+                                         Double area,
+                                         Boolean constraints,
+                                         Long version);
+
+    // Partially update an existing land parcel
+    // Only the non-null values are written: other attributes are left untouched
+    // If version is not null, only updates the parcel if it is still at that version
+    // Emits the updated object, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    public Mono<ParcelOutcome> tryPatch(long objectId,
+                                        String name,
+                                        ParcelStatus status,
+                                        Double area,
+                                        Boolean constraints,
+                                        Long version);
+
+    // Replace (or, if null, remove) the geometry of an existing land parcel
+    // The area becomes the geometry's area (removing the geometry leaves the area as it was)
+    // If version is not null, only updates the parcel if it is still at that version
+    // Emits the updated object, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    public Mono<ParcelOutcome> updateGeometry(long objectId, ParcelGeometry geometry, Long version);
+
+    // Delete a land parcel by object id
+    // If version is not null, only deletes the parcel if it is still at that version
+    // Emits ParcelOutcome.DELETED, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    public Mono<ParcelOutcome> tryDelete(long objectId, Long version);
+
+    // Apply a batch of creates, updates and deletes, in order
+    // Each operation succeeds or fails independently, with the same rules as the single-item operations
+    // Emits one result per operation, in the same order
+    public Mono<List<BatchResult>> batch(List<BatchOperation> operations);
+}
@@ -0,0 +1,377 @@
+package com.jonsaway.landclan.reactive.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.jpa.LandParcelFilter;
+import com.jonsaway.landclan.jpa.ParcelGeometry;
+import com.jonsaway.landclan.reactive.r2dbc.LandParcelRepository;
+import com.jonsaway.landclan.rest.ParcelStatus;
+import com.jonsaway.landclan.service.BatchOperation;
+import com.jonsaway.landclan.service.BatchResult;
+import com.jonsaway.landclan.service.LandParcelCache;
+import com.jonsaway.landclan.service.LandParcelListener;
+import com.jonsaway.landclan.service.ParcelOutcome;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.*;
+
+// Land parcels stored in the database, through R2DBC
+// Each write to a parcel runs in its turn on the write queue, and tells the listeners of its change before it finishes
+// (see ParcelWriteQueue), so they're told of each parcel's changes in the order they were stored, as the app's are
+// The write-behind view, sharding and the in-memory store are only in the app
+@Service
+public class LandParcelServiceImpl implements LandParcelService {
+    @Autowired
+    LandParcelRepository repository;
+
+    @Autowired
+    TransactionalOperator transactionalOperator;
+
+    @Autowired
+    LandParcelCache cache;
+
+    // Kept up to date with every change (e.g. LandParcelStatistics)
+    @Autowired(required = false)
+    List<LandParcelListener> listeners = List.of();
+
+    @Autowired
+    ParcelWriteQueue queue = new ParcelWriteQueue();
+
+    // Number of batch operations applied per transaction
+    @Value("${landclan.batch.chunk-size:500}")
+    int batchChunkSize = 500;
+
+    // Retrieve all land parcels, ordered by object id
+    public Flux<LandParcel> retrieveAll() {
+        return repository.findAll(false);
+    }
+
+    // Retrieve a page of land parcels, ordered by object id
+    // Emits up to 'limit' parcels with an objectId greater than 'after'
+    // (or from the lowest objectId, if 'after' is null)
+    public Flux<LandParcel> retrievePage(Long after, int limit) {
+        return repository.findPage(after, limit);
+    }
+
+    // Retrieve a page of land parcels matching the filter, ordered by object id
+    public Flux<LandParcel> retrieveFiltered(LandParcelFilter filter, Long after, int limit) {
+        return repository.filter(filter, after, limit);
+    }
+
+    // Retrieve a land parcel by object id
+    // Served from the cache where possible (including for parcels that don't exist): callers missing on the same
+    // parcel at once share a single query
+    // Emits the parcel, or ParcelOutcome.NOT_FOUND
+    public Mono<ParcelOutcome> find(long objectId) {
+        // (a caller going away leaves the load to finish, for the others waiting on it)
+        return Mono.fromFuture(() -> cache.getAsync(objectId, id -> repository.findByObjectId(id).toFuture()), true)
+                .map(ParcelOutcome::ok)
+                // Parcel doesn't exist
+                .defaultIfEmpty(ParcelOutcome.NOT_FOUND);
+    }
+
+    // Create a new land parcel
+    // Emits the created object
+    // Fails with IllegalArgumentException if parcel already exists
+    public Mono<LandParcel> create(long objectId,
+                                   String name,
+                                   ParcelStatus status,
+                                   double area,
+                                   boolean constraints) {
+        LandParcel landParcel = new LandParcel(objectId, name, status, area, constraints, LandParcel.firstVersion());
+
+        // Insert the new object in a single statement
+        // (the primary key stops us creating a parcel with the same id as an existing one)
+        return queue.write(objectId, () -> repository.insert(landParcel)
+                        .then(Mono.fromSupplier(() -> {
+                            changed(null, landParcel);
+                            return landParcel;
+                        })))
+                .onErrorMap(DataIntegrityViolationException.class,
+                        e -> new IllegalArgumentException(String.format("Land Parcel already exists with objectId=%d - ignoring create", objectId)));
+    }
+
+    // Update an existing land parcel
+    // Only modifies non-null values (which is exactly what a patch does)
+    // Emits the updated object, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    public Mono<ParcelOutcome> tryUpdate(long objectId,
+                                         String name,
+                                         ParcelStatus status,
+                                         Double area,
+                                         Boolean constraints,
+                                         Long version) {
+        return modify(objectId, name, status, area, constraints, version);
+    }
+
+    // Partially update an existing land parcel
+    // Only the non-null values are written, in a single statement (without reading the parcel first), so concurrent
+    // changes to the other attributes aren't lost
+    // Emits the updated object, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    public Mono<ParcelOutcome> tryPatch(long objectId,
+                                        String name,
+                                        ParcelStatus status,
+                                        Double area,
+                                        Boolean constraints,
+                                        Long version) {
+        return modify(objectId, name, status, area, constraints, version);
+    }
+
+    // Write the non-null values to an existing land parcel, in a single statement
+    // Emits the updated object, or why it couldn't be updated
+    private Mono<ParcelOutcome> modify(long objectId,
+                                       String name,
+                                       ParcelStatus status,
+                                       Double area,
+                                       Boolean constraints,
+                                       Long version) {
+        // (for this ParcelStatus.NO_CHANGE is treated as null)
+        ParcelStatus newStatus = status == ParcelStatus.NO_CHANGE ? null : status;
+
+        return queue.write(objectId, () -> repository.patch(objectId, name, newStatus, area, constraints, version)
+                        .map(before -> {
+                            if(name == null && newStatus == null && area == null && constraints == null) {
+                                // Nothing to change
+                                return ParcelOutcome.ok(before);
+                            }
+
+                            // The statement returns the previous state: apply the same changes to it to get the new state
+                            // (a parcel with a geometry keeps the geometry's area)
+                            LandParcel after = new LandParcel(objectId,
+                                    name != null ? name : before.getName(),
+                                    newStatus != null ? newStatus : before.getStatus(),
+                                    area != null ? area : before.getArea(),
+                                    constraints != null ? constraints : before.getConstraints(),
+                                    before.getVersion() + 1);
+                            after.setGeometry(before.getGeometry());
+
+                            changed(before, after);
+                            return ParcelOutcome.ok(after);
+                        }))
+                // Parcel doesn't exist (or has moved on)
+                .switchIfEmpty(Mono.defer(() -> writeFailure(objectId, version)));
+    }
+
+    // Replace (or, if null, remove) the geometry of an existing land parcel, in a single statement
+    // The area becomes the geometry's area (removing the geometry leaves the area as it was)
+    // Emits the updated object, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    public Mono<ParcelOutcome> updateGeometry(long objectId, ParcelGeometry geometry, Long version) {
+        return queue.write(objectId, () -> repository.updateGeometry(objectId, geometry, version)
+                        .map(before -> {
+                            LandParcel after = new LandParcel(objectId, before.getName(), before.getStatus(), before.getArea(),
+                                    before.getConstraints(), before.getVersion() + 1);
+                            after.setGeometry(geometry);
+
+                            changed(before, after);
+                            return ParcelOutcome.ok(after);
+                        }))
+                // Parcel doesn't exist (or has moved on)
+                .switchIfEmpty(Mono.defer(() -> writeFailure(objectId, version)));
+    }
+
+    // Delete a land parcel by object id, in a single statement
+    // Emits ParcelOutcome.DELETED, or ParcelOutcome.NOT_FOUND or ParcelOutcome.VERSION_MISMATCH
+    public Mono<ParcelOutcome> tryDelete(long objectId, Long version) {
+        return queue.write(objectId, () -> repository.deleteByObjectId(objectId, version)
+                        .map(before -> {
+                            changed(before, null);
+                            return ParcelOutcome.DELETED;
+                        }))
+                // Parcel doesn't exist (or has moved on)
+                .switchIfEmpty(Mono.defer(() -> writeFailure(objectId, version)));
+    }
+
+    // A change to a land parcel has been stored
+    // 'before' is null for a create, 'after' is null for a delete
+    private void changed(LandParcel before, LandParcel after) {
+        // Forget the cached copy (including any cached miss)
+        cache.invalidate(before != null ? before.getObjectId() : after.getObjectId());
+
+        for(LandParcelListener listener: listeners) {
+            listener.parcelChanged(before, after);
+        }
+    }
+
+    // A write changed nothing: work out why
+    // Only a conditional (versioned) write needs the extra query, to tell a missing parcel from a changed one
+    private Mono<ParcelOutcome> writeFailure(long objectId, Long version) {
+        if(version == null) {
+            return Mono.just(ParcelOutcome.NOT_FOUND);
+        }
+        return repository.existsByObjectId(objectId)
+                .map(exists -> exists ? ParcelOutcome.VERSION_MISMATCH : ParcelOutcome.NOT_FOUND);
+    }
+
+    // Apply a batch of creates, updates and deletes, in order
+    // Operations are applied in chunks, one transaction per chunk, as the app applies them:
+    // - existence is checked for the whole chunk with a single query
+    // - the operations are applied to the parcels in memory, then each parcel's net change is written
+    // Emits one result per operation, in the same order
+    public Mono<List<BatchResult>> batch(List<BatchOperation> operations) {
+        return Flux.range(0, (operations.size() + batchChunkSize - 1) / batchChunkSize)
+                .concatMap(chunk -> {
+                    int start = chunk * batchChunkSize;
+                    int end = Math.min(start + batchChunkSize, operations.size());
+                    return applyChunk(operations, start, end)
+                            // Something changed underneath us (e.g. a concurrent create of the same id)
+                            // Fall back to applying this chunk one operation at a time, so only the offending operations fail
+                            .onErrorResume(DataAccessException.class, e -> Flux.range(start, end - start)
+                                    .concatMap(index -> applyChunk(operations, index, index + 1)
+                                            .onErrorResume(DataAccessException.class, ex -> {
+                                                BatchOperation operation = operations.get(index);
+                                                return Mono.just(List.of(new BatchResult(index, operation.op(), operation.objectId(), HttpStatus.BAD_REQUEST.value(), null)));
+                                            }))
+                                    .concatMapIterable(results -> results)
+                                    .collectList());
+                })
+                .concatMapIterable(results -> results)
+                .collectList();
+    }
+
+    // Apply operations[start..end) in a single transaction, in its turn on the write queue of every parcel it refers to
+    private Mono<List<BatchResult>> applyChunk(List<BatchOperation> operations, int start, int end) {
+        Set<Long> ids = new HashSet<>();
+        for(BatchOperation operation: operations.subList(start, end)) {
+            if(operation.objectId() != null) {
+                ids.add(operation.objectId());
+            }
+        }
+
+        return queue.writeAll(ids, () -> {
+            // The parcels as loaded (i.e. before this chunk), and as they are now
+            Map<Long, LandParcel> initial = new HashMap<>();
+            Map<Long, LandParcel> existing = new HashMap<>();
+            // Parcels created by this chunk (possibly after deleting the parcel with their id)
+            Set<Long> created = new HashSet<>();
+            List<BatchResult> results = new ArrayList<>(end - start);
+            // The net change to each parcel the chunk wrote, in the order of its operations
+            Map<Long, LandParcel> changes = new LinkedHashMap<>();
+
+            // Load every parcel referred to by this chunk in one query
+            return repository.findAllById(ids)
+                    .doOnNext(landParcel -> {
+                        initial.put(landParcel.getObjectId(), landParcel);
+                        existing.put(landParcel.getObjectId(), landParcel.copy());
+                    })
+                    .thenMany(Flux.defer(() -> {
+                        for(int index = start; index < end; index++) {
+                            BatchResult result = apply(index, operations.get(index), existing, created);
+                            results.add(result);
+                            if(result.status() == HttpStatus.OK.value()) {
+                                changes.put(result.objectId(), null);
+                            }
+                        }
+                        return Flux.fromIterable(changes.keySet());
+                    }))
+                    .concatMap(objectId -> write(initial.get(objectId), existing.get(objectId), created.contains(objectId))
+                            .doOnNext(after -> changes.put(objectId, after)))
+                    .then(Mono.fromSupplier(() -> results))
+                    .as(transactionalOperator::transactional)
+                    // The chunk has been committed: report the net change to each parcel it wrote
+                    .doOnNext(committed -> changes.forEach((objectId, after) -> {
+                        LandParcel before = initial.get(objectId);
+                        if(before != null || after != null) {
+                            changed(before, after);
+                        }
+                    }));
+        });
+    }
+
+    // Write a parcel's net change in a batch chunk: 'before' as loaded, 'after' as the chunk left it (either may be null)
+    // Emits the parcel as stored, at its new version (nothing if it's been deleted, or was never stored)
+    // An update only moves the version on if it changed something, as Hibernate's dirty checking does for the app
+    // Fails with DataAccessException if the parcel has changed underneath us
+    private Mono<LandParcel> write(LandParcel before, LandParcel after, boolean created) {
+        if(after == null) {
+            return before == null ? Mono.empty() : repository.delete(before.getObjectId(), before.getVersion()).then(Mono.empty());
+        }
+        if(before == null) {
+            return repository.insert(after).thenReturn(after);
+        }
+        if(created) {
+            // Deleted, then created again: it keeps its new first version
+            return repository.write(after, before.getVersion()).thenReturn(after);
+        }
+        if(sameValues(before, after)) {
+            return Mono.just(after);
+        }
+
+        LandParcel updated = new LandParcel(after.getObjectId(), after.getName(), after.getStatus(), after.getArea(),
+                after.getConstraints(), before.getVersion() + 1);
+        updated.setGeometry(after.getGeometry());
+        return repository.write(updated, before.getVersion()).thenReturn(updated);
+    }
+
+    private static boolean sameValues(LandParcel a, LandParcel b) {
+        return Objects.equals(a.getName(), b.getName())
+                && a.getStatus() == b.getStatus()
+                && Double.compare(a.getArea(), b.getArea()) == 0
+                && a.getConstraints() == b.getConstraints()
+                && Objects.equals(a.getGeometry(), b.getGeometry());
+    }
+
+    // Apply a single batch operation to the parcels loaded for its chunk
+    private BatchResult apply(int index, BatchOperation operation, Map<Long, LandParcel> existing, Set<Long> created) {
+        Long objectId = operation.objectId();
+        if(operation.op() == null || objectId == null) {
+            return new BatchResult(index, operation.op(), objectId, HttpStatus.BAD_REQUEST.value(), null);
+        }
+
+        LandParcel landParcel = existing.get(objectId);
+        switch (operation.op()) {
+            case CREATE -> {
+                // All values are required (except the area, if there's a geometry), and the parcel must not already exist
+                if(landParcel != null || operation.name() == null || operation.status() == null
+                        || (operation.area() == null && operation.geometry() == null) || operation.constraints() == null) {
+                    return new BatchResult(index, operation.op(), objectId, HttpStatus.BAD_REQUEST.value(), null);
+                }
+
+                landParcel = new LandParcel(objectId, operation.name(), operation.status(),
+                        operation.area() != null ? operation.area() : 0, operation.constraints(), LandParcel.firstVersion());
+                landParcel.setGeometry(operation.geometry());
+                existing.put(objectId, landParcel);
+                created.add(objectId);
+            }
+            case UPDATE -> {
+                if(landParcel == null) {
+                    return new BatchResult(index, operation.op(), objectId, HttpStatus.NOT_FOUND.value(), null);
+                }
+
+                // Only perform modifications to non-null attributes
+                // The parcel's net change is written once the chunk's operations have all been applied
+                if(operation.name() != null) {
+                    landParcel.setName(operation.name());
+                }
+                if(operation.status() != null && operation.status() != ParcelStatus.NO_CHANGE) {
+                    landParcel.setStatus(operation.status());
+                }
+                if(operation.area() != null) {
+                    landParcel.setArea(operation.area());
+                }
+                if(operation.constraints() != null) {
+                    landParcel.setConstraints(operation.constraints());
+                }
+                if(operation.geometry() != null) {
+                    landParcel.setGeometry(operation.geometry());
+                }
+            }
+            case DELETE -> {
+                if(landParcel == null) {
+                    return new BatchResult(index, operation.op(), objectId, HttpStatus.NOT_FOUND.value(), null);
+                }
+
+                existing.remove(objectId);
+                created.remove(objectId);
+                return new BatchResult(index, operation.op(), objectId, HttpStatus.OK.value(), null);
+            }
+        }
+
+        return new BatchResult(index, operation.op(), objectId, HttpStatus.OK.value(), landParcel);
+    }
+}
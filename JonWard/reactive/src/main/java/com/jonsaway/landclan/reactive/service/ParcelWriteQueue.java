@@ -0,0 +1,68 @@
+package com.jonsaway.landclan.reactive.service;
+
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+// Runs the writes to each parcel one at a time, in the order they were asked for, without holding a thread (or a lock)
+// while they wait: the reactive counterpart of the app's LandParcelLocks
+// A write tells the listeners of its change before it finishes, so they're told of each parcel's changes in the order
+// they were stored
+// Parcels are spread over STRIPES queues by object id; a write to several parcels (a batch chunk) joins the queue of
+// each of their stripes at once, so it can't be overtaken on any of them, and can't wait in a cycle with another write
+// A write, once started, runs to the end even if its caller cancels (e.g. the client goes away), so the next write
+// on the stripe never starts while it's part way through
+@Component
+public class ParcelWriteQueue {
+    // A power of 2
+    static final int STRIPES = 256;
+
+    // The last write queued on each stripe (completed, whether it succeeded or failed, once it's done)
+    private final CompletableFuture<?>[] tails = new CompletableFuture<?>[STRIPES];
+
+    public ParcelWriteQueue() {
+        Arrays.fill(tails, CompletableFuture.completedFuture(null));
+    }
+
+    // Run a write to a single parcel, once the writes queued before it on its stripe are done
+    public <T> Mono<T> write(long objectId, Supplier<Mono<T>> write) {
+        return writeAll(List.of(objectId), write);
+    }
+
+    // Run a write to several parcels, once the writes queued before it on each of their stripes are done
+    public <T> Mono<T> writeAll(Collection<Long> objectIds, Supplier<Mono<T>> write) {
+        return Mono.defer(() -> {
+            CompletableFuture<Void> done = new CompletableFuture<>();
+            CompletableFuture<T> result = enqueue(objectIds, done).thenCompose(ignored -> write.get().toFuture());
+            result.whenComplete((value, e) -> done.complete(null));
+            return Mono.fromFuture(result, true);
+        });
+    }
+
+    // Make 'done' the last write on each of the parcels' stripes
+    // Returns the future completed once every write queued before it is done
+    private synchronized CompletableFuture<Void> enqueue(Collection<Long> objectIds, CompletableFuture<Void> done) {
+        boolean[] joining = new boolean[STRIPES];
+        for(long objectId: objectIds) {
+            joining[stripe(objectId)] = true;
+        }
+        List<CompletableFuture<?>> previous = new ArrayList<>();
+        for(int i = 0; i < STRIPES; i++) {
+            if(joining[i]) {
+                previous.add(tails[i]);
+                tails[i] = done;
+            }
+        }
+        return CompletableFuture.allOf(previous.toArray(new CompletableFuture<?>[0]));
+    }
+
+    private static int stripe(long objectId) {
+        return Long.hashCode(objectId) & (STRIPES - 1);
+    }
+}
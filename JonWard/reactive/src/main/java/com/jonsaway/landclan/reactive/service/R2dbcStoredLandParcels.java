@@ -0,0 +1,36 @@
+package com.jonsaway.landclan.reactive.service;
+
+import com.jonsaway.landclan.jpa.LandParcel;
+import com.jonsaway.landclan.reactive.r2dbc.LandParcelRepository;
+import com.jonsaway.landclan.service.LandParcelStatistics;
+import com.jonsaway.landclan.service.StoredLandParcels;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+// The parcels in the database, read through the R2DBC repository
+// Only read at startup, to seed the statistics and build the indexes before the server takes requests, so these wait
+// for the database (on the main thread): never call them from a request
+@Component
+public class R2dbcStoredLandParcels implements StoredLandParcels {
+    @Autowired
+    LandParcelRepository repository;
+
+    // Streamed a row at a time (backpressure), so the table is never held in memory
+    @Override
+    public void forEach(boolean withGeometry, Consumer<LandParcel> action) {
+        repository.findAll(withGeometry)
+                .doOnNext(action)
+                .blockLast();
+    }
+
+    // A single aggregate query
+    @Override
+    public List<LandParcelStatistics.Entry> summarise() {
+        return repository.summarise()
+                .collectList()
+                .block();
+    }
+}
@@ -0,0 +1,15 @@
+-- The same table (and indexes) that Hibernate generates for the app (see LandParcel)
+-- status is stored as the ParcelStatus ordinal, geometry as ParcelGeometry.toBytes()
+create table if not exists land_parcel (
+    object_id bigint not null primary key,
+    name varchar(255),
+    status tinyint,
+    area float(53) not null,
+    constraints boolean not null,
+    geometry varbinary(1048576),
+    version bigint not null
+);
+
+create index if not exists idx_land_parcel_name on land_parcel (name);
+create index if not exists idx_land_parcel_status on land_parcel (status, constraints, object_id);
+create index if not exists idx_land_parcel_area on land_parcel (area);
@@ -0,0 +1,78 @@
+package com.jonsaway.landclan.reactive.benchmark;
+
+import com.jonsaway.landclan.benchmark.ConnectionScalingBenchmark;
+import com.jonsaway.landclan.reactive.service.LandParcelService;
+import com.jonsaway.landclan.service.BatchOperation;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import org.junit.jupiter.api.Tag;
+import org.reactivestreams.Publisher;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+
+// The connection scaling benchmark (see ConnectionScalingBenchmark, in the domain module's tests) for the reactive
+// (WebFlux/R2DBC) stack; the app runs the same, to compare with
+// Run with: mvn test -Pbenchmark -pl reactive -am -Dtest=ConnectionScalingBenchmarkTests -Dsurefire.failIfNoSpecifiedTests=false
+//   [-Dbenchmark.connections=2000] [-Dbenchmark.db-latency-ms=100]
+@Tag("benchmark")
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = { "spring.r2dbc.pool.max-size=500", "landclan.limits.enabled=false" })
+public class ConnectionScalingBenchmarkTests extends ConnectionScalingBenchmark {
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private LandParcelService service;
+
+    @Override
+    protected String stack() {
+        return "reactive";
+    }
+
+    @Override
+    protected int port() {
+        return port;
+    }
+
+    @Override
+    protected void batch(List<BatchOperation> operations) {
+        service.batch(operations).block();
+    }
+
+    // Delay each connection checkout by a simulated database round trip, while holding the connection
+    // Unlike the blocking version, nothing waits on a thread: the connection is emitted after the delay
+    @TestConfiguration
+    static class SimulatedLatency {
+        @Bean
+        static BeanPostProcessor simulatedLatencyPostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if(!(bean instanceof ConnectionFactory connectionFactory)) {
+                        return bean;
+                    }
+                    return new ConnectionFactory() {
+                        @Override
+                        public Publisher<? extends Connection> create() {
+                            return Mono.from(connectionFactory.create()).delayElement(Duration.ofMillis(DB_LATENCY_MS));
+                        }
+
+                        @Override
+                        public ConnectionFactoryMetadata getMetadata() {
+                            return connectionFactory.getMetadata();
+                        }
+                    };
+                }
+            };
+        }
+    }
+}
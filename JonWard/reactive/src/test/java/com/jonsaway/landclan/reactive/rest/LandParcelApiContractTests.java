@@ -0,0 +1,21 @@
+package com.jonsaway.landclan.reactive.rest;
+
+import com.jonsaway.landclan.rest.LandParcelApiContract;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+// The API contract (see LandParcelApiContract, in the domain module's tests), against this application
+// (without the request limits: these tests read every parcel far more often than a client is allowed to)
+@SpringBootTest(properties = "landclan.limits.enabled=false")
+@AutoConfigureWebTestClient
+public class LandParcelApiContractTests extends LandParcelApiContract {
+    @Autowired
+    private WebTestClient client;
+
+    @Override
+    protected WebTestClient client() {
+        return client;
+    }
+}
@@ -0,0 +1,100 @@
+package com.jonsaway.landclan.reactive.service;
+
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ParcelWriteQueueTests {
+    private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+    private final ParcelWriteQueue queue = new ParcelWriteQueue();
+    private final List<String> order = new CopyOnWriteArrayList<>();
+
+    // A write that records its name once 'finish' emits
+    private Mono<String> write(String name, Sinks.Empty<Void> finish) {
+        return finish.asMono().then(Mono.fromSupplier(() -> {
+            order.add(name);
+            return name;
+        }));
+    }
+
+    // A write that records its name straight away
+    private Mono<String> write(String name) {
+        return Mono.fromSupplier(() -> {
+            order.add(name);
+            return name;
+        });
+    }
+
+    // Test that a write to a parcel waits for the one queued before it, even though it could finish first
+    @Test
+    public void testWritesToAParcelRunInOrder() {
+        Sinks.Empty<Void> finishFirst = Sinks.empty();
+        CompletableFuture<String> first = queue.write(1, () -> write("first", finishFirst)).toFuture();
+        CompletableFuture<String> second = queue.write(1, () -> write("second")).toFuture();
+
+        assertThat(second).isNotDone();
+        finishFirst.tryEmitEmpty();
+
+        assertThat(second).succeedsWithin(TIMEOUT).isEqualTo("second");
+        assertThat(first).isDone();
+        assertThat(order).containsExactly("first", "second");
+    }
+
+    // Test that a write to another parcel doesn't wait, and that a failed write doesn't hold up the next
+    @Test
+    public void testWritesToOtherParcelsDontWait() {
+        Sinks.Empty<Void> finishFirst = Sinks.empty();
+        CompletableFuture<String> first = queue.write(1, () -> write("first", finishFirst)).toFuture();
+
+        assertThat(queue.write(2, () -> write("other")).toFuture()).succeedsWithin(TIMEOUT);
+
+        CompletableFuture<String> next = queue.write(1, () -> write("next")).toFuture();
+        finishFirst.tryEmitError(new IllegalStateException("Failed"));
+        assertThat(first).failsWithin(TIMEOUT);
+        assertThat(next).succeedsWithin(TIMEOUT);
+        assertThat(order).containsExactly("other", "next");
+    }
+
+    // Test that a write to several parcels waits for the writes queued before it on each of them, and is waited for by
+    // the writes queued after it on each of them
+    @Test
+    public void testWriteAllWaitsForEachParcel() {
+        Sinks.Empty<Void> finishBefore = Sinks.empty();
+        Sinks.Empty<Void> finishBatch = Sinks.empty();
+        queue.write(2, () -> write("before", finishBefore)).toFuture();
+        CompletableFuture<String> batch = queue.writeAll(List.of(1L, 2L, 3L), () -> write("batch", finishBatch)).toFuture();
+        CompletableFuture<String> after = queue.write(3, () -> write("after")).toFuture();
+
+        finishBatch.tryEmitEmpty();
+        assertThat(batch).isNotDone();
+        assertThat(after).isNotDone();
+
+        finishBefore.tryEmitEmpty();
+        assertThat(after).succeedsWithin(TIMEOUT);
+        assertThat(order).containsExactly("before", "batch", "after");
+    }
+
+    // Test that a write runs to the end even if its caller goes away, before the next write on the parcel starts
+    @Test
+    public void testCancelledWriteRunsToTheEnd() {
+        Sinks.Empty<Void> finishFirst = Sinks.empty();
+        Disposable first = queue.write(1, () -> write("first", finishFirst)).subscribe();
+        CompletableFuture<String> second = queue.write(1, () -> write("second")).toFuture();
+
+        first.dispose();
+        assertThat(second).isNotDone();
+
+        finishFirst.tryEmitEmpty();
+        assertThat(second).succeedsWithin(TIMEOUT);
+        assertThat(order).containsExactly("first", "second");
+    }
+}